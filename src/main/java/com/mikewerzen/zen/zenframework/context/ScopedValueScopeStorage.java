@@ -0,0 +1,145 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.context;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Keeps scopes in a JDK 21+ ScopedValue, looked up reflectively so the framework still runs on Java 8.
+ *
+ * A ScopedValue cannot be rebound imperatively, so each thread started through {@link #wrapThreadBody(Runnable)}
+ * binds a one-slot cell for its lifetime and attach/end only write to that cell. Nothing is left behind in the
+ * thread's ThreadLocal map, which matters when every request runs on its own virtual thread. Threads Zen did not
+ * start, such as platform container threads, fall back to a ThreadLocal.
+ */
+public class ScopedValueScopeStorage implements ZenScopeStorage
+{
+	private final ThreadLocalScopeStorage fallback = new ThreadLocalScopeStorage();
+
+	private final MethodHandle isBound;
+	private final MethodHandle get;
+	private final MethodHandle where;
+	private final MethodHandle run;
+
+	private ScopedValueScopeStorage(MethodHandle isBound, MethodHandle get, MethodHandle where, MethodHandle run)
+	{
+		this.isBound = isBound;
+		this.get = get;
+		this.where = where;
+		this.run = run;
+	}
+
+	/**
+	 * @return the storage, or null if this JVM has no usable ScopedValue (JDK 21 or later).
+	 */
+	public static ScopedValueScopeStorage create()
+	{
+		try
+		{
+			Class<?> scopedValueClass = Class.forName("java.lang.ScopedValue");
+			Class<?> carrierClass = Class.forName("java.lang.ScopedValue$Carrier");
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+			Object key = lookup.findStatic(scopedValueClass, "newInstance", MethodType.methodType(scopedValueClass))
+					.invoke();
+
+			MethodHandle isBound = lookup.findVirtual(scopedValueClass, "isBound", MethodType.methodType(boolean.class))
+					.bindTo(key);
+			MethodHandle get = lookup.findVirtual(scopedValueClass, "get", MethodType.methodType(Object.class))
+					.bindTo(key);
+			MethodHandle where = MethodHandles.insertArguments(lookup.findStatic(scopedValueClass, "where",
+					MethodType.methodType(carrierClass, scopedValueClass, Object.class)), 0, key)
+					.asType(MethodType.methodType(Object.class, Object.class));
+			MethodHandle run = lookup.findVirtual(carrierClass, "run", MethodType.methodType(void.class, Runnable.class))
+					.asType(MethodType.methodType(void.class, Object.class, Runnable.class));
+
+			ScopedValueScopeStorage storage = new ScopedValueScopeStorage(isBound, get, where, run);
+			storage.wrapThreadBody(() -> { }).run();
+			return storage;
+		}
+		catch (Throwable e)
+		{
+			return null;
+		}
+	}
+
+	@Override
+	public ZenScope get()
+	{
+		ZenScope[] cell = getCell();
+		return cell != null ? cell[0] : fallback.get();
+	}
+
+	@Override
+	public void set(ZenScope scope)
+	{
+		ZenScope[] cell = getCell();
+		if (cell != null)
+		{
+			cell[0] = scope;
+		}
+		else
+		{
+			fallback.set(scope);
+		}
+	}
+
+	@Override
+	public Runnable wrapThreadBody(Runnable task)
+	{
+		return () -> {
+			try
+			{
+				Object carrier = (Object) where.invokeExact((Object) new ZenScope[1]);
+				run.invokeExact(carrier, task);
+			}
+			catch (RuntimeException | Error e)
+			{
+				throw e;
+			}
+			catch (Throwable e)
+			{
+				throw new IllegalStateException(e);
+			}
+		};
+	}
+
+	private ZenScope[] getCell()
+	{
+		try
+		{
+			return (boolean) isBound.invokeExact() ? (ZenScope[]) (Object) get.invokeExact() : null;
+		}
+		catch (RuntimeException | Error e)
+		{
+			throw e;
+		}
+		catch (Throwable e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.context;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * ExecutorService that runs each task with the {@link ZenScope} bound when it was submitted.
+ */
+public class ZenContextExecutorService implements ExecutorService
+{
+	private final ExecutorService delegate;
+
+	public ZenContextExecutorService(ExecutorService delegate)
+	{
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void execute(Runnable command)
+	{
+		delegate.execute(ZenContextPropagation.wrapRunnable(command));
+	}
+
+	@Override
+	public <T> Future<T> submit(Callable<T> task)
+	{
+		return delegate.submit(ZenContextPropagation.wrapCallable(task));
+	}
+
+	@Override
+	public <T> Future<T> submit(Runnable task, T result)
+	{
+		return delegate.submit(ZenContextPropagation.wrapRunnable(task), result);
+	}
+
+	@Override
+	public Future<?> submit(Runnable task)
+	{
+		return delegate.submit(ZenContextPropagation.wrapRunnable(task));
+	}
+
+	@Override
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException
+	{
+		return delegate.invokeAll(wrap(tasks));
+	}
+
+	@Override
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+			throws InterruptedException
+	{
+		return delegate.invokeAll(wrap(tasks), timeout, unit);
+	}
+
+	@Override
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException
+	{
+		return delegate.invokeAny(wrap(tasks));
+	}
+
+	@Override
+	public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+			throws InterruptedException, ExecutionException, TimeoutException
+	{
+		return delegate.invokeAny(wrap(tasks), timeout, unit);
+	}
+
+	@Override
+	public void shutdown()
+	{
+		delegate.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow()
+	{
+		return delegate.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown()
+	{
+		return delegate.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated()
+	{
+		return delegate.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		return delegate.awaitTermination(timeout, unit);
+	}
+
+	private <T> List<Callable<T>> wrap(Collection<? extends Callable<T>> tasks)
+	{
+		List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+		for (Callable<T> task : tasks)
+		{
+			wrapped.add(ZenContextPropagation.wrapCallable(task));
+		}
+		return wrapped;
+	}
+}
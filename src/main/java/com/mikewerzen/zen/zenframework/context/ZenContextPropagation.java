@@ -0,0 +1,182 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.context;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Carries the current {@link ZenScope} to work that runs on other threads, so that calls made by worker threads are
+ * logged against the request that started them.
+ *
+ * Each wrapper captures a copy of the scope when it is created and binds it around every invocation, restoring
+ * whatever the running thread had bound before. Wrapping with no scope bound makes the task run with no scope.
+ */
+public class ZenContextPropagation
+{
+	public static Runnable wrapRunnable(Runnable runnable)
+	{
+		ZenScope captured = capture();
+		return () ->
+		{
+			ZenScope previous = ZenScope.attach(captured);
+			try
+			{
+				runnable.run();
+			}
+			finally
+			{
+				ZenScope.restore(previous);
+			}
+		};
+	}
+
+	public static <T> Callable<T> wrapCallable(Callable<T> callable)
+	{
+		ZenScope captured = capture();
+		return () ->
+		{
+			ZenScope previous = ZenScope.attach(captured);
+			try
+			{
+				return callable.call();
+			}
+			finally
+			{
+				ZenScope.restore(previous);
+			}
+		};
+	}
+
+	public static <T> Supplier<T> wrapSupplier(Supplier<T> supplier)
+	{
+		ZenScope captured = capture();
+		return () ->
+		{
+			ZenScope previous = ZenScope.attach(captured);
+			try
+			{
+				return supplier.get();
+			}
+			finally
+			{
+				ZenScope.restore(previous);
+			}
+		};
+	}
+
+	/**
+	 * For CompletableFuture stages such as thenApplyAsync, and parallel stream operations.
+	 */
+	public static <T, R> Function<T, R> wrapFunction(Function<T, R> function)
+	{
+		ZenScope captured = capture();
+		return value ->
+		{
+			ZenScope previous = ZenScope.attach(captured);
+			try
+			{
+				return function.apply(value);
+			}
+			finally
+			{
+				ZenScope.restore(previous);
+			}
+		};
+	}
+
+	public static <T, U, R> BiFunction<T, U, R> wrapBiFunction(BiFunction<T, U, R> function)
+	{
+		ZenScope captured = capture();
+		return (first, second) ->
+		{
+			ZenScope previous = ZenScope.attach(captured);
+			try
+			{
+				return function.apply(first, second);
+			}
+			finally
+			{
+				ZenScope.restore(previous);
+			}
+		};
+	}
+
+	public static <T> Consumer<T> wrapConsumer(Consumer<T> consumer)
+	{
+		ZenScope captured = capture();
+		return value ->
+		{
+			ZenScope previous = ZenScope.attach(captured);
+			try
+			{
+				consumer.accept(value);
+			}
+			finally
+			{
+				ZenScope.restore(previous);
+			}
+		};
+	}
+
+	/**
+	 * Each task submitted to the returned executor runs with the scope that was bound when it was submitted.
+	 */
+	public static Executor wrapExecutor(Executor executor)
+	{
+		return executor instanceof ZenContextExecutor ? executor : new ZenContextExecutor(executor);
+	}
+
+	/**
+	 * Each task submitted to the returned executor service runs with the scope that was bound when it was submitted.
+	 * This also works for a ForkJoinPool; tasks forked from within a task should extend {@link ZenRecursiveTask}.
+	 */
+	public static ExecutorService wrapExecutorService(ExecutorService executorService)
+	{
+		return executorService instanceof ZenContextExecutorService ? executorService :
+				new ZenContextExecutorService(executorService);
+	}
+
+	public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor)
+	{
+		return CompletableFuture.supplyAsync(wrapSupplier(supplier), executor);
+	}
+
+	public static CompletableFuture<Void> runAsync(Runnable runnable, Executor executor)
+	{
+		return CompletableFuture.runAsync(wrapRunnable(runnable), executor);
+	}
+
+	static ZenScope capture()
+	{
+		ZenScope current = ZenScope.current();
+		return current == null ? null : current.copy();
+	}
+}
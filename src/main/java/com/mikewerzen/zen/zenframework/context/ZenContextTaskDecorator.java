@@ -0,0 +1,43 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.context;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Propagates the {@link ZenScope} to tasks run by Spring's task executors, including @Async methods on the
+ * auto-configured executor.
+ */
+@Component
+@ConditionalOnProperty(name = "context.propagation.taskDecorator.enabled", havingValue = "true", matchIfMissing = true)
+public class ZenContextTaskDecorator implements TaskDecorator
+{
+	@Override
+	public Runnable decorate(Runnable runnable)
+	{
+		return ZenContextPropagation.wrapRunnable(runnable);
+	}
+}
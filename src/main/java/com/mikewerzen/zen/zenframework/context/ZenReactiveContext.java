@@ -0,0 +1,100 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.context;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Carries a {@link ZenScope} in the Reactor subscriber {@link Context} of reactive @ZenTransaction handlers, where
+ * operators run on whichever thread signals them and ThreadLocals cannot be relied on.
+ *
+ * Code running inside the pipeline reads the scope with {@link #scope()}, or binds it around blocking-style code
+ * with {@link #inScope(ZenScope, Supplier)}, e.g. to build headers or commit external call attributes.
+ */
+public class ZenReactiveContext
+{
+	public static final String KEY = ZenScope.class.getName();
+
+	/**
+	 * The scope of the subscribing transaction, or an empty Mono outside of one.
+	 */
+	public static Mono<ZenScope> scope()
+	{
+		return Mono.subscriberContext().flatMap(context -> Mono.justOrEmpty(getScope(context)));
+	}
+
+	public static ZenScope getScope(Context context)
+	{
+		return context.getOrDefault(KEY, null);
+	}
+
+	/**
+	 * For use with subscriberContext(..); a null scope leaves the context unchanged.
+	 */
+	public static Function<Context, Context> withScope(ZenScope scope)
+	{
+		return context -> scope == null ? context : context.put(KEY, scope);
+	}
+
+	/**
+	 * Runs the supplier with the scope bound to the current thread, restoring whatever the thread had bound.
+	 */
+	public static <T> T inScope(ZenScope scope, Supplier<T> supplier)
+	{
+		ZenScope previous = ZenScope.attach(scope);
+		try
+		{
+			return supplier.get();
+		}
+		finally
+		{
+			ZenScope.restore(previous);
+		}
+	}
+
+	public static void runInScope(ZenScope scope, Runnable runnable)
+	{
+		ZenScope previous = ZenScope.attach(scope);
+		try
+		{
+			runnable.run();
+		}
+		finally
+		{
+			ZenScope.restore(previous);
+		}
+	}
+
+	/**
+	 * Defers the supplier to subscription time and runs it with the subscriber's scope bound.
+	 */
+	public static <T> Mono<T> fromSupplier(Supplier<T> supplier)
+	{
+		return Mono.subscriberContext().flatMap(context -> Mono.justOrEmpty(inScope(getScope(context), supplier)));
+	}
+}
@@ -0,0 +1,217 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.context;
+
+import com.mikewerzen.zen.zenframework.event.context.EventContext;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import com.mikewerzen.zen.zenframework.security.context.SecurityContext;
+import com.mikewerzen.zen.zenframework.transaction.context.TransactionContext;
+
+/**
+ * All the contexts of the request or event being processed, kept in a single slot of the {@link ZenScopeStorage}, a
+ * ThreadLocal by default. The aspects bind a scope once when processing begins and unbind it when it ends; the context
+ * holders are facades over it.
+ *
+ * The static accessors do a single storage lookup and never allocate, so hot paths should prefer them to the
+ * holders' getContextOptional(). A scope is only meant to be used by one thread at a time; use {@link #copy()} to hand
+ * the contexts to another thread.
+ */
+public final class ZenScope
+{
+	private static volatile ZenScopeStorage storage = new ThreadLocalScopeStorage();
+
+	private TransactionContext transactionContext;
+	private SecurityContext securityContext;
+	private LoggingContext loggingContext;
+	private EventContext eventContext;
+
+	public ZenScope()
+	{
+	}
+
+	private ZenScope(ZenScope other)
+	{
+		transactionContext = other.transactionContext;
+		securityContext = other.securityContext;
+		loggingContext = other.loggingContext;
+		eventContext = other.eventContext;
+	}
+
+	/**
+	 * Replaces the storage. Scopes bound in the previous storage are not carried over, so this is only meant to be
+	 * called at startup.
+	 */
+	public static void setStorage(ZenScopeStorage zenScopeStorage)
+	{
+		storage = zenScopeStorage != null ? zenScopeStorage : new ThreadLocalScopeStorage();
+	}
+
+	public static ZenScopeStorage getStorage()
+	{
+		return storage;
+	}
+
+	/**
+	 * @return the scope bound to the current thread, or null.
+	 */
+	public static ZenScope current()
+	{
+		return storage.get();
+	}
+
+	/**
+	 * @return the scope bound to the current thread, binding a new one if there is none.
+	 */
+	public static ZenScope currentOrCreate()
+	{
+		ZenScopeStorage current = storage;
+		ZenScope scope = current.get();
+		if (scope == null)
+		{
+			scope = new ZenScope();
+			current.set(scope);
+		}
+		return scope;
+	}
+
+	/**
+	 * Binds the scope to the current thread.
+	 *
+	 * @return the scope it replaced, to be passed to {@link #restore(ZenScope)}.
+	 */
+	public static ZenScope attach(ZenScope scope)
+	{
+		ZenScopeStorage current = storage;
+		ZenScope previous = current.get();
+		current.set(scope);
+		return previous;
+	}
+
+	/**
+	 * Rebinds the scope returned by {@link #attach(ZenScope)}.
+	 */
+	public static void restore(ZenScope previous)
+	{
+		attach(previous);
+	}
+
+	/**
+	 * Unbinds the current scope.
+	 */
+	public static void end()
+	{
+		storage.set(null);
+	}
+
+	/**
+	 * Unbinds the current scope if it no longer holds any context.
+	 */
+	public static void endIfEmpty()
+	{
+		ZenScopeStorage current = storage;
+		ZenScope scope = current.get();
+		if (scope != null && scope.isEmpty())
+		{
+			current.set(null);
+		}
+	}
+
+	public static TransactionContext currentTransactionContext()
+	{
+		ZenScope scope = storage.get();
+		return scope == null ? null : scope.transactionContext;
+	}
+
+	public static SecurityContext currentSecurityContext()
+	{
+		ZenScope scope = storage.get();
+		return scope == null ? null : scope.securityContext;
+	}
+
+	public static LoggingContext currentLoggingContext()
+	{
+		ZenScope scope = storage.get();
+		return scope == null ? null : scope.loggingContext;
+	}
+
+	public static EventContext currentEventContext()
+	{
+		ZenScope scope = storage.get();
+		return scope == null ? null : scope.eventContext;
+	}
+
+	/**
+	 * Returns a scope holding the same contexts, that can be bound to another thread without that thread's changes to
+	 * which contexts are set affecting this one.
+	 */
+	public ZenScope copy()
+	{
+		return new ZenScope(this);
+	}
+
+	public boolean isEmpty()
+	{
+		return transactionContext == null && securityContext == null && loggingContext == null && eventContext == null;
+	}
+
+	public TransactionContext getTransactionContext()
+	{
+		return transactionContext;
+	}
+
+	public void setTransactionContext(TransactionContext transactionContext)
+	{
+		this.transactionContext = transactionContext;
+	}
+
+	public SecurityContext getSecurityContext()
+	{
+		return securityContext;
+	}
+
+	public void setSecurityContext(SecurityContext securityContext)
+	{
+		this.securityContext = securityContext;
+	}
+
+	public LoggingContext getLoggingContext()
+	{
+		return loggingContext;
+	}
+
+	public void setLoggingContext(LoggingContext loggingContext)
+	{
+		this.loggingContext = loggingContext;
+	}
+
+	public EventContext getEventContext()
+	{
+		return eventContext;
+	}
+
+	public void setEventContext(EventContext eventContext)
+	{
+		this.eventContext = eventContext;
+	}
+}
@@ -0,0 +1,47 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.context;
+
+/**
+ * Where {@link ZenScope} keeps the scope of the current thread. Installed once at startup by
+ * {@link ZenScopeStorageConfigurer}; an application may declare its own ZenScopeStorage bean instead.
+ */
+public interface ZenScopeStorage
+{
+	ZenScope get();
+
+	/**
+	 * Binds the scope to the current thread; null unbinds it and must release anything the thread held for it.
+	 */
+	void set(ZenScope scope);
+
+	/**
+	 * Wraps a task that is the whole body of a new thread, so the storage can bind per-thread state for exactly the
+	 * task's lifetime. Used by the threads Zen creates itself.
+	 */
+	default Runnable wrapThreadBody(Runnable task)
+	{
+		return task;
+	}
+}
@@ -0,0 +1,69 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.context;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Installs the configured {@link ZenScopeStorage}, or the application's own ZenScopeStorage bean if it declares one.
+ * SCOPED_VALUE falls back to THREAD_LOCAL on JVMs without a usable ScopedValue.
+ */
+@Component
+public class ZenScopeStorageConfigurer
+{
+	private static final Logger logger = LogManager.getLogger(ZenScopeStorageConfigurer.class);
+
+	@Value("${context.storage:THREAD_LOCAL}")
+	private ZenScopeStorageType type;
+
+	@Autowired(required = false)
+	private ZenScopeStorage customStorage;
+
+	@PostConstruct
+	public void initialize()
+	{
+		ZenScope.setStorage(customStorage != null ? customStorage : buildStorage());
+	}
+
+	private ZenScopeStorage buildStorage()
+	{
+		if (type == ZenScopeStorageType.SCOPED_VALUE)
+		{
+			ZenScopeStorage storage = ScopedValueScopeStorage.create();
+			if (storage != null)
+			{
+				return storage;
+			}
+			logger.warn("ScopedValue is not available on this JVM, Zen contexts will be kept in ThreadLocals.");
+		}
+
+		return new ThreadLocalScopeStorage();
+	}
+}
@@ -23,12 +23,13 @@
 
 package com.mikewerzen.zen.zenframework.event;
 
+import com.mikewerzen.zen.zenframework.context.ZenScope;
 import com.mikewerzen.zen.zenframework.event.context.EventContext;
-import com.mikewerzen.zen.zenframework.event.context.EventContextHolder;
 import com.mikewerzen.zen.zenframework.exception.util.ThrowableAdapterFinderWrapper;
 import com.mikewerzen.zen.zenframework.logging.ZenLogManager;
 import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
-import com.mikewerzen.zen.zenframework.logging.context.LoggingContextHolder;
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import com.mikewerzen.zen.zenframework.metrics.RequestMetrics;
 import com.mikewerzen.zen.zenframework.util.UniqueIdentifierUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -36,9 +37,14 @@ import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Aspect
 @Component
 public class ZenEventAspect
@@ -51,6 +57,8 @@ public class ZenEventAspect
 	@Autowired
 	private ZenLogManager logManager;
 
+	private final Map<Method, RequestMetrics> eventMetrics = new ConcurrentHashMap<>();
+
 	@Pointcut("execution(public * *(..))")
 	void anyPublicMethod()
 	{
@@ -59,29 +67,35 @@ public class ZenEventAspect
 	@Around("anyPublicMethod() && @annotation(zenEvent)")
 	public Object zenTransaction(ProceedingJoinPoint proceedingJoinPoint, ZenEvent zenEvent) throws Throwable
 	{
+		boolean wasScopeCreated = ZenScope.current() == null;
+		ZenScope scope = ZenScope.currentOrCreate();
 		boolean wasLoggingContextSet = false;
 		boolean wasEventContextSet = false;
 
 		Object response = null;
 		Throwable throwable = null;
 
+		RequestMetrics metrics = getMetrics(proceedingJoinPoint, zenEvent);
+		long startTime = System.nanoTime();
+
 		try
 		{
 			try
 			{
-				wasLoggingContextSet = initializeLoggingContext(wasLoggingContextSet);
-				wasEventContextSet = initializeEventContext(zenEvent, wasEventContextSet);
+				wasLoggingContextSet = initializeLoggingContext(scope, wasLoggingContextSet);
+				wasEventContextSet = initializeEventContext(scope, zenEvent, wasEventContextSet);
 
 				response = proceedingJoinPoint.proceed();
 			}
 			catch (Throwable t)
 			{
-				handleThrowable(zenEvent, t);
+				handleThrowable(scope, zenEvent, t);
 				throwable = t;
 			}
 			finally
 			{
-				endEvent(wasLoggingContextSet, wasEventContextSet, response);
+				metrics.record(System.nanoTime() - startTime, 0, throwable);
+				endEvent(scope, wasScopeCreated, wasLoggingContextSet, wasEventContextSet, response);
 			}
 		}
 		catch (Throwable t)
@@ -97,45 +111,65 @@ public class ZenEventAspect
 		return response;
 	}
 
-	private boolean initializeLoggingContext(boolean wasLoggingContextSet)
+	private RequestMetrics getMetrics(ProceedingJoinPoint proceedingJoinPoint, ZenEvent zenEvent)
+	{
+		Method method = ((MethodSignature) proceedingJoinPoint.getSignature()).getMethod();
+
+		RequestMetrics metrics = eventMetrics.get(method);
+		return metrics != null ? metrics : eventMetrics.computeIfAbsent(method,
+				key -> MetricsRegistry.getRequestMetrics(MetricsRegistry.EVENT, zenEvent.eventGroup(),
+						zenEvent.eventName()));
+	}
+
+	private boolean initializeLoggingContext(ZenScope scope, boolean wasLoggingContextSet)
 	{
-		if (!LoggingContextHolder.getContextOptional().isPresent())
+		if (scope.getLoggingContext() == null)
 		{
-			LoggingContextHolder.setContext(new LoggingContext());
+			scope.setLoggingContext(new LoggingContext());
 			wasLoggingContextSet = true;
 		}
 		return wasLoggingContextSet;
 	}
 
-	private boolean initializeEventContext(ZenEvent zenEvent, boolean wasEventContextSet)
+	private boolean initializeEventContext(ZenScope scope, ZenEvent zenEvent, boolean wasEventContextSet)
 	{
-		if (!EventContextHolder.getContextOptional().isPresent())
+		if (scope.getEventContext() == null)
 		{
 			long eventId = UniqueIdentifierUtils.getUniqueId();
 			EventContext context = new EventContext(zenEvent.eventName(), zenEvent.eventVersion(), zenEvent.eventGroup(), eventId);
-			EventContextHolder.setContext(context);
+			scope.setEventContext(context);
 			wasEventContextSet = true;
 		}
 		return wasEventContextSet;
 	}
 
-	private void handleThrowable(ZenEvent zenEvent, Throwable throwable)
+	private void handleThrowable(ZenScope scope, ZenEvent zenEvent, Throwable throwable)
 	{
 		logger.error("An exception was thrown while processing an event: " + zenEvent.eventName(), throwable);
-		LoggingContextHolder.getContextOptional().ifPresent(loggingContext -> loggingContext.addThrowable(throwable));
+		if (scope.getLoggingContext() != null)
+		{
+			scope.getLoggingContext().addThrowable(throwable);
+		}
 	}
 
-	private void endEvent(boolean wasLoggingContextSet, boolean wasEventContextSet, Object response)
+	private void endEvent(ZenScope scope, boolean wasScopeCreated, boolean wasLoggingContextSet,
+			boolean wasEventContextSet, Object response)
 	{
 		logManager.logEvent(response);
 
+		if (wasScopeCreated)
+		{
+			ZenScope.end();
+			return;
+		}
+
 		if (wasLoggingContextSet)
 		{
-			LoggingContextHolder.clearContext();
+			scope.setLoggingContext(null);
 		}
 		if (wasEventContextSet)
 		{
-			EventContextHolder.clearContext();
+			scope.setEventContext(null);
 		}
 	}
 }
@@ -23,35 +23,41 @@
 
 package com.mikewerzen.zen.zenframework.event.context;
 
+import com.mikewerzen.zen.zenframework.context.ZenScope;
 import com.mikewerzen.zen.zenframework.exception.system.InternalException;
 
 import java.util.Optional;
 
+/**
+ * Facade over the EventContext of the current {@link ZenScope}.
+ */
 public class EventContextHolder
 {
-	private static final ThreadLocal<EventContext> eventContextLocal = new ThreadLocal<>();
-
 	public static void setContext(EventContext context)
 	{
-		eventContextLocal.set(context);
+		ZenScope.currentOrCreate().setEventContext(context);
 	}
 
 	public static void clearContext()
 	{
-		eventContextLocal.set(null);
-		eventContextLocal.remove();
+		ZenScope scope = ZenScope.current();
+		if (scope != null)
+		{
+			scope.setEventContext(null);
+			ZenScope.endIfEmpty();
+		}
 	}
 
 	public static boolean isPresent()
 	{
-		return (eventContextLocal.get() != null);
+		return (ZenScope.currentEventContext() != null);
 	}
 
 	public static EventContext getContext()
 	{
-		EventContext context = eventContextLocal.get();
+		EventContext context = ZenScope.currentEventContext();
 
-		if(context == null)
+		if (context == null)
 		{
 			throw new InternalException("EventContext was requested but is Null");
 		}
@@ -59,9 +65,17 @@ public class EventContextHolder
 		return context;
 	}
 
+	/**
+	 * @return the context, or null. Unlike {@link #getContextOptional()} this never allocates.
+	 */
+	public static EventContext getContextOrNull()
+	{
+		return ZenScope.currentEventContext();
+	}
+
 	public static Optional<EventContext> getContextOptional()
 	{
-		return Optional.ofNullable(eventContextLocal.get());
+		return Optional.ofNullable(ZenScope.currentEventContext());
 	}
 
 }
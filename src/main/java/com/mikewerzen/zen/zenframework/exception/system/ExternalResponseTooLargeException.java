@@ -0,0 +1,42 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.exception.system;
+
+/**
+ * Thrown when a downstream response body is larger than the client allows.
+ */
+public class ExternalResponseTooLargeException extends ExternalException
+{
+	private final long maxBytes;
+
+	public ExternalResponseTooLargeException(long maxBytes, String debugMessage)
+	{
+		super(debugMessage);
+		this.maxBytes = maxBytes;
+	}
+
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+}
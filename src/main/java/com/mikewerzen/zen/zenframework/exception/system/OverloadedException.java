@@ -0,0 +1,50 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.exception.system;
+
+/**
+ * Thrown when a request is shed because the service is already running as many as it can take. Carries the HTTP
+ * status to reject with, typically 503 or 429.
+ */
+public class OverloadedException extends RuntimeException
+{
+	private int httpStatus;
+
+	public OverloadedException(int httpStatus, String debugMessage)
+	{
+		super(debugMessage);
+		this.httpStatus = httpStatus;
+	}
+
+	public OverloadedException(int httpStatus, String debugMessage, Throwable cause)
+	{
+		super(debugMessage, cause);
+		this.httpStatus = httpStatus;
+	}
+
+	public int getHttpStatus()
+	{
+		return httpStatus;
+	}
+}
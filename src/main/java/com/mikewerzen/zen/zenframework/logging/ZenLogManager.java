@@ -22,14 +22,21 @@
 
 package com.mikewerzen.zen.zenframework.logging;
 
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.logging.async.AsyncLogPipeline;
 import com.mikewerzen.zen.zenframework.logging.builder.LogMessageBuilder;
+import com.mikewerzen.zen.zenframework.logging.context.LogSnapshot;
 import com.mikewerzen.zen.zenframework.logging.export.LogDataExporter;
+import com.mikewerzen.zen.zenframework.logging.sampling.TransactionSampler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
 @Component
 public class ZenLogManager
 {
@@ -44,23 +51,75 @@ public class ZenLogManager
 	@Autowired
 	private LogDataExporter logDataExporter;
 
+	@Autowired
+	private TransactionSampler transactionSampler;
+
+	@Autowired
+	private AsyncLogPipeline asyncLogPipeline;
+
+	@PostConstruct
+	public void startAsyncLogging()
+	{
+		asyncLogPipeline.start(this::writeSnapshot);
+	}
+
+	/**
+	 * Drains the pipeline while the exporter is still available.
+	 */
+	@PreDestroy
+	public void stopAsyncLogging()
+	{
+		asyncLogPipeline.stop();
+	}
+
 	public void logTransaction(Object response)
 	{
+		if (!transactionSampler.shouldLog(ZenScope.currentTransactionContext(), ZenScope.currentLoggingContext(),
+				response))
+		{
+			return;
+		}
+
+		if (asyncLogPipeline.isRunning())
+		{
+			asyncLogPipeline.publish(LogSnapshot.captureTransaction(response));
+			return;
+		}
+
 		writeLogMessage(logMessageBuilder.buildTransactionLog(response));
 	}
 
 	public void logEvent(Object response)
 	{
+		if (asyncLogPipeline.isRunning())
+		{
+			asyncLogPipeline.publish(LogSnapshot.captureEvent(response));
+			return;
+		}
+
 		writeLogMessage(logMessageBuilder.buildEventLog(response));
 	}
 
+	private void writeSnapshot(LogSnapshot snapshot)
+	{
+		writeLogMessage(snapshot.isEvent() ? logMessageBuilder.buildEventLogFromSnapshot(snapshot)
+				: logMessageBuilder.buildTransactionLogFromSnapshot(snapshot));
+	}
+
 	private void writeLogMessage(String logMessage)
 	{
 		logger.info(logMessage);
 
 		if (exportEnabled)
 		{
-			logDataExporter.exportLogMessage(logMessage);
+			try
+			{
+				logDataExporter.exportLogMessage(logMessage);
+			}
+			catch (RuntimeException e)
+			{
+				logger.error("Could not hand off log message for export", e);
+			}
 		}
 	}
 
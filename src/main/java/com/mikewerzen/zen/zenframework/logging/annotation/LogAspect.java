@@ -22,7 +22,10 @@
 
 package com.mikewerzen.zen.zenframework.logging.annotation;
 
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
 import com.mikewerzen.zen.zenframework.logging.context.LoggingContextHolder;
+import com.mikewerzen.zen.zenframework.metrics.LatencyHistogram;
+import com.mikewerzen.zen.zenframework.metrics.LatencyHistogramRegistry;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -30,8 +33,14 @@ import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
 
 @Aspect
 @Component
@@ -39,6 +48,8 @@ public class LogAspect
 {
 	private static final Logger logger = LogManager.getLogger(LogAspect.class);
 
+	private final Map<Method, MethodTimer> timers = new ConcurrentHashMap<>();
+
 	@Pointcut("execution(public * *(..))")
 	void anyPublicMethod()
 	{
@@ -52,7 +63,8 @@ public class LogAspect
 			return proceedingJoinPoint.proceed();
 		}
 
-		long startTime = System.currentTimeMillis();
+		MethodTimer timer = getTimer(proceedingJoinPoint);
+		long startTime = System.nanoTime();
 
 		try
 		{
@@ -60,15 +72,55 @@ public class LogAspect
 		}
 		finally
 		{
-			long runtime = System.currentTimeMillis() - startTime;
+			long runtime = System.nanoTime() - startTime;
+
+			timer.histogram.record(runtime);
+
+			LoggingContext loggingContext = LoggingContextHolder.getContextOptional().orElse(null);
+			if (loggingContext != null)
+			{
+				loggingContext.addRuntimeNanos(timer.methodName, runtime);
+			}
 
-			String methodName = proceedingJoinPoint.getSignature().getDeclaringType().getSimpleName()
-					+ "." + proceedingJoinPoint.getSignature().getName() + "()";
+			if (logger.isDebugEnabled())
+			{
+				logger.debug("Executed: " + timer.methodName + " in " + runtime / 1000000.0 + " ms.");
+			}
+		}
+	}
 
-			LoggingContextHolder.getContextOptional().ifPresent(
-					loggingContext -> loggingContext.addRuntime(methodName, runtime));
+	private MethodTimer getTimer(ProceedingJoinPoint proceedingJoinPoint)
+	{
+		Method method = ((MethodSignature) proceedingJoinPoint.getSignature()).getMethod();
 
-			logger.debug("Executed: " + methodName + " in " + runtime + " ms." );
+		MethodTimer timer = timers.get(method);
+		return timer != null ? timer : timers.computeIfAbsent(method, MethodTimer::new);
+	}
+
+	/**
+	 * The log name and process-wide histogram of a @LogRuntime method, computed once per method. The log name is
+	 * short; the histogram is registered under the declaring class's full name and the parameter types, so methods
+	 * with the same simple class name and overloads are not merged.
+	 */
+	private static final class MethodTimer
+	{
+		private final String methodName;
+		private final LatencyHistogram histogram;
+
+		private MethodTimer(Method method)
+		{
+			this.methodName = method.getDeclaringClass().getSimpleName() + "." + method.getName() + "()";
+			this.histogram = LatencyHistogramRegistry.getHistogram(getHistogramName(method));
+		}
+
+		private static String getHistogramName(Method method)
+		{
+			StringJoiner parameters = new StringJoiner(",", "(", ")");
+			for (Class<?> parameterType : method.getParameterTypes())
+			{
+				parameters.add(parameterType.getTypeName());
+			}
+			return method.getDeclaringClass().getName() + "." + method.getName() + parameters;
 		}
 	}
 }
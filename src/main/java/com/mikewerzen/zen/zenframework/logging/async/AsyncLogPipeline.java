@@ -0,0 +1,366 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.async;
+
+import com.mikewerzen.zen.zenframework.logging.context.LogSnapshot;
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Moves log serialization off request threads. Request threads publish a {@link LogSnapshot} to a preallocated ring
+ * buffer and return; dedicated serializer threads take snapshots off the ring and hand them to the handler registered
+ * with {@link #start(Consumer)}.
+ *
+ * Enabled by log.async.enabled=true. When the ring is full, log.async.overflowPolicy decides whether the log is
+ * written on the calling thread, waited for or dropped.
+ *
+ * Idle serializers block on a condition rather than polling, and publishers only take the lock to signal it when a
+ * serializer is actually waiting, so a busy pipeline stays lock-free and an idle one costs no CPU.
+ */
+@Component
+public class AsyncLogPipeline
+{
+	private static final Logger logger = LogManager.getLogger(AsyncLogPipeline.class);
+
+	private static final String THREAD_NAME_PREFIX = "zen-log-serializer-";
+
+	@Value("${log.async.enabled:false}")
+	private boolean enabled = false;
+
+	@Value("${log.async.bufferSize:8192}")
+	private int bufferSize = 8192;
+
+	@Value("${log.async.serializerThreads:1}")
+	private int serializerThreads = 1;
+
+	@Value("${log.async.overflowPolicy:CALLER_RUNS}")
+	private AsyncLogOverflowPolicy overflowPolicy = AsyncLogOverflowPolicy.CALLER_RUNS;
+
+	@Value("${log.async.blockTimeoutMs:10}")
+	private long blockTimeoutMs = 10;
+
+	@Value("${log.async.shutdownTimeoutMs:10000}")
+	private long shutdownTimeoutMs = 10000;
+
+	private final AtomicLong publishedCount = new AtomicLong();
+	private final AtomicLong writtenCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong callerRunsCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final AtomicInteger waitingSerializers = new AtomicInteger();
+	private final AtomicInteger waitingPublishers = new AtomicInteger();
+
+	private LogRingBuffer<LogSnapshot> ring;
+	private Consumer<LogSnapshot> handler;
+	private final List<Thread> serializers = new ArrayList<>();
+	private volatile boolean running;
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	public boolean isRunning()
+	{
+		return running;
+	}
+
+	/**
+	 * Starts the serializer threads, which pass every published snapshot to the handler. Does nothing unless the
+	 * pipeline is enabled.
+	 */
+	public synchronized void start(Consumer<LogSnapshot> handler)
+	{
+		if (!enabled || running)
+		{
+			return;
+		}
+
+		this.handler = handler;
+		ring = new LogRingBuffer<>(bufferSize);
+		running = true;
+
+		MetricsRegistry.registerGauge("zen_log_pipeline_depth", "Logs waiting to be serialized.", this::getDepth);
+		MetricsRegistry.registerCounter("zen_log_pipeline_published_total", "Logs handed to serializer threads.", this::getPublishedCount);
+		MetricsRegistry.registerCounter("zen_log_pipeline_dropped_total", "Logs dropped because the ring buffer was full.", this::getDroppedCount);
+		MetricsRegistry.registerCounter("zen_log_pipeline_caller_runs_total", "Logs serialized on the request thread because the ring buffer was full.", this::getCallerRunsCount);
+		MetricsRegistry.registerCounter("zen_log_pipeline_failed_total", "Logs that could not be built or written.", this::getFailedCount);
+
+		for (int i = 1; i <= serializerThreads; i++)
+		{
+			Thread serializer = new Thread(this::serializeUntilStopped, THREAD_NAME_PREFIX + i);
+			serializer.setDaemon(true);
+			serializer.start();
+			serializers.add(serializer);
+		}
+	}
+
+	/**
+	 * Stops the serializer threads once everything already published has been written.
+	 */
+	@PreDestroy
+	public synchronized void stop()
+	{
+		if (!running)
+		{
+			return;
+		}
+
+		running = false;
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+		signalAll(notEmpty);
+
+		for (Thread serializer : serializers)
+		{
+			try
+			{
+				serializer.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		serializers.clear();
+
+		if (ring.size() > 0)
+		{
+			logger.warn("Async log pipeline stopped with " + ring.size() + " logs still unwritten.");
+		}
+	}
+
+	/**
+	 * Publishes the snapshot for serialization. If the pipeline is not running the snapshot is written on the calling
+	 * thread.
+	 */
+	public void publish(LogSnapshot snapshot)
+	{
+		if (!running)
+		{
+			write(snapshot);
+			return;
+		}
+
+		if (ring.offer(snapshot))
+		{
+			publishedCount.incrementAndGet();
+			signalIfWaiting(waitingSerializers, notEmpty);
+			return;
+		}
+
+		switch (overflowPolicy)
+		{
+			case CALLER_RUNS:
+				callerRunsCount.incrementAndGet();
+				write(snapshot);
+				return;
+			case BLOCK:
+				if (offerUntil(snapshot, TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs)))
+				{
+					publishedCount.incrementAndGet();
+					signalIfWaiting(waitingSerializers, notEmpty);
+					return;
+				}
+				break;
+			default:
+				break;
+		}
+
+		droppedCount.incrementAndGet();
+	}
+
+	public long getPublishedCount()
+	{
+		return publishedCount.get();
+	}
+
+	public long getWrittenCount()
+	{
+		return writtenCount.get();
+	}
+
+	public long getDroppedCount()
+	{
+		return droppedCount.get();
+	}
+
+	public long getCallerRunsCount()
+	{
+		return callerRunsCount.get();
+	}
+
+	public long getFailedCount()
+	{
+		return failedCount.get();
+	}
+
+	public int getDepth()
+	{
+		return ring == null ? 0 : ring.size();
+	}
+
+	public int getCapacity()
+	{
+		return ring == null ? bufferSize : ring.capacity();
+	}
+
+	/**
+	 * Waits up to the timeout for a serializer to free a slot. The waiter is counted before the ring is checked under
+	 * the lock, so a serializer that frees a slot either sees the waiter and signals or the offer sees the free slot.
+	 */
+	private boolean offerUntil(LogSnapshot snapshot, long timeoutNanos)
+	{
+		waitingPublishers.incrementAndGet();
+		lock.lock();
+		try
+		{
+			long remaining = timeoutNanos;
+			while (!ring.offer(snapshot))
+			{
+				if (remaining <= 0)
+				{
+					return false;
+				}
+				remaining = notFull.awaitNanos(remaining);
+			}
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		finally
+		{
+			lock.unlock();
+			waitingPublishers.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Blocks an idle serializer until a snapshot is published or the pipeline stops, using the same counting handshake
+	 * as {@link #offerUntil(LogSnapshot, long)}.
+	 */
+	private void awaitSnapshot()
+	{
+		waitingSerializers.incrementAndGet();
+		lock.lock();
+		try
+		{
+			while (running && ring.size() == 0)
+			{
+				notEmpty.await();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			// Serializers only stop through stop(); keep draining.
+		}
+		finally
+		{
+			lock.unlock();
+			waitingSerializers.decrementAndGet();
+		}
+	}
+
+	private void signalIfWaiting(AtomicInteger waiting, Condition condition)
+	{
+		if (waiting.get() > 0)
+		{
+			signalAll(condition);
+		}
+	}
+
+	private void signalAll(Condition condition)
+	{
+		lock.lock();
+		try
+		{
+			condition.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void serializeUntilStopped()
+	{
+		while (true)
+		{
+			LogSnapshot snapshot = ring.poll();
+
+			if (snapshot != null)
+			{
+				signalIfWaiting(waitingPublishers, notFull);
+
+				if (write(snapshot))
+				{
+					writtenCount.incrementAndGet();
+				}
+			}
+			else if (running)
+			{
+				awaitSnapshot();
+			}
+			else
+			{
+				return;
+			}
+		}
+	}
+
+	private boolean write(LogSnapshot snapshot)
+	{
+		try
+		{
+			handler.accept(snapshot);
+			return true;
+		}
+		catch (RuntimeException e)
+		{
+			failedCount.incrementAndGet();
+			logger.error("Could not write log message", e);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.async;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free multi-producer multi-consumer ring buffer with all slots allocated up front.
+ *
+ * Each slot carries a sequence number that tells producers and consumers whether it is free or full for their lap
+ * around the ring, so publishing and taking an element each cost a single CAS and never allocate.
+ */
+final class LogRingBuffer<E>
+{
+	private final int mask;
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLongArray sequences;
+
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong head = new AtomicLong();
+
+	LogRingBuffer(int capacity)
+	{
+		if (capacity < 2 || Integer.bitCount(capacity) != 1)
+		{
+			throw new IllegalArgumentException("Ring buffer capacity must be a power of two, was " + capacity);
+		}
+
+		mask = capacity - 1;
+		elements = new AtomicReferenceArray<>(capacity);
+		sequences = new AtomicLongArray(capacity);
+
+		for (int i = 0; i < capacity; i++)
+		{
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Publishes the element, returning false if the ring is full.
+	 */
+	boolean offer(E element)
+	{
+		while (true)
+		{
+			long position = tail.get();
+			int index = (int) position & mask;
+			long difference = sequences.get(index) - position;
+
+			if (difference == 0)
+			{
+				if (tail.compareAndSet(position, position + 1))
+				{
+					elements.lazySet(index, element);
+					sequences.set(index, position + 1);
+					return true;
+				}
+			}
+			else if (difference < 0)
+			{
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Takes the oldest element, returning null if the ring is empty.
+	 */
+	E poll()
+	{
+		while (true)
+		{
+			long position = head.get();
+			int index = (int) position & mask;
+			long difference = sequences.get(index) - (position + 1);
+
+			if (difference == 0)
+			{
+				if (head.compareAndSet(position, position + 1))
+				{
+					E element = elements.get(index);
+					elements.lazySet(index, null);
+					sequences.set(index, position + mask + 1);
+					return element;
+				}
+			}
+			else if (difference < 0)
+			{
+				return null;
+			}
+		}
+	}
+
+	int size()
+	{
+		long size = tail.get() - head.get();
+		return (int) Math.max(0, Math.min(size, mask + 1));
+	}
+
+	int capacity()
+	{
+		return mask + 1;
+	}
+}
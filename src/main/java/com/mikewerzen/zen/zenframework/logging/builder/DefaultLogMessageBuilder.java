@@ -1,5 +1,4 @@
-/*
- * Copyright 2019, Michael Werzen
+/* Copyright  2019, Michael Werzen
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,124 +20,263 @@
  *       https://opensource.org/licenses/MIT
  */
 
+
 package com.mikewerzen.zen.zenframework.logging.builder;
 
-import com.google.gson.*;
+import com.mikewerzen.zen.zenframework.context.ZenScope;
 import com.mikewerzen.zen.zenframework.event.context.EventContext;
-import com.mikewerzen.zen.zenframework.event.context.EventContextHolder;
 import com.mikewerzen.zen.zenframework.exception.adapter.ExternalExceptionAdapter;
 import com.mikewerzen.zen.zenframework.exception.adapter.ThrowableAdapter;
 import com.mikewerzen.zen.zenframework.exception.adapter.ThrowableAdapterFinder;
+import com.mikewerzen.zen.zenframework.logging.context.LogSnapshot;
+import com.mikewerzen.zen.zenframework.logging.context.ExternalCallSummary;
+import com.mikewerzen.zen.zenframework.logging.context.ExternalCallTimeline;
 import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
-import com.mikewerzen.zen.zenframework.logging.context.LoggingContextHolder;
-import com.mikewerzen.zen.zenframework.logging.export.LogDataExporter;
+import com.mikewerzen.zen.zenframework.logging.context.MethodRuntime;
 import com.mikewerzen.zen.zenframework.logging.external.ExternalCallAttributes;
+import com.mikewerzen.zen.zenframework.logging.utils.ThrowableFingerprint;
 import com.mikewerzen.zen.zenframework.rest.exception.adapter.RestThrowableAdapter;
 import com.mikewerzen.zen.zenframework.rest.response.ZenError;
 import com.mikewerzen.zen.zenframework.rest.response.ZenErrorResponse;
 import com.mikewerzen.zen.zenframework.security.context.SecurityContext;
-import com.mikewerzen.zen.zenframework.security.context.SecurityContextHolder;
 import com.mikewerzen.zen.zenframework.security.provider.zen.jwt.token.JWTToken;
+import com.mikewerzen.zen.zenframework.security.token.SecurityToken;
 import com.mikewerzen.zen.zenframework.transaction.context.TransactionContext;
-import com.mikewerzen.zen.zenframework.transaction.context.TransactionContextHolder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Streams log messages straight from the Zen contexts, or from a {@link LogSnapshot}, into a per-thread
+ * {@link JsonLogWriter}.
+ *
+ * The output is compact and no intermediate tree is built.
+ */
 @Component
 public class DefaultLogMessageBuilder implements LogMessageBuilder
 {
-
 	private static final Logger logger = LogManager.getLogger(DefaultLogMessageBuilder.class);
 
-	private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
-
-	@Autowired
-	private LogDataExporter logDataExporter;
+	private static final byte[] SERVICE_NAME = JsonLogWriter.key("serviceName");
+	private static final byte[] SERVICE_OPERATION = JsonLogWriter.key("serviceOperation");
+	private static final byte[] SERVICE_VERSION = JsonLogWriter.key("serviceVersion");
+	private static final byte[] SERVICE_METHOD_NAME = JsonLogWriter.key("serviceMethodName");
+	private static final byte[] SERVICE_METHOD = JsonLogWriter.key("serviceMethod");
+	private static final byte[] SYSTEM_NAME = JsonLogWriter.key("systemName");
+
+	private static final byte[] EVENT_NAME = JsonLogWriter.key("eventName");
+	private static final byte[] EVENT_VERSION = JsonLogWriter.key("eventVersion");
+	private static final byte[] EVENT_GROUP = JsonLogWriter.key("eventGroup");
+
+	private static final byte[] TRACE = JsonLogWriter.key("trace");
+	private static final byte[] REQUEST = JsonLogWriter.key("request");
+	private static final byte[] RESPONSE = JsonLogWriter.key("response");
+	private static final byte[] REQUEST_ID = JsonLogWriter.key("requestId");
+	private static final byte[] TRACE_ID = JsonLogWriter.key("traceId");
+	private static final byte[] CORRELATION_ID = JsonLogWriter.key("correlationId");
+	private static final byte[] SESSION_ID = JsonLogWriter.key("sessionId");
+	private static final byte[] SOURCE_IP = JsonLogWriter.key("sourceIp");
+	private static final byte[] CLIENT_IP = JsonLogWriter.key("clientIp");
+	private static final byte[] DEVICE_ID = JsonLogWriter.key("deviceId");
+	private static final byte[] DEVICE_TYPE = JsonLogWriter.key("deviceType");
+	private static final byte[] INTERNAL_TRACE_ID = JsonLogWriter.key("internalTraceId");
+	private static final byte[] EXTERNAL_TRACE_ID = JsonLogWriter.key("externalTraceId");
+
+	private static final byte[] SECURITY = JsonLogWriter.key("security");
+	private static final byte[] AUTH = JsonLogWriter.key("auth");
+	private static final byte[] USER = JsonLogWriter.key("user");
+	private static final byte[] TYPE = JsonLogWriter.key("type");
+	private static final byte[] ID = JsonLogWriter.key("id");
+	private static final byte[] APP_NAME = JsonLogWriter.key("appName");
+	private static final byte[] USERNAME = JsonLogWriter.key("username");
+	private static final byte[] ROLES = JsonLogWriter.key("roles");
+	private static final byte[] EVENTS = JsonLogWriter.key("events");
+
+	private static final byte[] TIMINGS = JsonLogWriter.key("timings");
+	private static final byte[] START_TIME = JsonLogWriter.key("startTime");
+	private static final byte[] END_TIME = JsonLogWriter.key("endTime");
+	private static final byte[] RUNTIME = JsonLogWriter.key("runtime");
+	private static final byte[] POOL_WAIT_TIME = JsonLogWriter.key("poolWaitTime");
+	private static final byte[] RUNTIMES = JsonLogWriter.key("runtimes");
+	private static final byte[] RUNTIME_COUNTS = JsonLogWriter.key("runtimeCounts");
+	private static final byte[] KEY_VALUE = JsonLogWriter.key("keyValue");
+	private static final byte[] EXTERNAL_CALLS = JsonLogWriter.key("externalCalls");
+	private static final byte[] EXTERNAL_TIMINGS = JsonLogWriter.key("externalTimings");
+	private static final byte[] EXTERNAL_RESPONSE = JsonLogWriter.key("externalResponse");
+	private static final byte[] SUCCESS = JsonLogWriter.key("success");
+	private static final byte[] ATTEMPT = JsonLogWriter.key("attempt");
+
+	private static final byte[] HTTP_STATUS_CODE = JsonLogWriter.key("httpStatusCode");
+	private static final byte[] EXCEPTION_CODE = JsonLogWriter.key("exceptionCode");
+	private static final byte[] EXCEPTION_MESSAGE = JsonLogWriter.key("exceptionMessage");
+	private static final byte[] EXTERNAL_EXCEPTION_CODE = JsonLogWriter.key("externalExceptionCode");
+	private static final byte[] EXTERNAL_EXCEPTION_MESSAGE = JsonLogWriter.key("externalExceptionMessage");
+	private static final byte[] EXTERNAL_RESPONSE_CODE = JsonLogWriter.key("externalResponseCode");
+	private static final byte[] EXTERNAL_RESPONSE_MESSAGE = JsonLogWriter.key("externalResponseMessage");
+
+	private static final byte[] STACK_TRACE = JsonLogWriter.key("stackTrace");
+	private static final byte[] CLIENT_STACK_TRACE = JsonLogWriter.key("clientStackTrace");
+	private static final byte[] CLASS = JsonLogWriter.key("class");
+	private static final byte[] MESSAGE = JsonLogWriter.key("message");
+	private static final byte[] CAUSED_BY = JsonLogWriter.key("causedBy");
+	private static final byte[] FINGERPRINT = JsonLogWriter.key("fingerprint");
+	private static final byte[] EXTERNAL_RUNTIME = JsonLogWriter.key("externalRuntime");
+	private static final byte[] EXTERNAL_WALL_TIME = JsonLogWriter.key("externalWallTime");
+	private static final byte[] SELF_TIME = JsonLogWriter.key("selfTime");
+	private static final byte[] CRITICAL_PATH_TIME = JsonLogWriter.key("criticalPathTime");
+	private static final byte[] CRITICAL_DEPENDENCY = JsonLogWriter.key("criticalDependency");
+	private static final byte[] OVERFLOW = JsonLogWriter.key("overflow");
+	private static final byte[] EXTERNAL_CALL_SUMMARY = JsonLogWriter.key("externalCallSummary");
+	private static final byte[] COUNT = JsonLogWriter.key("count");
+	private static final byte[] FAILURES = JsonLogWriter.key("failures");
+
+	@Value("${log.stackTrace.cacheSize:512}")
+	private int stackTraceCacheSize = 512;
+
+	private StackTraceCache stackTraceCache = new StackTraceCache(stackTraceCacheSize);
+
+	@PostConstruct
+	public void initialize()
+	{
+		stackTraceCache = new StackTraceCache(stackTraceCacheSize);
+	}
 
+	@Override
 	public String buildTransactionLog(Object response)
 	{
-		ResponseEntity<?> responseEntity = convertResponseIntoResponseEntity(response);
+		ZenScope scope = ZenScope.current();
+		if (scope == null)
+		{
+			return buildTransactionLog(null, null, null, System.currentTimeMillis(), response);
+		}
+
+		return buildTransactionLog(scope.getTransactionContext(), scope.getSecurityContext(),
+				snapshot(scope.getLoggingContext()), System.currentTimeMillis(), response);
+	}
 
-		JsonObject logMessage = new JsonObject();
+	@Override
+	public String buildTransactionLogFromSnapshot(LogSnapshot snapshot)
+	{
+		return buildTransactionLog(snapshot.getTransactionContext(), snapshot.getSecurityContext(),
+				snapshot.getLoggingContext(), snapshot.getEndTime(), snapshot.getResponse());
+	}
+
+	@Override
+	public String buildEventLog(Object response)
+	{
+		ZenScope scope = ZenScope.current();
+		if (scope == null)
+		{
+			return buildEventLog(null, null, null, System.currentTimeMillis());
+		}
+
+		return buildEventLog(scope.getEventContext(), scope.getSecurityContext(), snapshot(scope.getLoggingContext()),
+				System.currentTimeMillis());
+	}
+
+	/**
+	 * Late scatter-gather or async calls can still add to a live context while it is written, so the message is built
+	 * from a copy, as {@link LogSnapshot} does.
+	 */
+	private static LoggingContext snapshot(LoggingContext loggingContext)
+	{
+		return loggingContext == null ? null : loggingContext.snapshot();
+	}
+
+	@Override
+	public String buildEventLogFromSnapshot(LogSnapshot snapshot)
+	{
+		return buildEventLog(snapshot.getEventContext(), snapshot.getSecurityContext(), snapshot.getLoggingContext(),
+				snapshot.getEndTime());
+	}
 
+	private String buildTransactionLog(TransactionContext transactionContext, SecurityContext securityContext,
+			LoggingContext loggingContext, long endTime, Object response)
+	{
+		ResponseEntity<?> responseEntity = convertResponseIntoResponseEntity(response);
 
+		JsonLogWriter writer = JsonLogWriter.acquire();
+		writer.beginObject();
 
-		if (TransactionContextHolder.getContextOptional().isPresent())
+		if (transactionContext != null)
 		{
-			addTransactionContextFields(TransactionContextHolder.getContextOptional(), logMessage);
+			writeTransactionContextFields(writer, transactionContext);
 		}
 
-		if (SecurityContextHolder.getContextOptional().isPresent())
+		if (securityContext != null)
 		{
-			addSecurityContextFields(SecurityContextHolder.getContextOptional(), logMessage);
+			writeSecurityContextFields(writer, securityContext);
 		}
 
-		if (LoggingContextHolder.getContextOptional().isPresent())
+		boolean hasResponse = false;
+		if (loggingContext != null)
 		{
-			addLoggingContextFields(LoggingContextHolder.getContextOptional(), logMessage);
+			hasResponse = writeLoggingContextFields(writer, loggingContext, endTime);
 		}
 		else if (doesResponseContainAnError(responseEntity))
 		{
-			addResponseFields(responseEntity.getBody(), logMessage);
+			hasResponse = writeResponseFields(writer, responseEntity.getBody());
 		}
 
-		if (responseEntity != null && !logMessage.has("response"))
+		if (responseEntity != null && !hasResponse)
 		{
-			JsonObject res = new JsonObject();
-			addIfNotNull(res, "httpStatusCode", responseEntity.getStatusCodeValue());
-			logMessage.add("response", res);
+			writer.beginObject(RESPONSE);
+			writer.field(HTTP_STATUS_CODE, responseEntity.getStatusCodeValue());
+			writer.endObject();
 		}
 
-		return gson.toJson(logMessage);
+		writer.endObject();
+		return writer.toString();
 	}
 
-	@Override
-	public String buildEventLog(Object response)
+	private String buildEventLog(EventContext eventContext, SecurityContext securityContext,
+			LoggingContext loggingContext, long endTime)
 	{
-		JsonObject logMessage = new JsonObject();
+		JsonLogWriter writer = JsonLogWriter.acquire();
+		writer.beginObject();
 
-		if(EventContextHolder.getContextOptional().isPresent())
+		if (eventContext != null)
 		{
-			addEventContextFields(logMessage, EventContextHolder.getContextOptional());
+			writeEventContextFields(writer, eventContext);
 		}
 
-		if (LoggingContextHolder.getContextOptional().isPresent())
+		if (loggingContext != null)
 		{
-			addLoggingContextFields(LoggingContextHolder.getContextOptional(), logMessage);
+			writeLoggingContextFields(writer, loggingContext, endTime);
 		}
 
-		if(SecurityContextHolder.getContextOptional().isPresent())
+		if (securityContext != null)
 		{
-			addSecurityContextFields(SecurityContextHolder.getContextOptional(), logMessage);
+			writeSecurityContextFields(writer, securityContext);
 		}
 
-		return gson.toJson(logMessage);
+		writer.endObject();
+		return writer.toString();
 	}
 
-	private void addEventContextFields(JsonObject logMessage, Optional<EventContext> eventContextOptional)
+	private void writeEventContextFields(JsonLogWriter writer, EventContext eventContext)
 	{
-		EventContext eventContext = eventContextOptional.get();
-		addIfNotNull(logMessage, "eventName", eventContext.getEventName());
-		addIfNotNull(logMessage, "eventVersion", eventContext.getEventVersion());
-		addIfNotNull(logMessage, "eventGroup", eventContext.getEventGroup());
-
-		JsonObject trace = new JsonObject();
-		addIfNotNull(trace, "internalTraceId", eventContext.getInternalTraceId());
-		logMessage.add("trace", trace);
-	}
+		writer.field(EVENT_NAME, eventContext.getEventName());
+		writer.field(EVENT_VERSION, eventContext.getEventVersion());
+		writer.field(EVENT_GROUP, eventContext.getEventGroup());
 
+		writer.beginObject(TRACE);
+		writer.field(INTERNAL_TRACE_ID, eventContext.getInternalTraceId());
+		writer.endObject();
+	}
 
 	private ResponseEntity<?> convertResponseIntoResponseEntity(Object response)
 	{
-		if(response instanceof ResponseEntity)
+		if (response instanceof ResponseEntity)
 		{
 			return (ResponseEntity) response;
 		}
@@ -147,319 +285,344 @@ public class DefaultLogMessageBuilder implements LogMessageBuilder
 		return null;
 	}
 
-	private void addSecurityContextFields(Optional<SecurityContext> securityContextOptional, JsonObject logMessage)
+	private void writeSecurityContextFields(JsonLogWriter writer, SecurityContext securityContext)
 	{
-		SecurityContext securityContext = securityContextOptional.get();
+		SecurityToken token = securityContext.getSecurityToken();
 
-		JsonObject security = new JsonObject();
+		writer.beginObject(SECURITY);
 
-		JsonObject auth = new JsonObject();
-		addIfNotNull(auth, "type", securityContext.getSecurityToken().getClass().getSimpleName());
-		addIfNotNull(auth, "id", securityContext.getSecurityToken().getTokenId());
-		security.add("auth", auth);
+		writer.beginObject(AUTH);
+		writer.field(TYPE, token.getClass().getSimpleName());
+		writer.field(ID, token.getTokenId());
+		writer.endObject();
 
-		JsonObject user = new JsonObject();
-		addIfNotNull(user, "id", securityContext.getSecurityToken().getUserId());
-		addIfNotNull(user, "appName", securityContext.getSecurityToken().getAppName());
-		addIfNotNull(user, "username", securityContext.getSecurityToken().getUsername());
-		security.add("user", user);
+		writer.beginObject(USER);
+		writer.field(ID, token.getUserId());
+		writer.field(APP_NAME, token.getAppName());
+		writer.field(USERNAME, token.getUsername());
 
-
-		if(securityContext.getSecurityToken() instanceof JWTToken)
+		if (token instanceof JWTToken)
 		{
-			JWTToken token = (JWTToken) securityContext.getSecurityToken();
-			addSecurityRoles(user, securityContext);
-			addSecurityEvents(user, securityContext);
-
+			writeFirstValues(writer, ROLES, token.getRoles());
+			writeFirstValues(writer, EVENTS, token.getEvents());
 		}
 
-		logMessage.add("security", security);
-
+		writer.endObject();
 
+		writer.endObject();
 	}
 
-	private void addSecurityRoles(JsonObject user, SecurityContext securityContext)
+	private void writeFirstValues(JsonLogWriter writer, byte[] key, String[] values)
 	{
-		if (securityContext.getSecurityToken().getRoles() != null)
+		if (values != null)
 		{
-			JsonArray rolesArray = new JsonArray();
-			for (int i = 0; i < 3 && i < securityContext.getSecurityToken().getRoles().length; i++)
+			writer.beginArray(key);
+			for (int i = 0; i < 3 && i < values.length; i++)
 			{
-				rolesArray.add(securityContext.getSecurityToken().getRoles()[i].toString());
+				writer.value(values[i]);
 			}
-			user.add("roles", rolesArray);
+			writer.endArray();
 		}
 	}
 
-	private void addSecurityEvents(JsonObject user, SecurityContext securityContext)
+	private void writeTransactionContextFields(JsonLogWriter writer, TransactionContext transactionContext)
 	{
-		if (securityContext.getSecurityToken().getEvents() != null)
-		{
-			JsonArray rolesArray = new JsonArray();
-			for (int i = 0; i < 3 && i < securityContext.getSecurityToken().getEvents().length; i++)
-			{
-				rolesArray.add(securityContext.getSecurityToken().getEvents()[i].toString());
-			}
-			user.add("events", rolesArray);
-		}
+		writer.field(SERVICE_NAME, transactionContext.getServiceName());
+		writer.field(SERVICE_OPERATION, transactionContext.getServiceOperation());
+		writer.field(SERVICE_VERSION, transactionContext.getServiceVersion());
+		writer.field(SERVICE_METHOD_NAME, transactionContext.getServiceMethodName());
+
+		writer.beginObject(TRACE);
+
+		writer.beginObject(REQUEST);
+		writer.field(REQUEST_ID, transactionContext.getRequestId());
+		writer.field(CORRELATION_ID, transactionContext.getCorrelationId());
+		writer.field(SESSION_ID, transactionContext.getSessionId());
+		writer.field(SOURCE_IP, transactionContext.getSourceIp());
+		writer.field(CLIENT_IP, transactionContext.getClientIp());
+		writer.field(DEVICE_ID, transactionContext.getDeviceId());
+		writer.field(DEVICE_TYPE, transactionContext.getDeviceType());
+		writer.endObject();
+
+		writer.beginObject(RESPONSE);
+		writer.field(INTERNAL_TRACE_ID, transactionContext.getInternalTraceId());
+		writer.endObject();
+
+		writer.endObject();
 	}
 
-	private void addTransactionContextFields(Optional<TransactionContext> transactionContextOptional, JsonObject logMessage)
+	/**
+	 * @return true if a response block was written.
+	 */
+	private boolean writeLoggingContextFields(JsonLogWriter writer, LoggingContext loggingContext, long endTime)
 	{
-		TransactionContext transactionContext = transactionContextOptional.get();
-
-		addIfNotNull(logMessage, "serviceName", transactionContext.getServiceName());
-		addIfNotNull(logMessage, "serviceOperation", transactionContext.getServiceOperation());
-		addIfNotNull(logMessage, "serviceVersion", transactionContext.getServiceVersion());
-		addIfNotNull(logMessage, "serviceMethodName", transactionContext.getServiceMethodName());
-
-
-		JsonObject trace = new JsonObject();
-
-		JsonObject request = new JsonObject();
-		addIfNotNull(request, "requestId", transactionContext.getRequestId());
-		addIfNotNull(request, "correlationId", transactionContext.getCorrelationId());
-		addIfNotNull(request, "sessionId", transactionContext.getSessionId());
-		addIfNotNull(request, "sourceIp", transactionContext.getSourceIp());
-		addIfNotNull(request, "clientIp", transactionContext.getClientIp());
-		addIfNotNull(request, "deviceId", transactionContext.getDeviceId());
-		addIfNotNull(request, "deviceType", transactionContext.getDeviceType());
-		trace.add("request", request);
-
-		JsonObject response = new JsonObject();
-		addIfNotNull(response, "internalTraceId", transactionContext.getInternalTraceId());
-		trace.add("response", response);
-
-		logMessage.add("trace", trace);
-
-	}
-
-	private void addLoggingContextFields(Optional<LoggingContext> loggingContextOptional, JsonObject logMessage)
-	{
-		LoggingContext loggingContext = loggingContextOptional.get();
-
-		long endTime = System.currentTimeMillis();
-
-		JsonObject timings = new JsonObject();
-		addIfNotNull(timings, "startTime", loggingContext.getStartTime());
-		addIfNotNull(timings, "endTime", endTime);
-		addIfNotNull(timings, "runtime", (endTime - loggingContext.getStartTime()));
-		timings.add("runtimes", getRuntimes(loggingContext.getRuntimes()));
-		logMessage.add("timings", timings);
+		writer.beginObject(TIMINGS);
+		writer.field(START_TIME, loggingContext.getStartTime());
+		writer.field(END_TIME, endTime);
+		writer.field(RUNTIME, endTime - loggingContext.getStartTime());
+		writeRuntimes(writer, loggingContext.getMethodRuntimes());
+		List<ExternalCallAttributes> externalCalls = loggingContext.getExternalLogAttributes();
+		if (!externalCalls.isEmpty())
+		{
+			ExternalCallTimeline timeline = loggingContext.getExternalCallTimeline();
+			long runtime = endTime - loggingContext.getStartTime();
+
+			writer.field(EXTERNAL_RUNTIME, loggingContext.getTotalExternalCallRuntime());
+			writer.field(EXTERNAL_WALL_TIME, timeline.getWallTimeMillis());
+			writer.field(SELF_TIME, Math.max(0, runtime - timeline.getWallTimeMillis()));
+			writer.field(CRITICAL_PATH_TIME, timeline.getCriticalPathMillis());
+			writer.field(CRITICAL_DEPENDENCY, timeline.getCriticalDependency());
+		}
+		writer.endObject();
 
-		logMessage.add("events", getEventJson(loggingContext.getEvents()));
-		logMessage.add("keyValue", getKeyValueJson(loggingContext.getKeyValueFields()));
-		logMessage.add("externalCalls", getExternalCallsJson(loggingContext.getExternalLogAttributes()));
+		writeEvents(writer, loggingContext.getEvents());
+		writeKeyValues(writer, loggingContext.getKeyValueFields());
+		writeExternalCalls(writer, externalCalls);
+		writeOverflow(writer, loggingContext);
 
-		JsonObject response = new JsonObject();
 		Throwable throwable = loggingContext.getThrowable();
-		if (throwable != null)
+		if (throwable == null)
 		{
-			ThrowableAdapter adapter = ThrowableAdapterFinder.getThrowableAdapter(throwable);
-
-
-			addIfNotNull(response, "exceptionCode", adapter.getExceptionCode(throwable));
-			addIfNotNull(response, "exceptionMessage", adapter.getExceptionMessage(throwable));
-
-			if(adapter instanceof ExternalExceptionAdapter)
-			{
-				ExternalExceptionAdapter externalExceptionAdapter = (ExternalExceptionAdapter) adapter;
-				addIfNotNull(response, "externalExceptionCode", externalExceptionAdapter.getExternalExceptionCode(throwable));
-				addIfNotNull(response, "externalExceptionMessage", externalExceptionAdapter.getExternalExceptionMessage(throwable));
-			}
-
-			if(adapter instanceof RestThrowableAdapter)
-			{
-				addIfNotNull(response, "httpStatusCode", ((RestThrowableAdapter) adapter).getHttpStatus(throwable));
-			}
-
-			logMessage.add("response", response);
-			logMessage.add("stackTrace", getStackTraceJson(loggingContext.getThrowable()));
+			return false;
 		}
-	}
 
-	private boolean doesResponseContainAnError(ResponseEntity<?> response)
-	{
-		return response != null && response.getBody() != null &&
-				response.getBody() instanceof ZenErrorResponse && ((ZenErrorResponse) response.getBody()).getError() != null;
-	}
+		ThrowableAdapter adapter = ThrowableAdapterFinder.getThrowableAdapter(throwable);
 
-	private void addIfNotNull(JsonObject object, String key, String value)
-	{
-		if (key != null && value != null && !value.isEmpty())
-		{
-			object.addProperty(key, value);
-		}
-	}
+		writer.beginObject(RESPONSE);
+		writer.field(EXCEPTION_CODE, adapter.getExceptionCode(throwable));
+		writer.field(EXCEPTION_MESSAGE, adapter.getExceptionMessage(throwable));
 
-	private void addIfNotNull(JsonObject object, String key, Object value)
-	{
-		if (key != null && value != null)
+		if (adapter instanceof ExternalExceptionAdapter)
 		{
-			object.addProperty(key, value.toString());
+			ExternalExceptionAdapter externalExceptionAdapter = (ExternalExceptionAdapter) adapter;
+			writer.field(EXTERNAL_EXCEPTION_CODE, externalExceptionAdapter.getExternalExceptionCode(throwable));
+			writer.field(EXTERNAL_EXCEPTION_MESSAGE, externalExceptionAdapter.getExternalExceptionMessage(throwable));
 		}
-	}
 
-	private void addIfNotNull(JsonObject object, String key, Number value)
-	{
-		if (key != null && value != null)
+		if (adapter instanceof RestThrowableAdapter)
 		{
-			object.addProperty(key, value);
+			writer.fieldAsString(HTTP_STATUS_CODE, ((RestThrowableAdapter) adapter).getHttpStatus(throwable));
 		}
+		writer.endObject();
+
+		writer.name(STACK_TRACE);
+		writeStackTrace(writer, throwable);
+
+		return true;
 	}
 
-	private void addIfNotNull(JsonObject object, String key, Boolean value)
+	private boolean doesResponseContainAnError(ResponseEntity<?> response)
 	{
-		if (key != null && value != null)
-		{
-			object.addProperty(key, value);
-		}
+		return response != null && response.getBody() != null &&
+				response.getBody() instanceof ZenErrorResponse && ((ZenErrorResponse) response.getBody()).getError() != null;
 	}
 
-	private JsonElement getEventJson(List<String> events)
+	private void writeEvents(JsonLogWriter writer, Collection<String> events)
 	{
 		if (events != null && events.size() > 0)
 		{
-			JsonArray eventJson = new JsonArray();
+			writer.beginArray(EVENTS);
 			for (String event : events)
 			{
 				if (event != null && !event.isEmpty())
 				{
-					eventJson.add(event);
+					writer.value(event);
 				}
 			}
-			return eventJson;
+			writer.endArray();
 		}
-
-		return null;
 	}
 
-	private JsonObject getKeyValueJson(Set<Map.Entry<String, Object>> kvPairs)
+	private void writeKeyValues(JsonLogWriter writer, Set<Map.Entry<String, Object>> kvPairs)
 	{
 		if (kvPairs != null && kvPairs.size() > 0)
 		{
-			JsonObject kvJson = new JsonObject();
+			writer.beginObject(KEY_VALUE);
 			for (Map.Entry<String, Object> pair : kvPairs)
 			{
-				addIfNotNull(kvJson, pair.getKey(), pair.getValue());
+				if (pair.getKey() != null && pair.getValue() != null)
+				{
+					writer.name(pair.getKey()).value(pair.getValue().toString());
+				}
 			}
-
-			return kvJson;
+			writer.endObject();
 		}
-
-		return null;
 	}
 
-	private JsonObject getRuntimes(Set<Map.Entry<String, Long>> runtimePairs)
+	private void writeRuntimes(JsonLogWriter writer, Set<Map.Entry<String, MethodRuntime>> runtimePairs)
 	{
 		if (runtimePairs != null && runtimePairs.size() > 0)
 		{
-			JsonObject runtimesJson = new JsonObject();
-			for (Map.Entry<String, Long> pair : runtimePairs)
+			writer.beginObject(RUNTIMES);
+			for (Map.Entry<String, MethodRuntime> pair : runtimePairs)
 			{
-				addIfNotNull(runtimesJson, pair.getKey(), pair.getValue().longValue());
+				if (pair.getKey() != null)
+				{
+					writer.name(pair.getKey()).value(pair.getValue().getTotalMillis());
+				}
 			}
+			writer.endObject();
 
-			return runtimesJson;
+			writer.beginObject(RUNTIME_COUNTS);
+			for (Map.Entry<String, MethodRuntime> pair : runtimePairs)
+			{
+				if (pair.getKey() != null)
+				{
+					writer.name(pair.getKey()).value(pair.getValue().getCount());
+				}
+			}
+			writer.endObject();
 		}
+	}
 
-		return null;
+	private void writeExternalCalls(JsonLogWriter writer, Collection<ExternalCallAttributes> externalCalls)
+	{
+		if (externalCalls != null && externalCalls.size() > 0)
+		{
+			writer.beginArray(EXTERNAL_CALLS);
+			for (ExternalCallAttributes attributes : externalCalls)
+			{
+				writeExternalCall(writer, attributes);
+			}
+			writer.endArray();
+		}
 	}
 
-	private JsonArray getExternalCallsJson(List<ExternalCallAttributes> externalCalls)
+	private void writeOverflow(JsonLogWriter writer, LoggingContext loggingContext)
 	{
-		if(externalCalls != null && externalCalls.size() > 0)
+		if (!loggingContext.hasOverflow())
+		{
+			return;
+		}
+
+		writer.beginObject(OVERFLOW);
+		writeIfPositive(writer, EVENTS, loggingContext.getDroppedEvents());
+		writeIfPositive(writer, KEY_VALUE, loggingContext.getDroppedFields());
+		writeIfPositive(writer, RUNTIMES, loggingContext.getDroppedRuntimes());
+		writeIfPositive(writer, EXTERNAL_CALLS, loggingContext.getDroppedExternalCalls());
+		writer.endObject();
+
+		if (loggingContext.getDroppedExternalCalls() > 0)
 		{
-			JsonArray arrayOfCalls = new JsonArray();
-			for(ExternalCallAttributes attributes : externalCalls)
+			writer.beginObject(EXTERNAL_CALL_SUMMARY);
+			for (Map.Entry<String, ExternalCallSummary> summary : loggingContext.getExternalCallSummaries())
 			{
-				arrayOfCalls.add(buildExternalCallJson(attributes));
+				writer.name(summary.getKey()).beginObject();
+				writer.field(COUNT, summary.getValue().getCount());
+				writer.field(FAILURES, summary.getValue().getFailures());
+				writer.field(RUNTIME, summary.getValue().getTotalRuntime());
+				writer.endObject();
 			}
-			return arrayOfCalls;
+			writer.endObject();
 		}
+	}
 
-		return null;
+	private void writeIfPositive(JsonLogWriter writer, byte[] key, int value)
+	{
+		if (value > 0)
+		{
+			writer.field(key, value);
+		}
 	}
 
-	private JsonObject buildExternalCallJson(ExternalCallAttributes attributes)
+	private void writeExternalCall(JsonLogWriter writer, ExternalCallAttributes attributes)
 	{
-		JsonObject externalCall = new JsonObject();
-		addIfNotNull(externalCall, "systemName", attributes.systemName);
-		addIfNotNull(externalCall, "serviceName", attributes.serviceName);
-		addIfNotNull(externalCall, "serviceMethod", attributes.serviceMethod);
-		addIfNotNull(externalCall, "serviceOperation", attributes.serviceOperation);
-		addIfNotNull(externalCall, "serviceVersion", attributes.serviceVersion);
-		addIfNotNull(externalCall, "success", attributes.success);
-
-		JsonObject trace = new JsonObject();
-		JsonObject request = new JsonObject();
-		addIfNotNull(request, "traceId", attributes.requestTraceId);
-		addIfNotNull(request, "correlationId", attributes.requestCorrelationId);
-		addIfNotNull(request, "sessionId", attributes.requestSessionId);
-		addIfNotNull(request, "clientIp", attributes.requestDeviceId);
-		addIfNotNull(request, "deviceId", attributes.requestDeviceId);
-		addIfNotNull(request, "deviceType", attributes.requestDeviceType);
-		trace.add("request", request);
-
-		JsonObject responseTrace = new JsonObject();
-		addIfNotNull(responseTrace, "externalTraceId", attributes.externalTraceId);
-		trace.add("response", responseTrace);
-
-		externalCall.add("trace", trace);
-
-
-		JsonObject timings = new JsonObject();
-		addIfNotNull(timings, "startTime", attributes.startTime);
-		addIfNotNull(timings, "endTime", attributes.endTime);
-		addIfNotNull(timings, "runtime", attributes.runtime);
-		externalCall.add("externalTimings", timings);
-
-		JsonObject response = new JsonObject();
-		addIfNotNull(response, "httpStatusCode", attributes.httpStatusCode);
-		addIfNotNull(response, "externalResponseCode", attributes.externalResponseCode);
-		addIfNotNull(response, "externalResponseMessage", attributes.externalResponseMessage);
-		externalCall.add("externalResponse", response);
-
-		if(attributes.throwable != null)
+		writer.beginObject();
+		writer.field(SYSTEM_NAME, attributes.systemName);
+		writer.field(SERVICE_NAME, attributes.serviceName);
+		writer.field(SERVICE_METHOD, attributes.serviceMethod);
+		writer.field(SERVICE_OPERATION, attributes.serviceOperation);
+		writer.field(SERVICE_VERSION, attributes.serviceVersion);
+		writer.field(SUCCESS, attributes.success);
+		writer.field(ATTEMPT, attributes.attempt);
+
+		writer.beginObject(TRACE);
+		writer.beginObject(REQUEST);
+		writer.field(TRACE_ID, attributes.requestTraceId);
+		writer.field(CORRELATION_ID, attributes.requestCorrelationId);
+		writer.field(SESSION_ID, attributes.requestSessionId);
+		writer.field(CLIENT_IP, attributes.requestDeviceId);
+		writer.field(DEVICE_ID, attributes.requestDeviceId);
+		writer.field(DEVICE_TYPE, attributes.requestDeviceType);
+		writer.endObject();
+
+		writer.beginObject(RESPONSE);
+		writer.field(EXTERNAL_TRACE_ID, attributes.externalTraceId);
+		writer.endObject();
+		writer.endObject();
+
+		writer.beginObject(EXTERNAL_TIMINGS);
+		writer.field(START_TIME, attributes.startTime);
+		writer.field(END_TIME, attributes.endTime);
+		writer.field(RUNTIME, attributes.runtime);
+		writer.field(POOL_WAIT_TIME, TimeUnit.NANOSECONDS.toMillis(attributes.poolWaitNanos));
+		writer.endObject();
+
+		writer.beginObject(EXTERNAL_RESPONSE);
+		writer.field(HTTP_STATUS_CODE, attributes.httpStatusCode);
+		writer.field(EXTERNAL_RESPONSE_CODE, attributes.externalResponseCode);
+		writer.field(EXTERNAL_RESPONSE_MESSAGE, attributes.externalResponseMessage);
+		writer.endObject();
+
+		if (attributes.throwable != null)
 		{
-			externalCall.add("clientStackTrace", getStackTraceJson(attributes.throwable));
+			writer.name(CLIENT_STACK_TRACE);
+			writeStackTrace(writer, attributes.throwable);
 		}
-		return externalCall;
+
+		writer.endObject();
 	}
 
-	private JsonObject getStackTraceJson(Throwable throwable)
+	/**
+	 * Writes the stack trace with its fingerprint. Only messages are rendered per throwable; class names and frames
+	 * come from the cache.
+	 */
+	private void writeStackTrace(JsonLogWriter writer, Throwable throwable)
 	{
-		JsonObject stackTrace = new JsonObject();
-		stackTrace.addProperty("class", throwable.getClass().getCanonicalName());
-		stackTrace.addProperty("message", throwable.getMessage());
+		ThrowableFingerprint fingerprint = ThrowableFingerprint.of(throwable);
+		StackTraceCache.CachedStackTrace cached = stackTraceCache.get(fingerprint);
+
+		writeStackTraceLevel(writer, fingerprint, cached, 0);
+	}
 
-		JsonArray stackTraceArray = new JsonArray();
-		for (int i = 0; i < 3 && i < throwable.getStackTrace().length; i++)
+	private void writeStackTraceLevel(JsonLogWriter writer, ThrowableFingerprint fingerprint,
+			StackTraceCache.CachedStackTrace cached, int level)
+	{
+		writer.beginObject();
+
+		if (level == 0)
 		{
-			stackTraceArray.add(throwable.getStackTrace()[i].toString());
+			writer.field(FINGERPRINT, fingerprint.getId());
 		}
-		stackTrace.add("trace", stackTraceArray);
 
-		if (throwable.getCause() != null)
+		writer.fieldAsString(CLASS, cached.classNames[level]);
+		writer.fieldAsString(MESSAGE, fingerprint.getThrowable(level).getMessage());
+		writer.name(TRACE).rawValue(cached.traces[level]);
+
+		if (level + 1 < fingerprint.getDepth())
 		{
-			stackTrace.add("causedBy", getStackTraceJson(throwable.getCause()));
+			writer.name(CAUSED_BY);
+			writeStackTraceLevel(writer, fingerprint, cached, level + 1);
 		}
 
-		return stackTrace;
+		writer.endObject();
 	}
 
-	private void addResponseFields(Object response, JsonObject logMessage)
+	/**
+	 * @return true if a response block was written.
+	 */
+	private boolean writeResponseFields(JsonLogWriter writer, Object response)
 	{
-		JsonObject jsonResponse = new JsonObject();
 		if (response instanceof ZenErrorResponse)
 		{
 			ZenError zenError = ((ZenErrorResponse) response).getError();
-			addIfNotNull(logMessage, "httpStatusCode", zenError.httpStatus);
-			addIfNotNull(logMessage, "exceptionCode", zenError.errorCode);
-			addIfNotNull(logMessage, "exceptionMessage", zenError.errorMessage);
+			writer.field(HTTP_STATUS_CODE, zenError.httpStatus);
+			writer.field(EXCEPTION_CODE, zenError.errorCode);
+			writer.field(EXCEPTION_MESSAGE, zenError.errorMessage);
 		}
 
-		logMessage.add("response", jsonResponse);
+		writer.beginObject(RESPONSE);
+		writer.endObject();
+		return true;
 	}
-
 }
@@ -0,0 +1,471 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.builder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming JSON writer that encodes UTF-8 straight into a reusable byte buffer.
+ *
+ * Each thread owns one writer, obtained through {@link #acquire()}, so building a log message does not allocate an
+ * intermediate tree. Keys are expected to be precomputed with {@link #key(String)} and the output is compact.
+ */
+public class JsonLogWriter
+{
+	private static final int INITIAL_CAPACITY = 4096;
+	private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+	private static final int MAX_DEPTH = 64;
+
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] MIN_LONG = String.valueOf(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+	private static final ThreadLocal<JsonLogWriter> writers = ThreadLocal.withInitial(JsonLogWriter::new);
+
+	private byte[] buffer = new byte[INITIAL_CAPACITY];
+	private int count;
+
+	private final boolean[] hasElements = new boolean[MAX_DEPTH];
+	private int depth;
+	private boolean afterName;
+
+	public JsonLogWriter()
+	{
+
+	}
+
+	/**
+	 * Returns this thread's writer, reset and ready to use. The returned writer must not be shared with, or used
+	 * after handing control to, another thread.
+	 */
+	public static JsonLogWriter acquire()
+	{
+		JsonLogWriter writer = writers.get();
+		writer.reset();
+		return writer;
+	}
+
+	/**
+	 * Precomputes the bytes of an object key, including quotes and the trailing colon.
+	 */
+	public static byte[] key(String name)
+	{
+		JsonLogWriter writer = new JsonLogWriter();
+		writer.writeString(name);
+		writer.writeByte(':');
+		return writer.toByteArray();
+	}
+
+	public void reset()
+	{
+		if (buffer.length > MAX_RETAINED_CAPACITY)
+		{
+			buffer = new byte[INITIAL_CAPACITY];
+		}
+
+		count = 0;
+		depth = 0;
+		hasElements[0] = false;
+		afterName = false;
+	}
+
+	public JsonLogWriter beginObject()
+	{
+		separator();
+		writeByte('{');
+		push();
+		return this;
+	}
+
+	public JsonLogWriter beginObject(byte[] key)
+	{
+		name(key);
+		return beginObject();
+	}
+
+	public JsonLogWriter endObject()
+	{
+		pop();
+		writeByte('}');
+		return this;
+	}
+
+	public JsonLogWriter beginArray()
+	{
+		separator();
+		writeByte('[');
+		push();
+		return this;
+	}
+
+	public JsonLogWriter beginArray(byte[] key)
+	{
+		name(key);
+		return beginArray();
+	}
+
+	public JsonLogWriter endArray()
+	{
+		pop();
+		writeByte(']');
+		return this;
+	}
+
+	public JsonLogWriter name(byte[] key)
+	{
+		separator();
+		writeBytes(key, 0, key.length);
+		afterName = true;
+		return this;
+	}
+
+	public JsonLogWriter name(String key)
+	{
+		separator();
+		writeString(key);
+		writeByte(':');
+		afterName = true;
+		return this;
+	}
+
+	public JsonLogWriter value(String value)
+	{
+		separator();
+		if (value == null)
+		{
+			writeBytes(NULL, 0, NULL.length);
+		}
+		else
+		{
+			writeString(value);
+		}
+		return this;
+	}
+
+	public JsonLogWriter value(long value)
+	{
+		separator();
+		writeLong(value);
+		return this;
+	}
+
+	public JsonLogWriter value(boolean value)
+	{
+		separator();
+		byte[] bytes = value ? TRUE : FALSE;
+		writeBytes(bytes, 0, bytes.length);
+		return this;
+	}
+
+	public JsonLogWriter value(Number value)
+	{
+		separator();
+		if (value == null)
+		{
+			writeBytes(NULL, 0, NULL.length);
+		}
+		else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+		{
+			writeLong(value.longValue());
+		}
+		else if ((value instanceof Double || value instanceof Float) && !Double.isFinite(value.doubleValue()))
+		{
+			// NaN and Infinity are not valid JSON numbers.
+			writeString(value.toString());
+		}
+		else
+		{
+			writeAscii(value.toString());
+		}
+		return this;
+	}
+
+	/**
+	 * Appends an already encoded JSON value, such as a cached fragment, as the next element.
+	 */
+	public JsonLogWriter rawValue(byte[] json)
+	{
+		separator();
+		writeBytes(json, 0, json.length);
+		return this;
+	}
+
+	public JsonLogWriter field(byte[] key, String value)
+	{
+		if (value != null && !value.isEmpty())
+		{
+			name(key).value(value);
+		}
+		return this;
+	}
+
+	public JsonLogWriter field(byte[] key, long value)
+	{
+		return name(key).value(value);
+	}
+
+	public JsonLogWriter field(byte[] key, Number value)
+	{
+		if (value != null)
+		{
+			name(key).value(value);
+		}
+		return this;
+	}
+
+	public JsonLogWriter field(byte[] key, Boolean value)
+	{
+		if (value != null)
+		{
+			name(key).value(value.booleanValue());
+		}
+		return this;
+	}
+
+	public JsonLogWriter fieldAsString(byte[] key, Object value)
+	{
+		if (value != null)
+		{
+			name(key).value(value.toString());
+		}
+		return this;
+	}
+
+	public int size()
+	{
+		return count;
+	}
+
+	public byte[] toByteArray()
+	{
+		return Arrays.copyOf(buffer, count);
+	}
+
+	public void writeTo(OutputStream outputStream) throws IOException
+	{
+		outputStream.write(buffer, 0, count);
+	}
+
+	@Override
+	public String toString()
+	{
+		return new String(buffer, 0, count, StandardCharsets.UTF_8);
+	}
+
+	private void separator()
+	{
+		if (afterName)
+		{
+			afterName = false;
+			return;
+		}
+
+		if (hasElements[depth])
+		{
+			writeByte(',');
+		}
+		hasElements[depth] = true;
+	}
+
+	private void push()
+	{
+		if (depth + 1 >= MAX_DEPTH)
+		{
+			throw new IllegalStateException("JSON nesting is deeper than " + MAX_DEPTH);
+		}
+		hasElements[++depth] = false;
+	}
+
+	private void pop()
+	{
+		if (depth == 0)
+		{
+			throw new IllegalStateException("Attempted to close a JSON scope that was never opened");
+		}
+		depth--;
+	}
+
+	private void writeLong(long value)
+	{
+		if (value == Long.MIN_VALUE)
+		{
+			writeBytes(MIN_LONG, 0, MIN_LONG.length);
+			return;
+		}
+
+		ensureCapacity(20);
+
+		if (value < 0)
+		{
+			buffer[count++] = '-';
+			value = -value;
+		}
+
+		int digits = 1;
+		for (long remaining = value / 10; remaining != 0; remaining /= 10)
+		{
+			digits++;
+		}
+
+		int position = count + digits;
+		count = position;
+		do
+		{
+			buffer[--position] = (byte) ('0' + (value % 10));
+			value /= 10;
+		}
+		while (value != 0);
+	}
+
+	private void writeAscii(String value)
+	{
+		int length = value.length();
+		ensureCapacity(length);
+		for (int i = 0; i < length; i++)
+		{
+			buffer[count++] = (byte) value.charAt(i);
+		}
+	}
+
+	private void writeString(String value)
+	{
+		int length = value.length();
+		// Worst case is six bytes per char for an escaped control character, plus the quotes.
+		ensureCapacity(length * 6 + 2);
+
+		byte[] bytes = buffer;
+		int position = count;
+		bytes[position++] = '"';
+
+		for (int i = 0; i < length; i++)
+		{
+			char c = value.charAt(i);
+
+			if (c < 0x80)
+			{
+				if (c >= 0x20 && c != '"' && c != '\\')
+				{
+					bytes[position++] = (byte) c;
+				}
+				else
+				{
+					position = writeEscape(bytes, position, c);
+				}
+			}
+			else if (c < 0x800)
+			{
+				bytes[position++] = (byte) (0xC0 | (c >> 6));
+				bytes[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+			else if (c == 0x2028 || c == 0x2029)
+			{
+				position = writeEscape(bytes, position, c);
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1)))
+			{
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+				bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+			}
+			else if (Character.isSurrogate(c))
+			{
+				bytes[position++] = '?';
+			}
+			else
+			{
+				bytes[position++] = (byte) (0xE0 | (c >> 12));
+				bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				bytes[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+
+		bytes[position++] = '"';
+		count = position;
+	}
+
+	private static int writeEscape(byte[] bytes, int position, char c)
+	{
+		bytes[position++] = '\\';
+		switch (c)
+		{
+			case '"':
+				bytes[position++] = '"';
+				break;
+			case '\\':
+				bytes[position++] = '\\';
+				break;
+			case '\n':
+				bytes[position++] = 'n';
+				break;
+			case '\r':
+				bytes[position++] = 'r';
+				break;
+			case '\t':
+				bytes[position++] = 't';
+				break;
+			case '\b':
+				bytes[position++] = 'b';
+				break;
+			case '\f':
+				bytes[position++] = 'f';
+				break;
+			default:
+				bytes[position++] = 'u';
+				bytes[position++] = HEX[(c >> 12) & 0xF];
+				bytes[position++] = HEX[(c >> 8) & 0xF];
+				bytes[position++] = HEX[(c >> 4) & 0xF];
+				bytes[position++] = HEX[c & 0xF];
+		}
+		return position;
+	}
+
+	private void writeByte(int b)
+	{
+		ensureCapacity(1);
+		buffer[count++] = (byte) b;
+	}
+
+	private void writeBytes(byte[] bytes, int offset, int length)
+	{
+		ensureCapacity(length);
+		System.arraycopy(bytes, offset, buffer, count, length);
+		count += length;
+	}
+
+	private void ensureCapacity(int additional)
+	{
+		int required = count + additional;
+		if (required > buffer.length)
+		{
+			buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length << 1));
+		}
+	}
+}
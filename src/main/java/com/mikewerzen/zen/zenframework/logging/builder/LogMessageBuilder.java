@@ -22,9 +22,50 @@
 
 package com.mikewerzen.zen.zenframework.logging.builder;
 
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.logging.context.LogSnapshot;
+
 public interface LogMessageBuilder
 {
 	public String buildTransactionLog(Object response);
 
 	public String buildEventLog(Object response);
+
+	/**
+	 * Builds a transaction log from a snapshot. May be called from a thread other than the request thread.
+	 *
+	 * The default binds a scope rebuilt from the snapshot and delegates to {@link #buildTransactionLog(Object)}, so
+	 * builders that read the current contexts also work with log.async.enabled=true. Their end time is taken when the
+	 * log is built rather than when the transaction ended.
+	 */
+	public default String buildTransactionLogFromSnapshot(LogSnapshot snapshot)
+	{
+		ZenScope previous = ZenScope.attach(snapshot.toScope());
+		try
+		{
+			return buildTransactionLog(snapshot.getResponse());
+		}
+		finally
+		{
+			ZenScope.restore(previous);
+		}
+	}
+
+	/**
+	 * Builds an event log from a snapshot. May be called from a thread other than the event thread.
+	 *
+	 * @see #buildTransactionLogFromSnapshot(LogSnapshot)
+	 */
+	public default String buildEventLogFromSnapshot(LogSnapshot snapshot)
+	{
+		ZenScope previous = ZenScope.attach(snapshot.toScope());
+		try
+		{
+			return buildEventLog(snapshot.getResponse());
+		}
+		finally
+		{
+			ZenScope.restore(previous);
+		}
+	}
 }
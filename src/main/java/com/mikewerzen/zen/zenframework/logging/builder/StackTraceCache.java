@@ -0,0 +1,126 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.builder;
+
+import com.mikewerzen.zen.zenframework.logging.utils.ThrowableFingerprint;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of the parts of a stack trace log fragment that only depend on its fingerprint: the class name and
+ * rendered frame array of every level of the cause chain.
+ */
+final class StackTraceCache
+{
+	private final Map<String, CachedStackTrace> entries;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	StackTraceCache(int maxEntries)
+	{
+		entries = new LinkedHashMap<String, CachedStackTrace>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedStackTrace> eldest)
+			{
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	CachedStackTrace get(ThrowableFingerprint fingerprint)
+	{
+		CachedStackTrace cached;
+		synchronized (entries)
+		{
+			cached = entries.get(fingerprint.getId());
+		}
+
+		if (cached != null)
+		{
+			hitCount.incrementAndGet();
+			return cached;
+		}
+
+		missCount.incrementAndGet();
+		cached = render(fingerprint);
+
+		synchronized (entries)
+		{
+			entries.put(fingerprint.getId(), cached);
+		}
+
+		return cached;
+	}
+
+	long getHitCount()
+	{
+		return hitCount.get();
+	}
+
+	long getMissCount()
+	{
+		return missCount.get();
+	}
+
+	private CachedStackTrace render(ThrowableFingerprint fingerprint)
+	{
+		int depth = fingerprint.getDepth();
+		String[] classNames = new String[depth];
+		byte[][] traces = new byte[depth][];
+
+		JsonLogWriter writer = new JsonLogWriter();
+		for (int level = 0; level < depth; level++)
+		{
+			classNames[level] = fingerprint.getThrowable(level).getClass().getCanonicalName();
+
+			StackTraceElement[] stackTrace = fingerprint.getStackTrace(level);
+			writer.reset();
+			writer.beginArray();
+			for (int i = 0; i < ThrowableFingerprint.FRAMES && i < stackTrace.length; i++)
+			{
+				writer.value(stackTrace[i].toString());
+			}
+			writer.endArray();
+			traces[level] = writer.toByteArray();
+		}
+
+		return new CachedStackTrace(classNames, traces);
+	}
+
+	static final class CachedStackTrace
+	{
+		final String[] classNames;
+		final byte[][] traces;
+
+		private CachedStackTrace(String[] classNames, byte[][] traces)
+		{
+			this.classNames = classNames;
+			this.traces = traces;
+		}
+	}
+}
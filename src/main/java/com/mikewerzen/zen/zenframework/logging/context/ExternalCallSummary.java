@@ -0,0 +1,83 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.context;
+
+import com.mikewerzen.zen.zenframework.logging.external.ExternalCallAttributes;
+
+/**
+ * Number of calls to one downstream within a transaction, including calls dropped from the log by the
+ * {@link LoggingContextLimits}.
+ */
+public class ExternalCallSummary
+{
+	private long count;
+	private long failures;
+	private long totalRuntime;
+
+	public ExternalCallSummary()
+	{
+	}
+
+	ExternalCallSummary(ExternalCallSummary other)
+	{
+		this.count = other.count;
+		this.failures = other.failures;
+		this.totalRuntime = other.totalRuntime;
+	}
+
+	static String getDownstreamName(ExternalCallAttributes attributes)
+	{
+		if (attributes.systemName == null)
+		{
+			return String.valueOf(attributes.serviceName);
+		}
+
+		return attributes.serviceName == null ? attributes.systemName : attributes.systemName + "." + attributes.serviceName;
+	}
+
+	public void add(ExternalCallAttributes attributes)
+	{
+		count++;
+		totalRuntime += attributes.runtime;
+		if (!Boolean.TRUE.equals(attributes.success))
+		{
+			failures++;
+		}
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	public long getFailures()
+	{
+		return failures;
+	}
+
+	public long getTotalRuntime()
+	{
+		return totalRuntime;
+	}
+}
@@ -0,0 +1,178 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.context;
+
+import com.mikewerzen.zen.zenframework.logging.external.ExternalCallAttributes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the external calls of a transaction overlapped, from their monotonic start and end times.
+ *
+ * The wall time is the union of the call intervals: the time during which the transaction was waiting on at least one
+ * dependency. The critical path is the chain of calls that determined when the last call finished, found by walking
+ * back from the last call to finish to the latest call that finished before it started; the critical dependency is the
+ * downstream that contributed the most time to that chain.
+ */
+public class ExternalCallTimeline
+{
+	private static final ExternalCallTimeline EMPTY = new ExternalCallTimeline(0, 0, null);
+
+	private final long wallTimeNanos;
+	private final long criticalPathNanos;
+	private final String criticalDependency;
+
+	private ExternalCallTimeline(long wallTimeNanos, long criticalPathNanos, String criticalDependency)
+	{
+		this.wallTimeNanos = wallTimeNanos;
+		this.criticalPathNanos = criticalPathNanos;
+		this.criticalDependency = criticalDependency;
+	}
+
+	public static ExternalCallTimeline of(Collection<ExternalCallAttributes> externalCalls)
+	{
+		if (externalCalls.isEmpty())
+		{
+			return EMPTY;
+		}
+
+		List<ExternalCallAttributes> calls = new ArrayList<>(externalCalls);
+
+		calls.sort(Comparator.comparingLong(call -> call.startNanos));
+		long wallTime = getUnion(calls);
+
+		calls.sort(Comparator.comparingLong(call -> call.endNanos));
+		long[] endTimes = new long[calls.size()];
+		for (int i = 0; i < endTimes.length; i++)
+		{
+			endTimes[i] = calls.get(i).endNanos;
+		}
+
+		Map<String, Long> contributions = new HashMap<>();
+		long criticalPath = 0;
+		int index = calls.size() - 1;
+
+		while (index >= 0)
+		{
+			ExternalCallAttributes call = calls.get(index);
+			long duration = call.endNanos - call.startNanos;
+			criticalPath += duration;
+			contributions.merge(ExternalCallSummary.getDownstreamName(call), duration, Long::sum);
+
+			index = lastEndingBefore(endTimes, call.startNanos, index);
+		}
+
+		String criticalDependency = null;
+		long largestContribution = -1;
+		for (Map.Entry<String, Long> contribution : contributions.entrySet())
+		{
+			if (contribution.getValue() > largestContribution)
+			{
+				largestContribution = contribution.getValue();
+				criticalDependency = contribution.getKey();
+			}
+		}
+
+		return new ExternalCallTimeline(wallTime, criticalPath, criticalDependency);
+	}
+
+	private static long getUnion(List<ExternalCallAttributes> callsByStart)
+	{
+		long union = 0;
+		long start = callsByStart.get(0).startNanos;
+		long end = callsByStart.get(0).endNanos;
+
+		for (ExternalCallAttributes call : callsByStart)
+		{
+			if (call.startNanos > end)
+			{
+				union += end - start;
+				start = call.startNanos;
+			}
+			end = Math.max(end, call.endNanos);
+		}
+
+		return union + end - start;
+	}
+
+	/**
+	 * @return the index of the last call, before the given one, that ended no later than the given time, or -1.
+	 */
+	private static int lastEndingBefore(long[] endTimes, long time, int before)
+	{
+		int low = 0;
+		int high = before - 1;
+		int found = -1;
+
+		while (low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			if (endTimes[middle] <= time)
+			{
+				found = middle;
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle - 1;
+			}
+		}
+
+		return found;
+	}
+
+	public long getWallTimeNanos()
+	{
+		return wallTimeNanos;
+	}
+
+	public long getWallTimeMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(wallTimeNanos);
+	}
+
+	public long getCriticalPathNanos()
+	{
+		return criticalPathNanos;
+	}
+
+	public long getCriticalPathMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(criticalPathNanos);
+	}
+
+	/**
+	 * @return the downstream contributing most to the critical path, or null if there were no external calls.
+	 */
+	public String getCriticalDependency()
+	{
+		return criticalDependency;
+	}
+}
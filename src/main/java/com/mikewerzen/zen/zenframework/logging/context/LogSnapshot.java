@@ -0,0 +1,128 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.context;
+
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.event.context.EventContext;
+import com.mikewerzen.zen.zenframework.security.context.SecurityContext;
+import com.mikewerzen.zen.zenframework.transaction.context.TransactionContext;
+
+/**
+ * Everything needed to build a log message once the request thread has moved on: the contexts as they were when the
+ * transaction or event ended, a copy of the logging context, the end time and the response.
+ */
+public final class LogSnapshot
+{
+	private final boolean event;
+	private final TransactionContext transactionContext;
+	private final EventContext eventContext;
+	private final SecurityContext securityContext;
+	private final LoggingContext loggingContext;
+	private final long endTime;
+	private final Object response;
+
+	private LogSnapshot(boolean event, Object response)
+	{
+		this.event = event;
+		ZenScope scope = ZenScope.current();
+		if (scope == null)
+		{
+			scope = new ZenScope();
+		}
+
+		this.transactionContext = event ? null : scope.getTransactionContext();
+		this.eventContext = event ? scope.getEventContext() : null;
+		this.securityContext = scope.getSecurityContext();
+
+		LoggingContext current = scope.getLoggingContext();
+		this.loggingContext = current == null ? null : current.snapshot();
+
+		this.endTime = System.currentTimeMillis();
+		this.response = response;
+	}
+
+	/**
+	 * Captures the current thread's transaction.
+	 */
+	public static LogSnapshot captureTransaction(Object response)
+	{
+		return new LogSnapshot(false, response);
+	}
+
+	/**
+	 * Captures the current thread's event.
+	 */
+	public static LogSnapshot captureEvent(Object response)
+	{
+		return new LogSnapshot(true, response);
+	}
+
+	public boolean isEvent()
+	{
+		return event;
+	}
+
+	public TransactionContext getTransactionContext()
+	{
+		return transactionContext;
+	}
+
+	public EventContext getEventContext()
+	{
+		return eventContext;
+	}
+
+	public SecurityContext getSecurityContext()
+	{
+		return securityContext;
+	}
+
+	public LoggingContext getLoggingContext()
+	{
+		return loggingContext;
+	}
+
+	public long getEndTime()
+	{
+		return endTime;
+	}
+
+	public Object getResponse()
+	{
+		return response;
+	}
+
+	/**
+	 * Rebuilds a scope holding the captured contexts, for code that reads them through {@link ZenScope}.
+	 */
+	public ZenScope toScope()
+	{
+		ZenScope scope = new ZenScope();
+		scope.setTransactionContext(transactionContext);
+		scope.setEventContext(eventContext);
+		scope.setSecurityContext(securityContext);
+		scope.setLoggingContext(loggingContext);
+		return scope;
+	}
+}
@@ -27,51 +27,147 @@ import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Collects what a transaction or event logs. Each collection is capped by the {@link LoggingContextLimits}; entries
+ * over a cap are counted instead of kept, and external calls are also summarized per downstream.
+ *
+ * Worker threads that share the context through ZenContextPropagation may add to it concurrently. The list getters
+ * and {@link #getRuntimes()} return copies; the remaining getters return live collections, so the context should only
+ * be read through them once those workers are done, or through {@link #snapshot()}.
+ */
 public class LoggingContext
 {
+	private static volatile LoggingContextLimits limits = LoggingContextLimits.DEFAULT;
+
+	private static final LongAdder totalDroppedCount = new LongAdder();
+
+	private final LoggingContextLimits contextLimits;
+
 	private long startTime;
 
-	private List<String> events = new ArrayList<>();
+	private Deque<String> events = new ArrayDeque<>();
 	private Map<String, Object> keyValueFields = new HashMap<>();
-	private Map<String, Long> runtimes = new HashMap<>();
-	private List<ExternalCallAttributes> externalLogAttributes = new ArrayList<>();
+	private Map<String, MethodRuntime> runtimes = new HashMap<>();
+	private Deque<ExternalCallAttributes> externalLogAttributes = new ArrayDeque<>();
+	private Map<String, ExternalCallSummary> externalCallSummaries = new LinkedHashMap<>();
+	private long totalExternalCallRuntime;
+
+	private int droppedEvents;
+	private int droppedFields;
+	private int droppedRuntimes;
+	private int droppedExternalCalls;
 
 	private Throwable throwable;
 
 	public LoggingContext()
 	{
+		contextLimits = limits;
 		startTime = System.currentTimeMillis();
 	}
 
+	private LoggingContext(LoggingContext other)
+	{
+		contextLimits = other.contextLimits;
+		startTime = other.startTime;
+		events = new ArrayDeque<>(other.events);
+		keyValueFields = new HashMap<>(other.keyValueFields);
+		runtimes = new HashMap<>();
+		other.runtimes.forEach((methodName, runtime) -> runtimes.put(methodName, new MethodRuntime(runtime)));
+		externalLogAttributes = new ArrayDeque<>(other.externalLogAttributes);
+		externalCallSummaries = new LinkedHashMap<>();
+		other.externalCallSummaries.forEach((name, summary) -> externalCallSummaries.put(name, new ExternalCallSummary(summary)));
+		totalExternalCallRuntime = other.totalExternalCallRuntime;
+		droppedEvents = other.droppedEvents;
+		droppedFields = other.droppedFields;
+		droppedRuntimes = other.droppedRuntimes;
+		droppedExternalCalls = other.droppedExternalCalls;
+		throwable = other.throwable;
+	}
+
+	/**
+	 * Sets the limits of contexts created from now on.
+	 */
+	public static void setLimits(LoggingContextLimits limits)
+	{
+		LoggingContext.limits = limits;
+	}
+
+	public static LoggingContextLimits getLimits()
+	{
+		return limits;
+	}
+
+	/**
+	 * Entries dropped by all contexts since startup.
+	 */
+	public static long getTotalDroppedCount()
+	{
+		return totalDroppedCount.sum();
+	}
+
+	/**
+	 * Returns a copy that later changes to this context do not affect.
+	 */
+	public synchronized LoggingContext snapshot()
+	{
+		return new LoggingContext(this);
+	}
+
 	public long getStartTime()
 	{
 		return startTime;
 	}
 
-	public void addEvent(String message)
+	public synchronized void addEvent(String message)
 	{
-		events.add(message);
+		if (events.size() >= contextLimits.getMaxEvents())
+		{
+			droppedEvents++;
+			totalDroppedCount.increment();
+
+			if (contextLimits.getEventRetention() == LogRetention.FIRST)
+			{
+				return;
+			}
+			events.pollFirst();
+		}
+
+		events.addLast(message);
 	}
 
-	public List<String> getEvents()
+	public synchronized List<String> getEvents()
 	{
-		return events;
+		return new ArrayList<>(events);
 	}
 
 	public void addField(String key, Object value)
 	{
-		keyValueFields.put(key, value);
+		putField(key, value);
 	}
 
 	public void addFieldMasked(String key, String value)
 	{
-		keyValueFields.put(key, StringUtils.left(value, 4) + "****");
+		putField(key, StringUtils.left(value, 4) + "****");
 	}
 
 	public void addFieldHashed(String key, String value)
 	{
-		keyValueFields.put(key, StringUtils.right(DigestUtils.sha1Hex(value), 16));
+		putField(key, StringUtils.right(DigestUtils.sha1Hex(value), 16));
+	}
+
+	private synchronized void putField(String key, Object value)
+	{
+		if (keyValueFields.size() >= contextLimits.getMaxFields() && !keyValueFields.containsKey(key))
+		{
+			droppedFields++;
+			totalDroppedCount.increment();
+			return;
+		}
+
+		keyValueFields.put(key, value);
 	}
 
 	public void addEmailMasked(String key, String email)
@@ -91,7 +187,7 @@ public class LoggingContext
 		builder.deleteCharAt(builder.length() - 1);
 		String masked = builder.toString();
 		masked = masked.substring(0, masked.length() - 2);
-		keyValueFields.put(key, masked);
+		putField(key, masked);
 	}
 
 	public Set<Map.Entry<String, Object>> getKeyValueFields()
@@ -99,30 +195,119 @@ public class LoggingContext
 		return keyValueFields.entrySet();
 	}
 
+	/**
+	 * Adds a call of the method, taking the given number of milliseconds.
+	 */
 	public void addRuntime(String methodName, long runtime)
 	{
-		runtimes.put(methodName, runtime);
+		addRuntimeNanos(methodName, TimeUnit.MILLISECONDS.toNanos(runtime));
+	}
+
+	/**
+	 * Adds a call of the method, taking the given number of nanoseconds.
+	 */
+	public synchronized void addRuntimeNanos(String methodName, long runtimeNanos)
+	{
+		MethodRuntime runtime = runtimes.get(methodName);
+		if (runtime == null)
+		{
+			if (runtimes.size() >= contextLimits.getMaxRuntimes())
+			{
+				droppedRuntimes++;
+				totalDroppedCount.increment();
+				return;
+			}
+
+			runtime = new MethodRuntime();
+			runtimes.put(methodName, runtime);
+		}
+
+		runtime.add(runtimeNanos);
+	}
+
+	/**
+	 * Total milliseconds spent in each method.
+	 */
+	public synchronized Set<Map.Entry<String, Long>> getRuntimes()
+	{
+		Map<String, Long> totals = new HashMap<>();
+		runtimes.forEach((methodName, runtime) -> totals.put(methodName, runtime.getTotalMillis()));
+		return totals.entrySet();
 	}
 
-	public Set<Map.Entry<String, Long>> getRuntimes()
+	/**
+	 * Call count and total runtime of each method.
+	 */
+	public Set<Map.Entry<String, MethodRuntime>> getMethodRuntimes()
 	{
 		return runtimes.entrySet();
 	}
 
-	public void addExternalCall(ExternalCallAttributes attributes)
+	public synchronized void addExternalCall(ExternalCallAttributes attributes)
 	{
-		if (attributes != null)
+		if (attributes == null)
+		{
+			return;
+		}
+
+		totalExternalCallRuntime += attributes.runtime;
+		externalCallSummaries.computeIfAbsent(ExternalCallSummary.getDownstreamName(attributes),
+				name -> new ExternalCallSummary()).add(attributes);
+
+		if (externalLogAttributes.size() >= contextLimits.getMaxExternalCalls())
 		{
-			externalLogAttributes.add(attributes);
+			droppedExternalCalls++;
+			totalDroppedCount.increment();
+
+			if (contextLimits.getExternalCallRetention() == LogRetention.FIRST)
+			{
+				return;
+			}
+			externalLogAttributes.pollFirst();
 		}
+
+		externalLogAttributes.addLast(attributes);
 	}
 
-	public List<ExternalCallAttributes> getExternalLogAttributes()
+	public synchronized List<ExternalCallAttributes> getExternalLogAttributes()
 	{
-		return externalLogAttributes;
+		return new ArrayList<>(externalLogAttributes);
 	}
 
-	public void addThrowable(Throwable throwable)
+	/**
+	 * Calls per downstream, counting every call made, whether or not it was kept in the external calls.
+	 */
+	public Set<Map.Entry<String, ExternalCallSummary>> getExternalCallSummaries()
+	{
+		return externalCallSummaries.entrySet();
+	}
+
+	public boolean hasOverflow()
+	{
+		return droppedEvents > 0 || droppedFields > 0 || droppedRuntimes > 0 || droppedExternalCalls > 0;
+	}
+
+	public int getDroppedEvents()
+	{
+		return droppedEvents;
+	}
+
+	public int getDroppedFields()
+	{
+		return droppedFields;
+	}
+
+	public int getDroppedRuntimes()
+	{
+		return droppedRuntimes;
+	}
+
+	public int getDroppedExternalCalls()
+	{
+		return droppedExternalCalls;
+	}
+
+	public synchronized void addThrowable(Throwable throwable)
 	{
 		this.throwable = throwable;
 	}
@@ -132,15 +317,20 @@ public class LoggingContext
 		return throwable;
 	}
 
-	public long getTotalExternalCallRuntime()
+	/**
+	 * Union and critical path of the kept external calls. Unlike {@link #getTotalExternalCallRuntime()}
+	 * this does not account for calls dropped by the limits.
+	 */
+	public synchronized ExternalCallTimeline getExternalCallTimeline()
 	{
-		long externalRuntime = 0;
-
-		for(ExternalCallAttributes attributes : externalLogAttributes)
-		{
-			externalRuntime += attributes.runtime;
-		}
+		return ExternalCallTimeline.of(externalLogAttributes);
+	}
 
-		return externalRuntime;
+	/**
+	 * Total runtime of every external call made, including calls dropped from the external calls.
+	 */
+	public synchronized long getTotalExternalCallRuntime()
+	{
+		return totalExternalCallRuntime;
 	}
 }
@@ -22,34 +22,39 @@
 
 package com.mikewerzen.zen.zenframework.logging.context;
 
+import com.mikewerzen.zen.zenframework.context.ZenScope;
 import com.mikewerzen.zen.zenframework.exception.system.InternalException;
 
 import java.util.Optional;
 
+/**
+ * Facade over the LoggingContext of the current {@link ZenScope}.
+ */
 public class LoggingContextHolder
 {
-
-	private static final ThreadLocal<LoggingContext> loggingContextLocal = new ThreadLocal<>();
-
 	public static void setContext(LoggingContext context)
 	{
-		loggingContextLocal.set(context);
+		ZenScope.currentOrCreate().setLoggingContext(context);
 	}
 
 	public static void clearContext()
 	{
-		loggingContextLocal.set(null);
-		loggingContextLocal.remove();
+		ZenScope scope = ZenScope.current();
+		if (scope != null)
+		{
+			scope.setLoggingContext(null);
+			ZenScope.endIfEmpty();
+		}
 	}
 
 	public static boolean isPresent()
 	{
-		return (loggingContextLocal.get() != null);
+		return (ZenScope.currentLoggingContext() != null);
 	}
 
 	public static LoggingContext getContext()
 	{
-		LoggingContext context = loggingContextLocal.get();
+		LoggingContext context = ZenScope.currentLoggingContext();
 
 		if (context == null)
 		{
@@ -59,9 +64,17 @@ public class LoggingContextHolder
 		return context;
 	}
 
+	/**
+	 * @return the context, or null. Unlike {@link #getContextOptional()} this never allocates.
+	 */
+	public static LoggingContext getContextOrNull()
+	{
+		return ZenScope.currentLoggingContext();
+	}
+
 	public static Optional<LoggingContext> getContextOptional()
 	{
-		return Optional.ofNullable(loggingContextLocal.get());
+		return Optional.ofNullable(ZenScope.currentLoggingContext());
 	}
 
 }
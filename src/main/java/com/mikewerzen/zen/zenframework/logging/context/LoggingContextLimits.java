@@ -0,0 +1,90 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.context;
+
+/**
+ * Caps on the collections of a {@link LoggingContext}. Keyed collections (fields and runtimes) always keep their first
+ * keys but still accept updates to them.
+ */
+public final class LoggingContextLimits
+{
+	public static final LoggingContextLimits DEFAULT = new LoggingContextLimits(256, 128, 256, 256, LogRetention.LAST,
+			LogRetention.FIRST);
+
+	private final int maxEvents;
+	private final int maxFields;
+	private final int maxRuntimes;
+	private final int maxExternalCalls;
+	private final LogRetention eventRetention;
+	private final LogRetention externalCallRetention;
+
+	/**
+	 * A limit of zero or less means unbounded.
+	 */
+	public LoggingContextLimits(int maxEvents, int maxFields, int maxRuntimes, int maxExternalCalls,
+			LogRetention eventRetention, LogRetention externalCallRetention)
+	{
+		this.maxEvents = toLimit(maxEvents);
+		this.maxFields = toLimit(maxFields);
+		this.maxRuntimes = toLimit(maxRuntimes);
+		this.maxExternalCalls = toLimit(maxExternalCalls);
+		this.eventRetention = eventRetention;
+		this.externalCallRetention = externalCallRetention;
+	}
+
+	private static int toLimit(int limit)
+	{
+		return limit > 0 ? limit : Integer.MAX_VALUE;
+	}
+
+	public int getMaxEvents()
+	{
+		return maxEvents;
+	}
+
+	public int getMaxFields()
+	{
+		return maxFields;
+	}
+
+	public int getMaxRuntimes()
+	{
+		return maxRuntimes;
+	}
+
+	public int getMaxExternalCalls()
+	{
+		return maxExternalCalls;
+	}
+
+	public LogRetention getEventRetention()
+	{
+		return eventRetention;
+	}
+
+	public LogRetention getExternalCallRetention()
+	{
+		return externalCallRetention;
+	}
+}
@@ -0,0 +1,65 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.context;
+
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Applies the configured {@link LoggingContextLimits} to every {@link LoggingContext}.
+ */
+@Component
+public class LoggingContextLimitsConfigurer
+{
+	@Value("${log.context.maxEvents:256}")
+	private int maxEvents;
+
+	@Value("${log.context.maxFields:128}")
+	private int maxFields;
+
+	@Value("${log.context.maxRuntimes:256}")
+	private int maxRuntimes;
+
+	@Value("${log.context.maxExternalCalls:256}")
+	private int maxExternalCalls;
+
+	@Value("${log.context.eventRetention:LAST}")
+	private LogRetention eventRetention;
+
+	@Value("${log.context.externalCallRetention:FIRST}")
+	private LogRetention externalCallRetention;
+
+	@PostConstruct
+	public void initialize()
+	{
+		LoggingContext.setLimits(new LoggingContextLimits(maxEvents, maxFields, maxRuntimes, maxExternalCalls,
+				eventRetention, externalCallRetention));
+
+		MetricsRegistry.registerCounter("zen_log_context_dropped_total",
+				"Logging context entries dropped because a collection was full.", LoggingContext::getTotalDroppedCount);
+	}
+}
@@ -0,0 +1,113 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.export;
+
+import com.mikewerzen.zen.zenframework.logging.builder.JsonLogWriter;
+import com.mikewerzen.zen.zenframework.rest.client.PooledHttpTransport;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Shared configuration for exporters that send events to a Splunk HTTP Event Collector.
+ */
+public abstract class AbstractSplunkDataExporter implements LogDataExporter
+{
+	private static final String EVENT_SUFFIX = "}";
+
+	@Value("${log.export.splunk.url}")
+	protected String splunkUrl = null;
+
+	@Value("${log.export.splunk.token}")
+	protected String token = null;
+
+	@Value("${log.export.splunk.index}")
+	protected String index = null;
+
+	@Value("${log.export.splunk.source}")
+	protected String source = null;
+
+	@Value("${log.export.splunk.sourcetype}")
+	protected String sourcetype = null;
+
+	@Value("${log.export.splunk.host}")
+	protected String host = null;
+
+	private volatile String eventPrefix;
+
+	protected HttpHeaders buildHeaders()
+	{
+		HttpHeaders headers = new HttpHeaders();
+		headers.add(HttpHeaders.AUTHORIZATION, "Splunk " + token);
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		return headers;
+	}
+
+	/**
+	 * Returns the HEC envelope up to and including the "event" key. The log message and {@link #getEventSuffix()}
+	 * complete the event.
+	 */
+	protected String getEventPrefix()
+	{
+		String prefix = eventPrefix;
+
+		if (prefix == null)
+		{
+			JsonLogWriter writer = new JsonLogWriter();
+			writer.beginObject();
+			writer.field(JsonLogWriter.key("index"), index);
+			writer.field(JsonLogWriter.key("source"), source);
+			writer.field(JsonLogWriter.key("sourcetype"), sourcetype);
+			writer.field(JsonLogWriter.key("host"), host);
+			writer.name(JsonLogWriter.key("event"));
+
+			prefix = writer.toString();
+			eventPrefix = prefix;
+		}
+
+		return prefix;
+	}
+
+	protected String getEventSuffix()
+	{
+		return EVENT_SUFFIX;
+	}
+
+	protected String buildEvent(String logMessage)
+	{
+		String prefix = getEventPrefix();
+
+		return new StringBuilder(prefix.length() + logMessage.length() + EVENT_SUFFIX.length())
+				.append(prefix)
+				.append(logMessage)
+				.append(EVENT_SUFFIX)
+				.toString();
+	}
+
+	protected RestTemplate buildRestTemplate()
+	{
+		return new RestTemplate(PooledHttpTransport.sharedRequestFactory());
+	}
+}
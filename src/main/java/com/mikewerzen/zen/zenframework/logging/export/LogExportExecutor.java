@@ -0,0 +1,280 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.export;
+
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import com.mikewerzen.zen.zenframework.util.concurrent.BoundedVirtualThreadExecutor;
+import com.mikewerzen.zen.zenframework.util.concurrent.VirtualThreads;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, named thread pool that runs log export work.
+ *
+ * This is deliberately not registered as a Spring Executor, so it never becomes the application's default
+ * {@code @Async} executor and does not suppress Spring Boot's own task executor.
+ *
+ * With threads.virtual.enabled on Java 21, each export runs on its own virtual thread under the same limits: up to
+ * maxPoolSize at once and queueCapacity waiting. DISCARD_OLDEST then behaves as DISCARD, as there is no queue to
+ * discard from.
+ *
+ * Tasks implementing {@link DiscardableTask} are told when a rejection policy throws them away, so their work can be
+ * kept elsewhere.
+ */
+@Component
+public class LogExportExecutor
+{
+	private static final Logger logger = LogManager.getLogger(LogExportExecutor.class);
+
+	private static final String THREAD_NAME_PREFIX = "zen-log-export-";
+
+	/**
+	 * A task that is told when it is discarded instead of run.
+	 */
+	public interface DiscardableTask extends Runnable
+	{
+		void discard();
+	}
+
+	@Value("${log.export.executor.corePoolSize:2}")
+	private int corePoolSize = 2;
+
+	@Value("${log.export.executor.maxPoolSize:4}")
+	private int maxPoolSize = 4;
+
+	@Value("${log.export.executor.queueCapacity:1000}")
+	private int queueCapacity = 1000;
+
+	@Value("${log.export.executor.keepAliveSeconds:60}")
+	private long keepAliveSeconds = 60;
+
+	@Value("${log.export.executor.rejectionPolicy:DISCARD}")
+	private LogExportRejectionPolicy rejectionPolicy = LogExportRejectionPolicy.DISCARD;
+
+	@Value("${log.export.executor.shutdownTimeoutSeconds:10}")
+	private long shutdownTimeoutSeconds = 10;
+
+	@Value("${threads.virtual.enabled:false}")
+	private boolean virtualThreadsEnabled;
+
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	private ThreadPoolExecutor executor;
+
+	private BoundedVirtualThreadExecutor virtualExecutor;
+
+	@PostConstruct
+	public void initialize()
+	{
+		if (virtualThreadsEnabled && VirtualThreads.isAvailable())
+		{
+			virtualExecutor = new BoundedVirtualThreadExecutor(THREAD_NAME_PREFIX, Math.max(corePoolSize, maxPoolSize),
+					queueCapacity);
+		}
+		else
+		{
+			initializePool();
+		}
+
+		MetricsRegistry.registerGauge("zen_log_export_executor_queue_depth",
+				"Log exports waiting for a thread.", this::getQueueDepth);
+		MetricsRegistry.registerGauge("zen_log_export_executor_active_threads",
+				"Threads currently exporting logs.", this::getActiveCount);
+		MetricsRegistry.registerCounter("zen_log_export_executor_rejected_total",
+				"Log exports rejected because the executor was saturated.", this::getRejectedCount);
+	}
+
+	private void initializePool()
+	{
+		executor = new ThreadPoolExecutor(corePoolSize, Math.max(corePoolSize, maxPoolSize), keepAliveSeconds,
+				TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), buildThreadFactory(),
+				buildRejectionHandler());
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		if (virtualExecutor != null)
+		{
+			virtualExecutor.shutdown();
+		}
+		else
+		{
+			executor.shutdown();
+		}
+
+		try
+		{
+			boolean terminated = virtualExecutor != null
+					? virtualExecutor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)
+					: executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS);
+
+			if (!terminated)
+			{
+				logger.warn("Log export executor did not finish within " + shutdownTimeoutSeconds + "s, "
+						+ getQueueDepth() + " queued exports will be lost.");
+				shutdownNow();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void shutdownNow()
+	{
+		if (virtualExecutor != null)
+		{
+			virtualExecutor.shutdownNow();
+		}
+		else
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Runs the task on the export pool. When the pool is saturated the configured rejection policy applies and the
+	 * rejection is counted; this method never throws because of saturation.
+	 */
+	public void execute(Runnable task)
+	{
+		if (virtualExecutor == null)
+		{
+			executor.execute(task);
+		}
+		else if (!virtualExecutor.tryExecute(task))
+		{
+			countRejection();
+
+			if (rejectionPolicy == LogExportRejectionPolicy.CALLER_RUNS)
+			{
+				task.run();
+			}
+			else
+			{
+				discard(task);
+			}
+		}
+	}
+
+	public int getQueueDepth()
+	{
+		return virtualExecutor != null ? virtualExecutor.getWaitingCount() : executor.getQueue().size();
+	}
+
+	public int getQueueCapacity()
+	{
+		return queueCapacity;
+	}
+
+	public int getActiveCount()
+	{
+		return virtualExecutor != null ? virtualExecutor.getActiveCount() : executor.getActiveCount();
+	}
+
+	public int getPoolSize()
+	{
+		return virtualExecutor != null ? virtualExecutor.getActiveCount() : executor.getPoolSize();
+	}
+
+	public long getCompletedTaskCount()
+	{
+		return virtualExecutor != null ? virtualExecutor.getCompletedTaskCount() : executor.getCompletedTaskCount();
+	}
+
+	public long getRejectedCount()
+	{
+		return rejectedCount.get();
+	}
+
+	private ThreadFactory buildThreadFactory()
+	{
+		AtomicInteger threadNumber = new AtomicInteger();
+
+		return runnable -> {
+			Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Applies the rejection policy as ThreadPoolExecutor's own policies do, but tells each discarded task.
+	 */
+	private RejectedExecutionHandler buildRejectionHandler()
+	{
+		return (runnable, threadPoolExecutor) -> {
+			countRejection();
+
+			if (rejectionPolicy == LogExportRejectionPolicy.CALLER_RUNS && !threadPoolExecutor.isShutdown())
+			{
+				runnable.run();
+			}
+			else if (rejectionPolicy == LogExportRejectionPolicy.DISCARD_OLDEST && !threadPoolExecutor.isShutdown())
+			{
+				discard(threadPoolExecutor.getQueue().poll());
+				threadPoolExecutor.execute(runnable);
+			}
+			else
+			{
+				discard(runnable);
+			}
+		};
+	}
+
+	private static void discard(Runnable runnable)
+	{
+		if (runnable instanceof DiscardableTask)
+		{
+			((DiscardableTask) runnable).discard();
+		}
+	}
+
+	private void countRejection()
+	{
+		long rejected = rejectedCount.incrementAndGet();
+
+		if (logger.isDebugEnabled())
+		{
+			logger.debug("Log export executor is saturated (" + rejected + " rejections so far), applying "
+					+ rejectionPolicy + " policy.");
+		}
+	}
+}
@@ -0,0 +1,356 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.export;
+
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Disk spool for log messages that could not be handed to the sink, made of fixed-size memory-mapped segments.
+ *
+ * Messages are appended to the newest segment and read back oldest first. Readers take a {@link Batch} with
+ * {@link #read(int, int)} and only {@link #commit(Batch)} it once the sink has accepted it, so nothing is lost if the
+ * process stops in between. The spool never holds more than log.export.spool.maxBytes on disk; when it is full the
+ * oldest segment is evicted. Segments left by a previous run are picked up on startup.
+ *
+ * Enabled by log.export.spool.enabled=true.
+ */
+@Component
+@ConditionalOnProperty(name = "log.export.spool.enabled", havingValue = "true")
+public class LogExportSpool
+{
+	private static final Logger logger = LogManager.getLogger(LogExportSpool.class);
+
+	private static final Pattern SEGMENT_NAME = Pattern.compile("spool-(\\d{20})\\.seg");
+
+	@Value("${log.export.spool.directory:${java.io.tmpdir}/zen-log-spool}")
+	private String directory = System.getProperty("java.io.tmpdir") + "/zen-log-spool";
+
+	@Value("${log.export.spool.segmentBytes:67108864}")
+	private int segmentBytes = 67108864;
+
+	@Value("${log.export.spool.maxBytes:1073741824}")
+	private long maxBytes = 1073741824L;
+
+	private final AtomicLong appendedCount = new AtomicLong();
+	private final AtomicLong evictedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	private final Deque<LogExportSpoolSegment> segments = new ArrayDeque<>();
+	private long nextSegmentId;
+	private boolean open;
+
+	@PostConstruct
+	public synchronized void open() throws IOException
+	{
+		if (open)
+		{
+			return;
+		}
+
+		File spoolDirectory = new File(directory);
+		if (!spoolDirectory.isDirectory() && !spoolDirectory.mkdirs())
+		{
+			throw new IOException("Could not create log export spool directory " + spoolDirectory);
+		}
+
+		recover(spoolDirectory);
+		open = true;
+
+		MetricsRegistry.registerGauge("zen_log_spool_pending", "Log messages in the spool waiting to be replayed.", this::getPendingCount);
+		MetricsRegistry.registerGauge("zen_log_spool_size_bytes", "Disk space used by spool segments.", this::getSizeBytes);
+		MetricsRegistry.registerCounter("zen_log_spool_evicted_total", "Spooled log messages evicted because the spool was full.", this::getEvictedCount);
+
+		if (!segments.isEmpty())
+		{
+			logger.info("Recovered " + getPendingCount() + " spooled log messages from " + spoolDirectory);
+		}
+	}
+
+	@PreDestroy
+	public synchronized void close()
+	{
+		force();
+		segments.clear();
+		open = false;
+	}
+
+	/**
+	 * Appends the message, evicting the oldest segment if the spool is full. Returns false if the message could not
+	 * be spooled at all.
+	 */
+	public synchronized boolean append(String logMessage)
+	{
+		if (!open)
+		{
+			rejectedCount.incrementAndGet();
+			return false;
+		}
+
+		byte[] record = logMessage.getBytes(StandardCharsets.UTF_8);
+
+		if (LogExportSpoolSegment.HEADER_BYTES + LogExportSpoolSegment.RECORD_HEADER_BYTES + record.length > segmentBytes)
+		{
+			rejectedCount.incrementAndGet();
+			logger.warn("Log message of " + record.length + " bytes is larger than a spool segment, dropping it.");
+			return false;
+		}
+
+		try
+		{
+			LogExportSpoolSegment tail = segments.peekLast();
+			if (tail == null || !tail.append(record))
+			{
+				rollSegment().append(record);
+			}
+
+			appendedCount.incrementAndGet();
+			return true;
+		}
+		catch (IOException e)
+		{
+			rejectedCount.incrementAndGet();
+			logger.error("Could not spool log message to " + directory, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Reads up to maxRecords messages, or roughly maxBytes, from the oldest segment without consuming them.
+	 */
+	public synchronized Batch read(int maxRecords, int maxBytes)
+	{
+		LogExportSpoolSegment head = pruneHead();
+		if (head == null || head.isFullyRead())
+		{
+			return Batch.EMPTY;
+		}
+
+		List<String> records = new ArrayList<>(Math.min(maxRecords, head.getUnreadCount()));
+		int position = head.getReadPosition();
+		long bytes = 0;
+
+		while (records.size() < maxRecords && bytes < maxBytes && position < head.getWritePosition())
+		{
+			byte[] record = head.read(position);
+			records.add(new String(record, StandardCharsets.UTF_8));
+			position += LogExportSpoolSegment.RECORD_HEADER_BYTES + record.length;
+			bytes += record.length;
+		}
+
+		return new Batch(head.getId(), position, records);
+	}
+
+	/**
+	 * Marks a batch returned by {@link #read(int, int)} as delivered. Batches from a segment that has since been
+	 * evicted are ignored.
+	 */
+	public synchronized void commit(Batch batch)
+	{
+		LogExportSpoolSegment head = segments.peekFirst();
+
+		if (batch.isEmpty() || head == null || head.getId() != batch.segmentId
+				|| batch.endPosition <= head.getReadPosition())
+		{
+			return;
+		}
+
+		head.markRead(batch.endPosition, batch.records.size());
+		pruneHead();
+	}
+
+	/**
+	 * Flushes the mapped segments to disk.
+	 */
+	public synchronized void force()
+	{
+		for (LogExportSpoolSegment segment : segments)
+		{
+			segment.force();
+		}
+	}
+
+	public synchronized boolean isEmpty()
+	{
+		return getPendingCount() == 0;
+	}
+
+	public synchronized long getPendingCount()
+	{
+		long pending = 0;
+		for (LogExportSpoolSegment segment : segments)
+		{
+			pending += segment.getUnreadCount();
+		}
+		return pending;
+	}
+
+	public synchronized long getSizeBytes()
+	{
+		long size = 0;
+		for (LogExportSpoolSegment segment : segments)
+		{
+			size += segment.getCapacity();
+		}
+		return size;
+	}
+
+	public long getAppendedCount()
+	{
+		return appendedCount.get();
+	}
+
+	public long getEvictedCount()
+	{
+		return evictedCount.get();
+	}
+
+	public long getRejectedCount()
+	{
+		return rejectedCount.get();
+	}
+
+	private void recover(File spoolDirectory)
+	{
+		TreeMap<Long, File> files = new TreeMap<>();
+
+		File[] candidates = spoolDirectory.listFiles();
+		for (File file : candidates == null ? new File[0] : candidates)
+		{
+			Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+			if (matcher.matches())
+			{
+				files.put(Long.parseLong(matcher.group(1)), file);
+			}
+		}
+
+		for (Long id : files.keySet())
+		{
+			File file = files.get(id);
+			nextSegmentId = id + 1;
+
+			try
+			{
+				LogExportSpoolSegment segment = LogExportSpoolSegment.open(id, file);
+				if (segment.isFullyRead())
+				{
+					segment.delete();
+				}
+				else
+				{
+					segments.addLast(segment);
+				}
+			}
+			catch (IOException e)
+			{
+				logger.error("Discarding unreadable log export spool segment " + file, e);
+				file.delete();
+			}
+		}
+	}
+
+	private LogExportSpoolSegment rollSegment() throws IOException
+	{
+		long maxSegments = Math.max(1, maxBytes / segmentBytes);
+
+		while (!segments.isEmpty() && segments.size() >= maxSegments)
+		{
+			LogExportSpoolSegment oldest = segments.removeFirst();
+			evictedCount.addAndGet(oldest.getUnreadCount());
+			oldest.delete();
+			logger.warn("Log export spool is full, evicted " + oldest.getUnreadCount() + " log messages.");
+		}
+
+		long id = nextSegmentId++;
+		File file = new File(directory, String.format("spool-%020d.seg", id));
+
+		LogExportSpoolSegment segment = LogExportSpoolSegment.create(id, file, segmentBytes);
+		segments.addLast(segment);
+		return segment;
+	}
+
+	/**
+	 * Deletes fully read segments from the front of the spool, keeping the segment that is being written to.
+	 */
+	private LogExportSpoolSegment pruneHead()
+	{
+		LogExportSpoolSegment head = segments.peekFirst();
+
+		while (head != null && head.isFullyRead() && segments.size() > 1)
+		{
+			segments.removeFirst().delete();
+			head = segments.peekFirst();
+		}
+
+		return head;
+	}
+
+	/**
+	 * Messages read from the spool that have not been committed yet.
+	 */
+	public static final class Batch
+	{
+		static final Batch EMPTY = new Batch(-1, -1, Collections.emptyList());
+
+		private final long segmentId;
+		private final int endPosition;
+		private final List<String> records;
+
+		private Batch(long segmentId, int endPosition, List<String> records)
+		{
+			this.segmentId = segmentId;
+			this.endPosition = endPosition;
+			this.records = records;
+		}
+
+		public List<String> getRecords()
+		{
+			return records;
+		}
+
+		public boolean isEmpty()
+		{
+			return records.isEmpty();
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * One fixed-size, memory-mapped file of a {@link LogExportSpool}.
+ *
+ * The file starts with a header holding the write position, read position and record counts, followed by
+ * length-prefixed records. Positions are kept in the mapped header, so a reopened segment resumes where the previous
+ * process stopped.
+ */
+final class LogExportSpoolSegment
+{
+	static final int HEADER_BYTES = 24;
+	static final int RECORD_HEADER_BYTES = 4;
+
+	private static final int MAGIC = 0x5a454e53;
+
+	private static final int MAGIC_OFFSET = 0;
+	private static final int WRITE_POSITION_OFFSET = 4;
+	private static final int READ_POSITION_OFFSET = 8;
+	private static final int WRITTEN_COUNT_OFFSET = 12;
+	private static final int READ_COUNT_OFFSET = 16;
+
+	private final long id;
+	private final File file;
+	private final MappedByteBuffer buffer;
+
+	private int writePosition;
+	private int readPosition;
+	private int writtenCount;
+	private int readCount;
+
+	private LogExportSpoolSegment(long id, File file, MappedByteBuffer buffer)
+	{
+		this.id = id;
+		this.file = file;
+		this.buffer = buffer;
+	}
+
+	static LogExportSpoolSegment create(long id, File file, int capacity) throws IOException
+	{
+		LogExportSpoolSegment segment = new LogExportSpoolSegment(id, file, map(file, capacity));
+		segment.buffer.putInt(MAGIC_OFFSET, MAGIC);
+		segment.writePosition = HEADER_BYTES;
+		segment.readPosition = HEADER_BYTES;
+		segment.writeHeader();
+		return segment;
+	}
+
+	static LogExportSpoolSegment open(long id, File file) throws IOException
+	{
+		if (file.length() < HEADER_BYTES || file.length() > Integer.MAX_VALUE)
+		{
+			throw new IOException("Spool segment " + file + " has an invalid length of " + file.length());
+		}
+
+		LogExportSpoolSegment segment = new LogExportSpoolSegment(id, file, map(file, (int) file.length()));
+		MappedByteBuffer buffer = segment.buffer;
+
+		segment.writePosition = buffer.getInt(WRITE_POSITION_OFFSET);
+		segment.readPosition = buffer.getInt(READ_POSITION_OFFSET);
+		segment.writtenCount = buffer.getInt(WRITTEN_COUNT_OFFSET);
+		segment.readCount = buffer.getInt(READ_COUNT_OFFSET);
+
+		if (buffer.getInt(MAGIC_OFFSET) != MAGIC || segment.writePosition < HEADER_BYTES
+				|| segment.writePosition > buffer.capacity() || segment.readPosition < HEADER_BYTES
+				|| segment.readPosition > segment.writePosition)
+		{
+			throw new IOException("Spool segment " + file + " has a corrupt header");
+		}
+
+		return segment;
+	}
+
+	private static MappedByteBuffer map(File file, int capacity) throws IOException
+	{
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+		{
+			if (randomAccessFile.length() < capacity)
+			{
+				randomAccessFile.setLength(capacity);
+			}
+
+			// The mapping stays valid after the channel is closed.
+			return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		}
+	}
+
+	/**
+	 * Appends the record, returning false if it does not fit in the remaining space.
+	 */
+	boolean append(byte[] record)
+	{
+		if (!hasRoomFor(record.length))
+		{
+			return false;
+		}
+
+		buffer.putInt(writePosition, record.length);
+
+		ByteBuffer target = buffer.duplicate();
+		target.position(writePosition + RECORD_HEADER_BYTES);
+		target.put(record);
+
+		// The record is written before the header points past it.
+		writePosition += RECORD_HEADER_BYTES + record.length;
+		writtenCount++;
+		writeHeader();
+		return true;
+	}
+
+	boolean hasRoomFor(int recordLength)
+	{
+		return (long) writePosition + RECORD_HEADER_BYTES + recordLength <= buffer.capacity();
+	}
+
+	/**
+	 * Reads the record starting at the given position.
+	 */
+	byte[] read(int position)
+	{
+		int length = buffer.getInt(position);
+
+		if (length < 0 || position + RECORD_HEADER_BYTES + length > writePosition)
+		{
+			throw new IllegalStateException("Spool segment " + file + " has a corrupt record at " + position);
+		}
+
+		byte[] record = new byte[length];
+		ByteBuffer source = buffer.duplicate();
+		source.position(position + RECORD_HEADER_BYTES);
+		source.get(record);
+		return record;
+	}
+
+	void markRead(int position, int records)
+	{
+		readPosition = position;
+		readCount += records;
+		writeHeader();
+	}
+
+	void force()
+	{
+		buffer.force();
+	}
+
+	/**
+	 * Deletes the file. The mapping itself is released when the buffer is garbage collected.
+	 */
+	boolean delete()
+	{
+		return file.delete();
+	}
+
+	private void writeHeader()
+	{
+		buffer.putInt(WRITE_POSITION_OFFSET, writePosition);
+		buffer.putInt(READ_POSITION_OFFSET, readPosition);
+		buffer.putInt(WRITTEN_COUNT_OFFSET, writtenCount);
+		buffer.putInt(READ_COUNT_OFFSET, readCount);
+	}
+
+	long getId()
+	{
+		return id;
+	}
+
+	File getFile()
+	{
+		return file;
+	}
+
+	int getCapacity()
+	{
+		return buffer.capacity();
+	}
+
+	int getWritePosition()
+	{
+		return writePosition;
+	}
+
+	int getReadPosition()
+	{
+		return readPosition;
+	}
+
+	int getUnreadCount()
+	{
+		return writtenCount - readCount;
+	}
+
+	boolean isFullyRead()
+	{
+		return readPosition >= writePosition;
+	}
+}
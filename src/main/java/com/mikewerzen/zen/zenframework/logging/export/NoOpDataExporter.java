@@ -23,11 +23,11 @@
 
 package com.mikewerzen.zen.zenframework.logging.export;
 
-import org.springframework.context.annotation.Primary;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 @Component
-@Primary
+@ConditionalOnProperty(name = "log.export.enabled", havingValue = "false", matchIfMissing = true)
 public class NoOpDataExporter implements LogDataExporter
 {
 	@Override public void exportLogMessage(String logMessage)
@@ -0,0 +1,512 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.export;
+
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Queues log messages in memory and sends them to the Splunk HTTP Event Collector in batches.
+ *
+ * A batch is flushed once it reaches log.export.splunk.batch.maxEvents events or log.export.splunk.batch.maxBytes
+ * bytes, or once its oldest event has waited log.export.splunk.batch.lingerMs. Each batch is sent as one
+ * newline-delimited, gzip-compressed POST. Enabled by log.export.splunk.mode=batch.
+ *
+ * When a {@link LogExportSpool} is enabled, messages that do not fit in the queue and batches Splunk does not accept
+ * are spooled to disk instead of dropped. While Splunk is failing, new batches go straight to the spool and delivery
+ * is retried every log.export.splunk.batch.retryIntervalMs; once it succeeds the spool is replayed.
+ */
+@Component
+@ConditionalOnExpression("${log.export.enabled:false} && '${log.export.splunk.mode:direct}' == 'batch'")
+public class SplunkBatchDataExporter extends AbstractSplunkDataExporter
+{
+	private static final Logger logger = LogManager.getLogger(SplunkBatchDataExporter.class);
+
+	private static final byte NEWLINE = '\n';
+
+	@Value("${log.export.splunk.batch.maxEvents:500}")
+	private int maxEvents = 500;
+
+	@Value("${log.export.splunk.batch.maxBytes:1048576}")
+	private int maxBytes = 1048576;
+
+	@Value("${log.export.splunk.batch.lingerMs:1000}")
+	private long lingerMs = 1000;
+
+	@Value("${log.export.splunk.batch.queueCapacity:10000}")
+	private int queueCapacity = 10000;
+
+	@Value("${log.export.splunk.batch.overflowPolicy:DROP}")
+	private LogExportOverflowPolicy overflowPolicy = LogExportOverflowPolicy.DROP;
+
+	@Value("${log.export.splunk.batch.blockTimeoutMs:100}")
+	private long blockTimeoutMs = 100;
+
+	@Value("${log.export.splunk.batch.gzip:true}")
+	private boolean gzip = true;
+
+	@Value("${log.export.splunk.batch.retryIntervalMs:5000}")
+	private long retryIntervalMs = 5000;
+
+	@Autowired(required = false)
+	private LogExportSpool spool;
+
+	private final AtomicLong queuedCount = new AtomicLong();
+	private final AtomicLong sentCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong spooledCount = new AtomicLong();
+	private final AtomicLong replayedCount = new AtomicLong();
+
+	private RestTemplate restTemplate = buildRestTemplate();
+
+	private volatile BlockingQueue<String> queue;
+	private volatile boolean running;
+	private volatile boolean sinkHealthy = true;
+	private long nextRetryNanos;
+	private Thread flusher;
+
+	@PostConstruct
+	public synchronized void start()
+	{
+		if (running)
+		{
+			return;
+		}
+
+		getQueue();
+		running = true;
+
+		MetricsRegistry.registerGauge("zen_log_export_queue_depth", "Log messages waiting to be batched.", this::getQueueDepth);
+		MetricsRegistry.registerGauge("zen_log_export_sink_healthy", "1 if Splunk is accepting log messages.", () -> sinkHealthy ? 1 : 0);
+		MetricsRegistry.registerCounter("zen_log_export_sent_total", "Log messages accepted by Splunk.", this::getSentCount);
+		MetricsRegistry.registerCounter("zen_log_export_dropped_total", "Log messages dropped because the queue was full.", this::getDroppedCount);
+		MetricsRegistry.registerCounter("zen_log_export_failed_total", "Log messages that could not be delivered or spooled.", this::getFailedCount);
+		MetricsRegistry.registerCounter("zen_log_export_spooled_total", "Log messages written to the spool.", this::getSpooledCount);
+		MetricsRegistry.registerCounter("zen_log_export_replayed_total", "Spooled log messages delivered to Splunk.", this::getReplayedCount);
+
+		flusher = new Thread(this::flushUntilStopped, "zen-splunk-batch-exporter");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	@PreDestroy
+	public synchronized void stop()
+	{
+		if (!running)
+		{
+			return;
+		}
+
+		running = false;
+		flusher.interrupt();
+
+		try
+		{
+			flusher.join(TimeUnit.SECONDS.toMillis(30));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void exportLogMessage(String logMessage)
+	{
+		if (logMessage == null)
+		{
+			return;
+		}
+
+		if (offer(logMessage))
+		{
+			queuedCount.incrementAndGet();
+		}
+		else if (spool != null && spool.append(logMessage))
+		{
+			spooledCount.incrementAndGet();
+		}
+		else
+		{
+			droppedCount.incrementAndGet();
+			logger.debug("Splunk export queue is full, dropping log message.");
+		}
+	}
+
+	/**
+	 * Sends everything currently queued, regardless of the batch thresholds. Anything that cannot be sent is spooled
+	 * if a spool is enabled, and the spool is forced to disk.
+	 */
+	public void flush()
+	{
+		List<String> batch = new ArrayList<>(maxEvents);
+
+		while (drainBatch(batch) > 0)
+		{
+			dispatch(batch);
+			batch.clear();
+		}
+
+		if (spool != null)
+		{
+			spool.force();
+		}
+	}
+
+	public long getQueuedCount()
+	{
+		return queuedCount.get();
+	}
+
+	public long getSentCount()
+	{
+		return sentCount.get();
+	}
+
+	public long getDroppedCount()
+	{
+		return droppedCount.get();
+	}
+
+	public long getFailedCount()
+	{
+		return failedCount.get();
+	}
+
+	public long getSpooledCount()
+	{
+		return spooledCount.get();
+	}
+
+	public long getReplayedCount()
+	{
+		return replayedCount.get();
+	}
+
+	public int getQueueDepth()
+	{
+		return getQueue().size();
+	}
+
+	public boolean isSinkHealthy()
+	{
+		return sinkHealthy;
+	}
+
+	private boolean offer(String logMessage)
+	{
+		if (overflowPolicy == LogExportOverflowPolicy.BLOCK)
+		{
+			try
+			{
+				return getQueue().offer(logMessage, blockTimeoutMs, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		return getQueue().offer(logMessage);
+	}
+
+	private BlockingQueue<String> getQueue()
+	{
+		BlockingQueue<String> current = queue;
+
+		if (current == null)
+		{
+			synchronized (this)
+			{
+				if (queue == null)
+				{
+					queue = new ArrayBlockingQueue<>(queueCapacity);
+				}
+				current = queue;
+			}
+		}
+
+		return current;
+	}
+
+	private void flushUntilStopped()
+	{
+		List<String> batch = new ArrayList<>(maxEvents);
+
+		while (running)
+		{
+			try
+			{
+				collectBatch(batch, hasReplayWork() ? 0 : lingerMs);
+			}
+			catch (InterruptedException e)
+			{
+				// Interrupted by stop(), anything collected so far is still sent.
+			}
+
+			if (!batch.isEmpty())
+			{
+				dispatch(batch);
+				batch.clear();
+			}
+
+			replaySpool();
+		}
+
+		flush();
+	}
+
+	/**
+	 * Waits up to firstWaitMs for the first event, then collects events until a batch threshold or the linger time is
+	 * reached.
+	 */
+	private void collectBatch(List<String> batch, long firstWaitMs) throws InterruptedException
+	{
+		BlockingQueue<String> events = getQueue();
+
+		String first = events.poll(firstWaitMs, TimeUnit.MILLISECONDS);
+		if (first == null)
+		{
+			return;
+		}
+
+		batch.add(first);
+		long batchBytes = first.length();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+
+		while (batch.size() < maxEvents && batchBytes < maxBytes)
+		{
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0)
+			{
+				break;
+			}
+
+			String next = events.poll(remaining, TimeUnit.NANOSECONDS);
+			if (next == null)
+			{
+				break;
+			}
+
+			batch.add(next);
+			batchBytes += next.length();
+		}
+	}
+
+	private int drainBatch(List<String> batch)
+	{
+		BlockingQueue<String> events = getQueue();
+		long batchBytes = 0;
+
+		while (batch.size() < maxEvents && batchBytes < maxBytes)
+		{
+			String next = events.poll();
+			if (next == null)
+			{
+				break;
+			}
+
+			batch.add(next);
+			batchBytes += next.length();
+		}
+
+		return batch.size();
+	}
+
+	/**
+	 * Sends the batch, or spools it if Splunk is known to be failing or does not accept it.
+	 */
+	private void dispatch(List<String> batch)
+	{
+		if ((sinkHealthy || spool == null) && send(batch))
+		{
+			return;
+		}
+
+		if (spool == null)
+		{
+			failedCount.addAndGet(batch.size());
+			return;
+		}
+
+		markSinkUnhealthy();
+
+		for (String logMessage : batch)
+		{
+			if (spool.append(logMessage))
+			{
+				spooledCount.incrementAndGet();
+			}
+			else
+			{
+				failedCount.incrementAndGet();
+			}
+		}
+	}
+
+	private boolean hasReplayWork()
+	{
+		return spool != null && sinkHealthy && !spool.isEmpty();
+	}
+
+	/**
+	 * Sends one batch from the spool. While Splunk is failing this only happens once per retry interval.
+	 */
+	private void replaySpool()
+	{
+		if (spool == null || (!sinkHealthy && System.nanoTime() - nextRetryNanos < 0))
+		{
+			return;
+		}
+
+		LogExportSpool.Batch spooled = spool.read(maxEvents, maxBytes);
+		if (spooled.isEmpty())
+		{
+			return;
+		}
+
+		if (send(spooled.getRecords()))
+		{
+			spool.commit(spooled);
+			replayedCount.addAndGet(spooled.getRecords().size());
+
+			if (!sinkHealthy)
+			{
+				sinkHealthy = true;
+				logger.info("Splunk is accepting log messages again, replaying " + spool.getPendingCount() + " spooled log messages.");
+			}
+		}
+		else
+		{
+			markSinkUnhealthy();
+		}
+	}
+
+	private void markSinkUnhealthy()
+	{
+		nextRetryNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryIntervalMs);
+
+		if (sinkHealthy)
+		{
+			sinkHealthy = false;
+			logger.warn("Splunk is not accepting log messages, spooling to disk and retrying every " + retryIntervalMs + "ms.");
+		}
+	}
+
+	private boolean send(List<String> batch)
+	{
+		try
+		{
+			byte[] body = encodeBatch(batch);
+
+			HttpHeaders headers = buildHeaders();
+			if (gzip)
+			{
+				headers.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+			}
+
+			RequestEntity<byte[]> requestEntity = new RequestEntity<>(body, headers, HttpMethod.POST, URI.create(splunkUrl));
+
+			logger.debug("Exporting batch of " + batch.size() + " log messages to Splunk");
+			ResponseEntity<String> response = restTemplate.exchange(requestEntity, String.class);
+
+			if (response.getStatusCode().is2xxSuccessful())
+			{
+				sentCount.addAndGet(batch.size());
+				return true;
+			}
+
+			logger.error("Splunk rejected a batch of " + batch.size() + " log messages with status " + response.getStatusCodeValue());
+		}
+		catch (Exception e)
+		{
+			logger.error("Could not export a batch of " + batch.size() + " log messages to Splunk!", e);
+		}
+
+		return false;
+	}
+
+	private byte[] encodeBatch(List<String> batch) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(estimateSize(batch));
+		OutputStream outputStream = gzip ? new GZIPOutputStream(bytes, 8192) : bytes;
+
+		try (Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))
+		{
+			String prefix = getEventPrefix();
+			String suffix = getEventSuffix();
+
+			for (String logMessage : batch)
+			{
+				writer.write(prefix);
+				writer.write(logMessage);
+				writer.write(suffix);
+				writer.write(NEWLINE);
+			}
+		}
+
+		return bytes.toByteArray();
+	}
+
+	private int estimateSize(List<String> batch)
+	{
+		long size = 0;
+		for (String logMessage : batch)
+		{
+			size += logMessage.length() + getEventPrefix().length() + 2;
+		}
+
+		// Log messages typically compress at least 4:1.
+		return (int) Math.min(Integer.MAX_VALUE - 8, gzip ? size / 4 + 64 : size);
+	}
+}
@@ -24,87 +24,132 @@ package com.mikewerzen.zen.zenframework.logging.export;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
 import java.net.URI;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Sends each log message to Splunk in its own request on the {@link LogExportExecutor}. Enabled by
+ * log.export.splunk.mode=direct, the default.
+ *
+ * When a {@link LogExportSpool} is enabled, messages Splunk does not accept, and messages the saturated executor
+ * discards, are spooled to disk instead of dropped. The spool is replayed one message at a time after the next message
+ * that is accepted.
+ */
 @Component
-public class SplunkDataExporter implements LogDataExporter
+@ConditionalOnExpression("${log.export.enabled:false} && '${log.export.splunk.mode:direct}' == 'direct'")
+public class SplunkDataExporter extends AbstractSplunkDataExporter
 {
 	private static final Logger logger = LogManager.getLogger(SplunkDataExporter.class);
 
-	@Value("${log.export.splunk.url}")
-	private String splunkUrl = null;
-
-	@Value("${log.export.splunk.token}")
-	private String token = null;
+	@Autowired
+	private LogExportExecutor logExportExecutor;
 
-	@Value("${log.export.splunk.index}")
-	private String index = null;
+	@Autowired(required = false)
+	private LogExportSpool spool;
 
-	@Value("${log.export.splunk.source}")
-	private String source = null;
-
-	@Value("${log.export.splunk.sourcetype}")
-	private String sourcetype = null;
-
-	@Value("${log.export.splunk.host}")
-	private String host = null;
+	private final AtomicBoolean replaying = new AtomicBoolean();
 
 	private RestTemplate restTemplate = buildRestTemplate();
 
 	@Override
-	@Async
 	public void exportLogMessage(String logMessage)
 	{
+		logExportExecutor.execute(new ExportTask(logMessage));
+	}
+
+	private void export(String logMessage)
+	{
+		if (send(logMessage))
+		{
+			replaySpool();
+		}
+		else
+		{
+			spool(logMessage);
+		}
+	}
+
+	private void spool(String logMessage)
+	{
+		if (spool != null && !spool.append(logMessage))
+		{
+			logger.error("Could not spool log message that was not exported to Splunk.");
+		}
+	}
+
+	/**
+	 * Resends spooled messages until the spool is empty or Splunk stops accepting them. Only one thread replays at a
+	 * time.
+	 */
+	private void replaySpool()
+	{
+		if (spool == null || spool.isEmpty() || !replaying.compareAndSet(false, true))
+		{
+			return;
+		}
+
 		try
 		{
-			RequestEntity<String> requestEntity = new RequestEntity<String>(buildBody(logMessage), buildHeaders(), HttpMethod.POST, URI.create(splunkUrl));
+			while (true)
+			{
+				LogExportSpool.Batch spooled = spool.read(1, Integer.MAX_VALUE);
+				if (spooled.isEmpty() || !send(spooled.getRecords().get(0)))
+				{
+					return;
+				}
+				spool.commit(spooled);
+			}
+		}
+		finally
+		{
+			replaying.set(false);
+		}
+	}
+
+	private boolean send(String logMessage)
+	{
+		try
+		{
+			RequestEntity<String> requestEntity = new RequestEntity<String>(buildEvent(logMessage), buildHeaders(), HttpMethod.POST, URI.create(splunkUrl));
 
 			logger.debug("Exporting log message to Splunk");
 			ResponseEntity<String> response = restTemplate.exchange(requestEntity, String.class);
+			return true;
 		}
 		catch (Exception e)
 		{
 			logger.error("Could not export log data to Splunk!", e);
+			return false;
 		}
-
 	}
 
-	private MultiValueMap<String, String> buildHeaders()
+	private class ExportTask implements LogExportExecutor.DiscardableTask
 	{
-		MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
-		headers.add("Authorization", "Splunk " + token);
-		return headers;
-	}
+		private final String logMessage;
 
-	private String buildBody(String logMessage)
-	{
-		return new StringBuilder()
-				.append("{")
-				.append("\"index\": ").append("\"").append(index).append("\",")
-				.append("\"source\": ").append("\"").append(source).append("\",")
-				.append("\"sourcetype\": ").append("\"").append(sourcetype).append("\",")
-				.append("\"host\": ").append("\"").append(host).append("\",")
-				.append("\"event\": ").append(logMessage)
-				.append("}")
-				.toString();
-	}
+		private ExportTask(String logMessage)
+		{
+			this.logMessage = logMessage;
+		}
 
-	private RestTemplate buildRestTemplate()
-	{
-		return new RestTemplateBuilder()
-				.setConnectTimeout(15000)
-				.setReadTimeout(15000)
-				.build();
+		@Override
+		public void run()
+		{
+			export(logMessage);
+		}
+
+		@Override
+		public void discard()
+		{
+			spool(logMessage);
+		}
 	}
 }
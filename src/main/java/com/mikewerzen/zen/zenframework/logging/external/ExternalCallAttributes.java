@@ -32,6 +32,11 @@ public class ExternalCallAttributes
 	public final String serviceMethod;
 
 	public final Boolean success;
+
+	/**
+	 * Which attempt of the call this was, counting from 1.
+	 */
+	public final int attempt;
 	public final Integer httpStatusCode;
 	public final String externalResponseCode;
 	public final String externalResponseMessage;
@@ -50,11 +55,23 @@ public class ExternalCallAttributes
 	public final long endTime;
 	public final long runtime;
 
+	/**
+	 * System.nanoTime() at the start and end of the call, for ordering calls made by different threads.
+	 */
+	public final long startNanos;
+	public final long endNanos;
+
+	/**
+	 * Time spent waiting for a pooled connection before the request was sent.
+	 */
+	public final long poolWaitNanos;
+
 	ExternalCallAttributes(String systemName, String serviceName, String serviceOperation, String serviceVersion,
-			String serviceMethod, Boolean success, Integer httpStatusCode, String externalResponseCode,
+			String serviceMethod, Boolean success, int attempt, Integer httpStatusCode, String externalResponseCode,
 			String externalResponseMessage, String requestTraceId, String requestCorrelationId, String
 			requestSessionId, String requestClientIp, String requestDeviceId, String requestDeviceType, String
-			externalTraceId, long startTime, long endTime, long runtime, Throwable throwable)
+			externalTraceId, long startTime, long endTime, long runtime, long startNanos, long endNanos,
+			long poolWaitNanos, Throwable throwable)
 	{
 		this.systemName = systemName;
 		this.serviceName = serviceName;
@@ -63,6 +80,7 @@ public class ExternalCallAttributes
 		this.serviceMethod = serviceMethod;
 
 		this.success = success;
+		this.attempt = attempt;
 		this.httpStatusCode = httpStatusCode;
 		this.externalResponseCode = externalResponseCode;
 		this.externalResponseMessage = externalResponseMessage;
@@ -78,6 +96,9 @@ public class ExternalCallAttributes
 		this.startTime = startTime;
 		this.endTime = endTime;
 		this.runtime = runtime;
+		this.startNanos = startNanos;
+		this.endNanos = endNanos;
+		this.poolWaitNanos = poolWaitNanos;
 		this.throwable = throwable;
 	}
 }
@@ -22,7 +22,8 @@
 
 package com.mikewerzen.zen.zenframework.logging.external;
 
-import com.mikewerzen.zen.zenframework.logging.context.LoggingContextHolder;
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
 import com.mikewerzen.zen.zenframework.rest.request.ZenHttpHeaders;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -49,12 +50,16 @@ public class ExternalCallAttributesBuilder
 	private String requestDeviceType;
 
 	private long startTime;
+	private long startNanos;
+	private long poolWaitNanos;
 	private Throwable throwable;
 	private boolean isSuccess = true;
+	private int attempt = 1;
 
 	public ExternalCallAttributesBuilder(String systemName, String serviceName, String serviceMethod, String serviceOperation, String serviceVersion)
 	{
 		startTime = System.currentTimeMillis();
+		startNanos = System.nanoTime();
 		this.systemName = systemName;
 		this.serviceMethod = serviceMethod;
 		this.serviceName = serviceName;
@@ -146,24 +151,57 @@ public class ExternalCallAttributesBuilder
 		return this;
 	}
 
+	public ExternalCallAttributesBuilder setAttempt(int attempt)
+	{
+		this.attempt = attempt;
+		return this;
+	}
+
+	public ExternalCallAttributesBuilder setPoolWaitNanos(long poolWaitNanos)
+	{
+		this.poolWaitNanos = poolWaitNanos;
+		return this;
+	}
+
+	public Integer getHttpStatusCode()
+	{
+		return httpStatusCode;
+	}
+
+	public Throwable getThrowable()
+	{
+		return throwable;
+	}
+
+	public boolean isSuccess()
+	{
+		return isSuccess;
+	}
+
 	public void buildAndCommit(boolean success)
 	{
 		isSuccess = success;
-		LoggingContextHolder.getContextOptional().ifPresent(loggingContext -> loggingContext.addExternalCall(build()));
+		buildAndCommit();
 	}
 
 	public void buildAndCommit()
 	{
-		LoggingContextHolder.getContextOptional().ifPresent(loggingContext -> loggingContext.addExternalCall(build()));
+		LoggingContext loggingContext = ZenScope.currentLoggingContext();
+		if (loggingContext != null)
+		{
+			loggingContext.addExternalCall(build());
+		}
 	}
 
 	private ExternalCallAttributes build()
 	{
 		long endTime = System.currentTimeMillis();
+		long endNanos = System.nanoTime();
 		long runtime = endTime - startTime;
 		return new ExternalCallAttributes(systemName, serviceName, serviceOperation, serviceVersion, serviceMethod,
-				isSuccess, httpStatusCode, externalResponseCode, externalResponseMessage, requestTraceId,
+				isSuccess, attempt, httpStatusCode, externalResponseCode, externalResponseMessage, requestTraceId,
 				requestCorrelationId, requestSessionId, requestClientIp, requestDeviceId, requestDeviceType,
-				externalTraceId, startTime, endTime, runtime, throwable);
+				externalTraceId, startTime, endTime, runtime, startNanos, endNanos, poolWaitNanos,
+				throwable);
 	}
 }
\ No newline at end of file
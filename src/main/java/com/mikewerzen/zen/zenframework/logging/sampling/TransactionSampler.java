@@ -0,0 +1,190 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.sampling;
+
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import com.mikewerzen.zen.zenframework.transaction.context.TransactionContext;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a completed transaction is written to the transaction log.
+ *
+ * Errors and transactions slower than their latency threshold are always kept. Everything else is kept if the
+ * transaction was sampled when it started: either because the caller sent an X-Sampled header, or because the hash of
+ * its correlation id (or request id, for the first service in a chain) falls under log.sampling.rate. The hash is the
+ * same in every service, so a correlation id is sampled consistently even by services that did not receive the
+ * header.
+ *
+ * Latency thresholds can be set per service or per operation with
+ * log.sampling.latencyThresholds=serviceName=500,serviceName:serviceOperation=250
+ */
+@Component
+public class TransactionSampler
+{
+	@Value("${log.sampling.enabled:false}")
+	private boolean enabled = false;
+
+	@Value("${log.sampling.rate:1.0}")
+	private double rate = 1.0;
+
+	@Value("${log.sampling.latencyThresholdMs:1000}")
+	private long latencyThresholdMs = 1000;
+
+	@Value("${log.sampling.latencyThresholds:}")
+	private String latencyThresholds = "";
+
+	private Map<String, Long> serviceThresholds = Collections.emptyMap();
+	private Map<String, Map<String, Long>> operationThresholds = Collections.emptyMap();
+
+	private final AtomicLong keptCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	@PostConstruct
+	public void initialize()
+	{
+		Map<String, Long> services = new HashMap<>();
+		Map<String, Map<String, Long>> operations = new HashMap<>();
+
+		for (String entry : StringUtils.split(StringUtils.defaultString(latencyThresholds), ','))
+		{
+			String[] keyValue = StringUtils.split(entry, '=');
+			if (keyValue.length != 2)
+			{
+				throw new IllegalArgumentException("Invalid log.sampling.latencyThresholds entry: " + entry);
+			}
+
+			String key = keyValue[0].trim();
+			long threshold = Long.parseLong(keyValue[1].trim());
+			int separator = key.indexOf(':');
+			if (separator < 0)
+			{
+				services.put(key, threshold);
+			}
+			else
+			{
+				operations.computeIfAbsent(key.substring(0, separator), service -> new HashMap<>())
+						.put(key.substring(separator + 1), threshold);
+			}
+		}
+
+		serviceThresholds = services;
+		operationThresholds = operations;
+
+		MetricsRegistry.registerCounter("zen_log_sampling_kept_total", "Transactions logged by the sampler.", this::getKeptCount);
+		MetricsRegistry.registerCounter("zen_log_sampling_dropped_total", "Transactions not logged by the sampler.", this::getDroppedCount);
+	}
+
+	/**
+	 * Makes the head sampling decision for an inbound transaction. An upstream decision is always honoured; when
+	 * sampling is disabled and there is none, null is returned so nothing is propagated. The sampling key is never
+	 * null; the caller falls back to the internal trace id.
+	 */
+	public Boolean sample(Boolean upstreamDecision, String samplingKey)
+	{
+		if (upstreamDecision != null || !enabled)
+		{
+			return upstreamDecision;
+		}
+
+		return isUnderRate(samplingKey);
+	}
+
+	/**
+	 * Returns true if the completed transaction should be logged.
+	 */
+	public boolean shouldLog(TransactionContext transactionContext, LoggingContext loggingContext, Object response)
+	{
+		if (!enabled || transactionContext == null || loggingContext == null)
+		{
+			return true;
+		}
+
+		boolean keep = loggingContext.getThrowable() != null || isError(response)
+				|| isSlow(transactionContext, System.currentTimeMillis() - loggingContext.getStartTime())
+				|| !Boolean.FALSE.equals(transactionContext.getSampled());
+
+		(keep ? keptCount : droppedCount).incrementAndGet();
+		return keep;
+	}
+
+	public long getKeptCount()
+	{
+		return keptCount.get();
+	}
+
+	public long getDroppedCount()
+	{
+		return droppedCount.get();
+	}
+
+	private boolean isUnderRate(String samplingKey)
+	{
+		if (rate >= 1.0)
+		{
+			return true;
+		}
+
+		// Spread String.hashCode, which is stable across JVMs, with the murmur3 finalizer.
+		long hash = samplingKey.hashCode();
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+
+		return (hash >>> 11) * 0x1.0p-53 < rate;
+	}
+
+	private boolean isError(Object response)
+	{
+		return response instanceof ResponseEntity && ((ResponseEntity<?>) response).getStatusCodeValue() >= 400;
+	}
+
+	private boolean isSlow(TransactionContext context, long runtime)
+	{
+		return runtime > getLatencyThreshold(context.getServiceName(), context.getServiceOperation());
+	}
+
+	private long getLatencyThreshold(String serviceName, String serviceOperation)
+	{
+		Map<String, Long> operations = operationThresholds.get(serviceName);
+		Long threshold = operations == null ? null : operations.get(serviceOperation);
+		if (threshold == null)
+		{
+			threshold = serviceThresholds.get(serviceName);
+		}
+
+		return threshold == null ? latencyThresholdMs : threshold;
+	}
+}
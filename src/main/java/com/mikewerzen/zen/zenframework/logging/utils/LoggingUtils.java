@@ -22,6 +22,7 @@
 
 package com.mikewerzen.zen.zenframework.logging.utils;
 
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
 import com.mikewerzen.zen.zenframework.logging.context.LoggingContextHolder;
 
 public class LoggingUtils
@@ -36,32 +37,40 @@ public class LoggingUtils
 
 	public static void logAuthenticationPassed()
 	{
-		LoggingContextHolder
-				.getContextOptional().ifPresent(loggingContext -> loggingContext.addField(AUTHENTICATED, PASSED));
+		addField(AUTHENTICATED, PASSED);
 	}
 
 	public static void logAuthenticationSkipped()
 	{
-		LoggingContextHolder.getContextOptional().ifPresent(loggingContext -> loggingContext.addField(AUTHENTICATED, SKIPPED));
+		addField(AUTHENTICATED, SKIPPED);
 	}
 
 	public static void logAuthenticationFailed()
 	{
-		LoggingContextHolder.getContextOptional().ifPresent(loggingContext -> loggingContext.addField(AUTHENTICATED, FAILED));
+		addField(AUTHENTICATED, FAILED);
 	}
 
 	public static void logAuthorizationPassed()
 	{
-		LoggingContextHolder.getContextOptional().ifPresent(loggingContext -> loggingContext.addField(AUTHORIZATION, PASSED));
+		addField(AUTHORIZATION, PASSED);
 	}
 
 	public static void logAuthorizationSkipped()
 	{
-		LoggingContextHolder.getContextOptional().ifPresent(loggingContext -> loggingContext.addField(AUTHORIZATION, SKIPPED));
+		addField(AUTHORIZATION, SKIPPED);
 	}
 
 	public static void logAuthorizationFailed()
 	{
-		LoggingContextHolder.getContextOptional().ifPresent(loggingContext -> loggingContext.addField(AUTHORIZATION, FAILED));
+		addField(AUTHORIZATION, FAILED);
+	}
+
+	private static void addField(String key, String value)
+	{
+		LoggingContext loggingContext = LoggingContextHolder.getContextOrNull();
+		if (loggingContext != null)
+		{
+			loggingContext.addField(key, value);
+		}
 	}
 }
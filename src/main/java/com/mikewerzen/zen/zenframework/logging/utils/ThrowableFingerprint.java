@@ -0,0 +1,121 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.logging.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Identifies recurring errors: two throwables get the same fingerprint when every level of their cause chain has the
+ * same class and the same top stack frames. Messages are ignored, so errors that only differ by the ids or values in
+ * their messages group together.
+ *
+ * The stack trace of each level is read once and kept, so callers can render it without calling getStackTrace() again.
+ */
+public final class ThrowableFingerprint
+{
+	/**
+	 * Number of top frames that are part of the fingerprint, and that the log builders render.
+	 */
+	public static final int FRAMES = 3;
+
+	private static final int MAX_CAUSES = 16;
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final String id;
+	private final Throwable[] chain;
+	private final StackTraceElement[][] stackTraces;
+
+	private ThrowableFingerprint(String id, Throwable[] chain, StackTraceElement[][] stackTraces)
+	{
+		this.id = id;
+		this.chain = chain;
+		this.stackTraces = stackTraces;
+	}
+
+	public static ThrowableFingerprint of(Throwable throwable)
+	{
+		List<Throwable> causes = new ArrayList<>(4);
+		for (Throwable cause = throwable; cause != null && causes.size() < MAX_CAUSES; cause = cause.getCause())
+		{
+			causes.add(cause);
+		}
+
+		Throwable[] chain = causes.toArray(new Throwable[0]);
+		StackTraceElement[][] stackTraces = new StackTraceElement[chain.length][];
+		long hash = FNV_OFFSET_BASIS;
+
+		for (int level = 0; level < chain.length; level++)
+		{
+			StackTraceElement[] stackTrace = chain[level].getStackTrace();
+			stackTraces[level] = stackTrace;
+
+			hash = mix(hash, chain[level].getClass().getName().hashCode());
+			for (int i = 0; i < FRAMES && i < stackTrace.length; i++)
+			{
+				hash = mix(hash, stackTrace[i].getClassName().hashCode());
+				hash = mix(hash, stackTrace[i].getMethodName().hashCode());
+				hash = mix(hash, stackTrace[i].getLineNumber());
+			}
+		}
+
+		return new ThrowableFingerprint(toHex(hash), chain, stackTraces);
+	}
+
+	private static long mix(long hash, int value)
+	{
+		return (hash ^ (value & 0xffffffffL)) * FNV_PRIME;
+	}
+
+	private static String toHex(long hash)
+	{
+		String hex = Long.toHexString(hash);
+		return hex.length() == 16 ? hex : "0000000000000000".substring(hex.length()) + hex;
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Number of levels in the cause chain, starting with the throwable itself.
+	 */
+	public int getDepth()
+	{
+		return chain.length;
+	}
+
+	public Throwable getThrowable(int level)
+	{
+		return chain[level];
+	}
+
+	public StackTraceElement[] getStackTrace(int level)
+	{
+		return stackTraces[level];
+	}
+}
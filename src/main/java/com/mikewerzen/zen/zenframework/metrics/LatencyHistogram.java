@@ -0,0 +1,259 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds.
+ *
+ * Values are counted in log-linear buckets: every power of two is split into 32 linear sub-buckets, so any recorded
+ * value is reported within about 3% of its true value, from nanoseconds up to centuries, in a fixed 15KB of counters.
+ * Recording is a handful of atomic increments and never allocates; {@link #snapshot()} reads the counters without
+ * stopping writers, so a snapshot taken under load may be off by the few values recorded while it was being taken.
+ */
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1;
+	private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos)
+	{
+		long value = Math.max(0, nanos);
+
+		counts.incrementAndGet(bucketOf(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+
+		long currentMin;
+		while (value < (currentMin = min.get()) && !min.compareAndSet(currentMin, value))
+		{
+		}
+
+		long currentMax;
+		while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value))
+		{
+		}
+	}
+
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	public Snapshot snapshot()
+	{
+		long[] copy = new long[BUCKET_COUNT];
+		long copiedCount = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			copy[i] = counts.get(i);
+			copiedCount += copy[i];
+		}
+
+		long snapshotMax = max.get();
+		long snapshotMin = copiedCount == 0 ? 0 : Math.min(min.get(), snapshotMax);
+
+		return new Snapshot(copy, copiedCount, total.get(), snapshotMin, snapshotMax,
+				valueAtQuantile(copy, copiedCount, 0.5, snapshotMax),
+				valueAtQuantile(copy, copiedCount, 0.9, snapshotMax),
+				valueAtQuantile(copy, copiedCount, 0.99, snapshotMax),
+				valueAtQuantile(copy, copiedCount, 0.999, snapshotMax));
+	}
+
+	static int bucketOf(long value)
+	{
+		if (value < LINEAR_LIMIT)
+		{
+			return (int) value;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+		return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * The largest value that falls into the bucket.
+	 */
+	static long highestValueOf(int bucket)
+	{
+		if (bucket < LINEAR_LIMIT)
+		{
+			return bucket;
+		}
+
+		int offset = bucket - LINEAR_LIMIT;
+		int shift = offset / SUB_BUCKET_COUNT + 1;
+		long subBucket = offset % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	private static long valueAtQuantile(long[] counts, long totalCount, double quantile, long max)
+	{
+		if (totalCount == 0)
+		{
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(quantile * totalCount));
+		long seen = 0;
+
+		for (int i = 0; i < counts.length; i++)
+		{
+			seen += counts[i];
+			if (seen >= rank)
+			{
+				return Math.min(highestValueOf(i), max);
+			}
+		}
+
+		return max;
+	}
+
+	/**
+	 * Point-in-time view of a histogram. All values are in nanoseconds.
+	 */
+	public static final class Snapshot
+	{
+		private final long[] counts;
+		private final long count;
+		private final long total;
+		private final long min;
+		private final long max;
+		private final long p50;
+		private final long p90;
+		private final long p99;
+		private final long p999;
+
+		private Snapshot(long[] counts, long count, long total, long min, long max, long p50, long p90, long p99,
+				long p999)
+		{
+			this.counts = counts;
+			this.count = count;
+			this.total = total;
+			this.min = min;
+			this.max = max;
+			this.p50 = p50;
+			this.p90 = p90;
+			this.p99 = p99;
+			this.p999 = p999;
+		}
+
+		public long getCount()
+		{
+			return count;
+		}
+
+		public long getTotal()
+		{
+			return total;
+		}
+
+		public long getMin()
+		{
+			return min;
+		}
+
+		public long getMax()
+		{
+			return max;
+		}
+
+		public long getMean()
+		{
+			return count == 0 ? 0 : total / count;
+		}
+
+		public long getP50()
+		{
+			return p50;
+		}
+
+		public long getP90()
+		{
+			return p90;
+		}
+
+		public long getP99()
+		{
+			return p99;
+		}
+
+		public long getP999()
+		{
+			return p999;
+		}
+
+		/**
+		 * Counts values at or below each of the given ascending bounds, in nanoseconds, as Prometheus histogram
+		 * buckets do. Values are compared by the top of their bucket, so a value within about 3% below a bound may be
+		 * counted in the next one.
+		 */
+		public long[] getCumulativeCounts(long[] upperBounds)
+		{
+			long[] cumulative = new long[upperBounds.length];
+			int bound = 0;
+			long seen = 0;
+
+			for (int i = 0; i < counts.length && bound < upperBounds.length; i++)
+			{
+				while (bound < upperBounds.length && highestValueOf(i) > upperBounds[bound])
+				{
+					cumulative[bound++] = seen;
+				}
+				seen += counts[i];
+			}
+
+			while (bound < upperBounds.length)
+			{
+				cumulative[bound++] = seen;
+			}
+			return cumulative;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "count=" + count + " min=" + toMillis(min) + "ms p50=" + toMillis(p50) + "ms p90=" + toMillis(p90)
+					+ "ms p99=" + toMillis(p99) + "ms p999=" + toMillis(p999) + "ms max=" + toMillis(max) + "ms";
+		}
+
+		private static double toMillis(long nanos)
+		{
+			return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+		}
+	}
+}
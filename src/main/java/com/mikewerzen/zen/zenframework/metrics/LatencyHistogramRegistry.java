@@ -0,0 +1,56 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide registry of named {@link LatencyHistogram}s, such as the per-method histograms fed by
+ * {@link com.mikewerzen.zen.zenframework.logging.annotation.LogRuntime}.
+ *
+ * Callers on hot paths should look a histogram up once and keep the reference.
+ */
+public class LatencyHistogramRegistry
+{
+	private static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+	public static LatencyHistogram getHistogram(String name)
+	{
+		LatencyHistogram histogram = histograms.get(name);
+		return histogram != null ? histogram : histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+	}
+
+	/**
+	 * Returns a snapshot of every histogram, sorted by name.
+	 */
+	public static Map<String, LatencyHistogram.Snapshot> snapshot()
+	{
+		Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+		histograms.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+		return Collections.unmodifiableMap(snapshots);
+	}
+}
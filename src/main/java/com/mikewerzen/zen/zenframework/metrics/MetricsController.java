@@ -0,0 +1,48 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.metrics;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Scrape endpoint for the framework's metrics, at ${metrics.endpoint.path}, /zen/metrics by default. The endpoint is
+ * not authenticated, so it is only mapped when metrics.endpoint.enabled=true; expose it only where scrapers can reach
+ * it.
+ */
+@RestController
+@ConditionalOnProperty(name = "metrics.endpoint.enabled", havingValue = "true")
+public class MetricsController
+{
+	@GetMapping("${metrics.endpoint.path:/zen/metrics}")
+	public ResponseEntity<String> scrape()
+	{
+		return ResponseEntity.ok()
+				.header(HttpHeaders.CONTENT_TYPE, PrometheusTextWriter.CONTENT_TYPE)
+				.body(PrometheusTextWriter.write());
+	}
+}
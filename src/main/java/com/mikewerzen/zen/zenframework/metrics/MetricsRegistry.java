@@ -0,0 +1,234 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide registry of the framework's metrics, exposed in Prometheus text format by {@link MetricsController}.
+ *
+ * Request metrics are grouped into families, such as all transactions, with one {@link RequestMetrics} handle per
+ * label combination. Gauges and counters owned by other components are registered as callbacks and read at scrape
+ * time.
+ */
+public class MetricsRegistry
+{
+	public static final String TRANSACTION = "zen_transaction";
+	public static final String EXTERNAL_CALL = "zen_external_call";
+	public static final String EVENT = "zen_event";
+
+	private static final Map<String, RequestFamily> requestFamilies = new ConcurrentSkipListMap<>();
+	private static final Map<String, CallbackMetric> callbackMetrics = new ConcurrentSkipListMap<>();
+	private static final Map<String, CallbackFamily> callbackFamilies = new ConcurrentSkipListMap<>();
+
+	static
+	{
+		registerRequestFamily(TRANSACTION, "Zen transactions by service and operation.", "service_name", "service_operation");
+		registerRequestFamily(EXTERNAL_CALL, "Outbound REST calls by system, service and method.", "system_name", "service_name", "service_method", "http_method");
+		registerRequestFamily(EVENT, "Zen events by group and name.", "event_group", "event_name");
+	}
+
+	/**
+	 * Registers a family of request metrics. Registering a family that already exists has no effect.
+	 */
+	public static void registerRequestFamily(String name, String help, String... labelNames)
+	{
+		requestFamilies.putIfAbsent(name, new RequestFamily(name, help, labelNames));
+	}
+
+	/**
+	 * Returns the handle for the given label values, creating it on first use. Callers should keep the handle rather
+	 * than looking it up on every request.
+	 */
+	public static RequestMetrics getRequestMetrics(String family, String... labelValues)
+	{
+		RequestFamily requestFamily = requestFamilies.get(family);
+		if (requestFamily == null)
+		{
+			throw new IllegalArgumentException("Unknown metric family " + family);
+		}
+
+		if (labelValues.length != requestFamily.labelNames.length)
+		{
+			throw new IllegalArgumentException("Metric family " + family + " expects labels " + String.join(",", requestFamily.labelNames));
+		}
+
+		return requestFamily.metrics.computeIfAbsent(String.join("\u0000", labelValues), key -> new RequestMetrics(labelValues.clone()));
+	}
+
+	/**
+	 * Registers a gauge read at scrape time, replacing any gauge or counter with the same name.
+	 */
+	public static void registerGauge(String name, String help, LongSupplier value)
+	{
+		callbackMetrics.put(name, new CallbackMetric(name, help, "gauge", value));
+	}
+
+	/**
+	 * Registers a monotonically increasing counter read at scrape time, replacing any gauge or counter with the same
+	 * name.
+	 */
+	public static void registerCounter(String name, String help, LongSupplier value)
+	{
+		callbackMetrics.put(name, new CallbackMetric(name, help, "counter", value));
+	}
+
+	/**
+	 * Registers a family of gauges read at scrape time, one per label combination added with
+	 * {@link #registerLabeledCallback(String, LongSupplier, String...)}. Registering a family that already exists has
+	 * no effect.
+	 */
+	public static void registerGaugeFamily(String name, String help, String... labelNames)
+	{
+		callbackFamilies.putIfAbsent(name, new CallbackFamily(name, help, "gauge", labelNames));
+	}
+
+	/**
+	 * As {@link #registerGaugeFamily(String, String, String...)}, for monotonically increasing counters.
+	 */
+	public static void registerCounterFamily(String name, String help, String... labelNames)
+	{
+		callbackFamilies.putIfAbsent(name, new CallbackFamily(name, help, "counter", labelNames));
+	}
+
+	/**
+	 * Adds the callback for the given label values to a gauge or counter family, replacing any previous one.
+	 */
+	public static void registerLabeledCallback(String family, LongSupplier value, String... labelValues)
+	{
+		CallbackFamily callbackFamily = callbackFamilies.get(family);
+		if (callbackFamily == null)
+		{
+			throw new IllegalArgumentException("Unknown metric family " + family);
+		}
+
+		if (labelValues.length != callbackFamily.labelNames.length)
+		{
+			throw new IllegalArgumentException("Metric family " + family + " expects labels " + String.join(",", callbackFamily.labelNames));
+		}
+
+		callbackFamily.callbacks.put(String.join("\u0000", labelValues), new LabeledCallback(labelValues.clone(), value));
+	}
+
+	/**
+	 * Removes every callback added to a gauge or counter family, keeping the family itself.
+	 */
+	public static void clearLabeledCallbacks(String family)
+	{
+		CallbackFamily callbackFamily = callbackFamilies.get(family);
+		if (callbackFamily != null)
+		{
+			callbackFamily.callbacks.clear();
+		}
+	}
+
+	static Collection<RequestFamily> getRequestFamilies()
+	{
+		return requestFamilies.values();
+	}
+
+	static Collection<CallbackMetric> getCallbackMetrics()
+	{
+		return callbackMetrics.values();
+	}
+
+	static Collection<CallbackFamily> getCallbackFamilies()
+	{
+		return callbackFamilies.values();
+	}
+
+	static final class RequestFamily
+	{
+		final String name;
+		final String help;
+		final String[] labelNames;
+		final Map<String, RequestMetrics> metrics = new ConcurrentHashMap<>();
+
+		private RequestFamily(String name, String help, String[] labelNames)
+		{
+			this.name = name;
+			this.help = help;
+			this.labelNames = labelNames.clone();
+		}
+
+		List<RequestMetrics> getMetrics()
+		{
+			List<RequestMetrics> sorted = new ArrayList<>(metrics.values());
+			sorted.sort((left, right) -> String.join(",", left.getLabelValues()).compareTo(String.join(",", right.getLabelValues())));
+			return Collections.unmodifiableList(sorted);
+		}
+	}
+
+	static final class CallbackMetric
+	{
+		final String name;
+		final String help;
+		final String type;
+		final LongSupplier value;
+
+		private CallbackMetric(String name, String help, String type, LongSupplier value)
+		{
+			this.name = name;
+			this.help = help;
+			this.type = type;
+			this.value = value;
+		}
+	}
+
+	static final class CallbackFamily
+	{
+		final String name;
+		final String help;
+		final String type;
+		final String[] labelNames;
+		final Map<String, LabeledCallback> callbacks = new ConcurrentSkipListMap<>();
+
+		private CallbackFamily(String name, String help, String type, String[] labelNames)
+		{
+			this.name = name;
+			this.help = help;
+			this.type = type;
+			this.labelNames = labelNames.clone();
+		}
+	}
+
+	static final class LabeledCallback
+	{
+		final String[] labelValues;
+		final LongSupplier value;
+
+		private LabeledCallback(String[] labelValues, LongSupplier value)
+		{
+			this.labelValues = labelValues;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.metrics;
+
+import java.util.Map;
+
+/**
+ * Renders the {@link MetricsRegistry} and {@link LatencyHistogramRegistry} in the Prometheus text exposition format.
+ *
+ * Latencies are written as histograms in seconds, with cumulative le buckets that can be aggregated across instances
+ * and windowed with rate(), and status and exception code counts as counters alongside them.
+ */
+public class PrometheusTextWriter
+{
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private static final double NANOS_PER_SECOND = 1e9;
+
+	private static final String[] BUCKETS =
+			{ "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10" };
+
+	private static final long[] BUCKET_NANOS = toNanos(BUCKETS);
+
+	public static String write()
+	{
+		StringBuilder output = new StringBuilder(4096);
+
+		for (MetricsRegistry.RequestFamily family : MetricsRegistry.getRequestFamilies())
+		{
+			writeRequestFamily(output, family);
+		}
+
+		writeMethodRuntimes(output);
+
+		for (MetricsRegistry.CallbackMetric metric : MetricsRegistry.getCallbackMetrics())
+		{
+			writeHeader(output, metric.name, metric.help, metric.type);
+			output.append(metric.name).append(' ').append(metric.value.getAsLong()).append('\n');
+		}
+
+		for (MetricsRegistry.CallbackFamily family : MetricsRegistry.getCallbackFamilies())
+		{
+			writeCallbackFamily(output, family);
+		}
+
+		return output.toString();
+	}
+
+	private static void writeRequestFamily(StringBuilder output, MetricsRegistry.RequestFamily family)
+	{
+		if (family.metrics.isEmpty())
+		{
+			return;
+		}
+
+		String seconds = family.name + "_seconds";
+		writeHeader(output, seconds, family.help, "histogram");
+		for (RequestMetrics metrics : family.getMetrics())
+		{
+			writeHistogram(output, seconds, family.labelNames, metrics.getLabelValues(), metrics.getLatency().snapshot());
+		}
+
+		String max = family.name + "_seconds_max";
+		writeHeader(output, max, "Slowest " + family.name + " since startup.", "gauge");
+		for (RequestMetrics metrics : family.getMetrics())
+		{
+			writeSample(output, max, family.labelNames, metrics.getLabelValues(), null, null,
+					toSeconds(metrics.getLatency().snapshot().getMax()));
+		}
+
+		String responses = family.name + "_responses_total";
+		writeHeader(output, responses, "Responses by HTTP status.", "counter");
+		for (RequestMetrics metrics : family.getMetrics())
+		{
+			for (Map.Entry<Integer, Long> entry : metrics.getStatusCounts().entrySet())
+			{
+				writeSample(output, responses, family.labelNames, metrics.getLabelValues(), "status",
+						String.valueOf(entry.getKey()), entry.getValue());
+			}
+		}
+
+		String exceptions = family.name + "_exceptions_total";
+		writeHeader(output, exceptions, "Failures by Zen exception code.", "counter");
+		for (RequestMetrics metrics : family.getMetrics())
+		{
+			for (Map.Entry<String, Long> entry : metrics.getExceptionCounts().entrySet())
+			{
+				writeSample(output, exceptions, family.labelNames, metrics.getLabelValues(), "exception_code",
+						entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private static void writeCallbackFamily(StringBuilder output, MetricsRegistry.CallbackFamily family)
+	{
+		if (family.callbacks.isEmpty())
+		{
+			return;
+		}
+
+		writeHeader(output, family.name, family.help, family.type);
+		for (MetricsRegistry.LabeledCallback callback : family.callbacks.values())
+		{
+			writeSample(output, family.name, family.labelNames, callback.labelValues, null, null,
+					callback.value.getAsLong());
+		}
+	}
+
+	private static void writeMethodRuntimes(StringBuilder output)
+	{
+		Map<String, LatencyHistogram.Snapshot> runtimes = LatencyHistogramRegistry.snapshot();
+		if (runtimes.isEmpty())
+		{
+			return;
+		}
+
+		String[] labelNames = { "method" };
+		writeHeader(output, "zen_method_seconds", "@LogRuntime method runtimes.", "histogram");
+		for (Map.Entry<String, LatencyHistogram.Snapshot> entry : runtimes.entrySet())
+		{
+			writeHistogram(output, "zen_method_seconds", labelNames, new String[] { entry.getKey() }, entry.getValue());
+		}
+	}
+
+	private static void writeHistogram(StringBuilder output, String name, String[] labelNames, String[] labelValues,
+			LatencyHistogram.Snapshot snapshot)
+	{
+		String bucket = name + "_bucket";
+		long[] counts = snapshot.getCumulativeCounts(BUCKET_NANOS);
+		for (int i = 0; i < BUCKETS.length; i++)
+		{
+			writeSample(output, bucket, labelNames, labelValues, "le", BUCKETS[i], counts[i]);
+		}
+		writeSample(output, bucket, labelNames, labelValues, "le", "+Inf", snapshot.getCount());
+
+		writeSample(output, name + "_sum", labelNames, labelValues, null, null, toSeconds(snapshot.getTotal()));
+		writeSample(output, name + "_count", labelNames, labelValues, null, null, snapshot.getCount());
+	}
+
+	private static void writeHeader(StringBuilder output, String name, String help, String type)
+	{
+		output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		output.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void writeSample(StringBuilder output, String name, String[] labelNames, String[] labelValues,
+			String extraLabelName, String extraLabelValue, Object value)
+	{
+		output.append(name).append('{');
+
+		for (int i = 0; i < labelNames.length; i++)
+		{
+			if (i > 0)
+			{
+				output.append(',');
+			}
+			writeLabel(output, labelNames[i], labelValues[i]);
+		}
+
+		if (extraLabelName != null)
+		{
+			if (labelNames.length > 0)
+			{
+				output.append(',');
+			}
+			writeLabel(output, extraLabelName, extraLabelValue);
+		}
+
+		output.append("} ").append(value).append('\n');
+	}
+
+	private static void writeLabel(StringBuilder output, String name, String value)
+	{
+		output.append(name).append("=\"");
+
+		String safeValue = value == null ? "" : value;
+		for (int i = 0; i < safeValue.length(); i++)
+		{
+			char c = safeValue.charAt(i);
+			switch (c)
+			{
+				case '\\':
+					output.append("\\\\");
+					break;
+				case '"':
+					output.append("\\\"");
+					break;
+				case '\n':
+					output.append("\\n");
+					break;
+				default:
+					output.append(c);
+			}
+		}
+
+		output.append('"');
+	}
+
+	private static long[] toNanos(String[] seconds)
+	{
+		long[] nanos = new long[seconds.length];
+		for (int i = 0; i < seconds.length; i++)
+		{
+			nanos[i] = Math.round(Double.parseDouble(seconds[i]) * NANOS_PER_SECOND);
+		}
+		return nanos;
+	}
+
+	private static double toSeconds(long nanos)
+	{
+		return nanos / NANOS_PER_SECOND;
+	}
+}
@@ -0,0 +1,141 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.metrics;
+
+import com.mikewerzen.zen.zenframework.exception.adapter.ThrowableAdapter;
+import com.mikewerzen.zen.zenframework.exception.adapter.ThrowableAdapterFinder;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, response status and exception code counts for one labelled operation, such as one
+ * {@link com.mikewerzen.zen.zenframework.transaction.ZenTransaction} method.
+ *
+ * Handles are created once through {@link MetricsRegistry} and kept by the caller. Recording a response with a status
+ * that has been seen before and no exception code does not allocate.
+ */
+public class RequestMetrics
+{
+	private static final int MAX_STATUS = 600;
+
+	private final String[] labelValues;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final AtomicReferenceArray<LongAdder> statusCounts = new AtomicReferenceArray<>(MAX_STATUS);
+	private final Map<String, LongAdder> exceptionCounts = new ConcurrentHashMap<>();
+
+	RequestMetrics(String[] labelValues)
+	{
+		this.labelValues = labelValues;
+	}
+
+	/**
+	 * Records one completed request.
+	 *
+	 * @param nanos         how long the request took
+	 * @param status        the HTTP status of the response, or 0 if there is none
+	 * @param exceptionCode the Zen exception code of a failed request, or null
+	 */
+	public void record(long nanos, int status, String exceptionCode)
+	{
+		latency.record(nanos);
+
+		if (status > 0 && status < MAX_STATUS)
+		{
+			getStatusCounter(status).increment();
+		}
+
+		if (exceptionCode != null)
+		{
+			exceptionCounts.computeIfAbsent(exceptionCode, code -> new LongAdder()).increment();
+		}
+	}
+
+	/**
+	 * Records one completed request, counting a failure under the exception code of its throwable.
+	 */
+	public void record(long nanos, int status, Throwable throwable)
+	{
+		record(nanos, status, throwable == null ? null : getExceptionCode(throwable));
+	}
+
+	private static String getExceptionCode(Throwable throwable)
+	{
+		ThrowableAdapter adapter = ThrowableAdapterFinder.getThrowableAdapter(throwable);
+		return adapter == null ? throwable.getClass().getSimpleName() : String.valueOf(adapter.getExceptionCode(throwable));
+	}
+
+	String[] getLabelValues()
+	{
+		return labelValues;
+	}
+
+	LatencyHistogram getLatency()
+	{
+		return latency;
+	}
+
+	Map<Integer, Long> getStatusCounts()
+	{
+		Map<Integer, Long> counts = new TreeMap<>();
+		for (int status = 0; status < MAX_STATUS; status++)
+		{
+			LongAdder counter = statusCounts.get(status);
+			if (counter != null)
+			{
+				counts.put(status, counter.sum());
+			}
+		}
+		return counts;
+	}
+
+	Map<String, Long> getExceptionCounts()
+	{
+		if (exceptionCounts.isEmpty())
+		{
+			return Collections.emptyMap();
+		}
+
+		Map<String, Long> counts = new TreeMap<>();
+		exceptionCounts.forEach((code, counter) -> counts.put(code, counter.sum()));
+		return counts;
+	}
+
+	private LongAdder getStatusCounter(int status)
+	{
+		LongAdder counter = statusCounts.get(status);
+
+		if (counter == null)
+		{
+			statusCounts.compareAndSet(status, null, new LongAdder());
+			counter = statusCounts.get(status);
+		}
+
+		return counter;
+	}
+}
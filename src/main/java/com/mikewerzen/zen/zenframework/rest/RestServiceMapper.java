@@ -47,6 +47,7 @@ package com.mikewerzen.zen.zenframework.rest;
 import com.mikewerzen.zen.zenframework.exception.adapter.ThrowableAdapter;
 import com.mikewerzen.zen.zenframework.exception.logic.InvalidRequestException;
 import com.mikewerzen.zen.zenframework.exception.system.InternalException;
+import com.mikewerzen.zen.zenframework.logging.sampling.TransactionSampler;
 import com.mikewerzen.zen.zenframework.rest.exception.adapter.RestThrowableAdapter;
 import com.mikewerzen.zen.zenframework.rest.request.ZenHttpHeaders;
 import com.mikewerzen.zen.zenframework.rest.response.ZenError;
@@ -56,6 +57,7 @@ import com.mikewerzen.zen.zenframework.transaction.context.TransactionContext;
 import com.mikewerzen.zen.zenframework.transaction.context.TransactionContextHolder;
 import com.mikewerzen.zen.zenframework.util.UniqueIdentifierUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
@@ -68,9 +70,13 @@ import javax.servlet.http.HttpServletRequest;
 public class RestServiceMapper
 {
 
-	@Autowired
+	// Not available when running on WebFlux
+	@Autowired(required = false)
 	private HttpServletRequest httpServletRequest;
 
+	@Autowired
+	private TransactionSampler transactionSampler;
+
 	public TransactionContext mapInboundRequestToContext(ZenTransaction transaction, RequestEntity requestEntity)
 	{
 		if (transaction == null)
@@ -92,10 +98,14 @@ public class RestServiceMapper
 
 		long internalTraceId = UniqueIdentifierUtils.getUniqueId();
 
+		String samplingKey = headers.getCorrelationId() != null ? headers.getCorrelationId()
+				: headers.getRequestId() != null ? headers.getRequestId() : String.valueOf(internalTraceId);
+
 		return new TransactionContext(transaction.serviceName(), transaction.serviceOperation(),
 				transaction.serviceVersion(), transaction.serviceMethodName(), headers.getRequestId(),
 				headers.getCorrelationId(), headers.getSessionId(), internalTraceId, getClientIp(headers),
-				getSourceIp(), headers.getDeviceId(), headers.getDeviceType());
+				getSourceIp(), headers.getDeviceId(), headers.getDeviceType(),
+				transactionSampler.sample(headers.getSampled(), samplingKey));
 
 	}
 
@@ -110,9 +120,11 @@ public class RestServiceMapper
 		}
 
 		HttpStatus status = HttpStatus.INTERNAL_SERVER_ERROR;
+		HttpHeaders headers = null;
 		if (details instanceof RestThrowableAdapter)
 		{
 			status = ((RestThrowableAdapter) details).getHttpStatus(throwable);
+			headers = ((RestThrowableAdapter) details).getHttpHeaders(throwable);
 		}
 
 		ZenError zenError = new ZenError(status.value(), details.getExceptionCode(throwable),
@@ -121,7 +133,7 @@ public class RestServiceMapper
 		ZenErrorResponse response = new ZenErrorResponse(zenError);
 
 
-		return new ResponseEntity<ZenErrorResponse>(response, status);
+		return new ResponseEntity<ZenErrorResponse>(response, headers, status);
 	}
 
 	private String getClientIp(ZenHttpHeaders headers)
@@ -0,0 +1,226 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client;
+
+import com.mikewerzen.zen.zenframework.context.ZenReactiveContext;
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.exception.system.ExternalException;
+import com.mikewerzen.zen.zenframework.exception.system.ExternalTimeoutException;
+import com.mikewerzen.zen.zenframework.logging.external.ExternalCallAttributesBuilder;
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import com.mikewerzen.zen.zenframework.metrics.RequestMetrics;
+import io.atlassian.fugue.Either;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Non-blocking counterpart of {@link AbstractRestClient}. Calls run on WebClient and return a CompletableFuture, so
+ * no thread waits on the downstream service.
+ * <p>
+ * The {@link ZenScope} of the calling thread is captured when the call starts, and the external call attributes are
+ * committed to its logging context before the future completes. Futures complete on the HTTP client's event loop, so
+ * dependent stages should not block.
+ */
+public abstract class AbstractAsyncRestClient<ErrorResponse>
+{
+	private static final Logger logger = LogManager.getLogger(AbstractAsyncRestClient.class);
+	private static final Duration DEFAULT_TIMEOUT = Duration.ofMillis(15000);
+
+	private final String systemName;
+	private final String serviceName;
+	private final String serviceVersion;
+
+	private final Class<ErrorResponse> errorClass;
+
+	private final WebClient webClient;
+	private final Duration timeout;
+
+	private final Map<HttpMethod, Map<String, RequestMetrics>> callMetrics = new EnumMap<>(HttpMethod.class);
+
+	public AbstractAsyncRestClient(String systemName, String serviceName, String serviceVersion,
+			Class<ErrorResponse> errorClass)
+	{
+		this(systemName, serviceName, serviceVersion, errorClass, WebClient.create(), DEFAULT_TIMEOUT);
+	}
+
+	public AbstractAsyncRestClient(String systemName, String serviceName, String serviceVersion,
+			Class<ErrorResponse> errorClass, WebClient webClient, Duration timeout)
+	{
+		this.systemName = systemName;
+		this.serviceName = serviceName;
+		this.serviceVersion = serviceVersion;
+		this.errorClass = errorClass;
+		this.webClient = webClient;
+		this.timeout = timeout;
+
+		for (HttpMethod method : HttpMethod.values())
+		{
+			callMetrics.put(method, new ConcurrentHashMap<>());
+		}
+	}
+
+	/**
+	 * Completes with the successful response, or exceptionally with the exception from
+	 * {@link #convertErrorIntoException(Object)} when the service returns an error.
+	 */
+	protected <Request, SuccessfulResponse> CompletableFuture<SuccessfulResponse> execute(String methodName,
+			Request request, String uri, HttpMethod method, Class<SuccessfulResponse> successfulResponseClass)
+	{
+		return execute(methodName, request, buildHttpHeaders(), uri, method, true, successfulResponseClass)
+				.flatMap(response -> Mono.justOrEmpty(response.right().get()))
+				.toFuture();
+	}
+
+	protected <Request, SuccessfulResponse> CompletableFuture<Either<ErrorResponse, SuccessfulResponse>> execute(
+			String methodName, Request request, String uri, HttpMethod method, boolean throwErrors,
+			Class<SuccessfulResponse> successfulResponseClass)
+	{
+		return execute(methodName, request, buildHttpHeaders(), uri, method, throwErrors, successfulResponseClass)
+				.toFuture();
+	}
+
+	protected abstract HttpHeaders buildHttpHeaders();
+
+	/**
+	 * Largest response body read into memory, {@link AbstractRestClient#getDefaultMaxResponseBytes()} unless
+	 * overridden.
+	 */
+	protected long getMaxResponseBytes()
+	{
+		return AbstractRestClient.getDefaultMaxResponseBytes();
+	}
+
+	protected abstract ExternalException convertErrorIntoException(ErrorResponse errorResponse);
+
+	protected abstract void addErrorAttributes(ExternalCallAttributesBuilder builder, ErrorResponse response);
+
+	private <Request, SuccessfulResponse> Mono<Either<ErrorResponse, SuccessfulResponse>> execute(
+			String serviceMethodName, Request request, HttpHeaders headers, String uri, HttpMethod method,
+			boolean throwErrors, Class<SuccessfulResponse> successfulResponseClass)
+	{
+		ZenScope scope = ZenScope.current();
+
+		ExternalCallAttributesBuilder builder =
+				new ExternalCallAttributesBuilder(systemName, serviceName, serviceMethodName, method.name(),
+						serviceVersion);
+		builder.setHeaderInformation(headers);
+
+		RequestMetrics metrics = getMetrics(serviceMethodName, method);
+		long startTime = System.nanoTime();
+		AtomicBoolean committed = new AtomicBoolean();
+
+		WebClient.RequestBodySpec spec = webClient.method(method).uri(URI.create(uri))
+				.headers(requestHeaders -> requestHeaders.addAll(headers));
+		WebClient.RequestHeadersSpec<?> requestSpec = request == null ? spec : spec.syncBody(request);
+
+		return requestSpec.exchange()
+				.flatMap(response -> LimitedBodyReader.readBody(response, getMaxResponseBytes())
+						.map(body -> readResponse(builder, response.rawStatusCode(), body, throwErrors,
+								successfulResponseClass)))
+				.timeout(timeout)
+				.onErrorMap(TimeoutException.class, timeoutException -> new ExternalTimeoutException(
+						"Call to " + serviceName + " did not complete within " + timeout.toMillis() + "ms",
+						timeoutException))
+				.doOnError(error -> handleError(builder, error))
+				.doOnSuccessOrError((value, error) -> commit(scope, committed, metrics, startTime, builder))
+				.doOnCancel(() -> {
+					builder.setSuccess(false);
+					commit(scope, committed, metrics, startTime, builder);
+				});
+	}
+
+	private <SuccessfulResponse> Either<ErrorResponse, SuccessfulResponse> readResponse(
+			ExternalCallAttributesBuilder builder, int statusCode, String body, boolean throwErrors,
+			Class<SuccessfulResponse> successClass)
+	{
+		builder.setHttpStatusCode(statusCode);
+
+		if (statusCode < 100 || statusCode >= 300)
+		{
+			ErrorResponse errorResponse = AbstractRestClient.getGson().fromJson(body, errorClass);
+			addErrorAttributes(builder, errorResponse);
+			builder.setSuccess(false);
+
+			if (throwErrors)
+			{
+				ExternalException externalException = convertErrorIntoException(errorResponse);
+				builder.setThrowable(externalException);
+				throw externalException;
+			}
+
+			return Either.left(errorResponse);
+		}
+
+		builder.setSuccess(true);
+		SuccessfulResponse successfulResponse = AbstractRestClient.getGson().fromJson(body, successClass);
+		return Either.right(successfulResponse);
+	}
+
+	private void handleError(ExternalCallAttributesBuilder builder, Throwable error)
+	{
+		if (builder.getThrowable() == null)
+		{
+			logger.error("Exception occurred executing Rest request", error);
+			builder.setThrowable(error).setSuccess(false);
+		}
+	}
+
+	private void commit(ZenScope scope, AtomicBoolean committed, RequestMetrics metrics, long startTime,
+			ExternalCallAttributesBuilder builder)
+	{
+		if (!committed.compareAndSet(false, true))
+		{
+			return;
+		}
+
+		Integer httpStatusCode = builder.getHttpStatusCode();
+		metrics.record(System.nanoTime() - startTime, httpStatusCode == null ? 0 : httpStatusCode,
+				builder.getThrowable());
+
+		ZenReactiveContext.runInScope(scope, builder::buildAndCommit);
+	}
+
+	private RequestMetrics getMetrics(String serviceMethodName, HttpMethod method)
+	{
+		Map<String, RequestMetrics> methodMetrics = callMetrics.get(method);
+		String key = serviceMethodName == null ? "" : serviceMethodName;
+
+		RequestMetrics metrics = methodMetrics.get(key);
+		return metrics != null ? metrics : methodMetrics.computeIfAbsent(key,
+				name -> MetricsRegistry.getRequestMetrics(MetricsRegistry.EXTERNAL_CALL, systemName, serviceName,
+						name, method.name()));
+	}
+}
@@ -23,32 +23,52 @@
 package com.mikewerzen.zen.zenframework.rest.client;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.mikewerzen.zen.zenframework.exception.system.CircuitBreakerOpenException;
 import com.mikewerzen.zen.zenframework.exception.system.ExternalException;
+import com.mikewerzen.zen.zenframework.exception.system.ExternalResponseTooLargeException;
 import com.mikewerzen.zen.zenframework.exception.system.InternalException;
 import com.mikewerzen.zen.zenframework.logging.external.ExternalCallAttributesBuilder;
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import com.mikewerzen.zen.zenframework.metrics.RequestMetrics;
+import com.mikewerzen.zen.zenframework.rest.client.breaker.CircuitBreaker;
+import com.mikewerzen.zen.zenframework.rest.client.breaker.CircuitBreakers;
+import com.mikewerzen.zen.zenframework.rest.client.retry.RetryBudget;
+import com.mikewerzen.zen.zenframework.rest.client.retry.RetryPolicy;
 import com.mikewerzen.zen.zenframework.security.provider.zen.jwt.client.ZenIAMServiceClient;
 import io.atlassian.fugue.Either;
+import org.apache.http.conn.ConnectionReleaseTrigger;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.client.ResponseErrorHandler;
 import org.springframework.web.client.RestTemplate;
 
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class AbstractRestClient<ErrorResponse>
 {
 	private static final Logger logger = LogManager.getLogger(ZenIAMServiceClient.class);
 	private static final Gson gson = buildGson();
 
+	private static volatile long defaultMaxResponseBytes = 16L * 1024 * 1024;
+
 	private String systemName;
 	private String serviceName;
 	private String serviceVersion;
@@ -57,6 +77,10 @@ public abstract class AbstractRestClient<ErrorResponse>
 
 	private RestTemplate restTemplate = buildRestTemplate();
 
+	private volatile RetryPolicy retryPolicy;
+
+	private final Map<HttpMethod, Map<String, RequestMetrics>> callMetrics = new EnumMap<>(HttpMethod.class);
+
 	public AbstractRestClient(String systemName, String serviceName, String serviceVersion,
 			Class<ErrorResponse> errorClass)
 	{
@@ -64,14 +88,25 @@ public abstract class AbstractRestClient<ErrorResponse>
 		this.serviceName = serviceName;
 		this.serviceVersion = serviceVersion;
 		this.errorClass = errorClass;
+
+		for (HttpMethod method : HttpMethod.values())
+		{
+			callMetrics.put(method, new ConcurrentHashMap<>());
+		}
 	}
 
 
 	protected <Request, SuccessfulResponse> SuccessfulResponse execute(String methodName, Request request, String uri,
 			HttpMethod method, Class<SuccessfulResponse> successfulResponseClass)
 	{
-		Either<ErrorResponse, SuccessfulResponse> response =
-				execute(methodName, request, buildHttpHeaders(), uri, method, true, successfulResponseClass);
+		return execute(methodName, request, uri, method, successfulResponseClass, getRetryPolicy());
+	}
+
+	protected <Request, SuccessfulResponse> SuccessfulResponse execute(String methodName, Request request, String uri,
+			HttpMethod method, Class<SuccessfulResponse> successfulResponseClass, RetryPolicy retryPolicy)
+	{
+		Either<ErrorResponse, SuccessfulResponse> response = executeWithRetries(methodName, request,
+				buildHttpHeaders(), uri, method, true, successfulResponseClass, retryPolicy);
 
 
 		if (response.isLeft())
@@ -86,9 +121,39 @@ public abstract class AbstractRestClient<ErrorResponse>
 			Request request, String uri, HttpMethod method, boolean throwErrors,
 			Class<SuccessfulResponse> successfulResponseClass)
 	{
-		return execute(methodName, request, buildHttpHeaders(), uri, method, throwErrors, successfulResponseClass);
+		return execute(methodName, request, uri, method, throwErrors, successfulResponseClass, getRetryPolicy());
 	}
 
+	protected <Request, SuccessfulResponse> Either<ErrorResponse, SuccessfulResponse> execute(String methodName,
+			Request request, String uri, HttpMethod method, boolean throwErrors,
+			Class<SuccessfulResponse> successfulResponseClass, RetryPolicy retryPolicy)
+	{
+		return executeWithRetries(methodName, request, buildHttpHeaders(), uri, method, throwErrors,
+				successfulResponseClass, retryPolicy);
+	}
+
+	/**
+	 * Sets the retry policy for calls of this client that do not pass their own; null restores the default.
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy)
+	{
+		this.retryPolicy = retryPolicy;
+	}
+
+	protected RetryPolicy getRetryPolicy()
+	{
+		RetryPolicy policy = retryPolicy;
+		return policy != null ? policy : RetryPolicy.getDefault();
+	}
+
+
+	/**
+	 * Starts running calls of this and other clients concurrently under a shared deadline.
+	 */
+	public static ScatterGather scatterGather(Duration timeout)
+	{
+		return new ScatterGather(timeout);
+	}
 
 	protected abstract HttpHeaders buildHttpHeaders();
 
@@ -99,10 +164,7 @@ public abstract class AbstractRestClient<ErrorResponse>
 
 	private RestTemplate buildRestTemplate()
 	{
-		RestTemplate template = new RestTemplateBuilder()
-				.setConnectTimeout(Duration.ofMillis(15000))
-				.setReadTimeout(Duration.ofMillis(15000))
-				.build();
+		RestTemplate template = new RestTemplate(PooledHttpTransport.sharedRequestFactory());
 
 		template.setErrorHandler(getResponseErrorHandler());
 
@@ -113,14 +175,85 @@ public abstract class AbstractRestClient<ErrorResponse>
 
 	protected abstract void addErrorAttributes(ExternalCallAttributesBuilder builder, ErrorResponse response);
 
-	private <Request, SuccessfulResponse> Either<ErrorResponse, SuccessfulResponse> execute(String serviceMethodName,
-			Request request, HttpHeaders headers, String uri, HttpMethod method, boolean throwErrors,
-			Class<SuccessfulResponse> successfulResponseClass)
+	/**
+	 * Makes attempts until one is not retryable under the policy or the process-wide {@link RetryBudget} runs out.
+	 * Each attempt is recorded as its own external call, numbered from 1.
+	 */
+	private <Request, SuccessfulResponse> Either<ErrorResponse, SuccessfulResponse> executeWithRetries(
+			String serviceMethodName, Request request, HttpHeaders headers, String uri, HttpMethod method,
+			boolean throwErrors, Class<SuccessfulResponse> successfulResponseClass, RetryPolicy retryPolicy)
 	{
-		ExternalCallAttributesBuilder builder =
-				new ExternalCallAttributesBuilder(systemName, serviceName, serviceMethodName, method.name(),
-						serviceVersion);
-		builder.setHeaderInformation(headers);
+		RetryBudget retryBudget = RetryBudget.getDefault();
+		retryBudget.deposit();
+		CircuitBreaker breaker = CircuitBreakers.get(systemName, serviceName);
+
+		for (int attempt = 1; ; attempt++)
+		{
+			ExternalCallAttributesBuilder builder =
+					new ExternalCallAttributesBuilder(systemName, serviceName, serviceMethodName, method.name(),
+							serviceVersion);
+			builder.setHeaderInformation(headers);
+			builder.setAttempt(attempt);
+
+			try
+			{
+				Either<ErrorResponse, SuccessfulResponse> responseEither =
+						executeAttempt(serviceMethodName, request, headers, uri, method, throwErrors,
+								successfulResponseClass, builder, breaker);
+
+				if (!shouldRetry(retryPolicy, retryBudget, method, attempt, builder.getHttpStatusCode(), null))
+				{
+					return responseEither;
+				}
+			}
+			catch (RuntimeException exception)
+			{
+				if (!shouldRetry(retryPolicy, retryBudget, method, attempt, builder.getHttpStatusCode(), exception))
+				{
+					throw exception;
+				}
+			}
+		}
+	}
+
+	private boolean shouldRetry(RetryPolicy retryPolicy, RetryBudget retryBudget, HttpMethod method, int attempt,
+			Integer httpStatusCode, RuntimeException exception)
+	{
+		if (!retryPolicy.isRetryable(method, attempt, httpStatusCode, exception) || !retryBudget.tryWithdraw())
+		{
+			return false;
+		}
+
+		try
+		{
+			Thread.sleep(retryPolicy.getBackoffMillis(attempt));
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private <Request, SuccessfulResponse> Either<ErrorResponse, SuccessfulResponse> executeAttempt(
+			String serviceMethodName, Request request, HttpHeaders headers, String uri, HttpMethod method,
+			boolean throwErrors, Class<SuccessfulResponse> successfulResponseClass,
+			ExternalCallAttributesBuilder builder, CircuitBreaker breaker)
+	{
+		CircuitBreaker.Permit breakerPermit = breaker == null ? null : breaker.tryAcquire();
+		if (breaker != null && breakerPermit == null)
+		{
+			CircuitBreakerOpenException exception =
+					new CircuitBreakerOpenException("Circuit breaker " + breaker.getName() + " is open");
+			builder.setThrowable(exception).setSuccess(false);
+			builder.buildAndCommit();
+			throw exception;
+		}
+
+		RequestMetrics metrics = getMetrics(serviceMethodName, method);
+		long startTime = System.nanoTime();
+		PooledHttpTransport.takePoolWaitNanos();
 
 		Either<ErrorResponse, SuccessfulResponse> responseEither = null;
 		try
@@ -141,6 +274,10 @@ public abstract class AbstractRestClient<ErrorResponse>
 		}
 		catch (ExternalException externalException)
 		{
+			if (builder.getThrowable() == null)
+			{
+				builder.setThrowable(externalException).setSuccess(false);
+			}
 			throw externalException;
 		}
 		catch (HttpStatusCodeException httpStatusCodeException)
@@ -154,24 +291,44 @@ public abstract class AbstractRestClient<ErrorResponse>
 		}
 		finally
 		{
+			builder.setPoolWaitNanos(PooledHttpTransport.takePoolWaitNanos());
+
+			Integer httpStatusCode = builder.getHttpStatusCode();
+			long runtime = System.nanoTime() - startTime;
+			metrics.record(runtime, httpStatusCode == null ? 0 : httpStatusCode, builder.getThrowable());
+
+			if (breakerPermit != null)
+			{
+				breakerPermit.onResult(runtime,
+						httpStatusCode != null ? httpStatusCode >= 500 : builder.getThrowable() != null);
+			}
+
 			builder.buildAndCommit();
 		}
 
 		return responseEither;
 	}
 
+	private RequestMetrics getMetrics(String serviceMethodName, HttpMethod method)
+	{
+		Map<String, RequestMetrics> methodMetrics = callMetrics.get(method);
+		String key = serviceMethodName == null ? "" : serviceMethodName;
+
+		RequestMetrics metrics = methodMetrics.get(key);
+		return metrics != null ? metrics : methodMetrics.computeIfAbsent(key,
+				name -> MetricsRegistry.getRequestMetrics(MetricsRegistry.EXTERNAL_CALL, systemName, serviceName,
+						name, method.name()));
+	}
+
 	private <Request, SuccessfulResponse> Either<ErrorResponse, SuccessfulResponse> performCall(Request request,
 			HttpHeaders headers, String uri, HttpMethod method, ExternalCallAttributesBuilder builder,
 			Class<SuccessfulResponse> successfulResponseClass)
 	{
 		RequestEntity<Request> requestEntity = new RequestEntity<>(request, headers, method, URI.create(uri));
 
-		ResponseEntity<String> responseEntity = restTemplate.exchange(requestEntity, String.class);
-
-
-		builder.setHttpStatusCode(responseEntity.getStatusCode().value());
-
-		return buildEitherFromResponse(responseEntity, successfulResponseClass);
+		return restTemplate.execute(requestEntity.getUrl(), method,
+				restTemplate.httpEntityCallback(requestEntity, String.class),
+				response -> readResponse(response, builder, successfulResponseClass));
 	}
 
 	private boolean isResponseAnError(Either<ErrorResponse, ?> responseEither)
@@ -208,15 +365,89 @@ public abstract class AbstractRestClient<ErrorResponse>
 		throw httpStatusCodeException;
 	}
 
-	private <SuccessfulResponse> Either<ErrorResponse, SuccessfulResponse> buildEitherFromResponse(
-			ResponseEntity<String> responseEntity, Class<SuccessfulResponse> successClass)
+	/**
+	 * Parses the body straight off the response stream into the error or success class, so it is never held as a
+	 * String. Bodies over {@link #getMaxResponseBytes()} fail with {@link ExternalResponseTooLargeException}, and
+	 * the connection is aborted rather than drained, as closing the response would otherwise read the rest of it.
+	 */
+	private <SuccessfulResponse> Either<ErrorResponse, SuccessfulResponse> readResponse(ClientHttpResponse response,
+			ExternalCallAttributesBuilder builder, Class<SuccessfulResponse> successClass) throws IOException
 	{
-		if (!responseEntity.getStatusCode().is1xxInformational() && !responseEntity.getStatusCode().is2xxSuccessful())
+		int statusCode = response.getRawStatusCode();
+		builder.setHttpStatusCode(statusCode);
+
+		long maxBytes = getMaxResponseBytes();
+		long contentLength = response.getHeaders().getContentLength();
+		InputStream body = response.getBody();
+		try
 		{
-			return Either.left(gson.fromJson(responseEntity.getBody(), errorClass));
+			if (contentLength > maxBytes)
+			{
+				throw new ExternalResponseTooLargeException(maxBytes,
+						"Response body of " + contentLength + " bytes exceeds the limit of " + maxBytes + " bytes");
+			}
+
+			JsonReader reader =
+					new JsonReader(new InputStreamReader(new LimitedInputStream(body, maxBytes), getCharset(response)));
+			if (statusCode < 100 || statusCode >= 300)
+			{
+				ErrorResponse errorResponse = gson.fromJson(reader, errorClass);
+				return Either.left(errorResponse);
+			}
+
+			SuccessfulResponse successfulResponse = gson.fromJson(reader, successClass);
+			return Either.right(successfulResponse);
 		}
+		catch (ExternalResponseTooLargeException tooLarge)
+		{
+			abortConnection(body);
+			throw tooLarge;
+		}
+	}
+
+	private static void abortConnection(InputStream body)
+	{
+		if (body instanceof ConnectionReleaseTrigger)
+		{
+			try
+			{
+				((ConnectionReleaseTrigger) body).abortConnection();
+			}
+			catch (IOException e)
+			{
+				logger.warn("Failed to abort connection of oversized response", e);
+			}
+		}
+	}
+
+	private static Charset getCharset(ClientHttpResponse response)
+	{
+		MediaType contentType = response.getHeaders().getContentType();
+		return contentType != null && contentType.getCharset() != null ? contentType.getCharset() :
+				StandardCharsets.UTF_8;
+	}
+
+	/**
+	 * Sets the response size limit for clients that do not override {@link #getMaxResponseBytes()}.
+	 */
+	public static void setDefaultMaxResponseBytes(long maxResponseBytes)
+	{
+		defaultMaxResponseBytes = maxResponseBytes;
+	}
+
+	public static long getDefaultMaxResponseBytes()
+	{
+		return defaultMaxResponseBytes;
+	}
+
+	protected long getMaxResponseBytes()
+	{
+		return defaultMaxResponseBytes;
+	}
 
-		return Either.right(gson.fromJson(responseEntity.getBody(), successClass));
+	static Gson getGson()
+	{
+		return gson;
 	}
 
 	private static Gson buildGson()
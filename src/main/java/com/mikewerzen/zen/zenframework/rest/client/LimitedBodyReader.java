@@ -0,0 +1,84 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client;
+
+import com.mikewerzen.zen.zenframework.exception.system.ExternalResponseTooLargeException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a WebClient response body into a String, failing with {@link ExternalResponseTooLargeException} once it
+ * passes the size limit. The error cancels the body, which closes the connection instead of reading the rest of it.
+ */
+final class LimitedBodyReader
+{
+	private LimitedBodyReader()
+	{
+	}
+
+	static Mono<String> readBody(ClientResponse response, long maxBytes)
+	{
+		long contentLength = response.headers().asHttpHeaders().getContentLength();
+		if (contentLength > maxBytes)
+		{
+			return response.body(BodyExtractors.toDataBuffers()).take(0).then(Mono.error(
+					new ExternalResponseTooLargeException(maxBytes, "Response body of " + contentLength
+							+ " bytes exceeds the limit of " + maxBytes + " bytes")));
+		}
+
+		Charset charset = response.headers().contentType().map(MediaType::getCharset).orElse(StandardCharsets.UTF_8);
+
+		return response.body(BodyExtractors.toDataBuffers())
+				.collect(ByteArrayOutputStream::new, (body, buffer) -> append(body, buffer, maxBytes))
+				.map(body -> new String(body.toByteArray(), charset));
+	}
+
+	private static void append(ByteArrayOutputStream body, DataBuffer buffer, long maxBytes)
+	{
+		try
+		{
+			int length = buffer.readableByteCount();
+			if (body.size() + (long) length > maxBytes)
+			{
+				throw new ExternalResponseTooLargeException(maxBytes,
+						"Response body exceeds the limit of " + maxBytes + " bytes");
+			}
+
+			byte[] bytes = new byte[length];
+			buffer.read(bytes);
+			body.write(bytes, 0, length);
+		}
+		finally
+		{
+			DataBufferUtils.release(buffer);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client;
+
+import com.mikewerzen.zen.zenframework.exception.system.ExternalResponseTooLargeException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails a read as soon as more than maxBytes have come off the stream.
+ */
+class LimitedInputStream extends FilterInputStream
+{
+	private final long maxBytes;
+	private long count;
+
+	LimitedInputStream(InputStream in, long maxBytes)
+	{
+		super(in);
+		this.maxBytes = maxBytes;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		int b = super.read();
+		if (b >= 0)
+		{
+			count(1);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		int read = super.read(b, off, len);
+		if (read > 0)
+		{
+			count(read);
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException
+	{
+		long skipped = super.skip(n);
+		count(skipped);
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported()
+	{
+		return false;
+	}
+
+	private void count(long bytes)
+	{
+		count += bytes;
+		if (count > maxBytes)
+		{
+			throw new ExternalResponseTooLargeException(maxBytes,
+					"Response body exceeded the limit of " + maxBytes + " bytes");
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep-alive connection pool shared by every {@link AbstractRestClient} and the Splunk exporters. Connections are
+ * capped in total and per route, reused while the server allows it, and evicted once idle or expired.
+ * <p>
+ * The time each call spends waiting for a pooled connection is kept per thread and read with
+ * {@link #takePoolWaitNanos()}.
+ * <p>
+ * The client's own retry handler is disabled; retries are left to the {@code RetryPolicy} and its budget.
+ */
+public class PooledHttpTransport implements Closeable
+{
+	private static final Logger logger = LogManager.getLogger(PooledHttpTransport.class);
+
+	private static final ThreadLocal<long[]> poolWaitNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+	private static final ClientHttpRequestFactory sharedRequestFactory =
+			(uri, httpMethod) -> getDefault().getRequestFactory().createRequest(uri, httpMethod);
+
+	private static volatile PooledHttpTransport defaultTransport;
+	private static PooledHttpTransport createdDefault;
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient httpClient;
+	private final HttpComponentsClientHttpRequestFactory requestFactory;
+
+	public PooledHttpTransport(int maxTotal, int maxPerRoute, long keepAliveMillis, long idleEvictMillis,
+			int connectTimeoutMillis, int readTimeoutMillis, int connectionRequestTimeoutMillis)
+	{
+		connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxTotal);
+		connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+		connectionManager.setValidateAfterInactivity(2000);
+
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeoutMillis)
+				.setSocketTimeout(readTimeoutMillis)
+				.setConnectionRequestTimeout(connectionRequestTimeoutMillis)
+				.build();
+
+		httpClient = HttpClientBuilder.create()
+				.setConnectionManager(new TimedConnectionManager(connectionManager))
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy(keepAliveStrategy(keepAliveMillis))
+				.evictExpiredConnections()
+				.evictIdleConnections(idleEvictMillis, TimeUnit.MILLISECONDS)
+				.disableCookieManagement()
+				.disableAutomaticRetries()
+				.useSystemProperties()
+				.build();
+
+		requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+	}
+
+	/**
+	 * Factory that always hands out requests from the current default transport, so rest templates built before the
+	 * transport is configured still pick up the configured pool.
+	 */
+	public static ClientHttpRequestFactory sharedRequestFactory()
+	{
+		return sharedRequestFactory;
+	}
+
+	/**
+	 * Replaces the default transport. A previous one created lazily by {@link #getDefault()} is closed, as nothing else
+	 * owns it; one set by a caller is left for that caller to close.
+	 */
+	public static void setDefault(PooledHttpTransport transport)
+	{
+		PooledHttpTransport replaced;
+		synchronized (PooledHttpTransport.class)
+		{
+			defaultTransport = transport;
+			replaced = createdDefault;
+			createdDefault = null;
+		}
+		if (replaced != null && replaced != transport)
+		{
+			replaced.close();
+		}
+	}
+
+	public static PooledHttpTransport getDefault()
+	{
+		PooledHttpTransport transport = defaultTransport;
+		if (transport == null)
+		{
+			synchronized (PooledHttpTransport.class)
+			{
+				if (defaultTransport == null)
+				{
+					defaultTransport = new PooledHttpTransport(200, 50, 30000, 60000, 15000, 15000, 5000);
+					createdDefault = defaultTransport;
+				}
+				transport = defaultTransport;
+			}
+		}
+		return transport;
+	}
+
+	/**
+	 * Returns the nanoseconds this thread has spent waiting for pooled connections since the last call, and resets
+	 * it.
+	 */
+	public static long takePoolWaitNanos()
+	{
+		long[] waited = poolWaitNanos.get();
+		long nanos = waited[0];
+		waited[0] = 0;
+		return nanos;
+	}
+
+	public ClientHttpRequestFactory getRequestFactory()
+	{
+		return requestFactory;
+	}
+
+	public PoolStats getTotalStats()
+	{
+		return connectionManager.getTotalStats();
+	}
+
+	@Override
+	public void close()
+	{
+		try
+		{
+			httpClient.close();
+		}
+		catch (IOException e)
+		{
+			logger.warn("Failed to close pooled http transport", e);
+		}
+	}
+
+	/**
+	 * Keeps connections alive for as long as the server's Keep-Alive header allows, or keepAliveMillis when it sends
+	 * none.
+	 */
+	private static ConnectionKeepAliveStrategy keepAliveStrategy(long keepAliveMillis)
+	{
+		return (response, context) ->
+		{
+			long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+			return duration > 0 ? duration : keepAliveMillis;
+		};
+	}
+
+	/**
+	 * Times the lease of each connection on the calling thread.
+	 */
+	private static class TimedConnectionManager implements HttpClientConnectionManager
+	{
+		private final HttpClientConnectionManager delegate;
+
+		TimedConnectionManager(HttpClientConnectionManager delegate)
+		{
+			this.delegate = delegate;
+		}
+
+		@Override
+		public ConnectionRequest requestConnection(HttpRoute route, Object state)
+		{
+			ConnectionRequest request = delegate.requestConnection(route, state);
+			return new ConnectionRequest()
+			{
+				@Override
+				public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+						throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException
+				{
+					long start = System.nanoTime();
+					try
+					{
+						return request.get(timeout, timeUnit);
+					}
+					finally
+					{
+						poolWaitNanos.get()[0] += System.nanoTime() - start;
+					}
+				}
+
+				@Override
+				public boolean cancel()
+				{
+					return request.cancel();
+				}
+			};
+		}
+
+		@Override
+		public void releaseConnection(HttpClientConnection conn, Object newState, long validDuration, TimeUnit timeUnit)
+		{
+			delegate.releaseConnection(conn, newState, validDuration, timeUnit);
+		}
+
+		@Override
+		public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout, HttpContext context)
+				throws IOException
+		{
+			delegate.connect(conn, route, connectTimeout, context);
+		}
+
+		@Override
+		public void upgrade(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException
+		{
+			delegate.upgrade(conn, route, context);
+		}
+
+		@Override
+		public void routeComplete(HttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException
+		{
+			delegate.routeComplete(conn, route, context);
+		}
+
+		@Override
+		public void closeIdleConnections(long idletime, TimeUnit timeUnit)
+		{
+			delegate.closeIdleConnections(idletime, timeUnit);
+		}
+
+		@Override
+		public void closeExpiredConnections()
+		{
+			delegate.closeExpiredConnections();
+		}
+
+		@Override
+		public void shutdown()
+		{
+			delegate.shutdown();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client;
+
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Builds the shared {@link PooledHttpTransport} from configuration and closes it with the application, and sets the
+ * default response size limit of {@link AbstractRestClient}.
+ */
+@Component
+public class PooledHttpTransportConfigurer
+{
+	@Value("${rest.http.pool.maxTotal:200}")
+	private int maxTotal;
+
+	@Value("${rest.http.pool.maxPerRoute:50}")
+	private int maxPerRoute;
+
+	@Value("${rest.http.pool.keepAliveMillis:30000}")
+	private long keepAliveMillis;
+
+	@Value("${rest.http.pool.idleEvictMillis:60000}")
+	private long idleEvictMillis;
+
+	@Value("${rest.http.connectTimeoutMillis:15000}")
+	private int connectTimeoutMillis;
+
+	@Value("${rest.http.readTimeoutMillis:15000}")
+	private int readTimeoutMillis;
+
+	@Value("${rest.http.pool.connectionRequestTimeoutMillis:5000}")
+	private int connectionRequestTimeoutMillis;
+
+	@Value("${rest.http.maxResponseBytes:16777216}")
+	private long maxResponseBytes;
+
+	private PooledHttpTransport transport;
+
+	@PostConstruct
+	public void initialize()
+	{
+		transport = new PooledHttpTransport(maxTotal, maxPerRoute, keepAliveMillis, idleEvictMillis,
+				connectTimeoutMillis, readTimeoutMillis, connectionRequestTimeoutMillis);
+		PooledHttpTransport.setDefault(transport);
+		AbstractRestClient.setDefaultMaxResponseBytes(maxResponseBytes);
+
+		MetricsRegistry.registerGauge("zen_http_pool_leased_connections", "Pooled http connections in use.", () -> transport.getTotalStats().getLeased());
+		MetricsRegistry.registerGauge("zen_http_pool_available_connections", "Idle pooled http connections kept alive.", () -> transport.getTotalStats().getAvailable());
+		MetricsRegistry.registerGauge("zen_http_pool_pending_requests", "Calls waiting for a pooled http connection.", () -> transport.getTotalStats().getPending());
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		PooledHttpTransport.setDefault(null);
+		transport.close();
+	}
+}
@@ -0,0 +1,273 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.rest.client;
+
+import com.mikewerzen.zen.zenframework.context.ZenContextPropagation;
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.exception.system.ExternalTimeoutException;
+import com.mikewerzen.zen.zenframework.exception.system.InternalException;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import io.atlassian.fugue.Either;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs a set of downstream calls concurrently and waits for all of them under one shared deadline.
+ *
+ * <pre>
+ * ScatterGather gather = new ScatterGather(Duration.ofSeconds(2));
+ * ScatterGather.Call&lt;Account&gt; account = gather.submit(() -&gt; accounts.get("getAccount", url, Account.class));
+ * ScatterGather.Call&lt;Balance&gt; balance = gather.submit(() -&gt; ledger.get("getBalance", url, Balance.class));
+ * gather.await();
+ * </pre>
+ *
+ * Calls run with the submitting thread's Zen contexts, so each still records its own external call attributes in the
+ * transaction log. Calls still running at the deadline are cancelled and fail with an ExternalTimeoutException.
+ */
+public class ScatterGather
+{
+	private static volatile ExecutorService defaultExecutor;
+
+	private final ExecutorService executor;
+	private final long deadlineNanos;
+	private final List<Call<?>> calls = new ArrayList<>();
+
+	private boolean awaited;
+
+	public ScatterGather(Duration timeout)
+	{
+		this(timeout, getDefaultExecutor());
+	}
+
+	public ScatterGather(Duration timeout, ExecutorService executor)
+	{
+		this.executor = ZenContextPropagation.wrapExecutorService(executor);
+		this.deadlineNanos = System.nanoTime() + timeout.toNanos();
+	}
+
+	/**
+	 * Sets the bounded pool used by scatter-gathers created without an executor.
+	 */
+	public static void setDefaultExecutor(ExecutorService executor)
+	{
+		defaultExecutor = executor;
+	}
+
+	public static ExecutorService getDefaultExecutor()
+	{
+		ExecutorService executor = defaultExecutor;
+		if (executor == null)
+		{
+			synchronized (ScatterGather.class)
+			{
+				if (defaultExecutor == null)
+				{
+					defaultExecutor = buildExecutor(16, 256);
+				}
+				executor = defaultExecutor;
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Saturation runs calls on the caller's thread, so a full pool slows a scatter-gather down instead of failing it.
+	 */
+	static ThreadPoolExecutor buildExecutor(int threads, int queueCapacity)
+	{
+		AtomicInteger threadNumber = new AtomicInteger();
+
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+					Thread thread = new Thread(runnable, "zen-scatter-gather-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+
+	public <T> Call<T> submit(Supplier<T> call)
+	{
+		if (awaited)
+		{
+			throw new InternalException("Calls cannot be added to a ScatterGather that was already awaited.");
+		}
+
+		Call<T> handle = new Call<>(executor.submit(call::get));
+		calls.add(handle);
+		return handle;
+	}
+
+	/**
+	 * Waits for every call to complete or for the deadline, cancelling the calls still running at the deadline.
+	 *
+	 * @return true if every call succeeded.
+	 */
+	public boolean await()
+	{
+		awaited = true;
+		boolean allSucceeded = true;
+		int cancelled = 0;
+
+		for (Call<?> call : calls)
+		{
+			if (!call.await(deadlineNanos))
+			{
+				allSucceeded = false;
+			}
+			if (call.timedOut)
+			{
+				cancelled++;
+			}
+		}
+
+		if (cancelled > 0)
+		{
+			LoggingContext loggingContext = ZenScope.currentLoggingContext();
+			if (loggingContext != null)
+			{
+				loggingContext.addEvent("Scatter-gather deadline exceeded, cancelled " + cancelled + " of "
+						+ calls.size() + " calls");
+			}
+		}
+
+		return allSucceeded;
+	}
+
+	/**
+	 * Cancels every call that has not completed yet.
+	 */
+	public void cancel()
+	{
+		for (Call<?> call : calls)
+		{
+			call.future.cancel(true);
+		}
+	}
+
+	public static final class Call<T>
+	{
+		private final Future<T> future;
+
+		private Either<Throwable, T> result;
+		private boolean timedOut;
+
+		private Call(Future<T> future)
+		{
+			this.future = future;
+		}
+
+		private boolean await(long deadlineNanos)
+		{
+			try
+			{
+				long remaining = Math.max(0, deadlineNanos - System.nanoTime());
+				result = Either.right(future.get(remaining, TimeUnit.NANOSECONDS));
+			}
+			catch (ExecutionException e)
+			{
+				result = Either.left(e.getCause());
+			}
+			catch (TimeoutException e)
+			{
+				future.cancel(true);
+				timedOut = true;
+				result = Either.left(new ExternalTimeoutException(
+						"Call did not complete before the scatter-gather deadline", e));
+			}
+			catch (CancellationException e)
+			{
+				result = Either.left(e);
+			}
+			catch (InterruptedException e)
+			{
+				future.cancel(true);
+				Thread.currentThread().interrupt();
+				result = Either.left(new InternalException("Interrupted while waiting for a scatter-gather call", e));
+			}
+
+			return result.isRight();
+		}
+
+		/**
+		 * @return the response, or the exception the call failed with.
+		 */
+		public Either<Throwable, T> getEither()
+		{
+			if (result == null)
+			{
+				throw new InternalException("ScatterGather.await() must be called before reading a call's result.");
+			}
+
+			return result;
+		}
+
+		/**
+		 * @return the response, rethrowing the exception the call failed with.
+		 */
+		public T get()
+		{
+			Either<Throwable, T> either = getEither();
+			if (either.isRight())
+			{
+				return either.right().get();
+			}
+
+			Throwable throwable = either.left().get();
+			if (throwable instanceof RuntimeException)
+			{
+				throw (RuntimeException) throwable;
+			}
+			if (throwable instanceof Error)
+			{
+				throw (Error) throwable;
+			}
+			throw new InternalException("Scatter-gather call failed", throwable);
+		}
+
+		public boolean isSuccess()
+		{
+			return getEither().isRight();
+		}
+
+		public boolean isTimedOut()
+		{
+			return timedOut;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.rest.client;
+
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import com.mikewerzen.zen.zenframework.util.concurrent.VirtualThreads;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Builds the default {@link ScatterGather} pool from configuration and shuts it down with the application. With
+ * threads.virtual.enabled on Java 21 each call runs on its own virtual thread instead, bounded only by the
+ * scatter-gather deadline.
+ */
+@Component
+public class ScatterGatherExecutorConfigurer
+{
+	@Value("${rest.scatterGather.threads:16}")
+	private int threads;
+
+	@Value("${rest.scatterGather.queueCapacity:256}")
+	private int queueCapacity;
+
+	@Value("${threads.virtual.enabled:false}")
+	private boolean virtualThreadsEnabled;
+
+	private ExecutorService executor;
+
+	@PostConstruct
+	public void initialize()
+	{
+		if (virtualThreadsEnabled && VirtualThreads.isAvailable())
+		{
+			executor = VirtualThreads.newExecutor("zen-scatter-gather-");
+			ScatterGather.setDefaultExecutor(executor);
+			return;
+		}
+
+		ThreadPoolExecutor pool = ScatterGather.buildExecutor(threads, queueCapacity);
+		executor = pool;
+		ScatterGather.setDefaultExecutor(pool);
+
+		MetricsRegistry.registerGauge("zen_scatter_gather_active_threads", "Threads running scatter-gather calls.", pool::getActiveCount);
+		MetricsRegistry.registerGauge("zen_scatter_gather_queue_depth", "Scatter-gather calls waiting for a thread.", () -> pool.getQueue().size());
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		ScatterGather.setDefaultExecutor(null);
+		executor.shutdownNow();
+	}
+}
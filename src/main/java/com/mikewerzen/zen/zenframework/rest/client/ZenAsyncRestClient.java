@@ -0,0 +1,107 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client;
+
+import com.mikewerzen.zen.zenframework.exception.system.ExternalException;
+import com.mikewerzen.zen.zenframework.logging.external.ExternalCallAttributesBuilder;
+import com.mikewerzen.zen.zenframework.rest.response.ZenErrorResponse;
+import com.mikewerzen.zen.zenframework.rest.util.RestUtils;
+import com.mikewerzen.zen.zenframework.security.context.SecurityContextHolder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking {@link ZenRestClient}, returning a CompletableFuture for each call.
+ */
+public class ZenAsyncRestClient extends AbstractAsyncRestClient<ZenErrorResponse>
+{
+	public ZenAsyncRestClient(String serviceName)
+	{
+		this(null, serviceName);
+	}
+
+	public ZenAsyncRestClient(String systemName, String serviceName)
+	{
+		this(systemName, serviceName, null);
+	}
+
+	public ZenAsyncRestClient(String systemName, String serviceName, String serviceVersion)
+	{
+		super(systemName, serviceName, serviceVersion, ZenErrorResponse.class);
+	}
+
+	public <Request, SuccessfulResponse> CompletableFuture<SuccessfulResponse> post(String methodName, String url,
+			Request request, Class<SuccessfulResponse> responseClass)
+	{
+		return super.execute(methodName, request, url, HttpMethod.POST, responseClass);
+	}
+
+	public <SuccessfulResponse> CompletableFuture<SuccessfulResponse> get(String methodName, String url,
+			Class<SuccessfulResponse> responseClass)
+	{
+		return super.execute(methodName, null, url, HttpMethod.GET, responseClass);
+	}
+
+	public <Request, SuccessfulResponse> CompletableFuture<SuccessfulResponse> put(String methodName, String url,
+			Request request, Class<SuccessfulResponse> responseClass)
+	{
+		return super.execute(methodName, request, url, HttpMethod.PUT, responseClass);
+	}
+
+	public <Request, SuccessfulResponse> CompletableFuture<SuccessfulResponse> patch(String methodName, String url,
+			Request request, Class<SuccessfulResponse> responseClass)
+	{
+		return super.execute(methodName, request, url, HttpMethod.PATCH, responseClass);
+	}
+
+	public <Request, SuccessfulResponse> CompletableFuture<SuccessfulResponse> delete(String methodName, String url,
+			Request request, Class<SuccessfulResponse> responseClass)
+	{
+		return super.execute(methodName, request, url, HttpMethod.DELETE, responseClass);
+	}
+
+	@Override
+	protected HttpHeaders buildHttpHeaders()
+	{
+		if (SecurityContextHolder.isPresent())
+		{
+			return RestUtils.buildHttpHeadersWithAuth();
+		}
+
+		return RestUtils.buildHttpHeaders();
+	}
+
+	@Override
+	protected ExternalException convertErrorIntoException(ZenErrorResponse zenErrorResponse)
+	{
+		return ZenRestClient.toException(zenErrorResponse);
+	}
+
+	@Override
+	protected void addErrorAttributes(ExternalCallAttributesBuilder builder, ZenErrorResponse zenErrorResponse)
+	{
+		ZenRestClient.addZenErrorAttributes(builder, zenErrorResponse);
+	}
+}
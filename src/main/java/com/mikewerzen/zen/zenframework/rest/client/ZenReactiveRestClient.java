@@ -0,0 +1,246 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.rest.client;
+
+import com.mikewerzen.zen.zenframework.context.ZenReactiveContext;
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.exception.system.ExternalException;
+import com.mikewerzen.zen.zenframework.exception.system.ExternalTimeoutException;
+import com.mikewerzen.zen.zenframework.logging.external.ExternalCallAttributesBuilder;
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import com.mikewerzen.zen.zenframework.metrics.RequestMetrics;
+import com.mikewerzen.zen.zenframework.rest.response.ZenErrorResponse;
+import com.mikewerzen.zen.zenframework.rest.util.RestUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Non-blocking counterpart of {@link ZenRestClient}, built on WebClient.
+ *
+ * Headers, error mapping, external call attributes and metrics match the blocking client. The {@link ZenScope} is
+ * read from the subscriber context of the calling reactive transaction, or from the subscribing thread otherwise,
+ * and is bound only while headers are built and the call is committed to its logging context.
+ */
+public class ZenReactiveRestClient
+{
+	private static final Logger logger = LogManager.getLogger(ZenReactiveRestClient.class);
+	private static final Duration DEFAULT_TIMEOUT = Duration.ofMillis(15000);
+
+	private final String systemName;
+	private final String serviceName;
+	private final String serviceVersion;
+
+	private final WebClient webClient;
+	private final Duration timeout;
+
+	private final Map<HttpMethod, Map<String, RequestMetrics>> callMetrics = new EnumMap<>(HttpMethod.class);
+
+	public ZenReactiveRestClient(String serviceName)
+	{
+		this(null, serviceName);
+	}
+
+	public ZenReactiveRestClient(String systemName, String serviceName)
+	{
+		this(systemName, serviceName, null);
+	}
+
+	public ZenReactiveRestClient(String systemName, String serviceName, String serviceVersion)
+	{
+		this(systemName, serviceName, serviceVersion, WebClient.create(), DEFAULT_TIMEOUT);
+	}
+
+	public ZenReactiveRestClient(String systemName, String serviceName, String serviceVersion, WebClient webClient,
+			Duration timeout)
+	{
+		this.systemName = systemName;
+		this.serviceName = serviceName;
+		this.serviceVersion = serviceVersion;
+		this.webClient = webClient;
+		this.timeout = timeout;
+
+		for (HttpMethod method : HttpMethod.values())
+		{
+			callMetrics.put(method, new ConcurrentHashMap<>());
+		}
+	}
+
+	public <Request, SuccessfulResponse> Mono<SuccessfulResponse> post(String methodName, String url, Request request,
+			Class<SuccessfulResponse> responseClass)
+	{
+		return execute(methodName, request, url, HttpMethod.POST, responseClass);
+	}
+
+	public <SuccessfulResponse> Mono<SuccessfulResponse> get(String methodName, String url,
+			Class<SuccessfulResponse> responseClass)
+	{
+		return execute(methodName, null, url, HttpMethod.GET, responseClass);
+	}
+
+	public <Request, SuccessfulResponse> Mono<SuccessfulResponse> put(String methodName, String url, Request request,
+			Class<SuccessfulResponse> responseClass)
+	{
+		return execute(methodName, request, url, HttpMethod.PUT, responseClass);
+	}
+
+	public <Request, SuccessfulResponse> Mono<SuccessfulResponse> patch(String methodName, String url, Request request,
+			Class<SuccessfulResponse> responseClass)
+	{
+		return execute(methodName, request, url, HttpMethod.PATCH, responseClass);
+	}
+
+	public <Request, SuccessfulResponse> Mono<SuccessfulResponse> delete(String methodName, String url,
+			Request request, Class<SuccessfulResponse> responseClass)
+	{
+		return execute(methodName, request, url, HttpMethod.DELETE, responseClass);
+	}
+
+	protected <Request, SuccessfulResponse> Mono<SuccessfulResponse> execute(String methodName, Request request,
+			String uri, HttpMethod method, Class<SuccessfulResponse> responseClass)
+	{
+		return Mono.subscriberContext().flatMap(context -> {
+			ZenScope scope = ZenReactiveContext.getScope(context);
+			return execute(scope != null ? scope : ZenScope.current(), methodName, request, uri, method,
+					responseClass);
+		});
+	}
+
+	protected HttpHeaders buildHttpHeaders()
+	{
+		if (ZenScope.currentSecurityContext() != null)
+		{
+			return RestUtils.buildHttpHeadersWithAuth();
+		}
+
+		return RestUtils.buildHttpHeaders();
+	}
+
+	/**
+	 * Largest response body read into memory, {@link AbstractRestClient#getDefaultMaxResponseBytes()} unless
+	 * overridden.
+	 */
+	protected long getMaxResponseBytes()
+	{
+		return AbstractRestClient.getDefaultMaxResponseBytes();
+	}
+
+	private <Request, SuccessfulResponse> Mono<SuccessfulResponse> execute(ZenScope scope, String methodName,
+			Request request, String uri, HttpMethod method, Class<SuccessfulResponse> responseClass)
+	{
+		HttpHeaders headers = ZenReactiveContext.inScope(scope, this::buildHttpHeaders);
+
+		ExternalCallAttributesBuilder builder =
+				new ExternalCallAttributesBuilder(systemName, serviceName, methodName, method.name(), serviceVersion);
+		builder.setHeaderInformation(headers);
+
+		RequestMetrics metrics = getMetrics(methodName, method);
+		long startTime = System.nanoTime();
+		AtomicBoolean committed = new AtomicBoolean();
+
+		WebClient.RequestBodySpec spec = webClient.method(method).uri(URI.create(uri))
+				.headers(requestHeaders -> requestHeaders.addAll(headers));
+		WebClient.RequestHeadersSpec<?> requestSpec = request == null ? spec : spec.syncBody(request);
+
+		return requestSpec.exchange()
+				.flatMap(response -> LimitedBodyReader.readBody(response, getMaxResponseBytes())
+						.map(body -> readResponse(builder, response.statusCode(), body, responseClass)))
+				.timeout(timeout)
+				.onErrorMap(TimeoutException.class, timeoutException -> new ExternalTimeoutException(
+						"Call to " + serviceName + " did not complete within " + timeout.toMillis() + "ms",
+						timeoutException))
+				.doOnError(error -> handleError(builder, error))
+				.doOnSuccessOrError((value, error) -> commit(scope, committed, metrics, startTime, builder))
+				.doOnCancel(() -> {
+					builder.setSuccess(false);
+					commit(scope, committed, metrics, startTime, builder);
+				});
+	}
+
+	private <SuccessfulResponse> SuccessfulResponse readResponse(ExternalCallAttributesBuilder builder,
+			HttpStatus status, String body, Class<SuccessfulResponse> responseClass)
+	{
+		builder.setHttpStatusCode(status);
+
+		if (!status.is1xxInformational() && !status.is2xxSuccessful())
+		{
+			ZenErrorResponse errorResponse = AbstractRestClient.getGson().fromJson(body, ZenErrorResponse.class);
+			ZenRestClient.addZenErrorAttributes(builder, errorResponse);
+
+			ExternalException externalException = ZenRestClient.toException(errorResponse);
+			builder.setThrowable(externalException).setSuccess(false);
+			throw externalException;
+		}
+
+		builder.setSuccess(true);
+		return AbstractRestClient.getGson().fromJson(body, responseClass);
+	}
+
+	private void handleError(ExternalCallAttributesBuilder builder, Throwable error)
+	{
+		if (builder.getThrowable() == null)
+		{
+			logger.error("Exception occurred executing Rest request", error);
+			builder.setThrowable(error).setSuccess(false);
+		}
+	}
+
+	private void commit(ZenScope scope, AtomicBoolean committed, RequestMetrics metrics, long startTime,
+			ExternalCallAttributesBuilder builder)
+	{
+		if (!committed.compareAndSet(false, true))
+		{
+			return;
+		}
+
+		Integer httpStatusCode = builder.getHttpStatusCode();
+		metrics.record(System.nanoTime() - startTime, httpStatusCode == null ? 0 : httpStatusCode,
+				builder.getThrowable());
+
+		ZenReactiveContext.runInScope(scope, builder::buildAndCommit);
+	}
+
+	private RequestMetrics getMetrics(String serviceMethodName, HttpMethod method)
+	{
+		Map<String, RequestMetrics> methodMetrics = callMetrics.get(method);
+		String key = serviceMethodName == null ? "" : serviceMethodName;
+
+		RequestMetrics metrics = methodMetrics.get(key);
+		return metrics != null ? metrics : methodMetrics.computeIfAbsent(key,
+				name -> MetricsRegistry.getRequestMetrics(MetricsRegistry.EXTERNAL_CALL, systemName, serviceName,
+						name, method.name()));
+	}
+}
@@ -26,6 +26,7 @@ package com.mikewerzen.zen.zenframework.rest.client;
 import com.mikewerzen.zen.zenframework.exception.system.ExternalException;
 import com.mikewerzen.zen.zenframework.exception.system.RethrownExternalException;
 import com.mikewerzen.zen.zenframework.logging.external.ExternalCallAttributesBuilder;
+import com.mikewerzen.zen.zenframework.rest.client.retry.RetryPolicy;
 import com.mikewerzen.zen.zenframework.rest.response.ZenError;
 import com.mikewerzen.zen.zenframework.rest.response.ZenErrorResponse;
 import com.mikewerzen.zen.zenframework.rest.util.RestUtils;
@@ -82,6 +83,30 @@ public class ZenRestClient extends AbstractRestClient<ZenErrorResponse>
 		return super.execute(methodName, request, url, HttpMethod.DELETE, responseClass);
 	}
 
+	public <Request, SuccessfulResponse> SuccessfulResponse post(String methodName, String url, Request request,
+			Class<SuccessfulResponse> responseClass, RetryPolicy retryPolicy)
+	{
+		return super.execute(methodName, request, url, HttpMethod.POST, responseClass, retryPolicy);
+	}
+
+	public <SuccessfulResponse> SuccessfulResponse get(String methodName, String url,
+			Class<SuccessfulResponse> responseClass, RetryPolicy retryPolicy)
+	{
+		return super.execute(methodName, null, url, HttpMethod.GET, responseClass, retryPolicy);
+	}
+
+	public <Request, SuccessfulResponse> SuccessfulResponse put(String methodName, String url, Request request,
+			Class<SuccessfulResponse> responseClass, RetryPolicy retryPolicy)
+	{
+		return super.execute(methodName, request, url, HttpMethod.PUT, responseClass, retryPolicy);
+	}
+
+	public <Request, SuccessfulResponse> SuccessfulResponse delete(String methodName, String url, Request request,
+			Class<SuccessfulResponse> responseClass, RetryPolicy retryPolicy)
+	{
+		return super.execute(methodName, request, url, HttpMethod.DELETE, responseClass, retryPolicy);
+	}
+
 	@Override
 	protected HttpHeaders buildHttpHeaders()
 	{
@@ -95,6 +120,18 @@ public class ZenRestClient extends AbstractRestClient<ZenErrorResponse>
 
 	@Override
 	protected ExternalException convertErrorIntoException(ZenErrorResponse zenErrorResponse)
+	{
+		return toException(zenErrorResponse);
+	}
+
+	@Override
+	protected void addErrorAttributes(ExternalCallAttributesBuilder builder,
+			ZenErrorResponse zenErrorResponse)
+	{
+		addZenErrorAttributes(builder, zenErrorResponse);
+	}
+
+	static ExternalException toException(ZenErrorResponse zenErrorResponse)
 	{
 		ZenError error = zenErrorResponse.getError();
 
@@ -107,9 +144,7 @@ public class ZenRestClient extends AbstractRestClient<ZenErrorResponse>
 		return new ExternalException(String.valueOf(error.errorCode), error.errorMessage);
 	}
 
-	@Override
-	protected void addErrorAttributes(ExternalCallAttributesBuilder builder,
-			ZenErrorResponse zenErrorResponse)
+	static void addZenErrorAttributes(ExternalCallAttributesBuilder builder, ZenErrorResponse zenErrorResponse)
 	{
 		ZenError error = zenErrorResponse.getError();
 		builder.setExternalResponseCode(error.errorCode);
@@ -0,0 +1,284 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client.breaker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stops calls to a downstream service that is failing or too slow, so callers fail fast instead of waiting out
+ * timeouts.
+ * <p>
+ * While closed, the outcomes of the last windowSize calls are kept. Once at least minimumCalls are recorded and the
+ * share of failed or of slow calls reaches its threshold, the breaker opens and rejects calls for openMillis. It then
+ * lets halfOpenCalls trial calls through; if all of them succeed in time it closes again, otherwise it reopens.
+ * <p>
+ * State is held in atomics only, so checking it takes no lock. Each call reports its outcome through the
+ * {@link Permit} it was granted, and outcomes of calls granted under an earlier state are ignored, so a slow call let
+ * through while closed cannot close or reopen a half-open breaker.
+ */
+public class CircuitBreaker
+{
+	private static final int EMPTY = 0;
+	private static final int SUCCESS = 1;
+	private static final int FAILURE = 2;
+	private static final int SLOW = 4;
+
+	/**
+	 * Receives each state change, from the thread whose call caused it.
+	 */
+	public interface TransitionListener
+	{
+		void onTransition(CircuitBreaker breaker, CircuitBreakerState from, CircuitBreakerState to);
+	}
+
+	private final String name;
+	private final int minimumCalls;
+	private final int failureRateThreshold;
+	private final int slowCallRateThreshold;
+	private final long slowCallNanos;
+	private final long openNanos;
+	private final int halfOpenCalls;
+	private final TransitionListener listener;
+
+	private final AtomicReference<Status> status = new AtomicReference<>(new Status(CircuitBreakerState.CLOSED, 0));
+
+	private final AtomicIntegerArray window;
+	private final AtomicInteger nextSlot = new AtomicInteger();
+	private final AtomicInteger recorded = new AtomicInteger();
+	private final AtomicInteger failures = new AtomicInteger();
+	private final AtomicInteger slowCalls = new AtomicInteger();
+
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder[] transitions = new LongAdder[CircuitBreakerState.values().length];
+
+	public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+			int slowCallRateThreshold, long slowCallMillis, long openMillis, int halfOpenCalls,
+			TransitionListener listener)
+	{
+		this.name = name;
+		this.window = new AtomicIntegerArray(windowSize);
+		this.minimumCalls = Math.min(minimumCalls, windowSize);
+		this.failureRateThreshold = failureRateThreshold;
+		this.slowCallRateThreshold = slowCallRateThreshold;
+		this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+		this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+		this.halfOpenCalls = halfOpenCalls;
+		this.listener = listener;
+
+		for (int i = 0; i < transitions.length; i++)
+		{
+			transitions[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @return a permit to report the call's outcome to, or null if the call is rejected.
+	 */
+	public Permit tryAcquire()
+	{
+		Status current = status.get();
+		switch (current.state)
+		{
+			case CLOSED:
+				return current.permit;
+
+			case OPEN:
+				if (System.nanoTime() - current.sinceNanos < openNanos)
+				{
+					rejected.increment();
+					return null;
+				}
+				transition(current, new Status(CircuitBreakerState.HALF_OPEN, System.nanoTime(), halfOpenCalls));
+				return tryAcquire();
+
+			default:
+				if (current.trialPermits.get() > 0 && current.trialPermits.getAndDecrement() > 0)
+				{
+					return current.permit;
+				}
+				rejected.increment();
+				return null;
+		}
+	}
+
+	private void onResult(Status grantedUnder, long durationNanos, boolean failed)
+	{
+		boolean slow = durationNanos >= slowCallNanos;
+		Status current = status.get();
+
+		if (current != grantedUnder)
+		{
+			return;
+		}
+
+		if (current.state == CircuitBreakerState.HALF_OPEN)
+		{
+			if (failed || slow)
+			{
+				transition(current, new Status(CircuitBreakerState.OPEN, System.nanoTime()));
+			}
+			else if (current.trialSuccesses.incrementAndGet() >= halfOpenCalls)
+			{
+				if (transition(current, new Status(CircuitBreakerState.CLOSED, System.nanoTime())))
+				{
+					clearWindow();
+				}
+			}
+		}
+		else if (current.state == CircuitBreakerState.CLOSED)
+		{
+			record((failed ? FAILURE : SUCCESS) | (slow ? SLOW : 0));
+
+			int calls = recorded.get();
+			if (calls >= minimumCalls && (failures.get() * 100 >= failureRateThreshold * calls ||
+					slowCalls.get() * 100 >= slowCallRateThreshold * calls))
+			{
+				transition(current, new Status(CircuitBreakerState.OPEN, System.nanoTime()));
+			}
+		}
+	}
+
+	public CircuitBreakerState getState()
+	{
+		return status.get().state;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public long getRejected()
+	{
+		return rejected.sum();
+	}
+
+	/**
+	 * How many times the breaker has moved into the given state.
+	 */
+	public long getTransitions(CircuitBreakerState state)
+	{
+		return transitions[state.ordinal()].sum();
+	}
+
+	private void record(int outcome)
+	{
+		int slot = Math.floorMod(nextSlot.getAndIncrement(), window.length());
+		int previous = window.getAndSet(slot, outcome);
+
+		if (previous == EMPTY)
+		{
+			recorded.incrementAndGet();
+		}
+		adjust(previous, -1);
+		adjust(outcome, 1);
+	}
+
+	private void adjust(int outcome, int delta)
+	{
+		if ((outcome & FAILURE) != 0)
+		{
+			failures.addAndGet(delta);
+		}
+		if ((outcome & SLOW) != 0)
+		{
+			slowCalls.addAndGet(delta);
+		}
+	}
+
+	private void clearWindow()
+	{
+		for (int i = 0; i < window.length(); i++)
+		{
+			int previous = window.getAndSet(i, EMPTY);
+			if (previous != EMPTY)
+			{
+				recorded.decrementAndGet();
+				adjust(previous, -1);
+			}
+		}
+	}
+
+	private boolean transition(Status from, Status to)
+	{
+		if (!status.compareAndSet(from, to))
+		{
+			return false;
+		}
+
+		transitions[to.state.ordinal()].increment();
+
+		if (listener != null)
+		{
+			listener.onTransition(this, from.state, to.state);
+		}
+		return true;
+	}
+
+	/**
+	 * Granted by {@link #tryAcquire()} for the state the breaker was in at the time. Shared by every call granted under
+	 * that state, so acquiring allocates nothing.
+	 */
+	public final class Permit
+	{
+		private final Status grantedUnder;
+
+		private Permit(Status grantedUnder)
+		{
+			this.grantedUnder = grantedUnder;
+		}
+
+		/**
+		 * Records the outcome of the call. Ignored if the breaker has changed state since the permit was granted.
+		 */
+		public void onResult(long durationNanos, boolean failed)
+		{
+			CircuitBreaker.this.onResult(grantedUnder, durationNanos, failed);
+		}
+	}
+
+	private class Status
+	{
+		final CircuitBreakerState state;
+		final long sinceNanos;
+		final AtomicInteger trialPermits;
+		final AtomicInteger trialSuccesses = new AtomicInteger();
+		final Permit permit = new Permit(this);
+
+		Status(CircuitBreakerState state, long sinceNanos)
+		{
+			this(state, sinceNanos, 0);
+		}
+
+		Status(CircuitBreakerState state, long sinceNanos, int trialPermits)
+		{
+			this.state = state;
+			this.sinceNanos = sinceNanos;
+			this.trialPermits = new AtomicInteger(trialPermits);
+		}
+	}
+}
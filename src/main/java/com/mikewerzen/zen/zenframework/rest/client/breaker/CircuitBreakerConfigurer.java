@@ -0,0 +1,77 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client.breaker;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Turns on a circuit breaker per downstream service for every rest client when rest.circuitBreaker.enabled is set.
+ */
+@Component
+public class CircuitBreakerConfigurer
+{
+	@Value("${rest.circuitBreaker.enabled:false}")
+	private boolean enabled;
+
+	@Value("${rest.circuitBreaker.windowSize:100}")
+	private int windowSize;
+
+	@Value("${rest.circuitBreaker.minimumCalls:20}")
+	private int minimumCalls;
+
+	@Value("${rest.circuitBreaker.failureRateThreshold:50}")
+	private int failureRateThreshold;
+
+	@Value("${rest.circuitBreaker.slowCallRateThreshold:80}")
+	private int slowCallRateThreshold;
+
+	@Value("${rest.circuitBreaker.slowCallMillis:5000}")
+	private long slowCallMillis;
+
+	@Value("${rest.circuitBreaker.openMillis:30000}")
+	private long openMillis;
+
+	@Value("${rest.circuitBreaker.halfOpenCalls:5}")
+	private int halfOpenCalls;
+
+	@PostConstruct
+	public void initialize()
+	{
+		if (enabled)
+		{
+			CircuitBreakers.setFactory(name -> new CircuitBreaker(name, windowSize, minimumCalls,
+					failureRateThreshold, slowCallRateThreshold, slowCallMillis, openMillis, halfOpenCalls,
+					CircuitBreakers::logTransition));
+		}
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		CircuitBreakers.setFactory(null);
+	}
+}
@@ -0,0 +1,120 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client.breaker;
+
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * One {@link CircuitBreaker} per downstream system and service, shared by every client calling it. Breakers are only
+ * created once a factory is set, so without one every call goes ahead.
+ */
+public final class CircuitBreakers
+{
+	private static final Logger logger = LogManager.getLogger(CircuitBreakers.class);
+
+	private static final String STATE = "zen_circuit_breaker_state";
+	private static final String REJECTED = "zen_circuit_breaker_rejected_total";
+	private static final String TRANSITIONS = "zen_circuit_breaker_transitions_total";
+
+	private static final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+	private static volatile Function<String, CircuitBreaker> factory;
+
+	static
+	{
+		MetricsRegistry.registerGaugeFamily(STATE, "Circuit breaker state: 0 closed, 1 open, 2 half-open.", "breaker");
+		MetricsRegistry.registerCounterFamily(REJECTED, "Calls rejected by an open circuit breaker.", "breaker");
+		MetricsRegistry.registerCounterFamily(TRANSITIONS, "Circuit breaker state changes, by the state entered.", "breaker", "state");
+	}
+
+	private CircuitBreakers()
+	{
+	}
+
+	/**
+	 * Sets how new breakers are built, given their name; null disables circuit breaking. Existing breakers are
+	 * dropped along with their metrics.
+	 */
+	public static synchronized void setFactory(Function<String, CircuitBreaker> breakerFactory)
+	{
+		factory = breakerFactory;
+		breakers.clear();
+
+		MetricsRegistry.clearLabeledCallbacks(STATE);
+		MetricsRegistry.clearLabeledCallbacks(REJECTED);
+		MetricsRegistry.clearLabeledCallbacks(TRANSITIONS);
+	}
+
+	/**
+	 * Returns the breaker for the downstream service, or null when circuit breaking is disabled.
+	 */
+	public static CircuitBreaker get(String systemName, String serviceName)
+	{
+		Function<String, CircuitBreaker> breakerFactory = factory;
+		if (breakerFactory == null)
+		{
+			return null;
+		}
+
+		String name = systemName == null ? serviceName : systemName + "/" + serviceName;
+		CircuitBreaker breaker = breakers.get(name);
+		return breaker != null ? breaker : breakers.computeIfAbsent(name, key -> create(breakerFactory, key));
+	}
+
+	/**
+	 * Logs a state change, adding it as an event to the transaction whose call caused it.
+	 */
+	public static void logTransition(CircuitBreaker breaker, CircuitBreakerState from, CircuitBreakerState to)
+	{
+		String message = "Circuit breaker " + breaker.getName() + " moved from " + from + " to " + to;
+		logger.warn(message);
+
+		LoggingContext loggingContext = ZenScope.currentLoggingContext();
+		if (loggingContext != null)
+		{
+			loggingContext.addEvent(message);
+		}
+	}
+
+	private static CircuitBreaker create(Function<String, CircuitBreaker> breakerFactory, String name)
+	{
+		CircuitBreaker breaker = breakerFactory.apply(name);
+
+		MetricsRegistry.registerLabeledCallback(STATE, () -> breaker.getState().ordinal(), name);
+		MetricsRegistry.registerLabeledCallback(REJECTED, breaker::getRejected, name);
+		for (CircuitBreakerState state : CircuitBreakerState.values())
+		{
+			MetricsRegistry.registerLabeledCallback(TRANSITIONS, () -> breaker.getTransitions(state), name,
+					state.name());
+		}
+		return breaker;
+	}
+}
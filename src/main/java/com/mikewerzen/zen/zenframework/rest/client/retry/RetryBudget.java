@@ -0,0 +1,112 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide cap on retries, so a struggling dependency is not hit with a multiple of its normal traffic.
+ * <p>
+ * Every call deposits retryRatio tokens and every retry withdraws one, so over time retries stay under retryRatio
+ * of calls. The balance is capped at reserve tokens, which also lets a quiet process retry a few times before it has
+ * earned them.
+ */
+public class RetryBudget
+{
+	private static final long TOKEN = 1000;
+
+	private static volatile RetryBudget defaultBudget = new RetryBudget(0.1, 10);
+
+	private final long deposit;
+	private final long maxBalance;
+	private final AtomicLong balance;
+
+	private final LongAdder retries = new LongAdder();
+	private final LongAdder exhausted = new LongAdder();
+
+	public RetryBudget(double retryRatio, int reserve)
+	{
+		this.deposit = (long) (retryRatio * TOKEN);
+		this.maxBalance = reserve * TOKEN;
+		this.balance = new AtomicLong(maxBalance);
+	}
+
+	public static void setDefault(RetryBudget budget)
+	{
+		defaultBudget = budget;
+	}
+
+	public static RetryBudget getDefault()
+	{
+		return defaultBudget;
+	}
+
+	/**
+	 * Records a call, earning it a share of a retry.
+	 */
+	public void deposit()
+	{
+		long current;
+		do
+		{
+			current = balance.get();
+			if (current >= maxBalance)
+			{
+				return;
+			}
+		}
+		while (!balance.compareAndSet(current, Math.min(maxBalance, current + deposit)));
+	}
+
+	/**
+	 * Spends one retry, or returns false if the budget is exhausted.
+	 */
+	public boolean tryWithdraw()
+	{
+		long current;
+		do
+		{
+			current = balance.get();
+			if (current < TOKEN)
+			{
+				exhausted.increment();
+				return false;
+			}
+		}
+		while (!balance.compareAndSet(current, current - TOKEN));
+
+		retries.increment();
+		return true;
+	}
+
+	public long getRetries()
+	{
+		return retries.sum();
+	}
+
+	public long getExhausted()
+	{
+		return exhausted.sum();
+	}
+}
@@ -0,0 +1,72 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client.retry;
+
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import com.mikewerzen.zen.zenframework.util.ExponentialBackoffGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Sets the default {@link RetryPolicy} and {@link RetryBudget} from configuration. Rest calls make a single attempt
+ * unless rest.retry.maxAttempts is raised.
+ */
+@Component
+public class RetryConfigurer
+{
+	@Value("${rest.retry.maxAttempts:1}")
+	private int maxAttempts;
+
+	@Value("${rest.retry.initialBackoffMillis:50}")
+	private long initialBackoffMillis;
+
+	@Value("${rest.retry.maxBackoffMillis:1000}")
+	private long maxBackoffMillis;
+
+	@Value("${rest.retry.multiplier:2}")
+	private double multiplier;
+
+	@Value("${rest.retry.jitter:0.5}")
+	private double jitter;
+
+	@Value("${rest.retry.budget.ratio:0.1}")
+	private double budgetRatio;
+
+	@Value("${rest.retry.budget.reserve:10}")
+	private int budgetReserve;
+
+	@PostConstruct
+	public void initialize()
+	{
+		RetryPolicy.setDefault(new RetryPolicy(maxAttempts,
+				new ExponentialBackoffGenerator(initialBackoffMillis, maxBackoffMillis, multiplier, jitter)));
+
+		RetryBudget budget = new RetryBudget(budgetRatio, budgetReserve);
+		RetryBudget.setDefault(budget);
+
+		MetricsRegistry.registerCounter("zen_rest_retries_total", "Rest call attempts made as retries.", budget::getRetries);
+		MetricsRegistry.registerCounter("zen_rest_retry_budget_exhausted_total", "Retries skipped because the retry budget was spent.", budget::getExhausted);
+	}
+}
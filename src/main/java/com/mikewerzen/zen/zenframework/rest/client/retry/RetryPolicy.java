@@ -0,0 +1,125 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client.retry;
+
+import com.mikewerzen.zen.zenframework.exception.system.ExternalTimeoutException;
+import com.mikewerzen.zen.zenframework.util.ExponentialBackoffGenerator;
+import org.springframework.http.HttpMethod;
+
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Decides whether a failed rest call is attempted again, and how long to wait first.
+ * <p>
+ * Only idempotent methods are retried, and only for outcomes that are likely to succeed on another attempt: failures
+ * to connect, timeouts, and 502, 503 or 504 responses.
+ */
+public class RetryPolicy
+{
+	private static final Set<HttpMethod> IDEMPOTENT_METHODS =
+			EnumSet.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE,
+					HttpMethod.TRACE);
+
+	private static final RetryPolicy NONE = new RetryPolicy(1, new ExponentialBackoffGenerator(0, 0));
+
+	private static volatile RetryPolicy defaultPolicy = NONE;
+
+	private final int maxAttempts;
+	private final ExponentialBackoffGenerator backoff;
+
+	public RetryPolicy(int maxAttempts, ExponentialBackoffGenerator backoff)
+	{
+		this.maxAttempts = maxAttempts;
+		this.backoff = backoff;
+	}
+
+	public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis)
+	{
+		this(maxAttempts, new ExponentialBackoffGenerator(initialBackoffMillis, maxBackoffMillis, 2, .5));
+	}
+
+	/**
+	 * A policy that makes a single attempt.
+	 */
+	public static RetryPolicy none()
+	{
+		return NONE;
+	}
+
+	/**
+	 * Sets the policy used by clients and calls that do not set their own.
+	 */
+	public static void setDefault(RetryPolicy policy)
+	{
+		defaultPolicy = policy == null ? NONE : policy;
+	}
+
+	public static RetryPolicy getDefault()
+	{
+		return defaultPolicy;
+	}
+
+	/**
+	 * Whether the attempt that just ended with the given status code or exception should be followed by another.
+	 */
+	public boolean isRetryable(HttpMethod method, int attempt, Integer httpStatusCode, Throwable throwable)
+	{
+		if (attempt >= maxAttempts || !IDEMPOTENT_METHODS.contains(method))
+		{
+			return false;
+		}
+
+		if (httpStatusCode != null)
+		{
+			return httpStatusCode == 502 || httpStatusCode == 503 || httpStatusCode == 504;
+		}
+
+		return throwable != null && isRetryableException(throwable);
+	}
+
+	public long getBackoffMillis(int attempt)
+	{
+		return backoff.getInterval(attempt);
+	}
+
+	public int getMaxAttempts()
+	{
+		return maxAttempts;
+	}
+
+	private static boolean isRetryableException(Throwable throwable)
+	{
+		for (Throwable cause = throwable; cause != null; cause = cause.getCause())
+		{
+			if (cause instanceof ExternalTimeoutException || cause instanceof ConnectException ||
+					cause instanceof InterruptedIOException)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
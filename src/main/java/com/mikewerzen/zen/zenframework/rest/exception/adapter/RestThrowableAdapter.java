@@ -24,6 +24,7 @@ package com.mikewerzen.zen.zenframework.rest.exception.adapter;
 
 import com.mikewerzen.zen.zenframework.exception.adapter.ThrowableAdapter;
 import org.apache.commons.lang3.ArrayUtils;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 
 public abstract class RestThrowableAdapter extends ThrowableAdapter
@@ -36,4 +37,12 @@ public abstract class RestThrowableAdapter extends ThrowableAdapter
 
 	public abstract HttpStatus getHttpStatus(Throwable throwable);
 
+	/**
+	 * Headers to add to the error response, such as Retry-After; null for none.
+	 */
+	public HttpHeaders getHttpHeaders(Throwable throwable)
+	{
+		return null;
+	}
+
 }
@@ -49,6 +49,10 @@ public class ZenExceptionCodes
 	public static final long NOT_FOUND_CODE = 110;
 	public static final String NOT_FOUND_MESSAGE = "The URI requested is invalid or the resource does not exist.";
 
+	public static final HttpStatus RATE_LIMITED_HTTP_STATUS = HttpStatus.TOO_MANY_REQUESTS;
+	public static final long RATE_LIMITED_CODE = 120;
+	public static final String RATE_LIMITED_MESSAGE = "Too many requests have been made. Please retry later.";
+
 	public static final HttpStatus NOT_IMPLEMENTED_HTTP_STATUS = HttpStatus.NOT_IMPLEMENTED;
 	public static final long NOT_IMPLEMENTED_CODE = 210;
 	public static final String NOT_IMPLEMENTED_MESSAGE = "The API endpoint has not yet been implemented.";
@@ -57,6 +61,10 @@ public class ZenExceptionCodes
 	public static final long REMOVED_CODE = 220;
 	public static final String REMOVED_MESSAGE = "The API endpoint has been turned off. Please upgrade to a newer endpoint.";
 
+	public static final HttpStatus OVERLOADED_HTTP_STATUS = HttpStatus.SERVICE_UNAVAILABLE;
+	public static final long OVERLOADED_CODE = 230;
+	public static final String OVERLOADED_MESSAGE = "The service is handling too many requests. Please retry later.";
+
 	public static final HttpStatus AUTH_FAILURE_HTTP_STATUS = HttpStatus.UNAUTHORIZED;
 	public static final long AUTH_FAILURE_CODE = 300;
 	public static final String AUTH_FAILURE_MESSAGE = "Failed to authorize user.";
@@ -32,6 +32,7 @@ public class ZenHttpHeaders
 	private static final String CORRELATION_ID = "X-Correlation-ID";
 	private static final String SESSION_ID = "X-Session-ID";
 	private static final String INTERNAL_TRACE_ID = "INTERNAL-TRACE-ID";
+	private static final String SAMPLED = "X-Sampled";
 
 	private static final String CLIENT_IP = "X-Forwarded-For";
 
@@ -101,6 +102,34 @@ public class ZenHttpHeaders
 		headers.set(INTERNAL_TRACE_ID, value);
 	}
 
+	/**
+	 * Returns the upstream log sampling decision, or null if the caller did not make one.
+	 */
+	public Boolean getSampled()
+	{
+		String value = headers.getFirst(SAMPLED);
+
+		if ("1".equals(value) || "true".equalsIgnoreCase(value))
+		{
+			return Boolean.TRUE;
+		}
+
+		if ("0".equals(value) || "false".equalsIgnoreCase(value))
+		{
+			return Boolean.FALSE;
+		}
+
+		return null;
+	}
+
+	public void setSampled(Boolean value)
+	{
+		if (value != null)
+		{
+			headers.set(SAMPLED, value ? "1" : "0");
+		}
+	}
+
 	public String getClientIp()
 	{
 		return headers.getFirst(CLIENT_IP);
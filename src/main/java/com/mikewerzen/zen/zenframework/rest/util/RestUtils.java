@@ -24,13 +24,12 @@
 package com.mikewerzen.zen.zenframework.rest.util;
 
 import com.google.gson.Gson;
+import com.mikewerzen.zen.zenframework.context.ZenScope;
 import com.mikewerzen.zen.zenframework.event.context.EventContext;
-import com.mikewerzen.zen.zenframework.event.context.EventContextHolder;
 import com.mikewerzen.zen.zenframework.rest.request.ZenHttpHeaders;
 import com.mikewerzen.zen.zenframework.security.context.SecurityContext;
 import com.mikewerzen.zen.zenframework.security.context.SecurityContextHolder;
 import com.mikewerzen.zen.zenframework.transaction.context.TransactionContext;
-import com.mikewerzen.zen.zenframework.transaction.context.TransactionContextHolder;
 import com.mikewerzen.zen.zenframework.util.UniqueIdentifierUtils;
 import org.springframework.http.HttpHeaders;
 
@@ -42,8 +41,18 @@ public class RestUtils
 	public static ZenHttpHeaders buildZenHttpHeaders()
 	{
 		ZenHttpHeaders headers = new ZenHttpHeaders();
-		EventContextHolder.getContextOptional().ifPresent(context -> populateZenHeaders(headers, context));
-		TransactionContextHolder.getContextOptional().ifPresent(context -> populateZenHeaders(headers, context));
+		ZenScope scope = ZenScope.current();
+		if (scope != null)
+		{
+			if (scope.getEventContext() != null)
+			{
+				populateZenHeaders(headers, scope.getEventContext());
+			}
+			if (scope.getTransactionContext() != null)
+			{
+				populateZenHeaders(headers, scope.getTransactionContext());
+			}
+		}
 		return headers;
 	}
 
@@ -77,9 +86,9 @@ public class RestUtils
 
 	public static ZenHttpHeaders addClientTraceDetailsToHeaders(ZenHttpHeaders headers)
 	{
-		if(TransactionContextHolder.isPresent())
+		TransactionContext context = ZenScope.currentTransactionContext();
+		if(context != null)
 		{
-			TransactionContext context = TransactionContextHolder.getContext();
 			headers.setSessionId(context.getSessionId());
 			headers.setClientIp(context.getClientIp());
 			headers.setDeviceId(context.getDeviceId());
@@ -102,6 +111,7 @@ public class RestUtils
 		headers.setRequestId(requestId);
 		headers.setCorrelationId(context.getCorrelationId());
 		headers.setSessionId(context.getSessionId());
+		headers.setSampled(context.getSampled());
 
 		return headers;
 	}
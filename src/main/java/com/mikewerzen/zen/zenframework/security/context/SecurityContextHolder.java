@@ -22,35 +22,41 @@
 
 package com.mikewerzen.zen.zenframework.security.context;
 
+import com.mikewerzen.zen.zenframework.context.ZenScope;
 import com.mikewerzen.zen.zenframework.exception.system.InternalException;
 
 import java.util.Optional;
 
+/**
+ * Facade over the SecurityContext of the current {@link ZenScope}.
+ */
 public class SecurityContextHolder
 {
-	private static final ThreadLocal<SecurityContext> securityContextLocal = new ThreadLocal<>();
-
 	public static void setContext(SecurityContext context)
 	{
-		securityContextLocal.set(context);
+		ZenScope.currentOrCreate().setSecurityContext(context);
 	}
 
 	public static void clearContext()
 	{
-		securityContextLocal.set(null);
-		securityContextLocal.remove();
+		ZenScope scope = ZenScope.current();
+		if (scope != null)
+		{
+			scope.setSecurityContext(null);
+			ZenScope.endIfEmpty();
+		}
 	}
 
 	public static boolean isPresent()
 	{
-		return (securityContextLocal.get() != null);
+		return (ZenScope.currentSecurityContext() != null);
 	}
 
 	public static SecurityContext getContext()
 	{
-		SecurityContext context = securityContextLocal.get();
+		SecurityContext context = ZenScope.currentSecurityContext();
 
-		if(context == null)
+		if (context == null)
 		{
 			throw new InternalException("SecurityContext was requested but is Null");
 		}
@@ -58,9 +64,17 @@ public class SecurityContextHolder
 		return context;
 	}
 
+	/**
+	 * @return the context, or null. Unlike {@link #getContextOptional()} this never allocates.
+	 */
+	public static SecurityContext getContextOrNull()
+	{
+		return ZenScope.currentSecurityContext();
+	}
+
 	public static Optional<SecurityContext> getContextOptional()
 	{
-		return Optional.ofNullable(securityContextLocal.get());
+		return Optional.ofNullable(ZenScope.currentSecurityContext());
 	}
 
 }
@@ -137,8 +137,8 @@ public class SecurityUtils
 
 	private static void validateUserHasSecurityRoles()
 	{
-		if (getThreadSecurityToken() == null || getThreadSecurityToken().getRoles() == null || getThreadSecurityToken
-				().getRoles().length == 0)
+		SecurityToken token = getThreadSecurityToken();
+		if (token == null || token.getRoles() == null || token.getRoles().length == 0)
 		{
 			throw new InsufficientAuthorizationException("User is not authorized for any of the necessary roles.");
 		}
@@ -146,9 +146,8 @@ public class SecurityUtils
 
 	private static void validateUserHasSecurityEvents()
 	{
-		if (getThreadSecurityToken() == null || getThreadSecurityToken().getEvents() == null ||
-				getThreadSecurityToken()
-				.getEvents().length == 0)
+		SecurityToken token = getThreadSecurityToken();
+		if (token == null || token.getEvents() == null || token.getEvents().length == 0)
 		{
 			throw new InsufficientAuthorizationException("User is not authorized for any of the necessary roles.");
 		}
@@ -233,7 +232,7 @@ public class SecurityUtils
 
 	public static void validateSecurityContextHasCredentials()
 	{
-		if (!SecurityContextHolder.getContextOptional().isPresent())
+		if (SecurityContextHolder.getContextOrNull() == null)
 		{
 			throw new InsufficientAuthorizationException("User is not signed in.");
 		}
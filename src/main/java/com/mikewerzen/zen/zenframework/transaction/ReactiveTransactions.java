@@ -0,0 +1,128 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.transaction;
+
+import com.mikewerzen.zen.zenframework.context.ZenReactiveContext;
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.exception.system.InternalException;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+/**
+ * Completes @ZenTransaction handlers returning a Mono or Flux. Kept apart from {@link ZenTransactionAspect} so
+ * Reactor is only loaded when it is on the classpath.
+ *
+ * The transaction's scope travels in the subscriber context and is bound, by the completer, only while the
+ * transaction is logged. Each subscription completes the transaction at most once, whether it succeeds, fails,
+ * completes empty or is cancelled.
+ */
+final class ReactiveTransactions
+{
+	private ReactiveTransactions()
+	{
+	}
+
+	static boolean isReactive(Object result)
+	{
+		return result instanceof Mono || result instanceof Flux;
+	}
+
+	static boolean isReactive(Class<?> returnType)
+	{
+		return Mono.class.isAssignableFrom(returnType) || Flux.class.isAssignableFrom(returnType);
+	}
+
+	static Object completeLater(ZenScope scope, Object result,
+			BiFunction<Object, Throwable, ResponseEntity<?>> completer)
+	{
+		if (result instanceof Mono)
+		{
+			return completeLater(scope, (Mono<?>) result, completer);
+		}
+		return completeLater(scope, (Flux<?>) result, completer);
+	}
+
+	/**
+	 * The handler's value is mapped to the response entity the servlet path would return; errors become the mapped
+	 * error response rather than an error signal.
+	 */
+	static Mono<ResponseEntity<?>> completeLater(ZenScope scope, Mono<?> mono,
+			BiFunction<Object, Throwable, ResponseEntity<?>> completer)
+	{
+		return Mono.defer(() -> {
+			AtomicBoolean done = new AtomicBoolean();
+
+			return mono
+					.<ResponseEntity<?>>flatMap(value -> complete(done, completer, value, null))
+					.onErrorResume(error -> complete(done, completer, null, error))
+					.switchIfEmpty(Mono.defer(() -> complete(done, completer, null, null)))
+					.doOnCancel(() -> complete(done, completer, null,
+							new InternalException("Reactive transaction was cancelled before completing")));
+		}).subscriberContext(ZenReactiveContext.withScope(scope));
+	}
+
+	/**
+	 * Streamed elements are passed through untouched, so the response status is committed before the stream ends;
+	 * the transaction is logged as successful on completion, and errors are logged and then propagated.
+	 */
+	static <T> Flux<T> completeLater(ZenScope scope, Flux<T> flux,
+			BiFunction<Object, Throwable, ResponseEntity<?>> completer)
+	{
+		return Flux.defer(() -> {
+			AtomicBoolean done = new AtomicBoolean();
+			AtomicReference<Throwable> failure = new AtomicReference<>();
+
+			return flux
+					.doOnError(failure::set)
+					.doOnTerminate(() -> complete(done, completer, failure.get() == null ? ResponseEntity.ok().build() :
+							null, failure.get()))
+					.doOnCancel(() -> complete(done, completer, null,
+							new InternalException("Reactive transaction was cancelled before completing")));
+		}).subscriberContext(ZenReactiveContext.withScope(scope));
+	}
+
+	private static Mono<ResponseEntity<?>> complete(AtomicBoolean done,
+			BiFunction<Object, Throwable, ResponseEntity<?>> completer, Object value, Throwable error)
+	{
+		if (!done.compareAndSet(false, true))
+		{
+			return Mono.empty();
+		}
+		return Mono.justOrEmpty(completer.apply(value, error));
+	}
+
+	static Object toReturnType(Class<?> returnType, ResponseEntity<?> response)
+	{
+		if (Flux.class.isAssignableFrom(returnType))
+		{
+			return Flux.just(response);
+		}
+		return Mono.just(response);
+	}
+}
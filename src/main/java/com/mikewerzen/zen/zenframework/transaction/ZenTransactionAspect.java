@@ -23,29 +23,47 @@
 
 package com.mikewerzen.zen.zenframework.transaction;
 
+import com.mikewerzen.zen.zenframework.context.ZenScope;
 import com.mikewerzen.zen.zenframework.exception.adapter.ThrowableAdapter;
+import com.mikewerzen.zen.zenframework.exception.system.ExternalTimeoutException;
 import com.mikewerzen.zen.zenframework.exception.system.InternalException;
+import com.mikewerzen.zen.zenframework.exception.system.OverloadedException;
 import com.mikewerzen.zen.zenframework.exception.util.ThrowableAdapterFinderWrapper;
 import com.mikewerzen.zen.zenframework.logging.ZenLogManager;
 import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
-import com.mikewerzen.zen.zenframework.logging.context.LoggingContextHolder;
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import com.mikewerzen.zen.zenframework.metrics.RequestMetrics;
 import com.mikewerzen.zen.zenframework.rest.RestServiceMapper;
 import com.mikewerzen.zen.zenframework.rest.exception.adapter.RestThrowableAdapter;
 import com.mikewerzen.zen.zenframework.rest.response.ZenErrorResponse;
 import com.mikewerzen.zen.zenframework.security.SecurityManager;
-import com.mikewerzen.zen.zenframework.security.context.SecurityContextHolder;
-import com.mikewerzen.zen.zenframework.transaction.context.TransactionContextHolder;
+import com.mikewerzen.zen.zenframework.transaction.limit.ConcurrencyLimiter;
+import com.mikewerzen.zen.zenframework.transaction.limit.ConcurrencyLimiters;
+import com.mikewerzen.zen.zenframework.transaction.limit.RateLimitPolicy;
+import com.mikewerzen.zen.zenframework.transaction.limit.RateLimiters;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 @Aspect
@@ -66,13 +84,88 @@ public class ZenTransactionAspect
 	@Autowired
 	private ZenLogManager logManager;
 
+	@Autowired
+	private ConcurrencyLimiters concurrencyLimiters;
+
+	@Autowired
+	private RateLimiters rateLimiters;
+
+	private static final Method timeoutValueGetter = findTimeoutValueGetter();
+
+	private static final boolean reactorPresent =
+			ClassUtils.isPresent("reactor.core.publisher.Mono", ZenTransactionAspect.class.getClassLoader());
+
+	private final Map<Method, RequestMetrics> transactionMetrics = new ConcurrentHashMap<>();
+
+	private final Map<Method, ConcurrencyLimiter> transactionLimiters = new ConcurrentHashMap<>();
+
+	private final Map<Method, List<RateLimitPolicy>> transactionRateLimits = new ConcurrentHashMap<>();
+
 	@Pointcut("execution(public * *(..))")
 	void anyPublicMethod()
 	{
 	}
 
+	/**
+	 * Handlers may return a ResponseEntity, or a CompletionStage, DeferredResult or Callable producing one. For the
+	 * asynchronous types the transaction begins on the request thread and ends, with its contexts bound, on the
+	 * thread that completes it; the handler receives an equivalent object that yields the mapped response.
+	 *
+	 * When Reactor is present a Mono or Flux may also be returned, see {@link ReactiveTransactions}.
+	 *
+	 * With transaction.limit.enabled, a transaction over its operation's concurrency limit is rejected before it is
+	 * secured, and its permit is held until the asynchronous result completes. Callers over their rate limit are
+	 * rejected once secured, without running the handler.
+	 */
 	@Around("anyPublicMethod() && @annotation(zenTransaction)")
 	public Object zenTransaction(ProceedingJoinPoint proceedingJoinPoint, ZenTransaction zenTransaction)
+	{
+		RequestMetrics metrics = getMetrics(proceedingJoinPoint, zenTransaction);
+		ConcurrencyLimiter limiter = getLimiter(proceedingJoinPoint, zenTransaction);
+		ConcurrencyLimiter.Permit permit = limiter == null ? null : limiter.tryAcquire();
+		long startTime = System.nanoTime();
+
+		Object result;
+		try
+		{
+			RequestEntity requestEntity = getRequestEntity(proceedingJoinPoint);
+			beginTransaction(zenTransaction, requestEntity);
+			checkAdmitted(limiter, permit);
+			securityManager.secureRequest(zenTransaction, requestEntity);
+			checkRateLimits(proceedingJoinPoint, zenTransaction);
+
+			result = proceedingJoinPoint.proceed();
+		}
+		catch (Throwable throwable)
+		{
+			ResponseEntity<?> response = completeTransaction(metrics, permit, startTime, null, throwable);
+			return toReturnType(proceedingJoinPoint, response);
+		}
+
+		if (result instanceof CompletionStage)
+		{
+			return completeLater(metrics, permit, startTime, (CompletionStage<?>) result);
+		}
+		if (result instanceof DeferredResult)
+		{
+			return completeLater(metrics, permit, startTime, (DeferredResult<?>) result);
+		}
+		if (result instanceof Callable)
+		{
+			return completeLater(metrics, permit, startTime, (Callable<?>) result);
+		}
+		if (reactorPresent && ReactiveTransactions.isReactive(result))
+		{
+			ZenScope scope = detachScope();
+			return ReactiveTransactions.completeLater(scope, result,
+					(value, error) -> completeTransaction(scope, metrics, permit, startTime, value, error));
+		}
+
+		return completeTransaction(metrics, permit, startTime, result, null);
+	}
+
+	private ResponseEntity<?> completeTransaction(RequestMetrics metrics, ConcurrencyLimiter.Permit permit,
+			long startTime, Object result, Throwable error)
 	{
 		ResponseEntity<?> response = null;
 
@@ -80,10 +173,15 @@ public class ZenTransactionAspect
 		{
 			try
 			{
-				beginTransaction(zenTransaction, getRequestEntity(proceedingJoinPoint));
-
-				response = getResponseEntity(proceedingJoinPoint, proceedingJoinPoint.proceed());
-
+				if (error != null)
+				{
+					logger.error("Caught in expected block", error);
+					response = handleError(error);
+				}
+				else
+				{
+					response = getResponseEntity(result);
+				}
 			}
 			catch (Throwable throwable)
 			{
@@ -92,6 +190,8 @@ public class ZenTransactionAspect
 			}
 			finally
 			{
+				recordMetrics(metrics, startTime, response);
+				releasePermit(permit, response);
 				endTransaction(response);
 			}
 		}
@@ -104,27 +204,305 @@ public class ZenTransactionAspect
 		return response;
 	}
 
+	/**
+	 * Ends the transaction of the given scope on the current thread, restoring whatever scope the thread had bound.
+	 */
+	private ResponseEntity<?> completeTransaction(ZenScope scope, RequestMetrics metrics,
+			ConcurrencyLimiter.Permit permit, long startTime, Object result, Throwable error)
+	{
+		ZenScope previous = ZenScope.attach(scope);
+		try
+		{
+			return completeTransaction(metrics, permit, startTime, result, error);
+		}
+		finally
+		{
+			ZenScope.restore(previous);
+		}
+	}
+
+	private CompletableFuture<ResponseEntity<?>> completeLater(RequestMetrics metrics,
+			ConcurrencyLimiter.Permit permit, long startTime, CompletionStage<?> stage)
+	{
+		ZenScope scope = detachScope();
+		CompletableFuture<ResponseEntity<?>> completed = new CompletableFuture<>();
+
+		stage.whenComplete((value, error) -> completed.complete(
+				completeTransaction(scope, metrics, permit, startTime, value, unwrap(error))));
+
+		return completed;
+	}
+
+	/**
+	 * Callbacks registered on the handler's DeferredResult are not invoked, as the container only sees the returned
+	 * one; if the returned one times out or fails, the handler's is completed with the error instead.
+	 */
+	private DeferredResult<ResponseEntity<?>> completeLater(RequestMetrics metrics,
+			ConcurrencyLimiter.Permit permit, long startTime, DeferredResult<?> deferredResult)
+	{
+		ZenScope scope = detachScope();
+		Long timeout = getTimeoutValue(deferredResult);
+		DeferredResult<ResponseEntity<?>> completed = timeout == null ? new DeferredResult<>() :
+				new DeferredResult<>(timeout);
+		AtomicBoolean done = new AtomicBoolean();
+
+		completed.onTimeout(() -> {
+			if (done.compareAndSet(false, true))
+			{
+				ExternalTimeoutException timeoutException = new ExternalTimeoutException(timeout == null ?
+						"Asynchronous transaction did not complete within the async request timeout" :
+						"Asynchronous transaction did not complete within " + timeout + "ms");
+				deferredResult.setErrorResult(timeoutException);
+				completed.setResult(completeTransaction(scope, metrics, permit, startTime, null, timeoutException));
+			}
+		});
+
+		completed.onError(error -> {
+			if (done.compareAndSet(false, true))
+			{
+				deferredResult.setErrorResult(error);
+				completed.setResult(completeTransaction(scope, metrics, permit, startTime, null, error));
+			}
+		});
+
+		deferredResult.setResultHandler(value -> {
+			if (done.compareAndSet(false, true))
+			{
+				Throwable error = value instanceof Throwable ? (Throwable) value : null;
+				completed.setResult(
+						completeTransaction(scope, metrics, permit, startTime, error == null ? value : null, error));
+			}
+		});
+
+		return completed;
+	}
+
+	private Callable<ResponseEntity<?>> completeLater(RequestMetrics metrics, ConcurrencyLimiter.Permit permit,
+			long startTime, Callable<?> callable)
+	{
+		ZenScope scope = detachScope();
+
+		return () -> {
+			ZenScope previous = ZenScope.attach(scope);
+			try
+			{
+				Object value = null;
+				Throwable error = null;
+				try
+				{
+					value = callable.call();
+				}
+				catch (Throwable throwable)
+				{
+					error = throwable;
+				}
+
+				return completeTransaction(metrics, permit, startTime, value, error);
+			}
+			finally
+			{
+				ZenScope.restore(previous);
+			}
+		};
+	}
+
+	/**
+	 * DeferredResult does not expose its timeout publicly in this Spring version; without it the returned
+	 * DeferredResult falls back to the container's default async timeout.
+	 */
+	private static Long getTimeoutValue(DeferredResult<?> deferredResult)
+	{
+		if (timeoutValueGetter == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			return (Long) timeoutValueGetter.invoke(deferredResult);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			return null;
+		}
+	}
+
+	private static Method findTimeoutValueGetter()
+	{
+		try
+		{
+			Method getter = DeferredResult.class.getDeclaredMethod("getTimeoutValue");
+			getter.setAccessible(true);
+			return getter;
+		}
+		catch (ReflectiveOperationException | RuntimeException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Unbinds the transaction's scope from the request thread, which goes back to the container's pool.
+	 */
+	private ZenScope detachScope()
+	{
+		ZenScope scope = ZenScope.current();
+		ZenScope.end();
+		return scope;
+	}
+
+	private Throwable unwrap(Throwable error)
+	{
+		if (error instanceof CompletionException && error.getCause() != null)
+		{
+			return error.getCause();
+		}
+		return error;
+	}
+
+	/**
+	 * Wraps an error response in the asynchronous type the handler declares, so it can be returned from the proxy.
+	 */
+	private Object toReturnType(ProceedingJoinPoint joinPoint, ResponseEntity<?> response)
+	{
+		Class<?> returnType = ((MethodSignature) joinPoint.getSignature()).getReturnType();
+
+		if (CompletionStage.class.isAssignableFrom(returnType))
+		{
+			return CompletableFuture.completedFuture(response);
+		}
+		if (DeferredResult.class.isAssignableFrom(returnType))
+		{
+			DeferredResult<ResponseEntity<?>> deferredResult = new DeferredResult<>();
+			deferredResult.setResult(response);
+			return deferredResult;
+		}
+		if (Callable.class.isAssignableFrom(returnType))
+		{
+			return (Callable<ResponseEntity<?>>) () -> response;
+		}
+		if (reactorPresent && ReactiveTransactions.isReactive(returnType))
+		{
+			return ReactiveTransactions.toReturnType(returnType, response);
+		}
+
+		return response;
+	}
+
 	private void beginTransaction(ZenTransaction transaction, RequestEntity requestEntity)
 	{
-		LoggingContextHolder.setContext(new LoggingContext());
-		TransactionContextHolder.setContext(restServiceMapper.mapInboundRequestToContext(transaction, requestEntity));
+		ZenScope scope = new ZenScope();
+		ZenScope.attach(scope);
 
-		securityManager.secureRequest(transaction, requestEntity);
+		scope.setLoggingContext(new LoggingContext());
+		scope.setTransactionContext(restServiceMapper.mapInboundRequestToContext(transaction, requestEntity));
 	}
 
-	private void endTransaction(ResponseEntity<?> response)
+	private void checkAdmitted(ConcurrencyLimiter limiter, ConcurrencyLimiter.Permit permit)
 	{
-		logManager.logTransaction(response);
+		if (limiter == null || permit != null)
+		{
+			return;
+		}
 
-		LoggingContextHolder.clearContext();
-		TransactionContextHolder.clearContext();
-		SecurityContextHolder.clearContext();
+		int limit = limiter.getLimit();
+		LoggingContext loggingContext = ZenScope.currentLoggingContext();
+		if (loggingContext != null)
+		{
+			loggingContext.addField("concurrencyLimit", limit);
+			loggingContext.addField("inFlight", limiter.getInFlight());
+		}
+
+		throw new OverloadedException(concurrencyLimiters.getRejectionStatus(),
+				"Rejected as " + limit + " transactions of this operation are already running.");
+	}
+
+	private void checkRateLimits(ProceedingJoinPoint proceedingJoinPoint, ZenTransaction zenTransaction)
+	{
+		if (rateLimiters == null)
+		{
+			return;
+		}
+
+		Method method = ((MethodSignature) proceedingJoinPoint.getSignature()).getMethod();
+
+		List<RateLimitPolicy> policies = transactionRateLimits.get(method);
+		if (policies == null)
+		{
+			policies = transactionRateLimits.computeIfAbsent(method,
+					key -> rateLimiters.getPolicies(method, zenTransaction));
+		}
+
+		for (int i = 0; i < policies.size(); i++)
+		{
+			policies.get(i).check();
+		}
+	}
+
+	/**
+	 * Gateway timeouts and unavailable responses are fed back as drops, signalling that the operation is overloaded.
+	 */
+	private void releasePermit(ConcurrencyLimiter.Permit permit, ResponseEntity<?> response)
+	{
+		if (permit != null)
+		{
+			int status = response == null ? 0 : response.getStatusCodeValue();
+			permit.release(status == 503 || status == 504);
+		}
+	}
+
+	private ConcurrencyLimiter getLimiter(ProceedingJoinPoint proceedingJoinPoint, ZenTransaction zenTransaction)
+	{
+		if (concurrencyLimiters == null || !concurrencyLimiters.isEnabled())
+		{
+			return null;
+		}
+
+		Method method = ((MethodSignature) proceedingJoinPoint.getSignature()).getMethod();
+
+		ConcurrencyLimiter limiter = transactionLimiters.get(method);
+		return limiter != null ? limiter : transactionLimiters.computeIfAbsent(method,
+				key -> concurrencyLimiters.getLimiter(zenTransaction.serviceName(), zenTransaction.serviceOperation()));
+	}
+
+	private RequestMetrics getMetrics(ProceedingJoinPoint proceedingJoinPoint, ZenTransaction zenTransaction)
+	{
+		Method method = ((MethodSignature) proceedingJoinPoint.getSignature()).getMethod();
+
+		RequestMetrics metrics = transactionMetrics.get(method);
+		return metrics != null ? metrics : transactionMetrics.computeIfAbsent(method,
+				key -> MetricsRegistry.getRequestMetrics(MetricsRegistry.TRANSACTION, zenTransaction.serviceName(),
+						zenTransaction.serviceOperation()));
+	}
+
+	private void recordMetrics(RequestMetrics metrics, long startTime, ResponseEntity<?> response)
+	{
+		LoggingContext loggingContext = ZenScope.currentLoggingContext();
+
+		metrics.record(System.nanoTime() - startTime, response == null ? 0 : response.getStatusCodeValue(),
+				loggingContext == null ? null : loggingContext.getThrowable());
+	}
+
+	private void endTransaction(ResponseEntity<?> response)
+	{
+		try
+		{
+			logManager.logTransaction(response);
+		}
+		finally
+		{
+			ZenScope.end();
+		}
 	}
 
 	public ResponseEntity<ZenErrorResponse> handleError(Throwable throwable)
 	{
 		ThrowableAdapter throwableAdapter = throwableAdapterFinderWrapper.getThrowableAdapter(throwable);
-		LoggingContextHolder.getContextOptional().ifPresent(context -> context.addThrowable(throwable));
+		LoggingContext loggingContext = ZenScope.currentLoggingContext();
+		if (loggingContext != null)
+		{
+			loggingContext.addThrowable(throwable);
+		}
 		return restServiceMapper.mapZenExceptionResponse((RestThrowableAdapter) throwableAdapter, throwable);
 	}
 
@@ -145,7 +523,7 @@ public class ZenTransactionAspect
 		throw new InternalException("Could not apply @ZenTransaction to a serviceMethodName without a RequestEntity parameter");
 	}
 
-	private ResponseEntity<?> getResponseEntity(ProceedingJoinPoint joinPoint, Object methodCallReponse)
+	private ResponseEntity<?> getResponseEntity(Object methodCallReponse)
 	{
 		if (methodCallReponse instanceof ResponseEntity)
 		{
@@ -40,9 +40,19 @@ public class TransactionContext
 	private final String deviceId;
 	private final String deviceType;
 
+	private final Boolean sampled;
+
 	public TransactionContext(String serviceName, String serviceOperation, String serviceVersion,
 			String serviceMethodName, String requestId, String correlationId, String sessionId, long internalTraceId,
 			String clientIp, String sourceIp, String deviceId, String deviceType)
+	{
+		this(serviceName, serviceOperation, serviceVersion, serviceMethodName, requestId, correlationId, sessionId,
+				internalTraceId, clientIp, sourceIp, deviceId, deviceType, null);
+	}
+
+	public TransactionContext(String serviceName, String serviceOperation, String serviceVersion,
+			String serviceMethodName, String requestId, String correlationId, String sessionId, long internalTraceId,
+			String clientIp, String sourceIp, String deviceId, String deviceType, Boolean sampled)
 	{
 		this.serviceName = serviceName;
 		this.serviceOperation = serviceOperation;
@@ -56,6 +66,7 @@ public class TransactionContext
 		this.clientIp = clientIp;
 		this.deviceId = deviceId;
 		this.deviceType = deviceType;
+		this.sampled = sampled;
 	}
 
 	public String getServiceName()
@@ -117,4 +128,12 @@ public class TransactionContext
 	{
 		return deviceType;
 	}
+
+	/**
+	 * The log sampling decision made when the transaction started, or null if sampling is not in use.
+	 */
+	public Boolean getSampled()
+	{
+		return sampled;
+	}
 }
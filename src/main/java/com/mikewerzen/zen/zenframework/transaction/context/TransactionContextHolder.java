@@ -23,37 +23,41 @@
 
 package com.mikewerzen.zen.zenframework.transaction.context;
 
-
-
+import com.mikewerzen.zen.zenframework.context.ZenScope;
 import com.mikewerzen.zen.zenframework.exception.system.InternalException;
 
 import java.util.Optional;
 
+/**
+ * Facade over the TransactionContext of the current {@link ZenScope}.
+ */
 public class TransactionContextHolder
 {
-	private static final ThreadLocal<TransactionContext> transactionContextLocal = new ThreadLocal<>();
-
 	public static void setContext(TransactionContext context)
 	{
-		transactionContextLocal.set(context);
+		ZenScope.currentOrCreate().setTransactionContext(context);
 	}
 
 	public static void clearContext()
 	{
-		transactionContextLocal.set(null);
-		transactionContextLocal.remove();
+		ZenScope scope = ZenScope.current();
+		if (scope != null)
+		{
+			scope.setTransactionContext(null);
+			ZenScope.endIfEmpty();
+		}
 	}
 
 	public static boolean isPresent()
 	{
-		return (transactionContextLocal.get() != null);
+		return (ZenScope.currentTransactionContext() != null);
 	}
 
 	public static TransactionContext getContext()
 	{
-		TransactionContext context = transactionContextLocal.get();
+		TransactionContext context = ZenScope.currentTransactionContext();
 
-		if(context == null)
+		if (context == null)
 		{
 			throw new InternalException("TransactionContext was requested but is Null");
 		}
@@ -61,9 +65,17 @@ public class TransactionContextHolder
 		return context;
 	}
 
+	/**
+	 * @return the context, or null. Unlike {@link #getContextOptional()} this never allocates.
+	 */
+	public static TransactionContext getContextOrNull()
+	{
+		return ZenScope.currentTransactionContext();
+	}
+
 	public static Optional<TransactionContext> getContextOptional()
 	{
-		return Optional.ofNullable(transactionContextLocal.get());
+		return Optional.ofNullable(ZenScope.currentTransactionContext());
 	}
 
 }
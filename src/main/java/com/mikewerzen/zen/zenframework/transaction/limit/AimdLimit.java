@@ -0,0 +1,64 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.transaction.limit;
+
+/**
+ * Additive increase, multiplicative decrease: grows by one while the limit is being used and shrinks by the backoff
+ * ratio whenever a transaction is dropped. Reacts only to failures, not to latency.
+ */
+public class AimdLimit implements LimitAlgorithm
+{
+	private final int minLimit;
+	private final int maxLimit;
+	private final double backoffRatio;
+
+	private volatile int limit;
+
+	public AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio)
+	{
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.backoffRatio = backoffRatio;
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+	}
+
+	@Override
+	public int getLimit()
+	{
+		return limit;
+	}
+
+	@Override
+	public synchronized void onSample(long rttNanos, int inFlight, boolean dropped)
+	{
+		if (dropped)
+		{
+			limit = Math.max(minLimit, (int) (limit * backoffRatio));
+		}
+		else if (inFlight * 2 >= limit)
+		{
+			limit = Math.min(maxLimit, limit + 1);
+		}
+	}
+}
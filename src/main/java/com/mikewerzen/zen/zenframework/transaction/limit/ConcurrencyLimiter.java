@@ -0,0 +1,107 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.transaction.limit;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admits transactions of one operation while fewer than the algorithm's limit are running. Admission never blocks, a
+ * request over the limit is refused immediately.
+ */
+public class ConcurrencyLimiter
+{
+	private final LimitAlgorithm algorithm;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final LongAdder rejected = new LongAdder();
+
+	public ConcurrencyLimiter(LimitAlgorithm algorithm)
+	{
+		this.algorithm = algorithm;
+	}
+
+	/**
+	 * @return a permit to release when the transaction ends, or null if the limit is reached.
+	 */
+	public Permit tryAcquire()
+	{
+		int limit = algorithm.getLimit();
+
+		for (;;)
+		{
+			int current = inFlight.get();
+			if (current >= limit)
+			{
+				rejected.increment();
+				return null;
+			}
+
+			if (inFlight.compareAndSet(current, current + 1))
+			{
+				return new Permit(current + 1);
+			}
+		}
+	}
+
+	public int getLimit()
+	{
+		return algorithm.getLimit();
+	}
+
+	public int getInFlight()
+	{
+		return inFlight.get();
+	}
+
+	public long getRejectedCount()
+	{
+		return rejected.sum();
+	}
+
+	public final class Permit
+	{
+		private final int inFlightAtStart;
+		private final long startNanos = System.nanoTime();
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private Permit(int inFlightAtStart)
+		{
+			this.inFlightAtStart = inFlightAtStart;
+		}
+
+		/**
+		 * Returns the permit and feeds the transaction's latency to the algorithm. Only the first call has an effect.
+		 */
+		public void release(boolean dropped)
+		{
+			if (released.compareAndSet(false, true))
+			{
+				inFlight.decrementAndGet();
+				algorithm.onSample(System.nanoTime() - startNanos, inFlightAtStart, dropped);
+			}
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.transaction.limit;
+
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link ConcurrencyLimiter} per @ZenTransaction service name and operation, built from configuration when
+ * transaction.limit.enabled is set. Each limiter's limit, in-flight count and rejections are exported as metrics.
+ */
+@Component
+public class ConcurrencyLimiters
+{
+	private static final String LIMIT = "zen_transaction_concurrency_limit";
+	private static final String IN_FLIGHT = "zen_transaction_in_flight";
+	private static final String REJECTED = "zen_transaction_rejected_total";
+
+	static
+	{
+		MetricsRegistry.registerGaugeFamily(LIMIT, "Transactions of an operation allowed to run at once.", "service_name", "service_operation");
+		MetricsRegistry.registerGaugeFamily(IN_FLIGHT, "Transactions of an operation currently running.", "service_name", "service_operation");
+		MetricsRegistry.registerCounterFamily(REJECTED, "Transactions shed because the operation was at its limit.", "service_name", "service_operation");
+	}
+
+	@Value("${transaction.limit.enabled:false}")
+	private boolean enabled;
+
+	@Value("${transaction.limit.algorithm:GRADIENT}")
+	private LimitAlgorithmType algorithm = LimitAlgorithmType.GRADIENT;
+
+	@Value("${transaction.limit.initialLimit:20}")
+	private int initialLimit = 20;
+
+	@Value("${transaction.limit.minLimit:2}")
+	private int minLimit = 2;
+
+	@Value("${transaction.limit.maxLimit:200}")
+	private int maxLimit = 200;
+
+	/**
+	 * AIMD only: the factor the limit is multiplied by when a transaction is dropped.
+	 */
+	@Value("${transaction.limit.backoffRatio:0.9}")
+	private double backoffRatio = 0.9;
+
+	/**
+	 * 503 or 429.
+	 */
+	@Value("${transaction.limit.rejectionStatus:503}")
+	private int rejectionStatus = 503;
+
+	private final Map<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	public int getRejectionStatus()
+	{
+		return rejectionStatus;
+	}
+
+	/**
+	 * @return the operation's limiter, or null when limiting is disabled. Callers should keep the limiter rather than
+	 * looking it up on every request.
+	 */
+	public ConcurrencyLimiter getLimiter(String serviceName, String serviceOperation)
+	{
+		if (!enabled)
+		{
+			return null;
+		}
+
+		return limiters.computeIfAbsent(serviceName + "\u0000" + serviceOperation, key -> {
+			ConcurrencyLimiter limiter = new ConcurrencyLimiter(buildAlgorithm());
+
+			MetricsRegistry.registerLabeledCallback(LIMIT, limiter::getLimit, serviceName, serviceOperation);
+			MetricsRegistry.registerLabeledCallback(IN_FLIGHT, limiter::getInFlight, serviceName, serviceOperation);
+			MetricsRegistry.registerLabeledCallback(REJECTED, limiter::getRejectedCount, serviceName, serviceOperation);
+
+			return limiter;
+		});
+	}
+
+	private LimitAlgorithm buildAlgorithm()
+	{
+		if (algorithm == LimitAlgorithmType.AIMD)
+		{
+			return new AimdLimit(initialLimit, minLimit, maxLimit, backoffRatio);
+		}
+
+		return new GradientLimit(initialLimit, minLimit, maxLimit);
+	}
+}
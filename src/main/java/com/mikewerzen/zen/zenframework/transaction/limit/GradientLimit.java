@@ -0,0 +1,91 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.transaction.limit;
+
+/**
+ * Latency gradient limit: compares each transaction's latency with a long-term average and shrinks the limit as
+ * latency rises above it, leaving headroom of the square root of the limit for queueing. Drops are treated as a
+ * doubling of latency.
+ *
+ * While the limit is less than half used, samples only update the average, so an idle service does not inflate its
+ * limit.
+ */
+public class GradientLimit implements LimitAlgorithm
+{
+	private static final double TOLERANCE = 1.5;
+	private static final double SMOOTHING = 0.2;
+	private static final double LONG_WINDOW_ALPHA = 2.0 / (600 + 1);
+
+	private final int minLimit;
+	private final int maxLimit;
+
+	private double estimatedLimit;
+	private double longRtt;
+
+	private volatile int limit;
+
+	public GradientLimit(int initialLimit, int minLimit, int maxLimit)
+	{
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+		this.estimatedLimit = limit;
+	}
+
+	@Override
+	public int getLimit()
+	{
+		return limit;
+	}
+
+	@Override
+	public synchronized void onSample(long rttNanos, int inFlight, boolean dropped)
+	{
+		double shortRtt = dropped ? Math.max(rttNanos, longRtt) * 2 : rttNanos;
+		if (shortRtt <= 0)
+		{
+			return;
+		}
+
+		longRtt = longRtt == 0 ? shortRtt : longRtt * (1 - LONG_WINDOW_ALPHA) + shortRtt * LONG_WINDOW_ALPHA;
+
+		// Lets the average recover after a long period of high latency, instead of pinning the limit low
+		if (longRtt / shortRtt > 2)
+		{
+			longRtt *= 0.95;
+		}
+
+		if (inFlight * 2 < estimatedLimit && !dropped)
+		{
+			return;
+		}
+
+		double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+		double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+		newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+
+		estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+		limit = (int) estimatedLimit;
+	}
+}
@@ -0,0 +1,40 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.transaction.limit;
+
+/**
+ * Decides how many transactions of one operation may run at once from what completed transactions observed.
+ * Implementations are called concurrently.
+ */
+public interface LimitAlgorithm
+{
+	int getLimit();
+
+	/**
+	 * @param rttNanos how long the transaction held its permit.
+	 * @param inFlight transactions running when it was admitted, including itself.
+	 * @param dropped  whether it ended in a way that signals overload, such as a downstream timeout.
+	 */
+	void onSample(long rttNanos, int inFlight, boolean dropped);
+}
@@ -0,0 +1,64 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.transaction.limit;
+
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.security.context.SecurityContext;
+import com.mikewerzen.zen.zenframework.transaction.context.TransactionContext;
+
+/**
+ * Identifies the caller a rate limit is kept for. Callers without a security token are limited by client IP.
+ */
+public enum RateLimitKey
+{
+	APP_NAME,
+	USER_ID,
+	CLIENT_IP;
+
+	/**
+	 * @return the current caller's key, or null if it cannot be identified.
+	 */
+	public String resolve()
+	{
+		ZenScope scope = ZenScope.current();
+		if (scope == null)
+		{
+			return null;
+		}
+
+		SecurityContext securityContext = scope.getSecurityContext();
+		if (this != CLIENT_IP && securityContext != null && securityContext.getSecurityToken() != null)
+		{
+			String key = this == APP_NAME ? securityContext.getSecurityToken().getAppName() :
+					securityContext.getSecurityToken().getUserId();
+			if (key != null)
+			{
+				return key;
+			}
+		}
+
+		TransactionContext transactionContext = scope.getTransactionContext();
+		return transactionContext == null ? null : transactionContext.getClientIp();
+	}
+}
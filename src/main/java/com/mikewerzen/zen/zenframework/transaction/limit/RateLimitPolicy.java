@@ -0,0 +1,72 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.transaction.limit;
+
+import com.mikewerzen.zen.zenframework.exception.logic.RateLimitedException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RateLimiter} together with the caller key it is applied to.
+ */
+public class RateLimitPolicy
+{
+	private final RateLimiter limiter;
+	private final RateLimitKey key;
+
+	public RateLimitPolicy(RateLimiter limiter, RateLimitKey key)
+	{
+		this.limiter = limiter;
+		this.key = key;
+	}
+
+	/**
+	 * @throws RateLimitedException if the current caller is over its rate.
+	 */
+	public void check()
+	{
+		String caller = key.resolve();
+		if (caller == null)
+		{
+			return;
+		}
+
+		long waitNanos = limiter.tryAcquire(caller);
+		if (waitNanos > 0)
+		{
+			throw new RateLimitedException(TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1,
+					"Rate limit exceeded for " + key + " " + caller);
+		}
+	}
+
+	public RateLimiter getLimiter()
+	{
+		return limiter;
+	}
+
+	public RateLimitKey getKey()
+	{
+		return key;
+	}
+}
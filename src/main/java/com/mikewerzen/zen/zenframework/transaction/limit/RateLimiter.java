@@ -0,0 +1,137 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.transaction.limit;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-key token bucket, implemented as the generic cell rate algorithm: each key keeps only the theoretical arrival
+ * time of its next request, advanced by compare-and-set, so admission never locks. The map is striped by
+ * ConcurrentHashMap.
+ *
+ * A key whose arrival time has passed holds a full bucket and is equivalent to an absent key, so idle keys can be
+ * dropped by {@link #sweep()}, which the owner runs in the background. While the map is at maxKeys, new keys all share
+ * one overflow bucket, so callers cannot escape their limit by rotating keys. A sweep racing with a request may let
+ * that one request through.
+ */
+public class RateLimiter
+{
+	private final long emissionIntervalNanos;
+	private final long burstToleranceNanos;
+	private final int maxKeys;
+
+	private final Map<String, AtomicLong> arrivals = new ConcurrentHashMap<>();
+	private final AtomicLong overflowArrival = new AtomicLong(System.nanoTime());
+
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder overflowed = new LongAdder();
+
+	public RateLimiter(double permitsPerSecond, int burst, int maxKeys)
+	{
+		this.emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+		this.burstToleranceNanos = emissionIntervalNanos * Math.max(0, burst - 1);
+		this.maxKeys = maxKeys;
+	}
+
+	/**
+	 * @return 0 if the request is admitted, otherwise the nanoseconds until the key may retry.
+	 */
+	public long tryAcquire(String key)
+	{
+		long now = System.nanoTime();
+
+		AtomicLong arrival = arrivals.get(key);
+		if (arrival == null)
+		{
+			if (arrivals.size() >= maxKeys)
+			{
+				overflowed.increment();
+				return acquire(overflowArrival, now);
+			}
+			arrival = arrivals.computeIfAbsent(key, k -> new AtomicLong(now));
+		}
+
+		return acquire(arrival, now);
+	}
+
+	/**
+	 * Drops keys whose bucket has refilled.
+	 */
+	public void sweep()
+	{
+		long now = System.nanoTime();
+		Iterator<AtomicLong> iterator = arrivals.values().iterator();
+		while (iterator.hasNext())
+		{
+			if (iterator.next().get() - now <= 0)
+			{
+				iterator.remove();
+			}
+		}
+	}
+
+	public int getKeyCount()
+	{
+		return arrivals.size();
+	}
+
+	public long getRejectedCount()
+	{
+		return rejected.sum();
+	}
+
+	/**
+	 * Requests from new keys that were charged to the shared overflow bucket because the limiter was full.
+	 */
+	public long getOverflowCount()
+	{
+		return overflowed.sum();
+	}
+
+	private long acquire(AtomicLong arrival, long now)
+	{
+		for (;;)
+		{
+			long theoreticalArrival = arrival.get();
+			long start = theoreticalArrival - now > 0 ? theoreticalArrival : now;
+
+			long wait = start - now - burstToleranceNanos;
+			if (wait > 0)
+			{
+				rejected.increment();
+				return wait;
+			}
+
+			if (arrival.compareAndSet(theoreticalArrival, start + emissionIntervalNanos))
+			{
+				return 0;
+			}
+		}
+	}
+}
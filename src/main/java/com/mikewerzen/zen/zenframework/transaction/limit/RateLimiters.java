@@ -0,0 +1,158 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.transaction.limit;
+
+import com.mikewerzen.zen.zenframework.metrics.MetricsRegistry;
+import com.mikewerzen.zen.zenframework.transaction.ZenTransaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the per-caller rate limits applied to @ZenTransaction methods once the request is secured: one limit shared
+ * by all transactions when transaction.rateLimit.enabled is set, plus one per method annotated with
+ * {@link RateLimited}. Idle callers are swept from every limiter once a second on a background thread, and each
+ * limiter's tracked keys and rejections are exported as metrics.
+ */
+@Component
+public class RateLimiters
+{
+	private static final String KEYS = "zen_rate_limit_keys";
+	private static final String REJECTED = "zen_rate_limit_rejected_total";
+
+	static
+	{
+		MetricsRegistry.registerGaugeFamily(KEYS, "Callers currently tracked by a rate limiter.", "limiter");
+		MetricsRegistry.registerCounterFamily(REJECTED, "Requests rejected because the caller exceeded its rate.", "limiter");
+	}
+
+	@Value("${transaction.rateLimit.enabled:false}")
+	private boolean enabled;
+
+	@Value("${transaction.rateLimit.key:APP_NAME}")
+	private RateLimitKey key = RateLimitKey.APP_NAME;
+
+	@Value("${transaction.rateLimit.permitsPerSecond:50}")
+	private double permitsPerSecond = 50;
+
+	@Value("${transaction.rateLimit.burst:100}")
+	private int burst = 100;
+
+	/**
+	 * Callers tracked per limiter before new ones share a single overflow limit.
+	 */
+	@Value("${transaction.rateLimit.maxKeys:10000}")
+	private int maxKeys = 10000;
+
+	private final List<RateLimiter> limiters = new CopyOnWriteArrayList<>();
+
+	private RateLimitPolicy defaultPolicy;
+
+	private ScheduledExecutorService sweeper;
+
+	@PostConstruct
+	public void initialize()
+	{
+		if (enabled)
+		{
+			defaultPolicy = new RateLimitPolicy(buildLimiter("default", permitsPerSecond, burst), key);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		synchronized (this)
+		{
+			if (sweeper != null)
+			{
+				sweeper.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * @return the limits to check, in order, before the method runs. Callers should keep the result rather than
+	 * building it on every request.
+	 */
+	public List<RateLimitPolicy> getPolicies(Method method, ZenTransaction zenTransaction)
+	{
+		RateLimited rateLimited = method.getAnnotation(RateLimited.class);
+		if (rateLimited == null)
+		{
+			return defaultPolicy == null ? Collections.emptyList() : Collections.singletonList(defaultPolicy);
+		}
+
+		List<RateLimitPolicy> policies = new ArrayList<>(2);
+		if (defaultPolicy != null)
+		{
+			policies.add(defaultPolicy);
+		}
+
+		String name = zenTransaction.serviceName() + "." + zenTransaction.serviceOperation();
+		policies.add(new RateLimitPolicy(buildLimiter(name,
+				rateLimited.permitsPerSecond() > 0 ? rateLimited.permitsPerSecond() : permitsPerSecond,
+				rateLimited.burst() > 0 ? rateLimited.burst() : burst), rateLimited.key()));
+
+		return Collections.unmodifiableList(policies);
+	}
+
+	private RateLimiter buildLimiter(String name, double limiterPermitsPerSecond, int limiterBurst)
+	{
+		RateLimiter limiter = new RateLimiter(limiterPermitsPerSecond, limiterBurst, maxKeys);
+		limiters.add(limiter);
+		startSweeper();
+
+		MetricsRegistry.registerLabeledCallback(KEYS, limiter::getKeyCount, name);
+		MetricsRegistry.registerLabeledCallback(REJECTED, limiter::getRejectedCount, name);
+
+		return limiter;
+	}
+
+	private synchronized void startSweeper()
+	{
+		if (sweeper != null)
+		{
+			return;
+		}
+
+		sweeper = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "zen-rate-limit-sweeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		sweeper.scheduleWithFixedDelay(() -> limiters.forEach(RateLimiter::sweep), 1, 1, TimeUnit.SECONDS);
+	}
+}
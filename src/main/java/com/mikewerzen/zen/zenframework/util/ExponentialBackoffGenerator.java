@@ -62,7 +62,11 @@ public class ExponentialBackoffGenerator
 		this.randomizationFactor = randomizationFactor;
 	}
 
-	public long getNextInterval()
+	/**
+	 * Returns the next jittered interval of this generator's own sequence. Calls are serialized, so one generator can
+	 * be shared, but each caller advances the same sequence; use {@link #getInterval(int)} for independent sequences.
+	 */
+	public synchronized long getNextInterval()
 	{
 		if(currentInterval == 0)
 		{
@@ -78,11 +82,27 @@ public class ExponentialBackoffGenerator
 			}
 		}
 
-		long lowerBound = (long) (currentInterval * (1.0 - randomizationFactor));
-		long upperBound = (long) (currentInterval * (1.0 + randomizationFactor));
-		return ThreadLocalRandom.current().nextLong(lowerBound, upperBound);
+		return randomize(currentInterval);
 	}
 
+	/**
+	 * Returns the jittered interval before the given retry, counting from 1, without touching any state. Safe to call
+	 * from any number of threads.
+	 */
+	public long getInterval(int retry)
+	{
+		double interval = initialInterval * Math.pow(multiplier, Math.max(0, retry - 1));
+		return randomize(interval >= maxInterval ? maxInterval : (long) interval);
+	}
 
-
+	private long randomize(long interval)
+	{
+		long lowerBound = (long) (interval * (1.0 - randomizationFactor));
+		long upperBound = (long) (interval * (1.0 + randomizationFactor));
+		if (upperBound <= lowerBound)
+		{
+			return lowerBound;
+		}
+		return ThreadLocalRandom.current().nextLong(lowerBound, upperBound);
+	}
 }
@@ -23,13 +23,21 @@
 
 package com.mikewerzen.zen.zenframework.util;
 
-import java.util.UUID;
+import com.mikewerzen.zen.zenframework.util.id.IdGenerator;
+import com.mikewerzen.zen.zenframework.util.id.TimeOrderedIdGenerator;
 
 public class UniqueIdentifierUtils
 {
+	private static volatile IdGenerator idGenerator =
+			new TimeOrderedIdGenerator(TimeOrderedIdGenerator.getDefaultNodeId());
 
 	public static long getUniqueId()
 	{
-		return UUID.randomUUID().getLeastSignificantBits() & Long.MAX_VALUE;
+		return idGenerator.nextId();
+	}
+
+	public static void setIdGenerator(IdGenerator idGenerator)
+	{
+		UniqueIdentifierUtils.idGenerator = idGenerator;
 	}
 }
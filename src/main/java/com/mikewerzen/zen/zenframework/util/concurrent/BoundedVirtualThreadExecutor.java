@@ -0,0 +1,133 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.util.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs each task on its own virtual thread while keeping the limits of a bounded pool: at most maxRunning tasks run
+ * at once, and at most maxWaiting more are accepted to wait, parked on their virtual thread rather than in a queue.
+ */
+public class BoundedVirtualThreadExecutor
+{
+	private final ExecutorService executor;
+	private final Semaphore runPermits;
+	private final int maxRunning;
+	private final int maxAccepted;
+
+	private final AtomicInteger accepted = new AtomicInteger();
+	private final AtomicLong completed = new AtomicLong();
+
+	public BoundedVirtualThreadExecutor(String namePrefix, int maxRunning, int maxWaiting)
+	{
+		this.executor = VirtualThreads.newExecutor(namePrefix);
+		this.maxRunning = Math.max(1, maxRunning);
+		this.maxAccepted = this.maxRunning + Math.max(0, maxWaiting);
+		this.runPermits = new Semaphore(this.maxRunning);
+	}
+
+	/**
+	 * @return false, without running the task, if the executor is saturated or shut down.
+	 */
+	public boolean tryExecute(Runnable task)
+	{
+		if (accepted.incrementAndGet() > maxAccepted || executor.isShutdown())
+		{
+			accepted.decrementAndGet();
+			return false;
+		}
+
+		try
+		{
+			executor.execute(() -> run(task));
+		}
+		catch (RejectedExecutionException e)
+		{
+			accepted.decrementAndGet();
+			return false;
+		}
+
+		return true;
+	}
+
+	private void run(Runnable task)
+	{
+		try
+		{
+			runPermits.acquire();
+			try
+			{
+				task.run();
+			}
+			finally
+			{
+				runPermits.release();
+				completed.incrementAndGet();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			accepted.decrementAndGet();
+		}
+	}
+
+	public int getActiveCount()
+	{
+		return maxRunning - runPermits.availablePermits();
+	}
+
+	public int getWaitingCount()
+	{
+		return Math.max(0, accepted.get() - getActiveCount());
+	}
+
+	public long getCompletedTaskCount()
+	{
+		return completed.get();
+	}
+
+	public void shutdown()
+	{
+		executor.shutdown();
+	}
+
+	public void shutdownNow()
+	{
+		executor.shutdownNow();
+	}
+
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		return executor.awaitTermination(timeout, unit);
+	}
+}
@@ -0,0 +1,71 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.util.concurrent;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * With threads.virtual.enabled, runs every request handled by the embedded Tomcat, and so every @ZenTransaction
+ * handler, on its own virtual thread instead of the connector's platform thread pool.
+ */
+@Component
+@ConditionalOnClass(name = "org.apache.catalina.startup.Tomcat")
+@ConditionalOnProperty(name = "threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadTomcatCustomizer implements WebServerFactoryCustomizer<TomcatServletWebServerFactory>
+{
+	private static final Logger logger = LogManager.getLogger(VirtualThreadTomcatCustomizer.class);
+
+	private ExecutorService executor;
+
+	@Override
+	public void customize(TomcatServletWebServerFactory factory)
+	{
+		if (!VirtualThreads.isAvailable())
+		{
+			logger.warn("threads.virtual.enabled is set but virtual threads require Java 21, keeping Tomcat's pool.");
+			return;
+		}
+
+		executor = VirtualThreads.newExecutor("zen-http-");
+		factory.addConnectorCustomizers(connector -> connector.getProtocolHandler().setExecutor(executor));
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		if (executor != null)
+		{
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.util.concurrent;
+
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates JDK 21+ virtual threads through reflection, so the framework still compiles and runs on Java 8. Callers
+ * check {@link #isAvailable()} and keep their platform thread pools otherwise.
+ *
+ * Every thread created here runs its task through the current {@link com.mikewerzen.zen.zenframework.context.ZenScopeStorage},
+ * so with scoped-value storage a virtual thread never populates a ThreadLocal for its Zen contexts.
+ */
+public final class VirtualThreads
+{
+	private static final Method ofVirtual = findMethod("java.lang.Thread", "ofVirtual");
+	private static final Method name = findMethod("java.lang.Thread$Builder", "name", String.class, long.class);
+	private static final Method factory = findMethod("java.lang.Thread$Builder", "factory");
+	private static final Method newThreadPerTaskExecutor =
+			findMethod("java.util.concurrent.Executors", "newThreadPerTaskExecutor", ThreadFactory.class);
+
+	private VirtualThreads()
+	{
+	}
+
+	public static boolean isAvailable()
+	{
+		return ofVirtual != null && name != null && factory != null && newThreadPerTaskExecutor != null;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException if virtual threads are not available.
+	 */
+	public static ThreadFactory newThreadFactory(String namePrefix)
+	{
+		checkAvailable();
+
+		try
+		{
+			Object builder = name.invoke(ofVirtual.invoke(null), namePrefix, 1L);
+			ThreadFactory virtualFactory = (ThreadFactory) factory.invoke(builder);
+
+			return task -> virtualFactory.newThread(ZenScope.getStorage().wrapThreadBody(task));
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new UnsupportedOperationException("Could not create a virtual thread factory", e);
+		}
+	}
+
+	/**
+	 * An executor starting a new virtual thread per task, so it neither queues nor pools.
+	 *
+	 * @throws UnsupportedOperationException if virtual threads are not available.
+	 */
+	public static ExecutorService newExecutor(String namePrefix)
+	{
+		ThreadFactory threadFactory = newThreadFactory(namePrefix);
+
+		try
+		{
+			return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new UnsupportedOperationException("Could not create a virtual thread executor", e);
+		}
+	}
+
+	private static void checkAvailable()
+	{
+		if (!isAvailable())
+		{
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+		}
+	}
+
+	private static Method findMethod(String className, String methodName, Class<?>... parameterTypes)
+	{
+		try
+		{
+			return Class.forName(className).getMethod(methodName, parameterTypes);
+		}
+		catch (ReflectiveOperationException | RuntimeException e)
+		{
+			return null;
+		}
+	}
+}
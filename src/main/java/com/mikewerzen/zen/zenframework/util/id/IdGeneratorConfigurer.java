@@ -0,0 +1,82 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.util.id;
+
+import com.mikewerzen.zen.zenframework.util.UniqueIdentifierUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Installs the configured {@link IdGenerator} into {@link UniqueIdentifierUtils}, or the application's own
+ * IdGenerator bean if it declares one.
+ */
+@Component
+public class IdGeneratorConfigurer
+{
+	private static final Logger logger = LogManager.getLogger(IdGeneratorConfigurer.class);
+
+	@Value("${id.generator.type:TIME_ORDERED}")
+	private IdGeneratorType type;
+
+	/**
+	 * Between 0 and 1023 and unique per instance. It should be set for every deployment, e.g. from the pod ordinal;
+	 * negative derives one with {@link TimeOrderedIdGenerator#getDefaultNodeId()} and logs a warning.
+	 */
+	@Value("${id.generator.nodeId:-1}")
+	private int nodeId;
+
+	@Autowired(required = false)
+	private IdGenerator customGenerator;
+
+	@PostConstruct
+	public void initialize()
+	{
+		UniqueIdentifierUtils.setIdGenerator(customGenerator != null ? customGenerator : buildGenerator());
+	}
+
+	private IdGenerator buildGenerator()
+	{
+		if (type == IdGeneratorType.RANDOM)
+		{
+			return new RandomIdGenerator();
+		}
+
+		if (nodeId >= 0)
+		{
+			return new TimeOrderedIdGenerator(nodeId);
+		}
+
+		int derivedNodeId = TimeOrderedIdGenerator.getDefaultNodeId();
+		logger.warn("id.generator.nodeId is not set, using node id " + derivedNodeId
+				+ (TimeOrderedIdGenerator.getHostOrdinal() >= 0 ? " from the host name ordinal"
+						: " hashed from the process name, which other instances may share")
+				+ ". Set a distinct id.generator.nodeId per instance to keep ids unique.");
+		return new TimeOrderedIdGenerator(derivedNodeId);
+	}
+}
@@ -0,0 +1,155 @@
+/* Copyright  2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+
+package com.mikewerzen.zen.zenframework.util.id;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lock-free 63-bit ids that sort by creation time: 41 bits of milliseconds since 2019-01-01, 10 bits of node id and
+ * 12 bits of sequence within the millisecond.
+ *
+ * The timestamp and sequence live in a single AtomicLong advanced by compare-and-set, so ids from one generator never
+ * repeat and always increase. When more than 4096 ids are taken within a millisecond, or the clock moves backwards,
+ * the sequence carries into the timestamp and the ids run slightly ahead of the clock until it catches up.
+ *
+ * Ids are only unique across instances if every instance has a distinct node id, so it must be set per deployment
+ * (id.generator.nodeId). {@link #getDefaultNodeId()} is a fallback for when it is not.
+ */
+public class TimeOrderedIdGenerator implements IdGenerator
+{
+	public static final long EPOCH = 1546300800000L;
+
+	static final int NODE_BITS = 10;
+	static final int SEQUENCE_BITS = 12;
+
+	public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+	private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+	private static final Pattern ORDINAL = Pattern.compile("-(\\d{1,4})$");
+
+	private final long node;
+
+	/**
+	 * Timestamp since the epoch, shifted left by SEQUENCE_BITS, plus the sequence.
+	 */
+	private final AtomicLong state = new AtomicLong();
+
+	public TimeOrderedIdGenerator(int nodeId)
+	{
+		if (nodeId < 0 || nodeId > MAX_NODE_ID)
+		{
+			throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + " but was " + nodeId);
+		}
+
+		this.node = (long) nodeId << SEQUENCE_BITS;
+	}
+
+	/**
+	 * Derives a node id for deployments that do not assign one. A host name ending in an ordinal, as a StatefulSet pod
+	 * name does (orders-3), gives that ordinal, which is unique per replica. Otherwise the id is hashed from the process
+	 * name (pid@host) and start time, and two instances may get the same one.
+	 */
+	public static int getDefaultNodeId()
+	{
+		int ordinal = getHostOrdinal();
+		if (ordinal >= 0)
+		{
+			return ordinal;
+		}
+
+		long hash = ManagementFactory.getRuntimeMXBean().getName().hashCode() * 0x9e3779b97f4a7c15L ^ System.nanoTime();
+		hash ^= hash >>> 32;
+		hash ^= hash >>> 16;
+		return (int) hash & MAX_NODE_ID;
+	}
+
+	/**
+	 * @return the ordinal at the end of this host's name, or -1 if it has none that fits in a node id.
+	 */
+	public static int getHostOrdinal()
+	{
+		return parseOrdinal(getHostName());
+	}
+
+	static int parseOrdinal(String hostName)
+	{
+		Matcher matcher = ORDINAL.matcher(hostName == null ? "" : hostName);
+		if (!matcher.find())
+		{
+			return -1;
+		}
+
+		int ordinal = Integer.parseInt(matcher.group(1));
+		return ordinal <= MAX_NODE_ID ? ordinal : -1;
+	}
+
+	private static String getHostName()
+	{
+		String hostName = System.getenv("HOSTNAME");
+		if (hostName != null && !hostName.isEmpty())
+		{
+			return hostName;
+		}
+
+		try
+		{
+			return InetAddress.getLocalHost().getHostName();
+		}
+		catch (UnknownHostException e)
+		{
+			return null;
+		}
+	}
+
+	@Override
+	public long nextId()
+	{
+		long now = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+
+		while (true)
+		{
+			long last = state.get();
+			long next = now > last ? now : last + 1;
+
+			if (state.compareAndSet(last, next))
+			{
+				return ((next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | node | (next & SEQUENCE_MASK);
+			}
+		}
+	}
+
+	/**
+	 * @return the creation time, in epoch milliseconds, encoded in an id from this scheme.
+	 */
+	public static long getTimestamp(long id)
+	{
+		return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.context;
+
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContextHolder;
+import com.mikewerzen.zen.zenframework.logging.external.ExternalCallAttributesBuilder;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ZenContextPropagationTest
+{
+	private final ExecutorService executor = ZenContextPropagation.wrapExecutorService(Executors.newFixedThreadPool(4));
+
+	@After
+	public void shutdown()
+	{
+		executor.shutdownNow();
+		ZenScope.end();
+	}
+
+	@Test
+	public void testWorkersCommitExternalCallsToRequestContext() throws Exception
+	{
+		LoggingContext loggingContext = new LoggingContext();
+		LoggingContextHolder.setContext(loggingContext);
+
+		List<CompletableFuture<Void>> calls = new ArrayList<>();
+		for (int i = 0; i < 200; i++)
+		{
+			calls.add(ZenContextPropagation.runAsync(() -> new ExternalCallAttributesBuilder("Core", "Ledger",
+					"getBalance", "GET", "v2").buildAndCommit(true), executor));
+		}
+		CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).get();
+
+		assertEquals(200, loggingContext.getExternalLogAttributes().size() + loggingContext.getDroppedExternalCalls());
+		assertEquals(200, loggingContext.getExternalCallSummaries().iterator().next().getValue().getCount());
+	}
+
+	@Test
+	public void testWorkerThreadIsRestoredAfterTask() throws Exception
+	{
+		LoggingContext loggingContext = new LoggingContext();
+		LoggingContextHolder.setContext(loggingContext);
+
+		assertSame(loggingContext, executor.submit(LoggingContextHolder::getContextOrNull).get());
+
+		ZenScope.end();
+		assertNull(executor.submit(LoggingContextHolder::getContextOrNull).get());
+	}
+
+	@Test
+	public void testForkedTasksKeepScope()
+	{
+		LoggingContext loggingContext = new LoggingContext();
+		LoggingContextHolder.setContext(loggingContext);
+
+		assertEquals(Integer.valueOf(16), new ForkJoinPool(4).invoke(new RuntimeCountingTask(16)));
+		assertEquals(16, loggingContext.getMethodRuntimes().iterator().next().getValue().getCount());
+	}
+
+	private static class RuntimeCountingTask extends ZenRecursiveTask<Integer>
+	{
+		private final int size;
+
+		RuntimeCountingTask(int size)
+		{
+			this.size = size;
+		}
+
+		@Override
+		protected Integer computeInScope()
+		{
+			if (size == 1)
+			{
+				LoggingContextHolder.getContext().addRuntime("leaf()", 1);
+				return 1;
+			}
+
+			RuntimeCountingTask left = new RuntimeCountingTask(size / 2);
+			left.fork();
+			return new RuntimeCountingTask(size - size / 2).compute() + left.join();
+		}
+	}
+}
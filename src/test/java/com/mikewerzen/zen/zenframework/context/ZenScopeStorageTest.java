@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+package com.mikewerzen.zen.zenframework.context;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ZenScopeStorageTest
+{
+	@After
+	public void resetStorage()
+	{
+		ZenScope.end();
+		ZenScope.setStorage(null);
+	}
+
+	@Test
+	public void testScopeIsKeptInInstalledStorage()
+	{
+		AtomicInteger writes = new AtomicInteger();
+		ThreadLocalScopeStorage delegate = new ThreadLocalScopeStorage();
+		ZenScope.setStorage(new ZenScopeStorage()
+		{
+			@Override
+			public ZenScope get()
+			{
+				return delegate.get();
+			}
+
+			@Override
+			public void set(ZenScope scope)
+			{
+				writes.incrementAndGet();
+				delegate.set(scope);
+			}
+		});
+
+		ZenScope scope = new ZenScope();
+		assertNull(ZenScope.attach(scope));
+		assertSame(scope, delegate.get());
+
+		ZenScope.end();
+		assertNull(ZenScope.current());
+		assertEquals(2, writes.get());
+	}
+
+	@Test
+	public void testScopedValueStorageFallsBackWhenUnavailable()
+	{
+		ZenScopeStorageConfigurer configurer = new ZenScopeStorageConfigurer();
+		ReflectionTestUtils.setField(configurer, "type", ZenScopeStorageType.SCOPED_VALUE);
+		configurer.initialize();
+
+		boolean scopedValuesAvailable = ScopedValueScopeStorage.create() != null;
+		assertEquals(scopedValuesAvailable, ZenScope.getStorage() instanceof ScopedValueScopeStorage);
+		assertTrue(scopedValuesAvailable || ZenScope.getStorage() instanceof ThreadLocalScopeStorage);
+
+		ZenScope scope = new ZenScope();
+		ZenScope.attach(scope);
+		assertSame(scope, ZenScope.current());
+	}
+}
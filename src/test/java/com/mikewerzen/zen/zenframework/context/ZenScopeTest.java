@@ -0,0 +1,76 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.context;
+
+import com.mikewerzen.zen.zenframework.event.context.EventContext;
+import com.mikewerzen.zen.zenframework.event.context.EventContextHolder;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContextHolder;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ZenScopeTest
+{
+	@After
+	public void endScope()
+	{
+		ZenScope.end();
+	}
+
+	@Test
+	public void testHoldersShareOneScope()
+	{
+		LoggingContext loggingContext = new LoggingContext();
+		LoggingContextHolder.setContext(loggingContext);
+		EventContextHolder.setContext(new EventContext("event", "1", "group", 1L));
+
+		assertSame(loggingContext, ZenScope.current().getLoggingContext());
+		assertSame(loggingContext, ZenScope.currentLoggingContext());
+
+		LoggingContextHolder.clearContext();
+		assertNull(ZenScope.currentLoggingContext());
+
+		EventContextHolder.clearContext();
+		assertNull(ZenScope.current());
+	}
+
+	@Test
+	public void testAttachAndRestore()
+	{
+		LoggingContextHolder.setContext(new LoggingContext());
+		ZenScope outer = ZenScope.current();
+
+		ZenScope inner = outer.copy();
+		inner.setLoggingContext(null);
+
+		ZenScope previous = ZenScope.attach(inner);
+		assertNull(LoggingContextHolder.getContextOrNull());
+
+		ZenScope.restore(previous);
+		assertSame(outer, ZenScope.current());
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+package com.mikewerzen.zen.zenframework.logging;
+
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.logging.async.AsyncLogPipeline;
+import com.mikewerzen.zen.zenframework.logging.builder.LogMessageBuilder;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import com.mikewerzen.zen.zenframework.logging.export.LogDataExporter;
+import com.mikewerzen.zen.zenframework.logging.sampling.TransactionSampler;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class ZenLogManagerTest
+{
+	private final AsyncLogPipeline pipeline = new AsyncLogPipeline();
+	private final ZenLogManager logManager = new ZenLogManager();
+	private final BlockingQueue<String> exported = new LinkedBlockingQueue<>();
+
+	@After
+	public void stop()
+	{
+		logManager.stopAsyncLogging();
+		ZenScope.end();
+	}
+
+	@Test
+	public void testAsyncLoggingWorksWithBuilderWithoutSnapshotSupport() throws Exception
+	{
+		LogMessageBuilder contextReadingBuilder = new LogMessageBuilder()
+		{
+			@Override
+			public String buildTransactionLog(Object response)
+			{
+				LoggingContext loggingContext = ZenScope.currentLoggingContext();
+				return response + ":" + String.join(",", loggingContext.getEvents());
+			}
+
+			@Override
+			public String buildEventLog(Object response)
+			{
+				return buildTransactionLog(response);
+			}
+		};
+
+		ReflectionTestUtils.setField(pipeline, "enabled", true);
+		ReflectionTestUtils.setField(logManager, "asyncLogPipeline", pipeline);
+		ReflectionTestUtils.setField(logManager, "logMessageBuilder", contextReadingBuilder);
+		ReflectionTestUtils.setField(logManager, "transactionSampler", new TransactionSampler());
+		ReflectionTestUtils.setField(logManager, "logDataExporter", (LogDataExporter) exported::add);
+		ReflectionTestUtils.setField(logManager, "exportEnabled", true);
+		logManager.startAsyncLogging();
+
+		LoggingContext loggingContext = new LoggingContext();
+		loggingContext.addEvent("Loaded account");
+		ZenScope scope = new ZenScope();
+		scope.setLoggingContext(loggingContext);
+		ZenScope.attach(scope);
+
+		logManager.logTransaction("OK");
+		ZenScope.end();
+
+		assertEquals("OK:Loaded account", exported.poll(5, TimeUnit.SECONDS));
+		assertEquals(0, pipeline.getFailedCount());
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+package com.mikewerzen.zen.zenframework.logging.async;
+
+import com.mikewerzen.zen.zenframework.logging.context.LogSnapshot;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncLogPipelineTest
+{
+	private final AsyncLogPipeline pipeline = new AsyncLogPipeline();
+
+	@After
+	public void stopPipeline()
+	{
+		pipeline.stop();
+	}
+
+	@Test
+	public void testEverySnapshotIsWrittenOnce() throws Exception
+	{
+		ReflectionTestUtils.setField(pipeline, "enabled", true);
+		ReflectionTestUtils.setField(pipeline, "bufferSize", 64);
+		ReflectionTestUtils.setField(pipeline, "serializerThreads", 3);
+
+		Set<LogSnapshot> written = ConcurrentHashMap.newKeySet();
+		Set<String> threadNames = ConcurrentHashMap.newKeySet();
+		pipeline.start(snapshot -> {
+			assertTrue(written.add(snapshot));
+			threadNames.add(Thread.currentThread().getName());
+		});
+
+		List<Thread> producers = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+		{
+			Thread producer = new Thread(() -> {
+				for (int j = 0; j < 5000; j++)
+				{
+					pipeline.publish(LogSnapshot.captureTransaction(null));
+				}
+			});
+			producer.start();
+			producers.add(producer);
+		}
+		for (Thread producer : producers)
+		{
+			producer.join();
+		}
+		pipeline.stop();
+
+		assertEquals(20000, written.size());
+		assertEquals(20000, pipeline.getPublishedCount() + pipeline.getCallerRunsCount());
+		assertEquals(pipeline.getPublishedCount(), pipeline.getWrittenCount());
+		assertEquals(0, pipeline.getDroppedCount());
+		assertEquals(0, pipeline.getDepth());
+		assertTrue(threadNames.stream().anyMatch(name -> name.startsWith("zen-log-serializer-")));
+	}
+
+	@Test
+	public void testOverflowIsDroppedWhenConfigured() throws Exception
+	{
+		ReflectionTestUtils.setField(pipeline, "enabled", true);
+		ReflectionTestUtils.setField(pipeline, "bufferSize", 4);
+		ReflectionTestUtils.setField(pipeline, "overflowPolicy", AsyncLogOverflowPolicy.DROP);
+
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch serializing = new CountDownLatch(1);
+		pipeline.start(snapshot -> {
+			serializing.countDown();
+			try
+			{
+				release.await();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		pipeline.publish(LogSnapshot.captureTransaction(null));
+		serializing.await();
+
+		for (int i = 0; i < 10; i++)
+		{
+			pipeline.publish(LogSnapshot.captureTransaction(null));
+		}
+
+		assertEquals(4, pipeline.getDepth());
+		assertEquals(6, pipeline.getDroppedCount());
+
+		release.countDown();
+		pipeline.stop();
+		assertEquals(5, pipeline.getWrittenCount());
+	}
+
+	@Test
+	public void testIdleSerializerWaitsUntilPublish() throws Exception
+	{
+		ReflectionTestUtils.setField(pipeline, "enabled", true);
+		ReflectionTestUtils.setField(pipeline, "bufferSize", 4);
+
+		CountDownLatch written = new CountDownLatch(1);
+		pipeline.start(snapshot -> written.countDown());
+
+		Thread serializer = ((List<Thread>) ReflectionTestUtils.getField(pipeline, "serializers")).get(0);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (serializer.getState() != Thread.State.WAITING && System.nanoTime() < deadline)
+		{
+			Thread.sleep(1);
+		}
+		assertEquals(Thread.State.WAITING, serializer.getState());
+
+		pipeline.publish(LogSnapshot.captureTransaction(null));
+		assertTrue(written.await(5, TimeUnit.SECONDS));
+	}
+}
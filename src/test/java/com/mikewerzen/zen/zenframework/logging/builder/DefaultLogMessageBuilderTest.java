@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.logging.builder;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.mikewerzen.zen.zenframework.logging.context.LogRetention;
+import com.mikewerzen.zen.zenframework.logging.context.LogSnapshot;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContextLimits;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultLogMessageBuilderTest
+{
+	private final DefaultLogMessageBuilder streamingBuilder = new DefaultLogMessageBuilder();
+	private final GsonLogMessageBuilder gsonBuilder = new GsonLogMessageBuilder();
+
+	@After
+	public void clearContexts()
+	{
+		LogContextFixture.clear();
+		LoggingContext.setLimits(LoggingContextLimits.DEFAULT);
+	}
+
+	@Test
+	public void testTransactionLogMatchesGsonLayout()
+	{
+		LogContextFixture.populateTransaction(false);
+
+		assertSameLayout(gsonBuilder.buildTransactionLog(LogContextFixture.RESPONSE),
+				streamingBuilder.buildTransactionLog(LogContextFixture.RESPONSE));
+	}
+
+	@Test
+	public void testFailedTransactionLogMatchesGsonLayout()
+	{
+		LogContextFixture.populateTransaction(true);
+
+		assertSameLayout(gsonBuilder.buildTransactionLog(LogContextFixture.RESPONSE),
+				streamingBuilder.buildTransactionLog(LogContextFixture.RESPONSE));
+	}
+
+	@Test
+	public void testEventLogMatchesGsonLayout()
+	{
+		LogContextFixture.populateEvent();
+
+		assertSameLayout(gsonBuilder.buildEventLog(null), streamingBuilder.buildEventLog(null));
+	}
+
+	@Test
+	public void testOverflowMatchesGsonLayout()
+	{
+		LoggingContext.setLimits(new LoggingContextLimits(1, 1, 1, 1, LogRetention.LAST, LogRetention.FIRST));
+		LogContextFixture.populateTransaction(true);
+
+		String log = streamingBuilder.buildTransactionLog(LogContextFixture.RESPONSE);
+		assertSameLayout(gsonBuilder.buildTransactionLog(LogContextFixture.RESPONSE), log);
+
+		JsonObject json = new JsonParser().parse(log).getAsJsonObject();
+		assertEquals(1, json.getAsJsonArray("externalCalls").size());
+		assertEquals(1, json.getAsJsonObject("overflow").get("externalCalls").getAsInt());
+		assertEquals(2, json.getAsJsonObject("externalCallSummary").getAsJsonObject("Core.Ledger").get("count").getAsInt());
+	}
+
+	@Test
+	public void testTransactionLogWithoutContexts()
+	{
+		assertSameLayout(gsonBuilder.buildTransactionLog(LogContextFixture.RESPONSE),
+				streamingBuilder.buildTransactionLog(LogContextFixture.RESPONSE));
+	}
+
+	@Test
+	public void testSnapshotIsUnaffectedByLaterChanges()
+	{
+		LogContextFixture.populateTransaction(true);
+
+		String expected = streamingBuilder.buildTransactionLog(LogContextFixture.RESPONSE);
+		LogSnapshot snapshot = LogSnapshot.captureTransaction(LogContextFixture.RESPONSE);
+
+		LogContextFixture.clear();
+		LogContextFixture.populateEvent();
+
+		assertSameLayout(expected, streamingBuilder.buildTransactionLogFromSnapshot(snapshot));
+		assertSameLayout(expected, gsonBuilder.buildTransactionLogFromSnapshot(snapshot));
+	}
+
+	@Test
+	public void testOutputIsCompact()
+	{
+		LogContextFixture.populateTransaction(true);
+
+		String log = streamingBuilder.buildTransactionLog(LogContextFixture.RESPONSE);
+
+		assertFalse(log.contains("\n"));
+		assertTrue(log.startsWith("{\"serviceName\":\"AccountService\","));
+	}
+
+	@Test
+	public void testNonFiniteNumbersAreWrittenAsStrings()
+	{
+		JsonLogWriter writer = new JsonLogWriter();
+		writer.beginArray().value(Double.NaN).value(Float.POSITIVE_INFINITY).value(1.5).endArray();
+
+		assertEquals("[\"NaN\",\"Infinity\",1.5]", writer.toString());
+	}
+
+	private void assertSameLayout(String expected, String actual)
+	{
+		JsonObject expectedJson = new JsonParser().parse(expected).getAsJsonObject();
+		JsonObject actualJson = new JsonParser().parse(actual).getAsJsonObject();
+
+		// The end time is taken independently by each builder.
+		removeEndTimes(expectedJson);
+		removeEndTimes(actualJson);
+
+		assertEquals(expectedJson, actualJson);
+		assertEquals(expectedJson.keySet().toString(), actualJson.keySet().toString());
+	}
+
+	private void removeEndTimes(JsonObject json)
+	{
+		JsonElement timings = json.get("timings");
+		if (timings != null)
+		{
+			timings.getAsJsonObject().remove("endTime");
+			timings.getAsJsonObject().remove("runtime");
+			timings.getAsJsonObject().remove("selfTime");
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.logging.builder;
+
+import com.mikewerzen.zen.zenframework.event.context.EventContext;
+import com.mikewerzen.zen.zenframework.event.context.EventContextHolder;
+import com.mikewerzen.zen.zenframework.exception.system.ExternalException;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContextHolder;
+import com.mikewerzen.zen.zenframework.logging.external.ExternalCallAttributesBuilder;
+import com.mikewerzen.zen.zenframework.rest.request.ZenHttpHeaders;
+import com.mikewerzen.zen.zenframework.security.context.SecurityContext;
+import com.mikewerzen.zen.zenframework.security.context.SecurityContextHolder;
+import com.mikewerzen.zen.zenframework.security.provider.zen.jwt.token.JWTToken;
+import com.mikewerzen.zen.zenframework.transaction.context.TransactionContext;
+import com.mikewerzen.zen.zenframework.transaction.context.TransactionContextHolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Populates the Zen context holders with a representative request for log builder tests and benchmarks.
+ */
+public class LogContextFixture
+{
+	public static final ResponseEntity<String> RESPONSE = new ResponseEntity<>("OK", HttpStatus.OK);
+
+	public static void populateTransaction(boolean withThrowable)
+	{
+		TransactionContextHolder.setContext(new TransactionContext("AccountService", "lookup", "v1", "getAccount",
+				"8734623", "1234-5678", "session-\"quoted\"", 98765L, "10.0.0.1", "10.0.0.2", "device-1", "ios"));
+
+		SecurityContextHolder.setContext(new SecurityContext(new JWTToken(null, "zen-app", "user-1", "mwerzen",
+				new String[]{"ADMIN", "USER", "AUDITOR", "IGNORED"}, new String[]{"LOGIN"}, "token-1", "raw")));
+
+		populateLoggingContext(withThrowable);
+	}
+
+	public static void populateEvent()
+	{
+		EventContextHolder.setContext(new EventContext("refreshSecret", "1", "Framework", 4242L));
+		populateLoggingContext(false);
+	}
+
+	public static void clear()
+	{
+		TransactionContextHolder.clearContext();
+		SecurityContextHolder.clearContext();
+		LoggingContextHolder.clearContext();
+		EventContextHolder.clearContext();
+	}
+
+	private static void populateLoggingContext(boolean withThrowable)
+	{
+		LoggingContext loggingContext = new LoggingContext();
+		LoggingContextHolder.setContext(loggingContext);
+
+		loggingContext.addEvent("Loaded account");
+		loggingContext.addEvent("Unicode é中😀 and control \t\n chars");
+		loggingContext.addField("accountType", "CHECKING");
+		loggingContext.addField("balance", 1042);
+		loggingContext.addFieldMasked("accountNumber", "1234567890");
+		loggingContext.addRuntime("AccountRepository.find()", 12);
+		loggingContext.addRuntime("AccountMapper.map()", 1);
+
+		ZenHttpHeaders headers = new ZenHttpHeaders();
+		headers.setRequestId("req-1");
+		headers.setCorrelationId("1234-5678");
+		headers.setDeviceId("device-1");
+
+		new ExternalCallAttributesBuilder("Core", "Ledger", "getBalance", "GET", "v2")
+				.setHeaderInformation(headers)
+				.setHttpStatusCode(HttpStatus.OK)
+				.buildAndCommit(true);
+
+		new ExternalCallAttributesBuilder("Core", "Ledger", "getHistory", "GET", "v2")
+				.setHeaderInformation(headers)
+				.setHttpStatusCode(HttpStatus.SERVICE_UNAVAILABLE)
+				.setExternalResponseCode("E-17")
+				.setExternalResponseMessage("Ledger unavailable")
+				.setThrowable(new IllegalStateException("Ledger unavailable"))
+				.buildAndCommit(false);
+
+		if (withThrowable)
+		{
+			loggingContext.addThrowable(new ExternalException("E-17", "Ledger unavailable", "Downstream failed",
+					new IllegalStateException("Root cause")));
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.logging.builder;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming DefaultLogMessageBuilder against the Gson tree builder it replaced.
+ *
+ * Run with the test classpath, e.g. from the IDE, or add "-prof gc" to the options to compare allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LogMessageBuilderBenchmark
+{
+	@Param({"false", "true"})
+	public boolean withThrowable;
+
+	private final DefaultLogMessageBuilder streamingBuilder = new DefaultLogMessageBuilder();
+	private final GsonLogMessageBuilder gsonBuilder = new GsonLogMessageBuilder();
+
+	@Setup
+	public void populateContexts()
+	{
+		LogContextFixture.populateTransaction(withThrowable);
+	}
+
+	@TearDown
+	public void clearContexts()
+	{
+		LogContextFixture.clear();
+	}
+
+	@Benchmark
+	public String streamingBuilder()
+	{
+		return streamingBuilder.buildTransactionLog(LogContextFixture.RESPONSE);
+	}
+
+	@Benchmark
+	public String gsonBuilder()
+	{
+		return gsonBuilder.buildTransactionLog(LogContextFixture.RESPONSE);
+	}
+
+	public static void main(String[] args) throws RunnerException
+	{
+		Options options = new OptionsBuilder()
+				.include(LogMessageBuilderBenchmark.class.getSimpleName())
+				.build();
+
+		new Runner(options).run();
+	}
+}
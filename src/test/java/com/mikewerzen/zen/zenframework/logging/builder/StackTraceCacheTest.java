@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.logging.builder;
+
+import com.mikewerzen.zen.zenframework.logging.utils.ThrowableFingerprint;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class StackTraceCacheTest
+{
+	@Test
+	public void testFingerprintIgnoresMessages()
+	{
+		Throwable[] failures = failures("Account 1 not found", "Account 2 not found");
+
+		assertEquals(ThrowableFingerprint.of(failures[0]).getId(), ThrowableFingerprint.of(failures[1]).getId());
+		assertEquals(16, ThrowableFingerprint.of(failures[0]).getId().length());
+	}
+
+	@Test
+	public void testFingerprintIncludesCauses()
+	{
+		Throwable plain = failure("Ledger unavailable");
+		Throwable caused = failure("Ledger unavailable");
+		caused.initCause(new IllegalArgumentException("Root cause"));
+
+		assertNotEquals(ThrowableFingerprint.of(plain).getId(), ThrowableFingerprint.of(caused).getId());
+		assertEquals(2, ThrowableFingerprint.of(caused).getDepth());
+	}
+
+	@Test
+	public void testRepeatedThrowablesHitCache()
+	{
+		StackTraceCache cache = new StackTraceCache(4);
+
+		Throwable[] failures = failures("first", "second");
+		StackTraceCache.CachedStackTrace first = cache.get(ThrowableFingerprint.of(failures[0]));
+		StackTraceCache.CachedStackTrace second = cache.get(ThrowableFingerprint.of(failures[1]));
+
+		assertEquals(first, second);
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(IllegalStateException.class.getCanonicalName(), first.classNames[0]);
+	}
+
+	private static Throwable failure(String message)
+	{
+		return new IllegalStateException(message);
+	}
+
+	private static Throwable[] failures(String... messages)
+	{
+		Throwable[] failures = new Throwable[messages.length];
+		for (int i = 0; i < messages.length; i++)
+		{
+			failures[i] = failure(messages[i]);
+		}
+		return failures;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.logging.context;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoggingContextTest
+{
+	@After
+	public void resetLimits()
+	{
+		LoggingContext.setLimits(LoggingContextLimits.DEFAULT);
+	}
+
+	@Test
+	public void testEventsKeepMostRecent()
+	{
+		LoggingContext.setLimits(new LoggingContextLimits(2, 0, 0, 0, LogRetention.LAST, LogRetention.FIRST));
+		LoggingContext context = new LoggingContext();
+
+		context.addEvent("one");
+		context.addEvent("two");
+		context.addEvent("three");
+
+		assertEquals(Arrays.asList("two", "three"), new ArrayList<>(context.getEvents()));
+		assertEquals(1, context.getDroppedEvents());
+		assertTrue(context.hasOverflow());
+	}
+
+	@Test
+	public void testEventsKeepFirst()
+	{
+		LoggingContext.setLimits(new LoggingContextLimits(2, 0, 0, 0, LogRetention.FIRST, LogRetention.FIRST));
+		LoggingContext context = new LoggingContext();
+
+		context.addEvent("one");
+		context.addEvent("two");
+		context.addEvent("three");
+
+		assertEquals(Arrays.asList("one", "two"), new ArrayList<>(context.getEvents()));
+	}
+
+	@Test
+	public void testFieldsKeepFirstKeysAndAcceptUpdates()
+	{
+		LoggingContext.setLimits(new LoggingContextLimits(0, 1, 1, 0, LogRetention.LAST, LogRetention.FIRST));
+		LoggingContext context = new LoggingContext();
+
+		context.addField("first", 1);
+		context.addField("second", 2);
+		context.addField("first", 3);
+		context.addRuntime("a()", 1);
+		context.addRuntime("b()", 1);
+		context.addRuntime("a()", 1);
+
+		assertEquals(3, context.getKeyValueFields().iterator().next().getValue());
+		assertEquals(1, context.getKeyValueFields().size());
+		assertEquals(1, context.getDroppedFields());
+		assertEquals(2, context.getMethodRuntimes().iterator().next().getValue().getCount());
+		assertEquals(1, context.getDroppedRuntimes());
+	}
+
+	@Test
+	public void testUnboundedByDefaultForSmallContexts()
+	{
+		LoggingContext context = new LoggingContext();
+		context.addEvent("one");
+		context.addField("key", "value");
+
+		assertFalse(context.hasOverflow());
+	}
+}
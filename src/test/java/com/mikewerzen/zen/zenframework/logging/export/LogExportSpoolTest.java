@@ -0,0 +1,147 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+package com.mikewerzen.zen.zenframework.logging.export;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogExportSpoolTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		directory = folder.newFolder("spool");
+	}
+
+	@Test
+	public void testMessagesAreReadInOrderAcrossSegments() throws Exception
+	{
+		LogExportSpool spool = openSpool(256, 1 << 20);
+
+		for (int i = 0; i < 40; i++)
+		{
+			assertTrue(spool.append("{\"sequence\":" + i + "}"));
+		}
+		assertTrue(directory.listFiles().length > 1);
+
+		List<String> read = drain(spool);
+
+		assertEquals(40, read.size());
+		for (int i = 0; i < 40; i++)
+		{
+			assertEquals("{\"sequence\":" + i + "}", read.get(i));
+		}
+		assertTrue(spool.isEmpty());
+		assertEquals(1, directory.listFiles().length);
+	}
+
+	@Test
+	public void testUncommittedMessagesAreRecoveredAfterRestart() throws Exception
+	{
+		LogExportSpool spool = openSpool(256, 1 << 20);
+		for (int i = 0; i < 20; i++)
+		{
+			spool.append("message-" + i);
+		}
+
+		LogExportSpool.Batch delivered = spool.read(5, Integer.MAX_VALUE);
+		spool.commit(delivered);
+		spool.read(5, Integer.MAX_VALUE);
+		spool.close();
+
+		LogExportSpool reopened = openSpool(256, 1 << 20);
+		List<String> read = drain(reopened);
+
+		assertEquals(15, read.size());
+		assertEquals("message-5", read.get(0));
+		assertEquals("message-19", read.get(14));
+	}
+
+	@Test
+	public void testOldestSegmentIsEvictedWhenFull() throws Exception
+	{
+		LogExportSpool spool = openSpool(256, 512);
+
+		for (int i = 0; i < 100; i++)
+		{
+			assertTrue(spool.append("message-" + i));
+		}
+
+		assertTrue(spool.getEvictedCount() > 0);
+		assertTrue(spool.getSizeBytes() <= 512);
+		assertEquals(100 - spool.getEvictedCount(), spool.getPendingCount());
+
+		List<String> read = drain(spool);
+		assertEquals("message-99", read.get(read.size() - 1));
+	}
+
+	@Test
+	public void testOversizedMessageIsRejected() throws Exception
+	{
+		LogExportSpool spool = openSpool(64, 1024);
+
+		assertFalse(spool.append(new String(new char[100]).replace('\0', 'x')));
+		assertEquals(1, spool.getRejectedCount());
+		assertTrue(spool.isEmpty());
+	}
+
+	private LogExportSpool openSpool(int segmentBytes, long maxBytes) throws Exception
+	{
+		LogExportSpool spool = new LogExportSpool();
+		ReflectionTestUtils.setField(spool, "directory", directory.getAbsolutePath());
+		ReflectionTestUtils.setField(spool, "segmentBytes", segmentBytes);
+		ReflectionTestUtils.setField(spool, "maxBytes", maxBytes);
+		spool.open();
+		return spool;
+	}
+
+	private List<String> drain(LogExportSpool spool)
+	{
+		List<String> read = new ArrayList<>();
+
+		LogExportSpool.Batch batch;
+		while (!(batch = spool.read(7, Integer.MAX_VALUE)).isEmpty())
+		{
+			read.addAll(batch.getRecords());
+			spool.commit(batch);
+		}
+
+		return read;
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.logging.export;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SplunkBatchDataExporterTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HttpServer stub;
+	private final List<String> receivedBatches = new CopyOnWriteArrayList<>();
+	private final List<String> receivedEncodings = new CopyOnWriteArrayList<>();
+	private volatile int responseStatus = 200;
+
+	private SplunkBatchDataExporter exporter;
+
+	@Before
+	public void startStub() throws Exception
+	{
+		stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		stub.createContext("/services/collector/event", exchange -> {
+			receivedEncodings.add(String.valueOf(exchange.getRequestHeaders().getFirst("Content-Encoding")));
+			try (InputStream body = new GZIPInputStream(exchange.getRequestBody()))
+			{
+				receivedBatches.add(new String(StreamUtils.copyToByteArray(body), StandardCharsets.UTF_8));
+			}
+			exchange.sendResponseHeaders(responseStatus, -1);
+			exchange.close();
+		});
+		stub.start();
+
+		exporter = new SplunkBatchDataExporter();
+		ReflectionTestUtils.setField(exporter, "splunkUrl",
+				"http://127.0.0.1:" + stub.getAddress().getPort() + "/services/collector/event");
+		ReflectionTestUtils.setField(exporter, "token", "token");
+		ReflectionTestUtils.setField(exporter, "index", "main");
+		ReflectionTestUtils.setField(exporter, "source", "test");
+		ReflectionTestUtils.setField(exporter, "sourcetype", "_json");
+		ReflectionTestUtils.setField(exporter, "host", "localhost");
+		ReflectionTestUtils.setField(exporter, "lingerMs", 50L);
+	}
+
+	@After
+	public void stopStub()
+	{
+		exporter.stop();
+		stub.stop(0);
+	}
+
+	@Test
+	public void testEventsAreBatchedAndCompressed()
+	{
+		ReflectionTestUtils.setField(exporter, "maxEvents", 10);
+		exporter.start();
+
+		for (int i = 0; i < 25; i++)
+		{
+			exporter.exportLogMessage("{\"sequence\":" + i + "}");
+		}
+		exporter.stop();
+
+		assertEquals(25, exporter.getQueuedCount());
+		assertEquals(25, exporter.getSentCount());
+		assertEquals(0, exporter.getFailedCount());
+		assertTrue(receivedBatches.size() >= 3);
+		assertTrue(receivedEncodings.stream().allMatch("gzip"::equals));
+
+		int sequence = 0;
+		for (String batch : receivedBatches)
+		{
+			for (String line : batch.split("\n"))
+			{
+				JsonObject event = new JsonParser().parse(line).getAsJsonObject();
+				assertEquals("main", event.get("index").getAsString());
+				assertEquals(sequence++, event.getAsJsonObject("event").get("sequence").getAsInt());
+			}
+		}
+		assertEquals(25, sequence);
+	}
+
+	@Test
+	public void testOverflowIsDropped()
+	{
+		ReflectionTestUtils.setField(exporter, "queueCapacity", 2);
+
+		for (int i = 0; i < 5; i++)
+		{
+			exporter.exportLogMessage("{}");
+		}
+
+		assertEquals(2, exporter.getQueuedCount());
+		assertEquals(3, exporter.getDroppedCount());
+		assertEquals(2, exporter.getQueueDepth());
+	}
+
+	@Test
+	public void testRejectedBatchesAreCountedAsFailed()
+	{
+		responseStatus = 503;
+		exporter.exportLogMessage("{}");
+		exporter.exportLogMessage("{}");
+
+		exporter.flush();
+
+		assertEquals(0, exporter.getSentCount());
+		assertEquals(2, exporter.getFailedCount());
+	}
+
+	@Test
+	public void testFailedBatchesAreSpooledAndReplayed() throws Exception
+	{
+		LogExportSpool spool = new LogExportSpool();
+		ReflectionTestUtils.setField(spool, "directory", folder.newFolder("spool").getAbsolutePath());
+		ReflectionTestUtils.setField(spool, "segmentBytes", 4096);
+		spool.open();
+
+		ReflectionTestUtils.setField(exporter, "spool", spool);
+		ReflectionTestUtils.setField(exporter, "retryIntervalMs", 50L);
+
+		responseStatus = 503;
+		exporter.start();
+		for (int i = 0; i < 10; i++)
+		{
+			exporter.exportLogMessage("{\"sequence\":" + i + "}");
+		}
+
+		awaitCondition(() -> exporter.getSpooledCount() == 10);
+		assertFalse(exporter.isSinkHealthy());
+		assertEquals(0, exporter.getFailedCount());
+
+		receivedBatches.clear();
+		responseStatus = 200;
+
+		awaitCondition(spool::isEmpty);
+		exporter.stop();
+
+		assertTrue(exporter.isSinkHealthy());
+		assertEquals(10, exporter.getReplayedCount());
+		assertEquals(10, receivedBatches.stream().mapToInt(batch -> batch.split("\n").length).sum());
+	}
+
+	private void awaitCondition(BooleanSupplier condition) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean())
+		{
+			assertTrue("Timed out waiting for condition", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+package com.mikewerzen.zen.zenframework.logging.export;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+
+public class SplunkDataExporterTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final LogExportExecutor executor = new LogExportExecutor();
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@After
+	public void stopExecutor()
+	{
+		release.countDown();
+		executor.shutdown();
+	}
+
+	@Test
+	public void testMessageDiscardedBySaturatedExecutorIsSpooled() throws Exception
+	{
+		LogExportSpool spool = saturate(LogExportRejectionPolicy.DISCARD);
+
+		exporter(spool).exportLogMessage("rejected");
+
+		assertEquals(Collections.singletonList("rejected"), spool.read(10, 4096).getRecords());
+	}
+
+	@Test
+	public void testMessageEvictedBySaturatedExecutorIsSpooled() throws Exception
+	{
+		LogExportSpool spool = saturate(LogExportRejectionPolicy.DISCARD_OLDEST);
+		SplunkDataExporter exporter = exporter(spool);
+
+		exporter.exportLogMessage("oldest");
+		exporter.exportLogMessage("newest");
+
+		assertEquals(Collections.singletonList("oldest"), spool.read(10, 4096).getRecords());
+		assertEquals(1, executor.getQueueDepth());
+	}
+
+	/**
+	 * Occupies the executor's only thread and leaves room for one queued task.
+	 */
+	private LogExportSpool saturate(LogExportRejectionPolicy rejectionPolicy) throws Exception
+	{
+		ReflectionTestUtils.setField(executor, "corePoolSize", 1);
+		ReflectionTestUtils.setField(executor, "maxPoolSize", 1);
+		ReflectionTestUtils.setField(executor, "queueCapacity", 1);
+		ReflectionTestUtils.setField(executor, "rejectionPolicy", rejectionPolicy);
+		executor.initialize();
+
+		CountDownLatch running = new CountDownLatch(1);
+		executor.execute(() -> {
+			running.countDown();
+			awaitRelease();
+		});
+		running.await();
+
+		if (rejectionPolicy == LogExportRejectionPolicy.DISCARD)
+		{
+			executor.execute(this::awaitRelease);
+		}
+
+		LogExportSpool spool = new LogExportSpool();
+		ReflectionTestUtils.setField(spool, "directory", folder.newFolder("spool").getAbsolutePath());
+		ReflectionTestUtils.setField(spool, "segmentBytes", 4096);
+		spool.open();
+		return spool;
+	}
+
+	private SplunkDataExporter exporter(LogExportSpool spool)
+	{
+		SplunkDataExporter exporter = new SplunkDataExporter();
+		ReflectionTestUtils.setField(exporter, "logExportExecutor", executor);
+		ReflectionTestUtils.setField(exporter, "spool", spool);
+		ReflectionTestUtils.setField(exporter, "splunkUrl", "http://127.0.0.1:1/services/collector/event");
+		return exporter;
+	}
+
+	private void awaitRelease()
+	{
+		try
+		{
+			release.await();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.logging.external;
+
+import com.mikewerzen.zen.zenframework.logging.context.ExternalCallTimeline;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExternalCallTimelineTest
+{
+	@Test
+	public void testOverlappingCallsAreCountedOnce()
+	{
+		// Accounts 0-100 and Ledger 50-150 overlap, Rates 200-250 runs after both.
+		ExternalCallTimeline timeline = ExternalCallTimeline.of(Arrays.asList(call("Accounts", 0, 100),
+				call("Ledger", 50, 150), call("Rates", 200, 250)));
+
+		assertEquals(200, timeline.getWallTimeMillis());
+	}
+
+	@Test
+	public void testCriticalPathFollowsLatestFinishingChain()
+	{
+		// Ledger 0-300 runs alongside Accounts 0-50 then Rates 60-120; Audit 310-320 waits on Ledger.
+		ExternalCallTimeline timeline = ExternalCallTimeline.of(Arrays.asList(call("Accounts", 0, 50),
+				call("Rates", 60, 120), call("Ledger", 0, 300), call("Audit", 310, 320)));
+
+		assertEquals(310, timeline.getCriticalPathMillis());
+		assertEquals("Core.Ledger", timeline.getCriticalDependency());
+		assertEquals(310, timeline.getWallTimeMillis());
+	}
+
+	@Test
+	public void testNoCalls()
+	{
+		ExternalCallTimeline timeline = ExternalCallTimeline.of(Collections.emptyList());
+
+		assertEquals(0, timeline.getWallTimeNanos());
+		assertNull(timeline.getCriticalDependency());
+	}
+
+	private static ExternalCallAttributes call(String serviceName, long startMillis, long endMillis)
+	{
+		return new ExternalCallAttributes("Core", serviceName, "get", "v1", "GET", true, 1, 200, null, null, null, null,
+				null, null, null, null, null, startMillis, endMillis, endMillis - startMillis,
+				TimeUnit.MILLISECONDS.toNanos(startMillis), TimeUnit.MILLISECONDS.toNanos(endMillis), 0, null);
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+package com.mikewerzen.zen.zenframework.logging.sampling;
+
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import com.mikewerzen.zen.zenframework.transaction.context.TransactionContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionSamplerTest
+{
+	private static final ResponseEntity<String> OK = ResponseEntity.ok("ok");
+
+	private TransactionSampler sampler;
+
+	@Before
+	public void setUp()
+	{
+		sampler = new TransactionSampler();
+		ReflectionTestUtils.setField(sampler, "enabled", true);
+		ReflectionTestUtils.setField(sampler, "rate", 0.0);
+		ReflectionTestUtils.setField(sampler, "latencyThresholds", "Orders=5000,Orders:search=-1");
+		sampler.initialize();
+	}
+
+	@Test
+	public void testUnsampledSuccessIsDropped()
+	{
+		assertFalse(sampler.shouldLog(context("Orders", "get", false), new LoggingContext(), OK));
+		assertEquals(1, sampler.getDroppedCount());
+	}
+
+	@Test
+	public void testErrorsAndSlowTransactionsAreAlwaysKept()
+	{
+		LoggingContext failed = new LoggingContext();
+		failed.addThrowable(new IllegalStateException());
+
+		assertTrue(sampler.shouldLog(context("Orders", "get", false), failed, OK));
+		assertTrue(sampler.shouldLog(context("Orders", "get", false), new LoggingContext(),
+				ResponseEntity.status(HttpStatus.BAD_GATEWAY).build()));
+		assertTrue(sampler.shouldLog(context("Orders", "search", false), new LoggingContext(), OK));
+		assertEquals(3, sampler.getKeptCount());
+	}
+
+	@Test
+	public void testHeadDecisionHonoursUpstreamAndIsConsistent()
+	{
+		assertEquals(Boolean.TRUE, sampler.sample(Boolean.TRUE, "correlation"));
+		assertEquals(Boolean.FALSE, sampler.sample(null, "correlation"));
+
+		ReflectionTestUtils.setField(sampler, "rate", 0.25);
+		int sampled = 0;
+		for (int i = 0; i < 10000; i++)
+		{
+			boolean decision = sampler.sample(null, "correlation-" + i);
+			assertEquals(decision, sampler.sample(null, "correlation-" + i));
+			sampled += decision ? 1 : 0;
+		}
+		assertTrue(sampled > 2200 && sampled < 2800);
+
+		ReflectionTestUtils.setField(sampler, "enabled", false);
+		assertNull(sampler.sample(null, "correlation"));
+	}
+
+	private TransactionContext context(String serviceName, String serviceOperation, Boolean sampled)
+	{
+		return new TransactionContext(serviceName, serviceOperation, "1", "method", "request", "correlation", null,
+				1, null, null, null, null, sampled);
+	}
+}
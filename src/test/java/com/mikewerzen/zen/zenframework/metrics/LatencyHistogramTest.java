@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+package com.mikewerzen.zen.zenframework.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest
+{
+	@Test
+	public void testBucketsAreWithinThreePercent()
+	{
+		for (int i = 0; i < 100000; i++)
+		{
+			long value = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE >> ThreadLocalRandom.current().nextInt(63));
+			long highest = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value));
+
+			assertTrue(value + " reported as " + highest, highest >= value);
+			assertTrue(value + " reported as " + highest, highest - value <= Math.max(0, value / 32));
+		}
+
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void testQuantiles()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long value = 1; value <= 100000; value++)
+		{
+			histogram.record(value * 1000);
+		}
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+		assertEquals(100000, snapshot.getCount());
+		assertEquals(1000, snapshot.getMin());
+		assertEquals(100000000, snapshot.getMax());
+		assertWithinThreePercent(50000000, snapshot.getP50());
+		assertWithinThreePercent(90000000, snapshot.getP90());
+		assertWithinThreePercent(99000000, snapshot.getP99());
+		assertWithinThreePercent(99900000, snapshot.getP999());
+		assertEquals(50000500, snapshot.getMean());
+	}
+
+	@Test
+	public void testConcurrentRecording() throws Exception
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+		{
+			Thread thread = new Thread(() -> {
+				for (int j = 1; j <= 100000; j++)
+				{
+					histogram.record(j);
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(400000, snapshot.getCount());
+		assertEquals(1, snapshot.getMin());
+		assertEquals(100000, snapshot.getMax());
+	}
+
+	private void assertWithinThreePercent(long expected, long actual)
+	{
+		assertTrue(expected + " reported as " + actual, Math.abs(actual - expected) <= expected * 0.03);
+	}
+}
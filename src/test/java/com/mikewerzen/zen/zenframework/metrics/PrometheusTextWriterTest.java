@@ -0,0 +1,80 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+package com.mikewerzen.zen.zenframework.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PrometheusTextWriterTest
+{
+	@Test
+	public void testRequestMetricsAreWrittenAsHistogramsAndCounters()
+	{
+		RequestMetrics metrics = MetricsRegistry.getRequestMetrics(MetricsRegistry.TRANSACTION, "Account\"Service", "get");
+		assertSame(metrics, MetricsRegistry.getRequestMetrics(MetricsRegistry.TRANSACTION, "Account\"Service", "get"));
+
+		metrics.record(TimeUnit.MILLISECONDS.toNanos(10), 200, (String) null);
+		metrics.record(TimeUnit.MILLISECONDS.toNanos(30), 502, "201");
+
+		String output = PrometheusTextWriter.write();
+		String labels = "service_name=\"Account\\\"Service\",service_operation=\"get\"";
+
+		assertTrue(output.contains("# TYPE zen_transaction_seconds histogram\n"));
+		assertTrue(output.contains("zen_transaction_seconds_bucket{" + labels + ",le=\"0.005\"} 0\n"));
+		assertTrue(output.contains("zen_transaction_seconds_bucket{" + labels + ",le=\"0.025\"} 1\n"));
+		assertTrue(output.contains("zen_transaction_seconds_bucket{" + labels + ",le=\"0.05\"} 2\n"));
+		assertTrue(output.contains("zen_transaction_seconds_bucket{" + labels + ",le=\"+Inf\"} 2\n"));
+		assertTrue(output.contains("zen_transaction_seconds_count{" + labels + "} 2\n"));
+		assertTrue(output.contains("zen_transaction_seconds_sum{" + labels + "} 0.04\n"));
+		assertTrue(output.contains("zen_transaction_responses_total{" + labels + ",status=\"200\"} 1\n"));
+		assertTrue(output.contains("zen_transaction_responses_total{" + labels + ",status=\"502\"} 1\n"));
+		assertTrue(output.contains("zen_transaction_exceptions_total{" + labels + ",exception_code=\"201\"} 1\n"));
+	}
+
+	@Test
+	public void testCallbackMetricsAreReadAtScrapeTime()
+	{
+		long[] value = { 1 };
+		MetricsRegistry.registerGauge("zen_test_gauge", "Test gauge.", () -> value[0]);
+
+		assertTrue(PrometheusTextWriter.write().contains("# TYPE zen_test_gauge gauge\nzen_test_gauge 1\n"));
+		value[0] = 5;
+		assertTrue(PrometheusTextWriter.write().contains("zen_test_gauge 5\n"));
+	}
+
+	@Test
+	public void testLabeledCallbacksAreWrittenUnderOneHeader()
+	{
+		MetricsRegistry.registerCounterFamily("zen_test_family_total", "Test family.", "service_name");
+		MetricsRegistry.registerLabeledCallback("zen_test_family_total", () -> 3, "a");
+		MetricsRegistry.registerLabeledCallback("zen_test_family_total", () -> 4, "b");
+
+		assertTrue(PrometheusTextWriter.write().contains("# TYPE zen_test_family_total counter\n"
+				+ "zen_test_family_total{service_name=\"a\"} 3\n"
+				+ "zen_test_family_total{service_name=\"b\"} 4\n"));
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PooledHttpTransportTest
+{
+	private HttpServer server;
+	private PooledHttpTransport transport;
+
+	@Before
+	public void startServer() throws Exception
+	{
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/ping", exchange ->
+		{
+			byte[] body = "{\"pong\":true}".getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody())
+			{
+				out.write(body);
+			}
+		});
+		server.start();
+
+		transport = new PooledHttpTransport(10, 5, 30000, 60000, 1000, 1000, 1000);
+	}
+
+	@After
+	public void stopServer()
+	{
+		transport.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void testConnectionIsKeptAliveAndReused()
+	{
+		RestTemplate template = new RestTemplate(transport.getRequestFactory());
+		String uri = "http://127.0.0.1:" + server.getAddress().getPort() + "/ping";
+
+		PooledHttpTransport.takePoolWaitNanos();
+		for (int i = 0; i < 5; i++)
+		{
+			assertEquals("{\"pong\":true}", template.getForObject(uri, String.class));
+		}
+
+		assertEquals(0, transport.getTotalStats().getLeased());
+		assertEquals(1, transport.getTotalStats().getAvailable());
+		assertTrue(PooledHttpTransport.takePoolWaitNanos() > 0);
+		assertEquals(0, PooledHttpTransport.takePoolWaitNanos());
+	}
+
+	@Test
+	public void testReplacedLazyDefaultIsClosed()
+	{
+		String uri = "http://127.0.0.1:" + server.getAddress().getPort() + "/ping";
+		Object previousDefault = ReflectionTestUtils.getField(PooledHttpTransport.class, "defaultTransport");
+		Object previousCreated = ReflectionTestUtils.getField(PooledHttpTransport.class, "createdDefault");
+		try
+		{
+			ReflectionTestUtils.setField(PooledHttpTransport.class, "defaultTransport", null);
+			ReflectionTestUtils.setField(PooledHttpTransport.class, "createdDefault", null);
+			PooledHttpTransport lazy = PooledHttpTransport.getDefault();
+			RestTemplate template = new RestTemplate(lazy.getRequestFactory());
+			assertEquals("{\"pong\":true}", template.getForObject(uri, String.class));
+
+			PooledHttpTransport.setDefault(transport);
+			assertSame(transport, PooledHttpTransport.getDefault());
+			try
+			{
+				template.getForObject(uri, String.class);
+				fail("Expected the replaced default transport to be closed");
+			}
+			catch (IllegalStateException | ResourceAccessException expected)
+			{
+			}
+		}
+		finally
+		{
+			ReflectionTestUtils.setField(PooledHttpTransport.class, "defaultTransport", previousDefault);
+			ReflectionTestUtils.setField(PooledHttpTransport.class, "createdDefault", previousCreated);
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client;
+
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.exception.system.ExternalTimeoutException;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContextHolder;
+import com.mikewerzen.zen.zenframework.logging.external.ExternalCallAttributesBuilder;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScatterGatherTest
+{
+	@After
+	public void endScope()
+	{
+		ZenScope.end();
+	}
+
+	@Test
+	public void testCallsRunConcurrentlyAndAreLogged()
+	{
+		LoggingContext loggingContext = new LoggingContext();
+		LoggingContextHolder.setContext(loggingContext);
+
+		ScatterGather gather = AbstractRestClient.scatterGather(Duration.ofSeconds(5));
+		ScatterGather.Call<String> first = gather.submit(() -> call("first", 200));
+		ScatterGather.Call<String> second = gather.submit(() -> call("second", 200));
+		ScatterGather.Call<String> third = gather.submit(() -> call("third", 200));
+
+		assertTrue(gather.await());
+		assertEquals("first", first.get());
+		assertEquals("second", second.get());
+		assertEquals("third", third.get());
+
+		assertEquals(3, loggingContext.getExternalLogAttributes().size());
+		assertTrue(loggingContext.getTotalExternalCallRuntime() >= 600);
+		assertTrue(loggingContext.getExternalCallTimeline().getWallTimeMillis() < 500);
+	}
+
+	@Test
+	public void testStragglersAreCancelledAtDeadline()
+	{
+		LoggingContextHolder.setContext(new LoggingContext());
+
+		ScatterGather gather = new ScatterGather(Duration.ofMillis(100));
+		ScatterGather.Call<String> fast = gather.submit(() -> call("fast", 0));
+		ScatterGather.Call<String> slow = gather.submit(() -> call("slow", 5000));
+
+		assertFalse(gather.await());
+		assertTrue(fast.isSuccess());
+		assertTrue(slow.isTimedOut());
+		assertTrue(slow.getEither().left().get() instanceof ExternalTimeoutException);
+	}
+
+	@Test
+	public void testCallerCancelIsNotATimeout()
+	{
+		LoggingContext loggingContext = new LoggingContext();
+		LoggingContextHolder.setContext(loggingContext);
+
+		ScatterGather gather = new ScatterGather(Duration.ofSeconds(5));
+		ScatterGather.Call<String> slow = gather.submit(() -> call("slow", 5000));
+		gather.cancel();
+
+		assertFalse(gather.await());
+		assertFalse(slow.isTimedOut());
+		assertTrue(loggingContext.getEvents().isEmpty());
+	}
+
+	private static String call(String name, long millis)
+	{
+		ExternalCallAttributesBuilder builder = new ExternalCallAttributesBuilder("Core", name, "get", "GET", "v1");
+		try
+		{
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		builder.buildAndCommit(true);
+		return name;
+	}
+}
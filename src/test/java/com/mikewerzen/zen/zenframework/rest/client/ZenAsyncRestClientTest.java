@@ -0,0 +1,162 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client;
+
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.exception.system.ExternalResponseTooLargeException;
+import com.mikewerzen.zen.zenframework.exception.system.RethrownExternalException;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContextHolder;
+import com.mikewerzen.zen.zenframework.logging.external.ExternalCallAttributes;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ZenAsyncRestClientTest
+{
+	private HttpServer server;
+	private LoggingContext loggingContext;
+	private ZenAsyncRestClient client = new ZenAsyncRestClient("Test", "Pong");
+
+	@Before
+	public void startServer() throws Exception
+	{
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		respond("/pong", 200, "{\"pong\":true}");
+		respond("/error", 400, "{\"error\":{\"httpStatus\":400,\"errorCode\":101,\"errorMessage\":\"Bad\"}}");
+		server.createContext("/endless", exchange ->
+		{
+			exchange.sendResponseHeaders(200, 0);
+			byte[] chunk = new byte[8192];
+			try (OutputStream out = exchange.getResponseBody())
+			{
+				while (true)
+				{
+					out.write(chunk);
+				}
+			}
+		});
+		server.start();
+
+		loggingContext = new LoggingContext();
+		LoggingContextHolder.setContext(loggingContext);
+	}
+
+	@After
+	public void stopServer()
+	{
+		ZenScope.end();
+		server.stop(0);
+	}
+
+	@Test
+	public void testCallIsCommittedToCallersContext() throws Exception
+	{
+		CompletableFuture<Pong> future = client.get("ping", url("/pong"), Pong.class);
+		ZenScope.end();
+
+		assertTrue(future.get().pong);
+
+		ExternalCallAttributes attributes = loggingContext.getExternalLogAttributes().iterator().next();
+		assertTrue(attributes.success);
+		assertEquals(200, (int) attributes.httpStatusCode);
+	}
+
+	@Test
+	public void testErrorCompletesExceptionally() throws Exception
+	{
+		try
+		{
+			client.get("ping", url("/error"), Pong.class).get();
+			fail();
+		}
+		catch (ExecutionException e)
+		{
+			assertEquals(400, ((RethrownExternalException) e.getCause()).getHttpStatus());
+		}
+
+		ExternalCallAttributes attributes = loggingContext.getExternalLogAttributes().iterator().next();
+		assertFalse(attributes.success);
+		assertEquals("101", attributes.externalResponseCode);
+	}
+
+	@Test(timeout = 10000)
+	public void testOversizedBodyFailsFast() throws Exception
+	{
+		ZenAsyncRestClient limitedClient = new ZenAsyncRestClient("Test", "Pong")
+		{
+			@Override
+			protected long getMaxResponseBytes()
+			{
+				return 64 * 1024;
+			}
+		};
+
+		try
+		{
+			limitedClient.get("ping", url("/endless"), Pong.class).get();
+			fail();
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(e.getCause() instanceof ExternalResponseTooLargeException);
+		}
+	}
+
+	private void respond(String path, int status, String body)
+	{
+		server.createContext(path, exchange ->
+		{
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(status, bytes.length);
+			try (OutputStream out = exchange.getResponseBody())
+			{
+				out.write(bytes);
+			}
+		});
+	}
+
+	private String url(String path)
+	{
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	private static class Pong
+	{
+		private boolean pong;
+	}
+}
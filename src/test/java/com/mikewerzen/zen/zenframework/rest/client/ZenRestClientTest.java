@@ -0,0 +1,255 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client;
+
+import com.mikewerzen.zen.zenframework.exception.system.CircuitBreakerOpenException;
+import com.mikewerzen.zen.zenframework.exception.system.ExternalException;
+import com.mikewerzen.zen.zenframework.exception.system.ExternalResponseTooLargeException;
+import com.mikewerzen.zen.zenframework.exception.system.RethrownExternalException;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContextHolder;
+import com.mikewerzen.zen.zenframework.logging.external.ExternalCallAttributes;
+import com.mikewerzen.zen.zenframework.rest.client.breaker.CircuitBreaker;
+import com.mikewerzen.zen.zenframework.rest.client.breaker.CircuitBreakerState;
+import com.mikewerzen.zen.zenframework.rest.client.breaker.CircuitBreakers;
+import com.mikewerzen.zen.zenframework.rest.client.retry.RetryPolicy;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ZenRestClientTest
+{
+	private HttpServer server;
+	private LoggingContext loggingContext;
+	private ZenRestClient client;
+	private AtomicInteger flakyCalls = new AtomicInteger();
+
+	@Before
+	public void startServer() throws Exception
+	{
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		respond("/pong", 200, "{\"pong\":true,\"name\":\"café\"}");
+		respond("/error", 400, "{\"error\":{\"httpStatus\":400,\"errorCode\":101,\"errorMessage\":\"Bad\"}}");
+		server.createContext("/flaky", exchange ->
+		{
+			boolean fail = flakyCalls.getAndIncrement() == 0;
+			byte[] bytes = (fail ? "{\"error\":{\"httpStatus\":503,\"errorCode\":200,\"errorMessage\":\"Down\"}}" :
+					"{\"pong\":true}").getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(fail ? 503 : 200, bytes.length);
+			try (OutputStream out = exchange.getResponseBody())
+			{
+				out.write(bytes);
+			}
+		});
+		server.createContext("/endless", exchange ->
+		{
+			exchange.sendResponseHeaders(200, 0);
+			byte[] chunk = new byte[8192];
+			try (OutputStream out = exchange.getResponseBody())
+			{
+				while (true)
+				{
+					out.write(chunk);
+				}
+			}
+		});
+		respond("/large", 200, "{\"pong\":true,\"name\":\"" + new String(new char[2048]).replace('\0', 'x') + "\"}");
+		server.start();
+
+		loggingContext = new LoggingContext();
+		LoggingContextHolder.setContext(loggingContext);
+
+		client = new ZenRestClient("Test", "Pong")
+		{
+			@Override
+			protected long getMaxResponseBytes()
+			{
+				return 1024;
+			}
+		};
+	}
+
+	@After
+	public void stopServer()
+	{
+		LoggingContextHolder.clearContext();
+		server.stop(0);
+	}
+
+	@Test
+	public void testSuccessIsReadFromStream()
+	{
+		Pong pong = client.get("ping", url("/pong"), Pong.class);
+
+		assertTrue(pong.pong);
+		assertEquals("café", pong.name);
+		assertEquals(200, (int) loggingContext.getExternalLogAttributes().iterator().next().httpStatusCode);
+	}
+
+	@Test
+	public void testErrorIsReadIntoErrorClass()
+	{
+		try
+		{
+			client.get("ping", url("/error"), Pong.class);
+			fail();
+		}
+		catch (RethrownExternalException e)
+		{
+			assertEquals(400, e.getHttpStatus());
+			assertEquals(101, e.getExceptionCode());
+		}
+	}
+
+	@Test
+	public void testOversizedBodyFailsFast()
+	{
+		try
+		{
+			client.get("ping", url("/large"), Pong.class);
+			fail();
+		}
+		catch (ExternalResponseTooLargeException e)
+		{
+			assertEquals(1024, e.getMaxBytes());
+		}
+
+		ExternalCallAttributes attributes = loggingContext.getExternalLogAttributes().iterator().next();
+		assertFalse(attributes.success);
+		assertEquals(200, (int) attributes.httpStatusCode);
+	}
+
+	@Test(timeout = 10000)
+	public void testEndlessBodyIsAbortedNotDrained()
+	{
+		try
+		{
+			client.get("ping", url("/endless"), Pong.class);
+			fail();
+		}
+		catch (ExternalResponseTooLargeException e)
+		{
+			assertEquals(0, PooledHttpTransport.getDefault().getTotalStats().getLeased());
+		}
+	}
+
+	@Test
+	public void testIdempotentCallIsRetried()
+	{
+		Pong pong = client.get("ping", url("/flaky"), Pong.class, new RetryPolicy(3, 1, 1));
+
+		assertTrue(pong.pong);
+		Iterator<ExternalCallAttributes> attempts = loggingContext.getExternalLogAttributes().iterator();
+		ExternalCallAttributes first = attempts.next();
+		ExternalCallAttributes second = attempts.next();
+		assertEquals(1, first.attempt);
+		assertEquals(503, (int) first.httpStatusCode);
+		assertEquals(2, second.attempt);
+		assertTrue(second.success);
+	}
+
+	@Test
+	public void testPostIsNotRetried()
+	{
+		try
+		{
+			client.post("ping", url("/flaky"), null, Pong.class, new RetryPolicy(3, 1, 1));
+			fail();
+		}
+		catch (ExternalException e)
+		{
+			assertEquals(1, flakyCalls.get());
+			assertEquals(1, loggingContext.getExternalLogAttributes().size());
+		}
+	}
+
+	@Test
+	public void testOpenBreakerFailsFast()
+	{
+		CircuitBreakers.setFactory(name -> new CircuitBreaker(name, 10, 1, 50, 100, 5000, 60000, 1, null));
+		try
+		{
+			try
+			{
+				client.get("ping", url("/flaky"), Pong.class);
+				fail();
+			}
+			catch (ExternalException e)
+			{
+				assertEquals(CircuitBreakerState.OPEN, CircuitBreakers.get("Test", "Pong").getState());
+			}
+
+			try
+			{
+				client.get("ping", url("/flaky"), Pong.class);
+				fail();
+			}
+			catch (CircuitBreakerOpenException e)
+			{
+				assertEquals(1, flakyCalls.get());
+			}
+		}
+		finally
+		{
+			CircuitBreakers.setFactory(null);
+		}
+	}
+
+	private void respond(String path, int status, String body)
+	{
+		server.createContext(path, exchange ->
+		{
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(status, path.equals("/large") ? 0 : bytes.length);
+			try (OutputStream out = exchange.getResponseBody())
+			{
+				out.write(bytes);
+			}
+		});
+	}
+
+	private String url(String path)
+	{
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	private static class Pong
+	{
+		private boolean pong;
+		private String name;
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client.breaker;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CircuitBreakerTest
+{
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+	private final List<CircuitBreakerState> transitions = new ArrayList<>();
+
+	@Test
+	public void testOpensOnFailureRateAndRejects()
+	{
+		CircuitBreaker breaker = breaker(60000);
+
+		breaker.tryAcquire().onResult(FAST, false);
+		breaker.tryAcquire().onResult(FAST, true);
+		breaker.tryAcquire().onResult(FAST, false);
+		assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+
+		breaker.tryAcquire().onResult(FAST, true);
+		assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+		assertNull(breaker.tryAcquire());
+		assertEquals(1, breaker.getRejected());
+	}
+
+	@Test
+	public void testOpensOnSlowCallRate()
+	{
+		CircuitBreaker breaker = breaker(60000);
+
+		for (int i = 0; i < 4; i++)
+		{
+			breaker.tryAcquire().onResult(SLOW, false);
+		}
+
+		assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void testHalfOpenTrialsCloseOrReopen()
+	{
+		CircuitBreaker breaker = breaker(0);
+		tripOpen(breaker);
+
+		CircuitBreaker.Permit first = breaker.tryAcquire();
+		CircuitBreaker.Permit second = breaker.tryAcquire();
+		assertNotNull(first);
+		assertNotNull(second);
+		assertNull(breaker.tryAcquire());
+		assertEquals(CircuitBreakerState.HALF_OPEN, breaker.getState());
+
+		first.onResult(FAST, false);
+		second.onResult(FAST, false);
+		assertEquals(CircuitBreakerState.CLOSED, breaker.getState());
+
+		tripOpen(breaker);
+		breaker.tryAcquire().onResult(FAST, true);
+		assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+
+		assertEquals(3, breaker.getTransitions(CircuitBreakerState.OPEN));
+		assertEquals(1, breaker.getTransitions(CircuitBreakerState.CLOSED));
+		assertEquals(CircuitBreakerState.OPEN, transitions.get(transitions.size() - 1));
+	}
+
+	@Test
+	public void testResultsFromAnEarlierStateAreIgnored()
+	{
+		CircuitBreaker breaker = breaker(0);
+		CircuitBreaker.Permit grantedWhileClosed = breaker.tryAcquire();
+		tripOpen(breaker);
+
+		CircuitBreaker.Permit trial = breaker.tryAcquire();
+		assertEquals(CircuitBreakerState.HALF_OPEN, breaker.getState());
+
+		grantedWhileClosed.onResult(SLOW, true);
+		assertEquals(CircuitBreakerState.HALF_OPEN, breaker.getState());
+
+		trial.onResult(FAST, true);
+		assertEquals(CircuitBreakerState.OPEN, breaker.getState());
+	}
+
+	private void tripOpen(CircuitBreaker breaker)
+	{
+		for (int i = 0; i < 4; i++)
+		{
+			breaker.tryAcquire().onResult(FAST, true);
+		}
+	}
+
+	private CircuitBreaker breaker(long openMillis)
+	{
+		return new CircuitBreaker("Core/Pong", 10, 4, 50, 80, 1000, openMillis, 2,
+				(breaker, from, to) -> transitions.add(to));
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.rest.client.retry;
+
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.net.ConnectException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryBudgetTest
+{
+	@Test
+	public void testRetriesAreCappedByRatioOfCalls()
+	{
+		RetryBudget budget = new RetryBudget(0.1, 2);
+
+		assertTrue(budget.tryWithdraw());
+		assertTrue(budget.tryWithdraw());
+		assertFalse(budget.tryWithdraw());
+
+		for (int i = 0; i < 25; i++)
+		{
+			budget.deposit();
+		}
+
+		assertTrue(budget.tryWithdraw());
+		assertTrue(budget.tryWithdraw());
+		assertFalse(budget.tryWithdraw());
+		assertEquals(4, budget.getRetries());
+		assertEquals(2, budget.getExhausted());
+	}
+
+	@Test
+	public void testOnlyRetryableOutcomesOfIdempotentMethodsAreRetried()
+	{
+		RetryPolicy policy = new RetryPolicy(3, 10, 100);
+
+		assertTrue(policy.isRetryable(HttpMethod.GET, 1, 503, null));
+		assertTrue(policy.isRetryable(HttpMethod.GET, 2, null,
+				new ResourceAccessException("down", new ConnectException())));
+		assertFalse(policy.isRetryable(HttpMethod.GET, 3, 503, null));
+		assertFalse(policy.isRetryable(HttpMethod.GET, 1, 500, null));
+		assertFalse(policy.isRetryable(HttpMethod.POST, 1, 503, null));
+	}
+}
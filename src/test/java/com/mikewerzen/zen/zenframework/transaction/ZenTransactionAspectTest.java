@@ -0,0 +1,242 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.transaction;
+
+import com.mikewerzen.zen.zenframework.context.ZenReactiveContext;
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.exception.logic.RateLimitedException;
+import com.mikewerzen.zen.zenframework.exception.util.ThrowableAdapterFinderWrapper;
+import com.mikewerzen.zen.zenframework.logging.ZenLogManager;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContextHolder;
+import com.mikewerzen.zen.zenframework.rest.RestServiceMapper;
+import com.mikewerzen.zen.zenframework.rest.exception.adapter.RestThrowableAdapter;
+import com.mikewerzen.zen.zenframework.security.SecurityManager;
+import com.mikewerzen.zen.zenframework.transaction.limit.ConcurrencyLimiter;
+import com.mikewerzen.zen.zenframework.transaction.context.TransactionContext;
+import com.mikewerzen.zen.zenframework.transaction.limit.ConcurrencyLimiters;
+import com.mikewerzen.zen.zenframework.transaction.limit.RateLimitKey;
+import com.mikewerzen.zen.zenframework.transaction.limit.RateLimiters;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ZenTransactionAspectTest
+{
+	private final ZenTransactionAspect aspect = new ZenTransactionAspect();
+	private final ZenLogManager logManager = mock(ZenLogManager.class);
+	private final RestServiceMapper restServiceMapper = mock(RestServiceMapper.class);
+	private final ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+	private final ZenTransaction zenTransaction = mock(ZenTransaction.class);
+
+	@Before
+	public void setUp() throws Exception
+	{
+		ReflectionTestUtils.setField(aspect, "securityManager", mock(SecurityManager.class));
+		ReflectionTestUtils.setField(aspect, "restServiceMapper", restServiceMapper);
+		ReflectionTestUtils.setField(aspect, "logManager", logManager);
+
+		ThrowableAdapterFinderWrapper adapterFinder = mock(ThrowableAdapterFinderWrapper.class);
+		when(adapterFinder.getThrowableAdapter(any())).thenReturn(mock(RestThrowableAdapter.class));
+		ReflectionTestUtils.setField(aspect, "throwableAdapterFinderWrapper", adapterFinder);
+
+		MethodSignature signature = mock(MethodSignature.class);
+		when(signature.getMethod()).thenReturn(Handlers.class.getMethod("handle", RequestEntity.class));
+		when(signature.getReturnType()).thenReturn(CompletableFuture.class);
+		when(joinPoint.getSignature()).thenReturn(signature);
+		when(joinPoint.getArgs()).thenReturn(new Object[]{new RequestEntity<>(HttpMethod.GET, URI.create("/accounts"))});
+		when(zenTransaction.serviceName()).thenReturn("AccountService");
+		when(zenTransaction.serviceOperation()).thenReturn("lookup");
+	}
+
+	@After
+	public void endScope()
+	{
+		ZenScope.end();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testTransactionEndsWhenFutureCompletes() throws Throwable
+	{
+		CompletableFuture<ResponseEntity<String>> handlerFuture = new CompletableFuture<>();
+		when(joinPoint.proceed()).thenReturn(handlerFuture);
+
+		AtomicBoolean loggedWithContext = new AtomicBoolean();
+		doAnswer(invocation -> {
+			loggedWithContext.set(LoggingContextHolder.isPresent());
+			return null;
+		}).when(logManager).logTransaction(any());
+
+		CompletableFuture<ResponseEntity<?>> result =
+				(CompletableFuture<ResponseEntity<?>>) aspect.zenTransaction(joinPoint, zenTransaction);
+
+		assertNull(ZenScope.current());
+		verify(logManager, never()).logTransaction(any());
+
+		CompletableFuture.runAsync(() -> handlerFuture.complete(ResponseEntity.ok("done"))).get();
+
+		assertEquals("done", result.get(1, TimeUnit.SECONDS).getBody());
+		verify(logManager).logTransaction(any());
+		assertTrue(loggedWithContext.get());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testSynchronousErrorIsReturnedAsFuture() throws Throwable
+	{
+		when(joinPoint.proceed()).thenThrow(new IllegalStateException("boom"));
+
+		Object result = aspect.zenTransaction(joinPoint, zenTransaction);
+
+		assertTrue(result instanceof CompletableFuture);
+		assertFalse(LoggingContextHolder.isPresent());
+		verify(logManager).logTransaction(any());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testMonoCarriesScopeInSubscriberContext() throws Throwable
+	{
+		when(joinPoint.proceed()).thenReturn(ZenReactiveContext.scope()
+				.map(scope -> ResponseEntity.ok(scope.getLoggingContext() != null ? "scoped" : "unscoped"))
+				.subscribeOn(Schedulers.parallel()));
+
+		AtomicBoolean loggedWithContext = new AtomicBoolean();
+		doAnswer(invocation -> {
+			loggedWithContext.set(LoggingContextHolder.isPresent());
+			return null;
+		}).when(logManager).logTransaction(any());
+
+		Mono<ResponseEntity<?>> result = (Mono<ResponseEntity<?>>) aspect.zenTransaction(joinPoint, zenTransaction);
+
+		assertNull(ZenScope.current());
+		verify(logManager, never()).logTransaction(any());
+
+		assertEquals("scoped", result.block().getBody());
+		verify(logManager).logTransaction(any());
+		assertTrue(loggedWithContext.get());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testFluxErrorIsLoggedOnceAndPropagated() throws Throwable
+	{
+		when(joinPoint.proceed()).thenReturn(Flux.just("a", "b").concatWith(Flux.error(new IllegalStateException())));
+
+		Flux<String> result = (Flux<String>) aspect.zenTransaction(joinPoint, zenTransaction);
+
+		try
+		{
+			result.collectList().block();
+			fail("Expected the stream error to propagate");
+		}
+		catch (IllegalStateException expected)
+		{
+		}
+
+		verify(logManager, times(1)).logTransaction(any());
+	}
+
+	@Test
+	public void testTransactionsOverLimitAreShed() throws Throwable
+	{
+		ConcurrencyLimiters limiters = new ConcurrencyLimiters();
+		ReflectionTestUtils.setField(limiters, "enabled", true);
+		ReflectionTestUtils.setField(limiters, "initialLimit", 1);
+		ReflectionTestUtils.setField(limiters, "minLimit", 1);
+		ReflectionTestUtils.setField(aspect, "concurrencyLimiters", limiters);
+
+		CompletableFuture<ResponseEntity<String>> handlerFuture = new CompletableFuture<>();
+		when(joinPoint.proceed()).thenReturn(handlerFuture);
+
+		aspect.zenTransaction(joinPoint, zenTransaction);
+		aspect.zenTransaction(joinPoint, zenTransaction);
+
+		ConcurrencyLimiter limiter = limiters.getLimiter("AccountService", "lookup");
+		verify(joinPoint, times(1)).proceed();
+		assertEquals(1, limiter.getRejectedCount());
+		assertEquals(1, limiter.getInFlight());
+
+		handlerFuture.complete(ResponseEntity.ok("done"));
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void testRateLimitedCallerSkipsHandler() throws Throwable
+	{
+		RateLimiters limiters = new RateLimiters();
+		ReflectionTestUtils.setField(limiters, "enabled", true);
+		ReflectionTestUtils.setField(limiters, "key", RateLimitKey.CLIENT_IP);
+		ReflectionTestUtils.setField(limiters, "permitsPerSecond", 0.001);
+		ReflectionTestUtils.setField(limiters, "burst", 1);
+		limiters.initialize();
+		ReflectionTestUtils.setField(aspect, "rateLimiters", limiters);
+
+		when(restServiceMapper.mapInboundRequestToContext(any(), any())).thenReturn(new TransactionContext(
+				"AccountService", "lookup", null, null, null, null, null, 1, "10.0.0.1", null, null, null));
+		when(joinPoint.proceed()).thenReturn(CompletableFuture.completedFuture(ResponseEntity.ok("done")));
+
+		aspect.zenTransaction(joinPoint, zenTransaction);
+		aspect.zenTransaction(joinPoint, zenTransaction);
+
+		verify(joinPoint, times(1)).proceed();
+		verify(restServiceMapper).mapZenExceptionResponse(any(), isA(RateLimitedException.class));
+	}
+
+	public static class Handlers
+	{
+		public CompletableFuture<ResponseEntity<String>> handle(RequestEntity<?> request)
+		{
+			return null;
+		}
+	}
+}
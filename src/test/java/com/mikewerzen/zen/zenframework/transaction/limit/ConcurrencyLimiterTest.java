@@ -0,0 +1,88 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+package com.mikewerzen.zen.zenframework.transaction.limit;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyLimiterTest
+{
+	@Test
+	public void testRejectsOverLimitUntilReleased()
+	{
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(new AimdLimit(2, 1, 10, 0.5));
+
+		ConcurrencyLimiter.Permit first = limiter.tryAcquire();
+		ConcurrencyLimiter.Permit second = limiter.tryAcquire();
+		assertNotNull(first);
+		assertNotNull(second);
+		assertNull(limiter.tryAcquire());
+		assertEquals(1, limiter.getRejectedCount());
+
+		first.release(false);
+		first.release(false);
+		assertEquals(1, limiter.getInFlight());
+		assertNotNull(limiter.tryAcquire());
+	}
+
+	@Test
+	public void testAimdBacksOffOnDropAndGrowsWhenUsed()
+	{
+		AimdLimit limit = new AimdLimit(20, 2, 100, 0.5);
+
+		limit.onSample(1000, 20, true);
+		assertEquals(10, limit.getLimit());
+
+		limit.onSample(1000, 1, false);
+		assertEquals(10, limit.getLimit());
+
+		limit.onSample(1000, 5, false);
+		assertEquals(11, limit.getLimit());
+	}
+
+	@Test
+	public void testGradientShrinksWhenLatencyRises()
+	{
+		GradientLimit limit = new GradientLimit(50, 2, 200);
+		long baseline = TimeUnit.MILLISECONDS.toNanos(10);
+
+		for (int i = 0; i < 100; i++)
+		{
+			limit.onSample(baseline, 50, false);
+		}
+		int healthyLimit = limit.getLimit();
+		assertTrue(healthyLimit >= 50);
+
+		for (int i = 0; i < 20; i++)
+		{
+			limit.onSample(baseline * 10, healthyLimit, false);
+		}
+		assertTrue(limit.getLimit() < healthyLimit / 2);
+	}
+}
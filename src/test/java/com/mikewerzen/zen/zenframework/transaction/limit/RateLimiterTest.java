@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+package com.mikewerzen.zen.zenframework.transaction.limit;
+
+import com.mikewerzen.zen.zenframework.exception.logic.RateLimitedException;
+import com.mikewerzen.zen.zenframework.rest.exception.adapter.logic.RateLimitedAdapter;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest
+{
+	@Test
+	public void testBurstThenSustainedRatePerKey()
+	{
+		RateLimiter limiter = new RateLimiter(10, 3, 100);
+
+		for (int i = 0; i < 3; i++)
+		{
+			assertEquals(0, limiter.tryAcquire("app-a"));
+		}
+
+		long wait = limiter.tryAcquire("app-a");
+		assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(1, limiter.getRejectedCount());
+
+		assertEquals(0, limiter.tryAcquire("app-b"));
+		assertEquals(2, limiter.getKeyCount());
+	}
+
+	@Test
+	public void testNewKeysShareOverflowLimitWhenFull()
+	{
+		RateLimiter limiter = new RateLimiter(0.001, 1, 1);
+
+		assertEquals(0, limiter.tryAcquire("app-a"));
+		assertTrue(limiter.tryAcquire("app-a") > 0);
+
+		assertEquals(0, limiter.tryAcquire("app-b"));
+		assertTrue(limiter.tryAcquire("app-c") > 0);
+		assertTrue(limiter.tryAcquire("app-b") > 0);
+		assertEquals(1, limiter.getKeyCount());
+		assertEquals(3, limiter.getOverflowCount());
+	}
+
+	@Test
+	public void testSweepDropsRefilledKeys() throws Exception
+	{
+		RateLimiter limiter = new RateLimiter(1000, 1, 10);
+		limiter.tryAcquire("app-a");
+		limiter.tryAcquire("app-b");
+
+		Thread.sleep(10);
+		limiter.sweep();
+
+		assertEquals(0, limiter.getKeyCount());
+	}
+
+	@Test
+	public void testRetryAfterIsRoundedUpToSeconds()
+	{
+		HttpHeaders headers = new RateLimitedAdapter().getHttpHeaders(new RateLimitedException(1200, "limited"));
+
+		assertEquals("2", headers.getFirst(HttpHeaders.RETRY_AFTER));
+	}
+}
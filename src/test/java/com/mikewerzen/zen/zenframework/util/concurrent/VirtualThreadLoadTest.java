@@ -0,0 +1,174 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+package com.mikewerzen.zen.zenframework.util.concurrent;
+
+import com.mikewerzen.zen.zenframework.context.ScopedValueScopeStorage;
+import com.mikewerzen.zen.zenframework.context.ZenScope;
+import com.mikewerzen.zen.zenframework.logging.context.LoggingContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Load test for virtual-thread mode: for each count in zen.loadtest.tasks, parks that many virtual threads, each
+ * holding its own ZenScope, and measures the platform threads added and the heap used per task while they are all
+ * parked. Skipped below Java 21.
+ *
+ * The build and its surefire fork run on Java 8, so run it on a JDK 21 directly:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * $JDK21/bin/java -Dzen.loadtest.tasks=10000,100000,200000 -Dorg.apache.logging.log4j.level=INFO \
+ *     -cp target/classes:target/test-classes:$(cat target/test-classpath.txt) \
+ *     org.junit.runner.JUnitCore com.mikewerzen.zen.zenframework.util.concurrent.VirtualThreadLoadTest
+ * </pre>
+ * The figures for each count are logged so runs can be compared. The test fails if, from the smallest count to the
+ * largest, the platform threads added grow by more than zen.loadtest.maxPlatformThreadGrowth or the heap per task
+ * grows by more than zen.loadtest.maxBytesPerTaskGrowth.
+ */
+public class VirtualThreadLoadTest
+{
+	private static final Logger logger = LogManager.getLogger(VirtualThreadLoadTest.class);
+
+	private static final int[] TASKS = Arrays.stream(System.getProperty("zen.loadtest.tasks", "1000,10000,50000")
+			.split(",")).mapToInt(count -> Integer.parseInt(count.trim())).sorted().toArray();
+	private static final int MAX_PLATFORM_THREAD_GROWTH = Integer.getInteger("zen.loadtest.maxPlatformThreadGrowth", 4);
+	private static final long MAX_BYTES_PER_TASK_GROWTH = Long.getLong("zen.loadtest.maxBytesPerTaskGrowth", 2048);
+
+	@After
+	public void resetStorage()
+	{
+		ZenScope.setStorage(null);
+	}
+
+	@Test
+	public void testPlatformThreadsAndHeapPerTaskStayFlatAsTasksGrow() throws Exception
+	{
+		assumeTrue(VirtualThreads.isAvailable());
+		assumeTrue(TASKS.length >= 2);
+
+		ScopedValueScopeStorage scopedValueStorage = ScopedValueScopeStorage.create();
+		ZenScope.setStorage(scopedValueStorage);
+		String storage = scopedValueStorage != null ? "SCOPED_VALUE" : "THREAD_LOCAL";
+
+		int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+		Measurement smallest = null;
+		Measurement largest = null;
+		for (int tasks : TASKS)
+		{
+			largest = measure(tasks, threadsBefore);
+			smallest = smallest == null ? largest : smallest;
+
+			logger.info("Virtual thread load: tasks=" + tasks + " storage=" + storage + " startupMs="
+					+ largest.startupMillis + " addedPlatformThreads=" + largest.addedPlatformThreads
+					+ " heapBytesPerTask=" + largest.bytesPerTask);
+		}
+
+		int threadGrowth = largest.addedPlatformThreads - smallest.addedPlatformThreads;
+		long bytesPerTaskGrowth = largest.bytesPerTask - smallest.bytesPerTask;
+		assertTrue("Platform threads grew by " + threadGrowth + " from " + TASKS[0] + " to "
+				+ TASKS[TASKS.length - 1] + " tasks", threadGrowth <= MAX_PLATFORM_THREAD_GROWTH);
+		assertTrue("Heap per task grew by " + bytesPerTaskGrowth + " bytes from " + TASKS[0] + " to "
+				+ TASKS[TASKS.length - 1] + " tasks", bytesPerTaskGrowth <= MAX_BYTES_PER_TASK_GROWTH);
+	}
+
+	/**
+	 * Platform threads are counted from before the first run, as carrier threads outlive each run.
+	 */
+	private Measurement measure(int tasks, int threadsBefore) throws Exception
+	{
+		long heapBefore = usedHeap();
+
+		CountDownLatch parked = new CountDownLatch(tasks);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger ownScope = new AtomicInteger();
+
+		ExecutorService executor = VirtualThreads.newExecutor("zen-load-");
+		long start = System.nanoTime();
+		for (int i = 0; i < tasks; i++)
+		{
+			executor.execute(() -> {
+				ZenScope scope = new ZenScope();
+				scope.setLoggingContext(new LoggingContext());
+				ZenScope.attach(scope);
+				try
+				{
+					parked.countDown();
+					release.await();
+					if (ZenScope.current() == scope)
+					{
+						ownScope.incrementAndGet();
+					}
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				finally
+				{
+					ZenScope.end();
+				}
+			});
+		}
+
+		assertTrue(parked.await(2, TimeUnit.MINUTES));
+		Measurement measurement = new Measurement();
+		measurement.startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		measurement.addedPlatformThreads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+		measurement.bytesPerTask = Math.max(0, usedHeap() - heapBefore) / tasks;
+
+		release.countDown();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+		assertEquals(tasks, ownScope.get());
+		return measurement;
+	}
+
+	private static long usedHeap() throws InterruptedException
+	{
+		for (int i = 0; i < 3; i++)
+		{
+			System.gc();
+			Thread.sleep(50);
+		}
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	private static class Measurement
+	{
+		private long startupMillis;
+		private int addedPlatformThreads;
+		private long bytesPerTask;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019, Michael Werzen
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Portions of this software are Copyright 2018, TessaTech LLC.
+ *
+ * Such portions are licensed under the MIT License (the "License"); you may not use this file
+ *  except in compliance with the License.
+ * You may obtain a copy of the License at
+ *       https://opensource.org/licenses/MIT
+ */
+
+package com.mikewerzen.zen.zenframework.util.id;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimeOrderedIdGeneratorTest
+{
+	private static final int THREADS = 8;
+	private static final int IDS_PER_THREAD = 100000;
+
+	@Test
+	public void testIdsAreUniqueAndIncreasingAcrossThreads() throws Exception
+	{
+		TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(42);
+		Set<Long> ids = ConcurrentHashMap.newKeySet();
+		CountDownLatch start = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<Boolean>> results = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++)
+		{
+			results.add(executor.submit(() -> {
+				start.await();
+				long previous = -1;
+				boolean increasing = true;
+				for (int j = 0; j < IDS_PER_THREAD; j++)
+				{
+					long id = generator.nextId();
+					increasing &= id > previous;
+					previous = id;
+					ids.add(id);
+				}
+				return increasing;
+			}));
+		}
+
+		start.countDown();
+		for (Future<Boolean> result : results)
+		{
+			assertTrue(result.get());
+		}
+		executor.shutdown();
+
+		assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+	}
+
+	@Test
+	public void testIdsEncodeTimestampAndNode()
+	{
+		long before = System.currentTimeMillis();
+		long id = new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODE_ID).nextId();
+
+		assertTrue(id > 0);
+		assertTrue(TimeOrderedIdGenerator.getTimestamp(id) >= before);
+		assertEquals(TimeOrderedIdGenerator.MAX_NODE_ID,
+				(id >>> TimeOrderedIdGenerator.SEQUENCE_BITS) & TimeOrderedIdGenerator.MAX_NODE_ID);
+	}
+
+	@Test
+	public void testNodeIdFromHostOrdinal()
+	{
+		assertEquals(3, TimeOrderedIdGenerator.parseOrdinal("orders-3"));
+		assertEquals(1023, TimeOrderedIdGenerator.parseOrdinal("orders-api-1023"));
+		assertEquals(-1, TimeOrderedIdGenerator.parseOrdinal("orders-1024"));
+		assertEquals(-1, TimeOrderedIdGenerator.parseOrdinal("orders-7d9f8b6c5-x2k4l"));
+		assertEquals(-1, TimeOrderedIdGenerator.parseOrdinal(null));
+	}
+}